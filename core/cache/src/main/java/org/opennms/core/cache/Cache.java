@@ -28,8 +28,11 @@
 
 package org.opennms.core.cache;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.function.BiPredicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +41,7 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 
 public class Cache<K, V> {
 
@@ -66,6 +70,9 @@ public class Cache<K, V> {
                 registry.register(MetricRegistry.name("cache." + config.getName() + ".evictionCount"), (Gauge) () -> delegate.stats().evictionCount());
                 registry.register(MetricRegistry.name("cache." + config.getName() + ".hitRate"), (Gauge) () -> delegate.stats().hitRate());
                 registry.register(MetricRegistry.name("cache." + config.getName() + ".loadExceptionCount"), (Gauge) () -> delegate.stats().loadExceptionCount());
+                registry.register(MetricRegistry.name("cache." + config.getName() + ".hitCount"), (Gauge) () -> delegate.stats().hitCount());
+                registry.register(MetricRegistry.name("cache." + config.getName() + ".missCount"), (Gauge) () -> delegate.stats().missCount());
+                registry.register(MetricRegistry.name("cache." + config.getName() + ".averageLoadPenalty"), (Gauge) () -> delegate.stats().averageLoadPenalty());
             } else {
                 logger.debug("Recording of \"{}\" cache statistics is disabled.", config.getName());
             }
@@ -84,6 +91,46 @@ public class Cache<K, V> {
         }
     }
 
+    /**
+     * Returns the values for all given keys.
+     *
+     * All keys not cached yet are loaded at once, using {@link CacheLoader#loadAll(Iterable)} if implemented by
+     * the loader.
+     */
+    public Map<K, V> getAll(Iterable<? extends K> keys) throws ExecutionException {
+        Objects.requireNonNull(keys);
+        if (config.isEnabled()) {
+            return delegate.getAll(keys);
+        }
+        try {
+            return ImmutableMap.copyOf(cacheLoader.loadAll(keys));
+        } catch (UnsupportedOperationException e) {
+            // The loader does not support bulk loading
+            final Map<K, V> result = new HashMap<>();
+            for (K key : keys) {
+                result.put(key, get(key));
+            }
+            return result;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    public void invalidate(K key) {
+        if (delegate != null) {
+            delegate.invalidate(key);
+        }
+    }
+
+    /**
+     * Invalidates all cached entries matching the given predicate.
+     */
+    public void invalidateIf(BiPredicate<K, V> predicate) {
+        if (delegate != null) {
+            delegate.asMap().entrySet().removeIf(e -> predicate.test(e.getKey(), e.getValue()));
+        }
+    }
+
     public void invalidateAll() {
         if (delegate != null) {
             delegate.invalidateAll();
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.common.aws.sqs;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Converts the marshalled messages to and from the body of an SQS message.
+ *
+ * SQS message bodies are strings restricted to a subset of the Unicode
+ * characters, so the payloads which are not valid text in that subset (i.e.
+ * the binary encoded sink messages) are sent as base64 with a
+ * {@link #BASE64_PREFIX} instead of being corrupted by the UTF-8 conversion.
+ */
+public final class AmazonSQSMessageBody {
+
+    /** The prefix of the bodies which hold a base64 encoded payload. */
+    public static final String BASE64_PREFIX = "base64:";
+
+    private AmazonSQSMessageBody() {
+    }
+
+    /**
+     * Encodes the payload as the body of an SQS message.
+     *
+     * @param payload the marshalled message
+     * @return the body
+     */
+    public static String encode(byte[] payload) {
+        final String text = asText(payload);
+        if (text != null && !text.startsWith(BASE64_PREFIX)) {
+            return text;
+        }
+        return BASE64_PREFIX + Base64.getEncoder().encodeToString(payload);
+    }
+
+    /**
+     * Decodes the body of an SQS message built by {@link #encode(byte[])}.
+     *
+     * @param body the body
+     * @return the marshalled message
+     */
+    public static byte[] decode(String body) {
+        if (body.startsWith(BASE64_PREFIX)) {
+            return Base64.getDecoder().decode(body.substring(BASE64_PREFIX.length()));
+        }
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the payload as text, if it is valid UTF-8 made only of the characters allowed by SQS.
+     *
+     * @param payload the marshalled message
+     * @return the text, or null when the payload must be encoded
+     */
+    private static String asText(byte[] payload) {
+        final CharBuffer chars;
+        try {
+            chars = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(payload));
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+        final String text = chars.toString();
+        for (int i = 0; i < text.length(); ) {
+            final int c = text.codePointAt(i);
+            if (!isAllowed(c)) {
+                return null;
+            }
+            i += Character.charCount(c);
+        }
+        return text;
+    }
+
+    /**
+     * Checks the character against the ones allowed in SQS messages: #x9, #xA, #xD,
+     * #x20 to #xD7FF, #xE000 to #xFFFD and #x10000 to #x10FFFF.
+     */
+    private static boolean isAllowed(int c) {
+        return c == 0x9 || c == 0xA || c == 0xD
+                || (c >= 0x20 && c <= 0xD7FF)
+                || (c >= 0xE000 && c <= 0xFFFD)
+                || (c >= 0x10000 && c <= 0x10FFFF);
+    }
+}
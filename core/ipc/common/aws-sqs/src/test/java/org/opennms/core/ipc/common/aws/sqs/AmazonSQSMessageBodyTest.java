@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.common.aws.sqs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.opennms.core.ipc.sink.api.AggregationPolicy;
+import org.opennms.core.ipc.sink.api.AsyncPolicy;
+import org.opennms.core.ipc.sink.api.Message;
+import org.opennms.core.ipc.sink.xml.AbstractBinarySinkModule;
+import org.opennms.core.utils.BinaryCodec;
+
+/**
+ * Sends the marshalled messages through the string bodies of SQS messages.
+ */
+public class AmazonSQSMessageBodyTest {
+
+    @Test
+    public void testXmlIsSentAsIs() {
+        final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<trap-log-dto location=\"D\u00e9partement\"/>";
+        final String body = AmazonSQSMessageBody.encode(xml.getBytes(StandardCharsets.UTF_8));
+        assertEquals(xml, body);
+        assertEquals(xml, new String(AmazonSQSMessageBody.decode(body), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBinaryMessageRoundTrip() {
+        final BinaryModule module = new BinaryModule();
+        module.setEncoding(BinaryCodec.Encoding.BINARY);
+        final byte[] payload = new byte[256];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte)i;
+        }
+        final BinaryMessage message = new BinaryMessage("Minion-1", payload);
+
+        final byte[] marshalled = module.marshal(message);
+        assertTrue(AbstractBinarySinkModule.isBinary(marshalled));
+
+        final String body = AmazonSQSMessageBody.encode(marshalled);
+        assertTrue(body.startsWith(AmazonSQSMessageBody.BASE64_PREFIX));
+        for (char c : body.toCharArray()) {
+            assertTrue("Character " + (int)c + " is not allowed by SQS", c >= 0x20 && c < 0x7F);
+        }
+
+        final byte[] received = AmazonSQSMessageBody.decode(body);
+        assertArrayEquals(marshalled, received);
+        final BinaryMessage unmarshalled = module.unmarshal(received);
+        assertEquals(message.m_systemId, unmarshalled.m_systemId);
+        assertArrayEquals(message.m_payload, unmarshalled.m_payload);
+    }
+
+    @Test
+    public void testTextWithControlCharactersIsEncoded() {
+        final byte[] payload = "valid UTF-8\u0000with a NUL".getBytes(StandardCharsets.UTF_8);
+        final String body = AmazonSQSMessageBody.encode(payload);
+        assertTrue(body.startsWith(AmazonSQSMessageBody.BASE64_PREFIX));
+        assertArrayEquals(payload, AmazonSQSMessageBody.decode(body));
+    }
+
+    @Test
+    public void testTextStartingWithThePrefixIsEncoded() {
+        final byte[] payload = (AmazonSQSMessageBody.BASE64_PREFIX + "not base64").getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(payload, AmazonSQSMessageBody.decode(AmazonSQSMessageBody.encode(payload)));
+    }
+
+    private static class BinaryMessage implements Message {
+        private final String m_systemId;
+        private final byte[] m_payload;
+
+        private BinaryMessage(String systemId, byte[] payload) {
+            m_systemId = systemId;
+            m_payload = payload;
+        }
+    }
+
+    private static class BinaryModule extends AbstractBinarySinkModule<BinaryMessage, BinaryMessage> {
+
+        private BinaryModule() {
+            super(BinaryMessage.class);
+        }
+
+        @Override
+        public String getId() {
+            return "Binary";
+        }
+
+        @Override
+        public int getNumConsumerThreads() {
+            return 1;
+        }
+
+        @Override
+        public AggregationPolicy<BinaryMessage, BinaryMessage, ?> getAggregationPolicy() {
+            return null;
+        }
+
+        @Override
+        public AsyncPolicy getAsyncPolicy() {
+            return null;
+        }
+
+        @Override
+        protected void writeMessage(BinaryMessage message, DataOutput out) throws IOException {
+            out.writeUTF(message.m_systemId);
+            out.writeInt(message.m_payload.length);
+            out.write(message.m_payload);
+        }
+
+        @Override
+        protected BinaryMessage readMessage(DataInput in) throws IOException {
+            final String systemId = in.readUTF();
+            final byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return new BinaryMessage(systemId, payload);
+        }
+    }
+}
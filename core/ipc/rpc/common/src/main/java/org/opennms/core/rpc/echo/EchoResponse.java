@@ -82,6 +82,10 @@ public class EchoResponse implements RpcResponse {
         return error;
     }
 
+    public void setErrorMessage(String error) {
+        this.error = error;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(id, message, error);
@@ -28,16 +28,24 @@
 
 package org.opennms.core.rpc.echo;
 
+import static org.opennms.core.utils.BinaryCodec.readLong;
+import static org.opennms.core.utils.BinaryCodec.readString;
+import static org.opennms.core.utils.BinaryCodec.writeLong;
+import static org.opennms.core.utils.BinaryCodec.writeString;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
 
-import org.opennms.core.rpc.xml.AbstractXmlRpcModule;
+import org.opennms.core.rpc.xml.AbstractBinaryRpcModule;
 
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 
-public class EchoRpcModule extends AbstractXmlRpcModule<EchoRequest, EchoResponse> {
+public class EchoRpcModule extends AbstractBinaryRpcModule<EchoRequest, EchoResponse> {
 
     public static final EchoRpcModule INSTANCE = new EchoRpcModule();
 
@@ -88,4 +96,42 @@ public class EchoRpcModule extends AbstractXmlRpcModule<EchoRequest, EchoRespons
     public EchoResponse createResponseWithException(Throwable ex) {
         return new EchoResponse(ex);
     }
+
+    @Override
+    protected void writeRequest(EchoRequest request, DataOutput out) throws IOException {
+        writeLong(out, request.getId());
+        writeString(out, request.getMessage());
+        writeString(out, request.getLocation());
+        writeString(out, request.getSystemId());
+        writeLong(out, request.getDelay());
+        out.writeBoolean(request.shouldThrow());
+    }
+
+    @Override
+    protected EchoRequest readRequest(DataInput in) throws IOException {
+        final EchoRequest request = new EchoRequest();
+        request.setId(readLong(in));
+        request.setMessage(readString(in));
+        request.setLocation(readString(in));
+        request.setSystemId(readString(in));
+        request.setDelay(readLong(in));
+        request.shouldThrow(in.readBoolean());
+        return request;
+    }
+
+    @Override
+    protected void writeResponse(EchoResponse response, DataOutput out) throws IOException {
+        writeLong(out, response.getId());
+        writeString(out, response.getMessage());
+        writeString(out, response.getErrorMessage());
+    }
+
+    @Override
+    protected EchoResponse readResponse(DataInput in) throws IOException {
+        final EchoResponse response = new EchoResponse();
+        response.setId(readLong(in));
+        response.setMessage(readString(in));
+        response.setErrorMessage(readString(in));
+        return response;
+    }
 }
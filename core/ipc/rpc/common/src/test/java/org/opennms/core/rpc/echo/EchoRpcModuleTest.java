@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.echo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.opennms.core.rpc.xml.AbstractBinaryRpcModule;
+import org.opennms.core.utils.BinaryCodec.Encoding;
+
+public class EchoRpcModuleTest {
+
+    @Test
+    public void testBinaryEncoding() {
+        final EchoRpcModule module = new EchoRpcModule();
+        module.setEncoding(Encoding.BINARY);
+
+        final EchoRequest request = new EchoRequest("ping");
+        request.setId(42L);
+        request.setLocation("Raleigh");
+        request.setSystemId("minion-1");
+        request.setDelay(100L);
+        request.shouldThrow(true);
+        final String requestString = module.marshalRequest(request);
+        assertTrue(AbstractBinaryRpcModule.isBinary(requestString));
+        assertEquals(request, module.unmarshalRequest(requestString));
+
+        final EchoResponse response = new EchoResponse("pong");
+        response.setId(42L);
+        final String responseString = module.marshalResponse(response);
+        assertTrue(AbstractBinaryRpcModule.isBinary(responseString));
+        assertEquals(response, module.unmarshalResponse(responseString));
+
+        final EchoResponse failed = new EchoResponse(new IllegalStateException("failed"));
+        assertEquals(failed.getErrorMessage(), module.unmarshalResponse(module.marshalResponse(failed)).getErrorMessage());
+    }
+
+    @Test
+    public void testBothEncodingsAreUnderstood() {
+        final EchoRpcModule xmlModule = new EchoRpcModule();
+        xmlModule.setEncoding(Encoding.XML);
+        final EchoRpcModule binaryModule = new EchoRpcModule();
+        binaryModule.setEncoding(Encoding.BINARY);
+
+        final EchoRequest request = new EchoRequest("ping");
+        request.setId(1L);
+        final String xml = xmlModule.marshalRequest(request);
+        assertFalse(AbstractBinaryRpcModule.isBinary(xml));
+        assertEquals(request, binaryModule.unmarshalRequest(xml));
+        assertEquals(request, xmlModule.unmarshalRequest(binaryModule.marshalRequest(request)));
+
+        final EchoResponse response = new EchoResponse("pong");
+        response.setId(1L);
+        assertEquals(response, binaryModule.unmarshalResponse(xmlModule.marshalResponse(response)));
+        assertEquals(response, xmlModule.unmarshalResponse(binaryModule.marshalResponse(response)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedVersionIsRejected() {
+        final EchoRpcModule module = new EchoRpcModule();
+        module.setEncoding(Encoding.BINARY);
+        final String request = module.marshalRequest(new EchoRequest("ping"));
+        module.unmarshalRequest("ONB99" + request.substring(request.indexOf(':')));
+    }
+}
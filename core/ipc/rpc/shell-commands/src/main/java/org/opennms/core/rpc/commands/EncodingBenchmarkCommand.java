@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.commands;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.opennms.core.rpc.echo.EchoRequest;
+import org.opennms.core.rpc.echo.EchoResponse;
+import org.opennms.core.rpc.echo.EchoRpcModule;
+import org.opennms.core.utils.BinaryCodec.Encoding;
+
+import com.codahale.metrics.ConsoleReporter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Strings;
+
+/**
+ * Compares the encodings of the RPC messages by marshaling and unmarshaling
+ * the requests and responses of the Echo module locally, without sending them.
+ *
+ * The payload of the Echo messages is text, which the binary encoding sends
+ * as base64, so this is the worst case of the binary encoding. The responses
+ * of the SNMP walks are compared by the SnmpProxyEncodingBenchmark of the
+ * SNMP proxy.
+ */
+@Command(scope = "rpc", name = "encoding-benchmark", description="Compares the encodings of the requests and responses of the Echo module")
+@Service
+public class EncodingBenchmarkCommand implements Action {
+
+    @Option(name = "-l", aliases = "--location", description = "Location")
+    String location = "Default";
+
+    @Option(name = "-i", aliases = "--system-id", description = "System ID")
+    String systemId = "00000000-0000-0000-0000-000000000000";
+
+    @Option (name="-s", aliases = "--message-size", description="Message size (number of charaters)")
+    int messageSize = 1024;
+
+    @Option (name="-c", aliases = "--count", description="Number of requests and responses encoded with each encoding")
+    int count = 100000;
+
+    @Option (name="-w", aliases = "--warmup", description="Number of requests and responses encoded before measuring")
+    int warmup = 10000;
+
+    @Override
+    public Object execute() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final String message = Strings.repeat("*", messageSize);
+
+        for (Encoding encoding : Encoding.values()) {
+            final EchoRpcModule module = new EchoRpcModule();
+            module.setEncoding(encoding);
+
+            System.out.printf("Warming up the %s encoding.\n", encoding);
+            run(module, message, warmup, null);
+
+            System.out.printf("Encoding %d requests and responses with the %s encoding.\n", count, encoding);
+            run(module, message, count, metrics);
+        }
+
+        System.out.println();
+        ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .convertDurationsTo(TimeUnit.MICROSECONDS)
+                .build();
+        reporter.report();
+        reporter.close();
+
+        return null;
+    }
+
+    private void run(EchoRpcModule module, String message, int iterations, MetricRegistry metrics) {
+        final String prefix = module.getEncoding().name().toLowerCase();
+        final Timer marshalRequest = metrics == null ? null : metrics.timer(MetricRegistry.name(prefix, "request", "marshal"));
+        final Timer unmarshalRequest = metrics == null ? null : metrics.timer(MetricRegistry.name(prefix, "request", "unmarshal"));
+        final Timer marshalResponse = metrics == null ? null : metrics.timer(MetricRegistry.name(prefix, "response", "marshal"));
+        final Timer unmarshalResponse = metrics == null ? null : metrics.timer(MetricRegistry.name(prefix, "response", "unmarshal"));
+        final Histogram requestSize = metrics == null ? null : metrics.histogram(MetricRegistry.name(prefix, "request", "bytes"));
+        final Histogram responseSize = metrics == null ? null : metrics.histogram(MetricRegistry.name(prefix, "response", "bytes"));
+
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            final String request = module.marshalRequest(buildRequest(i, message));
+            long end = System.nanoTime();
+            update(marshalRequest, end - start);
+
+            start = System.nanoTime();
+            final EchoRequest echoRequest = module.unmarshalRequest(request);
+            end = System.nanoTime();
+            update(unmarshalRequest, end - start);
+
+            final EchoResponse echoResponse = new EchoResponse();
+            echoResponse.setId(echoRequest.getId());
+            echoResponse.setMessage(echoRequest.getMessage());
+
+            start = System.nanoTime();
+            final String response = module.marshalResponse(echoResponse);
+            end = System.nanoTime();
+            update(marshalResponse, end - start);
+
+            start = System.nanoTime();
+            module.unmarshalResponse(response);
+            end = System.nanoTime();
+            update(unmarshalResponse, end - start);
+
+            if (metrics != null) {
+                requestSize.update(request.getBytes(StandardCharsets.UTF_8).length);
+                responseSize.update(response.getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+    }
+
+    private static void update(Timer timer, long elapsed) {
+        if (timer != null) {
+            timer.update(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private EchoRequest buildRequest(long id, String message) {
+        final EchoRequest request = new EchoRequest();
+        request.setId(id);
+        request.setMessage(message);
+        request.setLocation(location);
+        request.setSystemId(systemId);
+        return request;
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Locale;
+
+import org.opennms.core.rpc.api.RpcRequest;
+import org.opennms.core.rpc.api.RpcResponse;
+import org.opennms.core.utils.BinaryCodec;
+import org.opennms.core.utils.BinaryCodec.Encoding;
+
+/**
+ * A module whose requests and responses can be encoded in a compact binary
+ * format instead of XML.
+ * <p>
+ * Since the RPC implementations exchange strings, the binary form is encoded
+ * with Base64 and prefixed with a header such as <code>ONB1:</code>, which
+ * can never start an XML document. The header ends with the version of the
+ * binary format, so that later versions can be told apart.
+ * </p>
+ * <p>
+ * The unmarshal methods accept both encodings, so that OpenNMS and the
+ * Minions keep understanding each other while they are upgraded. The
+ * marshal methods use the encoding given by the
+ * <code>org.opennms.core.rpc.&lt;module id&gt;.encoding</code> system
+ * property, <code>xml</code> (default) or <code>binary</code>, which should
+ * only be set to <code>binary</code> once both sides understand it.
+ * </p>
+ * <p>
+ * The fields of the requests and responses are written with the helpers of
+ * {@link BinaryCodec}.
+ * </p>
+ */
+public abstract class AbstractBinaryRpcModule<S extends RpcRequest,T extends RpcResponse> extends AbstractXmlRpcModule<S, T> {
+
+    public static final String ENCODING_PROPERTY_FORMAT = "org.opennms.core.rpc.%s.encoding";
+
+    private static final String HEADER = "ONB";
+
+    private static final int VERSION = 1;
+
+    private static final String PREFIX = HEADER + VERSION + ":";
+
+    private volatile Encoding encoding;
+
+    public AbstractBinaryRpcModule(Class<S> requestClazz, Class<T> responseClazz) {
+        super(requestClazz, responseClazz);
+    }
+
+    /**
+     * Writes the fields of the request.
+     */
+    protected abstract void writeRequest(S request, DataOutput out) throws IOException;
+
+    /**
+     * Reads the fields of a request written by {@link #writeRequest(RpcRequest, DataOutput)}.
+     */
+    protected abstract S readRequest(DataInput in) throws IOException;
+
+    /**
+     * Writes the fields of the response.
+     */
+    protected abstract void writeResponse(T response, DataOutput out) throws IOException;
+
+    /**
+     * Reads the fields of a response written by {@link #writeResponse(RpcResponse, DataOutput)}.
+     */
+    protected abstract T readResponse(DataInput in) throws IOException;
+
+    @FunctionalInterface
+    private interface Writer<W> {
+        void write(W value, DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<W> {
+        W read(DataInput in) throws IOException;
+    }
+
+    @Override
+    public String marshalRequest(S request) {
+        if (getEncoding() != Encoding.BINARY) {
+            return super.marshalRequest(request);
+        }
+        return encode(request, this::writeRequest);
+    }
+
+    @Override
+    public S unmarshalRequest(String request) {
+        if (!isBinary(request)) {
+            return super.unmarshalRequest(request);
+        }
+        return decode(request, this::readRequest);
+    }
+
+    @Override
+    public String marshalResponse(T response) {
+        if (getEncoding() != Encoding.BINARY) {
+            return super.marshalResponse(response);
+        }
+        return encode(response, this::writeResponse);
+    }
+
+    @Override
+    public T unmarshalResponse(String response) {
+        if (!isBinary(response)) {
+            return super.unmarshalResponse(response);
+        }
+        return decode(response, this::readResponse);
+    }
+
+    private <W> String encode(W value, Writer<W> writer) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(value, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode the message of module " + getId(), e);
+        }
+        return PREFIX + Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private <W> W decode(String value, Reader<W> reader) {
+        final int separator = value.indexOf(':', HEADER.length());
+        final String version = separator < 0 ? "" : value.substring(HEADER.length(), separator);
+        if (!Integer.toString(VERSION).equals(version)) {
+            throw new IllegalArgumentException("Unsupported version '" + version + "' of the binary encoding of module " + getId());
+        }
+        final byte[] bytes = Base64.getDecoder().decode(value.substring(separator + 1));
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to decode the message of module " + getId(), e);
+        }
+    }
+
+    /**
+     * @return whether the message is encoded in the binary format
+     */
+    public static boolean isBinary(String value) {
+        return value != null && value.startsWith(HEADER);
+    }
+
+    public Encoding getEncoding() {
+        if (encoding == null) {
+            encoding = Encoding.fromProperty(String.format(ENCODING_PROPERTY_FORMAT, getId().toLowerCase(Locale.ROOT)));
+        }
+        return encoding;
+    }
+
+    public void setEncoding(Encoding encoding) {
+        this.encoding = encoding;
+    }
+}
@@ -29,9 +29,9 @@
 package org.opennms.core.ipc.sink.aws.sqs.client;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 
 import org.opennms.core.ipc.common.aws.sqs.AmazonSQSManager;
+import org.opennms.core.ipc.common.aws.sqs.AmazonSQSMessageBody;
 import org.opennms.core.ipc.sink.api.Message;
 import org.opennms.core.ipc.sink.api.MessageConsumerManager;
 import org.opennms.core.ipc.sink.api.SinkModule;
@@ -73,7 +73,7 @@ public class AmazonSQSRemoteMessageDispatcherFactory extends AbstractMessageDisp
             LOG.trace("dispatch({}): sending message {}", topic, message);
             try {
                 final String queueUrl = awsSqsManager.getSinkQueueUrlAndCreateIfNecessary(module.getId());
-                final String messageId = awsSqsManager.sendMessage(queueUrl, new String(module.marshal((T)message), StandardCharsets.UTF_8));
+                final String messageId = awsSqsManager.sendMessage(queueUrl, AmazonSQSMessageBody.encode(module.marshal((T)message)));
                 LOG.debug("SQS Message with ID {} has been successfully sent to {}", messageId, queueUrl);
             } catch (InterruptedException ex) {
                 LOG.warn("Interrupted while trying to send message. Aborting.", ex);
@@ -32,6 +32,7 @@ import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.model.AmazonSQSException;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.opennms.core.ipc.common.aws.sqs.AmazonSQSManager;
+import org.opennms.core.ipc.common.aws.sqs.AmazonSQSMessageBody;
 import org.opennms.core.ipc.sink.api.Message;
 import org.opennms.core.ipc.sink.api.MessageConsumerManager;
 import org.opennms.core.ipc.sink.api.SinkModule;
@@ -40,7 +41,6 @@ import org.opennms.core.logging.Logging;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -130,7 +130,7 @@ public class AmazonSQSMessageConsumerManager extends AbstractMessageConsumerMana
                     for (com.amazonaws.services.sqs.model.Message m : messages) {
                         try {
                             LOG.debug("Received SQS message with ID {} from {}", m.getMessageId(), queueUrl);
-                            final Message msg = module.unmarshal(m.getBody().getBytes(StandardCharsets.UTF_8));
+                            final Message msg = module.unmarshal(AmazonSQSMessageBody.decode(m.getBody()));
                             dispatch(module, msg);
                             LOG.debug("Message with ID {} successfully dispatched.", m.getMessageId(), queueUrl);
                         } catch (RuntimeException e) {
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.sink.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.opennms.core.ipc.sink.api.Message;
+import org.opennms.core.utils.BinaryCodec;
+import org.opennms.core.utils.BinaryCodec.Encoding;
+
+/**
+ * A module whose messages can be encoded in a compact binary format instead
+ * of XML.
+ * <p>
+ * Binary messages start with a header which can never start an XML document,
+ * so {@link #unmarshal(byte[])} accepts both encodings: the consumers keep
+ * reading the messages of producers which still send XML, and the producers
+ * can be switched to the binary encoding once the consumers understand it.
+ * The producers use the encoding given by the
+ * <code>org.opennms.core.ipc.sink.&lt;module id&gt;.encoding</code> system
+ * property, <code>xml</code> (default) or <code>binary</code>.
+ * </p>
+ * <p>
+ * The header ends with the version of the binary format, so that later
+ * versions can be told apart. The fields of the messages are written with
+ * the helpers of {@link BinaryCodec}.
+ * </p>
+ */
+public abstract class AbstractBinarySinkModule<S extends Message, T extends Message> extends AbstractXmlSinkModule<S, T> {
+
+    public static final String ENCODING_PROPERTY_FORMAT = "org.opennms.core.ipc.sink.%s.encoding";
+
+    private static final byte[] HEADER = new byte[] { 0, 'O', 'N', 'B' };
+
+    private static final byte VERSION = 1;
+
+    private volatile Encoding encoding;
+
+    public AbstractBinarySinkModule(Class<T> messageClazz) {
+        super(messageClazz);
+    }
+
+    /**
+     * Writes the fields of the message.
+     */
+    protected abstract void writeMessage(T message, DataOutput out) throws IOException;
+
+    /**
+     * Reads the fields of a message written by {@link #writeMessage(Message, DataOutput)}.
+     */
+    protected abstract T readMessage(DataInput in) throws IOException;
+
+    @Override
+    public byte[] marshal(T message) {
+        if (getEncoding() != Encoding.BINARY) {
+            return super.marshal(message);
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(HEADER);
+            out.writeByte(VERSION);
+            writeMessage(message, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode the message of module " + getId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public T unmarshal(byte[] bytes) {
+        if (!isBinary(bytes)) {
+            return super.unmarshal(bytes);
+        }
+        final byte version = bytes[HEADER.length];
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported version " + version + " of the binary encoding of module " + getId());
+        }
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, HEADER.length + 1, bytes.length - HEADER.length - 1))) {
+            return readMessage(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to decode the message of module " + getId(), e);
+        }
+    }
+
+    /**
+     * @return whether the message is encoded in the binary format
+     */
+    public static boolean isBinary(byte[] bytes) {
+        if (bytes.length <= HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < HEADER.length; i++) {
+            if (bytes[i] != HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Encoding getEncoding() {
+        if (encoding == null) {
+            encoding = Encoding.fromProperty(String.format(ENCODING_PROPERTY_FORMAT, getId().toLowerCase(Locale.ROOT)));
+        }
+        return encoding;
+    }
+
+    public void setEncoding(Encoding encoding) {
+        this.encoding = encoding;
+    }
+}
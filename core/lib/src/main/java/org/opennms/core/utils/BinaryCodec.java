@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads and writes the fields of the binary encoding shared by the sink and
+ * RPC modules as an alternative to XML.
+ * <p>
+ * Nullable values are written with a length or count incremented by one, so
+ * that zero stands for null.
+ * </p>
+ */
+public abstract class BinaryCodec {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryCodec.class);
+
+    public enum Encoding {
+        XML,
+        BINARY;
+
+        /**
+         * Gets the encoding given by the system property, <code>xml</code> (default) or <code>binary</code>.
+         */
+        public static Encoding fromProperty(String property) {
+            final String value = System.getProperty(property, XML.name()).trim();
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Invalid value '{}' of {}, using the XML encoding", value, property);
+                return XML;
+            }
+        }
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        final byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the length of the value, plus one to tell null values apart, followed by the bytes.
+     */
+    public static void writeBytes(DataOutput out, byte[] value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+        } else {
+            writeVarInt(out, value.length + 1);
+            out.write(value);
+        }
+    }
+
+    public static byte[] readBytes(DataInput in) throws IOException {
+        final int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the value in 7 bit groups, least significant first, so that small
+     * values such as lengths and the sub-identifiers of OIDs take a single byte.
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    public static void writeLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    public static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    public static void writeInetAddress(DataOutput out, InetAddress value) throws IOException {
+        writeBytes(out, value == null ? null : value.getAddress());
+    }
+
+    public static InetAddress readInetAddress(DataInput in) throws IOException {
+        final byte[] address = readBytes(in);
+        return address == null ? null : InetAddress.getByAddress(address);
+    }
+
+    /**
+     * Writes the sub-identifiers of an OID, as given by <code>SnmpObjId.getIds()</code>.
+     */
+    public static void writeOid(DataOutput out, int[] ids) throws IOException {
+        if (ids == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, ids.length + 1);
+        for (int id : ids) {
+            writeVarInt(out, id);
+        }
+    }
+
+    /**
+     * Reads the sub-identifiers of an OID written by {@link #writeOid(DataOutput, int[])}.
+     */
+    public static int[] readOid(DataInput in) throws IOException {
+        final int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        final int[] ids = new int[length];
+        for (int i = 0; i < length; i++) {
+            ids[i] = readVarInt(in);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.junit.Test;
+import org.opennms.core.utils.BinaryCodec.Encoding;
+
+public class BinaryCodecTest {
+
+    @Test
+    public void testVarInt() throws IOException {
+        final int[] values = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            for (int value : values) {
+                BinaryCodec.writeVarInt(out, value);
+            }
+        }
+        // 1 byte up to 127, 2 bytes up to 16383, 3 bytes from 16384 and 5 bytes for the negative and large values
+        assertEquals(1 + 1 + 1 + 2 + 2 + 3 + 5 + 5 + 5, bytes.size());
+
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (int value : values) {
+                assertEquals(value, BinaryCodec.readVarInt(in));
+            }
+        }
+    }
+
+    @Test
+    public void testNullableValues() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryCodec.writeString(out, null);
+            BinaryCodec.writeString(out, "");
+            BinaryCodec.writeString(out, "D\u00e9partement");
+            BinaryCodec.writeBytes(out, null);
+            BinaryCodec.writeLong(out, null);
+            BinaryCodec.writeLong(out, 42L);
+            BinaryCodec.writeInetAddress(out, null);
+            BinaryCodec.writeInetAddress(out, InetAddress.getByName("2001:db8::1"));
+            BinaryCodec.writeOid(out, null);
+            BinaryCodec.writeOid(out, new int[] { 1, 3, 6, 1, 4, 1, 5813, 1 });
+        }
+
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertNull(BinaryCodec.readString(in));
+            assertEquals("", BinaryCodec.readString(in));
+            assertEquals("D\u00e9partement", BinaryCodec.readString(in));
+            assertNull(BinaryCodec.readBytes(in));
+            assertNull(BinaryCodec.readLong(in));
+            assertEquals(Long.valueOf(42L), BinaryCodec.readLong(in));
+            assertNull(BinaryCodec.readInetAddress(in));
+            assertEquals(InetAddress.getByName("2001:db8::1"), BinaryCodec.readInetAddress(in));
+            assertNull(BinaryCodec.readOid(in));
+            assertArrayEquals(new int[] { 1, 3, 6, 1, 4, 1, 5813, 1 }, BinaryCodec.readOid(in));
+        }
+    }
+
+    @Test
+    public void testEncodingFromProperty() {
+        final String property = "org.opennms.core.utils.binarycodectest.encoding";
+        try {
+            assertEquals(Encoding.XML, Encoding.fromProperty(property));
+            System.setProperty(property, " Binary ");
+            assertEquals(Encoding.BINARY, Encoding.fromProperty(property));
+            System.setProperty(property, "protobuf");
+            assertEquals(Encoding.XML, Encoding.fromProperty(property));
+        } finally {
+            System.clearProperty(property);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the walk parameters learned for each agent, identified by its
+ * address and port, so that the walkers
+ * can adapt the repetitions and the varbinds per PDU of their requests to the
+ * agent instead of always using the values of the agent configuration.
+ * <p>
+ * A walk starts with the parameters learned by the previous walks of the
+ * agent. The repetitions are halved when the agent answers with a
+ * <code>tooBig</code> error, or when a request of a walk times out after the
+ * agent answered earlier requests of the walk; once a single repetition is
+ * requested the varbinds per PDU are halved instead. Responses slower than
+ * twice the target latency reduce the repetitions by a quarter, while complete
+ * responses faster than the target latency first restore the configured
+ * varbinds per PDU and then increase the repetitions by a quarter, up to a
+ * ceiling.
+ * </p>
+ * <p>
+ * The adaptation is enabled with the <code>org.opennms.snmp.walker.adaptive</code>
+ * system property. The learned parameters are saved every minute, by default to
+ * <code>${opennms.home}/var/snmp-walk-tuning.properties</code>, and loaded
+ * again on startup.
+ * </p>
+ */
+public class SnmpWalkTuning {
+    private static final Logger LOG = LoggerFactory.getLogger(SnmpWalkTuning.class);
+
+    public static final String ADAPTIVE_PROPERTY = "org.opennms.snmp.walker.adaptive";
+
+    public static final String FILE_PROPERTY = ADAPTIVE_PROPERTY + ".file";
+
+    public static final String MAX_REPETITIONS_PROPERTY = ADAPTIVE_PROPERTY + ".maxRepetitions";
+
+    public static final String TARGET_LATENCY_PROPERTY = ADAPTIVE_PROPERTY + ".targetLatency";
+
+    public static final int DEFAULT_MAX_REPETITIONS = 50;
+
+    public static final long DEFAULT_TARGET_LATENCY = 500;
+
+    private static final long SAVE_INTERVAL = 60000;
+
+    private static SnmpWalkTuning s_instance;
+
+    private static boolean s_initialized = false;
+
+    /**
+     * The repetitions and the varbinds per PDU of the requests of a walk.
+     */
+    public static final class Parameters {
+        private final int m_maxVarsPerPdu;
+        private final int m_maxRepetitions;
+
+        public Parameters(final int maxVarsPerPdu, final int maxRepetitions) {
+            m_maxVarsPerPdu = Math.max(1, maxVarsPerPdu);
+            m_maxRepetitions = Math.max(1, maxRepetitions);
+        }
+
+        public int getMaxVarsPerPdu() {
+            return m_maxVarsPerPdu;
+        }
+
+        public int getMaxRepetitions() {
+            return m_maxRepetitions;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Parameters)) {
+                return false;
+            }
+            final Parameters other = (Parameters)obj;
+            return m_maxVarsPerPdu == other.m_maxVarsPerPdu && m_maxRepetitions == other.m_maxRepetitions;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(m_maxVarsPerPdu, m_maxRepetitions);
+        }
+
+        @Override
+        public String toString() {
+            return "maxVarsPerPdu=" + m_maxVarsPerPdu + ", maxRepetitions=" + m_maxRepetitions;
+        }
+    }
+
+    private final File m_file;
+    private final int m_maxRepetitions;
+    private final long m_targetLatency;
+    private final Map<String, Parameters> m_agents = new ConcurrentHashMap<>();
+    private final AtomicBoolean m_dirty = new AtomicBoolean(false);
+
+    /**
+     * <p>Constructor for SnmpWalkTuning.</p>
+     *
+     * @param file the file the learned parameters are saved to, or null to keep them in memory only
+     * @param maxRepetitions the ceiling of the repetitions, unless the agent configuration allows more
+     * @param targetLatency the latency of the responses in milliseconds below which the requests are enlarged
+     */
+    public SnmpWalkTuning(final File file, final int maxRepetitions, final long targetLatency) {
+        m_file = file;
+        m_maxRepetitions = Math.max(1, maxRepetitions);
+        m_targetLatency = targetLatency;
+    }
+
+    /**
+     * Returns the tuning shared by the walkers, which is created on first use
+     * according to the system properties.
+     *
+     * @return the tuning, or null if the walks are not adapted
+     */
+    public static synchronized SnmpWalkTuning getInstance() {
+        if (!s_initialized) {
+            s_initialized = true;
+            if (Boolean.getBoolean(ADAPTIVE_PROPERTY)) {
+                final SnmpWalkTuning tuning = new SnmpWalkTuning(getDefaultFile(),
+                        Integer.getInteger(MAX_REPETITIONS_PROPERTY, DEFAULT_MAX_REPETITIONS),
+                        Long.getLong(TARGET_LATENCY_PROPERTY, DEFAULT_TARGET_LATENCY));
+                tuning.load();
+                tuning.scheduleSaves();
+                LOG.info("Adapting the SNMP walks to the agents, saving the learned parameters to {}", tuning.m_file);
+                s_instance = tuning;
+            }
+        }
+        return s_instance;
+    }
+
+    /**
+     * Replaces the tuning shared by the walkers.
+     *
+     * @param tuning the tuning, or null to stop adapting the walks
+     */
+    public static synchronized void setInstance(final SnmpWalkTuning tuning) {
+        s_instance = tuning;
+        s_initialized = true;
+    }
+
+    private static File getDefaultFile() {
+        final String file = System.getProperty(FILE_PROPERTY);
+        if (file != null) {
+            return new File(file);
+        }
+        final String home = System.getProperty("opennms.home");
+        return home == null ? null : new File(home, "var" + File.separator + "snmp-walk-tuning.properties");
+    }
+
+    /**
+     * Returns the parameters to start a walk of the agent with.
+     *
+     * @param agent the address of the agent
+     * @param port the port of the agent
+     * @param configured the parameters of the agent configuration
+     * @return the learned parameters, within the limits of the configuration
+     */
+    public Parameters getParameters(final InetAddress agent, final int port, final Parameters configured) {
+        final Parameters learned = m_agents.get(getKey(agent, port));
+        if (learned == null) {
+            return configured;
+        }
+        return new Parameters(Math.min(learned.getMaxVarsPerPdu(), configured.getMaxVarsPerPdu()),
+                Math.min(learned.getMaxRepetitions(), getRepetitionsCeiling(configured)));
+    }
+
+    /**
+     * Shrinks the requests to the agent after a <code>tooBig</code> error or a timeout.
+     *
+     * @param agent the address of the agent
+     * @param port the port of the agent
+     * @param current the parameters of the request which failed
+     * @return the smaller parameters, or null if the requests cannot get any smaller
+     */
+    public Parameters shrink(final InetAddress agent, final int port, final Parameters current) {
+        final Parameters smaller;
+        if (current.getMaxRepetitions() > 1) {
+            smaller = new Parameters(current.getMaxVarsPerPdu(), current.getMaxRepetitions() / 2);
+        } else if (current.getMaxVarsPerPdu() > 1) {
+            smaller = new Parameters(current.getMaxVarsPerPdu() / 2, 1);
+        } else {
+            return null;
+        }
+        return update(agent, port, smaller);
+    }
+
+    /**
+     * Adapts the requests to the agent to a response.
+     *
+     * @param agent the address of the agent
+     * @param port the port of the agent
+     * @param configured the parameters of the agent configuration
+     * @param current the parameters of the request
+     * @param latency the time in milliseconds the agent took to respond
+     * @param complete whether the response contained all of the requested varbinds
+     * @return the parameters of the next request, which are the current parameters if unchanged
+     */
+    public Parameters responded(final InetAddress agent, final int port, final Parameters configured, final Parameters current, final long latency, final boolean complete) {
+        if (latency > 2 * m_targetLatency) {
+            if (current.getMaxRepetitions() > 1) {
+                return update(agent, port, new Parameters(current.getMaxVarsPerPdu(), current.getMaxRepetitions() * 3 / 4));
+            }
+        } else if (latency <= m_targetLatency && complete) {
+            if (current.getMaxVarsPerPdu() < configured.getMaxVarsPerPdu()) {
+                return update(agent, port, new Parameters(current.getMaxVarsPerPdu() + 1, current.getMaxRepetitions()));
+            }
+            final int ceiling = getRepetitionsCeiling(configured);
+            if (current.getMaxRepetitions() < ceiling) {
+                return update(agent, port, new Parameters(current.getMaxVarsPerPdu(),
+                        Math.min(ceiling, current.getMaxRepetitions() + Math.max(1, current.getMaxRepetitions() / 4))));
+            }
+        }
+        return current;
+    }
+
+    private int getRepetitionsCeiling(final Parameters configured) {
+        return Math.max(configured.getMaxRepetitions(), m_maxRepetitions);
+    }
+
+    private Parameters update(final InetAddress agent, final int port, final Parameters parameters) {
+        final String key = getKey(agent, port);
+        if (!parameters.equals(m_agents.put(key, parameters))) {
+            LOG.debug("Walking {} with {}", key, parameters);
+            m_dirty.set(true);
+        }
+        return parameters;
+    }
+
+    /**
+     * Agents sharing an address, such as the agents behind a NAT or a proxy,
+     * are told apart by their port.
+     */
+    private static String getKey(final InetAddress agent, final int port) {
+        return InetAddrUtils.str(agent) + ":" + port;
+    }
+
+    /**
+     * Loads the parameters saved to the file, if it exists.
+     */
+    public void load() {
+        if (m_file == null || !m_file.exists()) {
+            return;
+        }
+        final Properties props = new Properties();
+        try (final InputStream in = new FileInputStream(m_file)) {
+            props.load(in);
+        } catch (final IOException e) {
+            LOG.warn("Failed to load the SNMP walk parameters from {}", m_file, e);
+            return;
+        }
+        for (final String agent : props.stringPropertyNames()) {
+            final String[] values = props.getProperty(agent).split(",");
+            try {
+                m_agents.put(agent, new Parameters(Integer.parseInt(values[1].trim()), Integer.parseInt(values[0].trim())));
+            } catch (final ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                LOG.warn("Ignoring the invalid SNMP walk parameters of {}: {}", agent, props.getProperty(agent));
+            }
+        }
+        LOG.debug("Loaded the SNMP walk parameters of {} agents from {}", m_agents.size(), m_file);
+    }
+
+    /**
+     * Saves the learned parameters to the file, if they changed since they were last saved.
+     */
+    public void save() {
+        if (m_file == null || !m_dirty.getAndSet(false)) {
+            return;
+        }
+        final Properties props = new Properties();
+        for (final Map.Entry<String, Parameters> entry : m_agents.entrySet()) {
+            props.setProperty(entry.getKey(), entry.getValue().getMaxRepetitions() + "," + entry.getValue().getMaxVarsPerPdu());
+        }
+        final File tmp = new File(m_file.getPath() + ".tmp");
+        try {
+            try (final OutputStream out = new FileOutputStream(tmp)) {
+                props.store(out, "SNMP walk parameters learned per agent: maxRepetitions,maxVarsPerPdu");
+            }
+            Files.move(tmp.toPath(), m_file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            m_dirty.set(true);
+            LOG.warn("Failed to save the SNMP walk parameters to {}", m_file, e);
+        }
+    }
+
+    private void scheduleSaves() {
+        if (m_file == null) {
+            return;
+        }
+        final Timer timer = new Timer("SnmpWalkTuning-Saver", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                save();
+            }
+        }, SAVE_INTERVAL, SAVE_INTERVAL);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::save, "SnmpWalkTuning-Shutdown"));
+    }
+}
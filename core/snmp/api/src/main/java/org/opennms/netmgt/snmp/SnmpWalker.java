@@ -32,7 +32,18 @@ import java.net.InetAddress;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.opennms.netmgt.snmp.SnmpWalkTuning.Parameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public abstract class SnmpWalker implements AutoCloseable {
+    private static final transient Logger LOG = LoggerFactory.getLogger(SnmpWalker.class);
+
+    /**
+     * The number of times a walk resends a request with smaller parameters
+     * after a timeout.
+     */
+    private static final int MAX_ADAPTIVE_RESENDS = 2;
 
     protected abstract static class WalkerPduBuilder extends PduBuilder {
         protected WalkerPduBuilder(int maxVarsPerPdu) {
@@ -48,6 +59,7 @@ public abstract class SnmpWalker implements AutoCloseable {
     private final CountDownLatch m_signal;
 
     private final InetAddress m_address;
+    private final int m_port;
     private WalkerPduBuilder m_pduBuilder;
     private ResponseProcessor m_responseProcessor;
     private final int m_maxVarsPerPdu;
@@ -57,17 +69,33 @@ public abstract class SnmpWalker implements AutoCloseable {
 
     private SnmpWalkCallback m_callback;
 
+    private final SnmpWalkTuning m_tuning;
+    private final Parameters m_configured;
+    private Parameters m_parameters;
+    private long m_sentAt;
+    private boolean m_responded = false;
+    private int m_adaptiveResends = 0;
+
     protected SnmpWalker(InetAddress address, String name, int maxVarsPerPdu, int maxRepetitions, int maxRetries, CollectionTracker tracker) {
+        this(address, SnmpConfiguration.DEFAULT_PORT, name, maxVarsPerPdu, maxRepetitions, maxRetries, tracker);
+    }
+
+    protected SnmpWalker(InetAddress address, int port, String name, int maxVarsPerPdu, int maxRepetitions, int maxRetries, CollectionTracker tracker) {
         m_address = address;
+        m_port = port;
         m_signal = new CountDownLatch(1);
         
         m_name = name;
 
+        m_tuning = SnmpWalkTuning.getInstance();
+        m_configured = new Parameters(maxVarsPerPdu, maxRepetitions);
+        m_parameters = m_tuning == null ? m_configured : m_tuning.getParameters(address, port, m_configured);
+
         m_tracker = tracker;
-        m_tracker.setMaxRepetitions(maxRepetitions);
+        m_tracker.setMaxRepetitions(m_tuning == null ? maxRepetitions : m_parameters.getMaxRepetitions());
         m_tracker.setMaxRetries(maxRetries);
         
-        m_maxVarsPerPdu = maxVarsPerPdu;
+        m_maxVarsPerPdu = m_tuning == null ? maxVarsPerPdu : m_parameters.getMaxVarsPerPdu();
     }
 
     /**
@@ -101,6 +129,7 @@ public abstract class SnmpWalker implements AutoCloseable {
         } else {
             m_pduBuilder.reset();
             m_responseProcessor = m_tracker.buildNextPdu(m_pduBuilder);
+            m_sentAt = System.nanoTime();
             sendNextPdu(m_pduBuilder);
         }
     }
@@ -147,6 +176,21 @@ public abstract class SnmpWalker implements AutoCloseable {
     }
     
     protected void handleTimeout(String msg) {
+        // an agent which answered the previous requests is most likely struggling with the size of the request
+        if (m_tuning != null && m_responded && m_adaptiveResends < MAX_ADAPTIVE_RESENDS) {
+            final Parameters smaller = m_tuning.shrink(m_address, m_port, m_parameters);
+            if (smaller != null) {
+                m_adaptiveResends++;
+                LOG.debug("{}: Request to {} timed out, resending it with {}", getName(), m_address, smaller);
+                applyParameters(smaller);
+                try {
+                    buildAndSendNextPdu();
+                } catch (Throwable e) {
+                    handleFatalError(e);
+                }
+                return;
+            }
+        }
         m_tracker.setTimedOut(true);
         processError("Timeout retrieving", msg, new SnmpAgentTimeoutException(getName(), m_address));
     }
@@ -208,8 +252,44 @@ public abstract class SnmpWalker implements AutoCloseable {
     
     // processErrors returns true if we need to retry the request and false otherwise
     protected boolean processErrors(int errorStatus, int errorIndex) throws SnmpException {
+        m_responded = true;
+        if (m_tuning != null && ErrorStatus.fromStatus(errorStatus) == ErrorStatus.TOO_BIG) {
+            final Parameters smaller = m_tuning.shrink(m_address, m_port, m_parameters);
+            if (smaller != null) {
+                applyParameters(smaller);
+                m_tracker.reportTooBigErr("Reducing the request to " + smaller);
+                return true;
+            }
+        }
         return m_responseProcessor.processErrors(errorStatus, errorIndex);
     }
+
+    /**
+     * Adapts the parameters of the walk to a response without errors, when
+     * the walks are tuned per agent. Called by the implementations before the
+     * varbinds of the response are processed.
+     *
+     * @param requested the number of varbinds requested, including the repetitions
+     * @param received the number of varbinds of the response
+     */
+    protected void responseReceived(int requested, int received) {
+        m_responded = true;
+        if (m_tuning != null) {
+            final long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - m_sentAt);
+            applyParameters(m_tuning.responded(m_address, m_port, m_configured, m_parameters, latency, received >= requested));
+        }
+    }
+
+    private void applyParameters(Parameters parameters) {
+        if (parameters.equals(m_parameters)) {
+            return;
+        }
+        m_parameters = parameters;
+        m_tracker.setMaxRepetitions(parameters.getMaxRepetitions());
+        if (m_pduBuilder != null) {
+            m_pduBuilder.setMaxVarsPerPdu(parameters.getMaxVarsPerPdu());
+        }
+    }
     
     protected void processResponse(SnmpObjId receivedOid, SnmpValue val) throws SnmpException {
         m_responseProcessor.processResponse(receivedOid, val);
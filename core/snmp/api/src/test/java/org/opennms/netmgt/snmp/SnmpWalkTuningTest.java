@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.InetAddress;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.netmgt.snmp.SnmpWalkTuning.Parameters;
+
+public class SnmpWalkTuningTest {
+
+    @Rule
+    public TemporaryFolder m_folder = new TemporaryFolder();
+
+    private final Parameters m_configured = new Parameters(10, 2);
+
+    @Test
+    public void testShrinksTheRepetitionsBeforeTheVarsPerPdu() throws Exception {
+        final SnmpWalkTuning tuning = new SnmpWalkTuning(null, 50, 500);
+        final InetAddress agent = InetAddress.getByName("192.0.2.1");
+
+        Parameters parameters = new Parameters(10, 4);
+        parameters = tuning.shrink(agent, 161, parameters);
+        assertEquals(new Parameters(10, 2), parameters);
+        parameters = tuning.shrink(agent, 161, parameters);
+        assertEquals(new Parameters(10, 1), parameters);
+        parameters = tuning.shrink(agent, 161, parameters);
+        assertEquals(new Parameters(5, 1), parameters);
+        parameters = tuning.shrink(agent, 161, tuning.shrink(agent, 161, parameters));
+        assertEquals(new Parameters(1, 1), parameters);
+        assertNull(tuning.shrink(agent, 161, parameters));
+
+        // the next walk starts where the previous one left off
+        assertEquals(new Parameters(1, 1), tuning.getParameters(agent, 161, m_configured));
+        assertEquals(m_configured, tuning.getParameters(InetAddress.getByName("192.0.2.2"), 161, m_configured));
+    }
+
+    @Test
+    public void testFastAgentsGetLargerRequests() throws Exception {
+        final SnmpWalkTuning tuning = new SnmpWalkTuning(null, 8, 500);
+        final InetAddress agent = InetAddress.getByName("192.0.2.1");
+
+        // the configured varbinds per PDU are restored before the repetitions grow
+        Parameters parameters = tuning.responded(agent, 161, m_configured, new Parameters(9, 2), 10, true);
+        assertEquals(new Parameters(10, 2), parameters);
+        parameters = tuning.responded(agent, 161, m_configured, parameters, 10, true);
+        assertEquals(new Parameters(10, 3), parameters);
+        for (int i = 0; i < 10; i++) {
+            parameters = tuning.responded(agent, 161, m_configured, parameters, 10, true);
+        }
+        assertEquals(new Parameters(10, 8), parameters);
+
+        // incomplete responses, such as at the end of a table, do not count
+        final Parameters current = new Parameters(10, 4);
+        assertSame(current, tuning.responded(agent, 161, m_configured, current, 10, false));
+        // neither do responses which are neither fast nor slow
+        assertSame(current, tuning.responded(agent, 161, m_configured, current, 600, true));
+    }
+
+    @Test
+    public void testSlowAgentsGetFewerRepetitions() throws Exception {
+        final SnmpWalkTuning tuning = new SnmpWalkTuning(null, 50, 500);
+        final InetAddress agent = InetAddress.getByName("192.0.2.1");
+
+        assertEquals(new Parameters(10, 15), tuning.responded(agent, 161, m_configured, new Parameters(10, 20), 1500, true));
+        final Parameters single = new Parameters(10, 1);
+        assertSame(single, tuning.responded(agent, 161, m_configured, single, 1500, true));
+    }
+
+    @Test
+    public void testLearnedParametersAreLimitedByTheConfiguration() throws Exception {
+        final SnmpWalkTuning tuning = new SnmpWalkTuning(null, 8, 500);
+        final InetAddress agent = InetAddress.getByName("192.0.2.1");
+
+        tuning.shrink(agent, 161, new Parameters(20, 16));
+        assertEquals(new Parameters(10, 8), tuning.getParameters(agent, 161, m_configured));
+        assertEquals(new Parameters(20, 8), tuning.getParameters(agent, 161, new Parameters(30, 20)));
+    }
+
+    @Test
+    public void testAgentsAreToldApartByPort() throws Exception {
+        final SnmpWalkTuning tuning = new SnmpWalkTuning(null, 50, 500);
+        final InetAddress agent = InetAddress.getByName("192.0.2.1");
+
+        tuning.shrink(agent, 1161, new Parameters(10, 2));
+        assertEquals(new Parameters(10, 1), tuning.getParameters(agent, 1161, m_configured));
+        assertEquals(m_configured, tuning.getParameters(agent, 161, m_configured));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        final File file = new File(m_folder.getRoot(), "snmp-walk-tuning.properties");
+        final InetAddress v4 = InetAddress.getByName("192.0.2.1");
+        final InetAddress v6 = InetAddress.getByName("2001:db8::1");
+
+        final SnmpWalkTuning tuning = new SnmpWalkTuning(file, 50, 500);
+        tuning.save();
+        assertTrue("nothing to save yet", !file.exists());
+
+        tuning.shrink(v4, 161, new Parameters(10, 8));
+        tuning.shrink(v6, 161, new Parameters(10, 1));
+        tuning.save();
+        assertTrue(file.exists());
+
+        final SnmpWalkTuning loaded = new SnmpWalkTuning(file, 50, 500);
+        loaded.load();
+        assertEquals(new Parameters(10, 4), loaded.getParameters(v4, 161, m_configured));
+        assertEquals(new Parameters(5, 1), loaded.getParameters(v6, 161, m_configured));
+    }
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.snmp.SnmpWalkTuning.Parameters;
+
+/**
+ * Walks a column of a mock agent with the walk parameters adapted per agent.
+ */
+public class SnmpWalkerTest {
+
+    private static final SnmpObjId COLUMN = SnmpObjId.get(".1.3.6.1.2.1.2.2.1.2");
+
+    private static final int ROWS = 40;
+
+    private static final Parameters CONFIGURED = new Parameters(10, 8);
+
+    private InetAddress m_address;
+
+    private SnmpWalkTuning m_tuning;
+
+    @Before
+    public void setUp() throws Exception {
+        m_address = InetAddress.getByName("192.0.2.1");
+        // the responses of the mock agent are immediate, so complete responses enlarge the requests up to the configuration
+        m_tuning = new SnmpWalkTuning(null, 1, 60000);
+        SnmpWalkTuning.setInstance(m_tuning);
+    }
+
+    @After
+    public void tearDown() {
+        SnmpWalkTuning.setInstance(null);
+    }
+
+    @Test
+    public void testTooBigShrinksTheRequestAndRetries() throws Exception {
+        final MockAgentWalker walker = new MockAgentWalker(161);
+        walker.m_maxResponseSize = 5;
+        walker.start();
+        walker.waitFor();
+
+        assertFalse(walker.getErrorMessage(), walker.failed());
+        assertEquals(ROWS, walker.m_results.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(String.valueOf(i + 1), walker.m_results.get(i).getInstance().toString());
+        }
+
+        // the first request is halved and retried instead of failing the column
+        assertEquals(Integer.valueOf(8), walker.m_repetitions.get(0));
+        assertEquals(Integer.valueOf(4), walker.m_repetitions.get(1));
+        assertTrue(walker.m_tooBig > 0);
+        assertTrue(m_tuning.getParameters(m_address, 161, CONFIGURED).getMaxRepetitions() < CONFIGURED.getMaxRepetitions());
+    }
+
+    @Test
+    public void testTimeoutShrinksTheRequestAndResends() throws Exception {
+        final MockAgentWalker walker = new MockAgentWalker(161);
+        walker.m_timeouts.add(2);
+        walker.start();
+        walker.waitFor();
+
+        assertFalse(walker.getErrorMessage(), walker.failed());
+        assertEquals(ROWS, walker.m_results.size());
+        // the request which timed out is resent with half of the repetitions
+        assertEquals(Integer.valueOf(8), walker.m_repetitions.get(1));
+        assertEquals(Integer.valueOf(4), walker.m_repetitions.get(2));
+    }
+
+    @Test
+    public void testTimeoutsAreResentOnlyTwicePerWalk() throws Exception {
+        final MockAgentWalker walker = new MockAgentWalker(161);
+        walker.m_timeouts.add(2);
+        walker.m_timeouts.add(3);
+        walker.m_timeouts.add(4);
+        walker.start();
+        walker.waitFor();
+
+        assertTrue(walker.failed());
+        assertTrue(walker.timedOut());
+        assertEquals(4, walker.m_repetitions.size());
+        assertEquals(Integer.valueOf(2), walker.m_repetitions.get(3));
+    }
+
+    @Test
+    public void testTimeoutOfTheFirstRequestIsNotResent() throws Exception {
+        final MockAgentWalker walker = new MockAgentWalker(161);
+        walker.m_timeouts.add(1);
+        walker.start();
+        walker.waitFor();
+
+        // an agent which never answered is most likely down, not struggling with the size of the request
+        assertTrue(walker.timedOut());
+        assertEquals(1, walker.m_repetitions.size());
+        assertEquals(CONFIGURED, m_tuning.getParameters(m_address, 161, CONFIGURED));
+    }
+
+    @Test
+    public void testAgentsOnOtherPortsAreTunedSeparately() throws Exception {
+        final MockAgentWalker walker = new MockAgentWalker(1161);
+        walker.m_maxResponseSize = 1;
+        walker.start();
+        walker.waitFor();
+
+        assertFalse(walker.getErrorMessage(), walker.failed());
+        final Parameters learned = m_tuning.getParameters(m_address, 1161, CONFIGURED);
+        assertTrue(learned.getMaxRepetitions() <= 2);
+        assertEquals(CONFIGURED, m_tuning.getParameters(m_address, 161, CONFIGURED));
+
+        // the next walk of the agent starts with the learned parameters
+        final MockAgentWalker next = new MockAgentWalker(1161);
+        next.start();
+        next.waitFor();
+        assertEquals(Integer.valueOf(learned.getMaxRepetitions()), next.m_repetitions.get(0));
+    }
+
+    private static class MockPduBuilder extends SnmpWalker.WalkerPduBuilder {
+        private final List<SnmpObjId> m_oids = new ArrayList<>();
+        private int m_nonRepeaters;
+        private int m_maxRepetitions;
+
+        private MockPduBuilder(int maxVarsPerPdu) {
+            super(maxVarsPerPdu);
+        }
+
+        @Override
+        public void reset() {
+            m_oids.clear();
+            m_nonRepeaters = 0;
+            m_maxRepetitions = 1;
+        }
+
+        @Override
+        public void addOid(SnmpObjId snmpObjId) {
+            m_oids.add(snmpObjId);
+        }
+
+        @Override
+        public void setNonRepeaters(int numNonRepeaters) {
+            m_nonRepeaters = numNonRepeaters;
+        }
+
+        @Override
+        public void setMaxRepetitions(int maxRepetitions) {
+            m_maxRepetitions = maxRepetitions;
+        }
+    }
+
+    /**
+     * Answers the GETBULK requests of the walker from a table, synchronously.
+     * Requests for more varbinds than {@link #m_maxResponseSize} get a
+     * <code>tooBig</code> error and the requests listed in {@link #m_timeouts}
+     * time out.
+     */
+    private class MockAgentWalker extends SnmpWalker {
+        private final TreeMap<SnmpObjId, SnmpValue> m_table = new TreeMap<>();
+        private final List<SnmpResult> m_results;
+        private final List<Integer> m_repetitions = new ArrayList<>();
+        private final List<Integer> m_timeouts = new ArrayList<>();
+        private int m_maxResponseSize = Integer.MAX_VALUE;
+        private int m_tooBig = 0;
+
+        private MockAgentWalker(int port) {
+            this(port, new ArrayList<SnmpResult>());
+        }
+
+        private MockAgentWalker(int port, final List<SnmpResult> results) {
+            super(m_address, port, "ifDescr", CONFIGURED.getMaxVarsPerPdu(), CONFIGURED.getMaxRepetitions(), 0, new ColumnTracker(COLUMN) {
+                @Override
+                protected void storeResult(SnmpResult res) {
+                    results.add(res);
+                }
+            });
+            for (int i = 1; i <= ROWS; i++) {
+                m_table.put(COLUMN.append(String.valueOf(i)), mock(SnmpValue.class));
+            }
+            // the first instance of the next column ends the walk
+            m_table.put(SnmpObjId.get(".1.3.6.1.2.1.2.2.1.3.1"), mock(SnmpValue.class));
+            m_results = results;
+        }
+
+        @Override
+        protected WalkerPduBuilder createPduBuilder(int maxVarsPerPdu) {
+            return new MockPduBuilder(maxVarsPerPdu);
+        }
+
+        @Override
+        protected void sendNextPdu(WalkerPduBuilder pduBuilder) throws SnmpException {
+            final MockPduBuilder builder = (MockPduBuilder)pduBuilder;
+            m_repetitions.add(builder.m_maxRepetitions);
+            if (m_timeouts.contains(m_repetitions.size())) {
+                handleTimeout("request " + m_repetitions.size() + " timed out");
+                return;
+            }
+
+            final int repeaters = builder.m_oids.size() - builder.m_nonRepeaters;
+            final int requested = builder.m_nonRepeaters + repeaters * builder.m_maxRepetitions;
+            if (requested > m_maxResponseSize) {
+                m_tooBig++;
+                if (processErrors(ErrorStatus.TOO_BIG.ordinal(), 0)) {
+                    buildAndSendNextPdu();
+                }
+                return;
+            }
+
+            final List<SnmpObjId> oids = new ArrayList<>();
+            final List<SnmpObjId> last = new ArrayList<>(builder.m_oids);
+            for (int r = 0; r < builder.m_maxRepetitions; r++) {
+                for (int i = builder.m_nonRepeaters; i < last.size(); i++) {
+                    final SnmpObjId next = m_table.higherKey(last.get(i));
+                    if (next != null) {
+                        oids.add(next);
+                        last.set(i, next);
+                    }
+                }
+            }
+
+            if (!processErrors(ErrorStatus.NO_ERROR.ordinal(), 0)) {
+                responseReceived(requested, oids.size());
+                for (SnmpObjId oid : oids) {
+                    processResponse(oid, m_table.get(oid));
+                }
+            }
+            buildAndSendNextPdu();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -106,7 +106,7 @@ public class MockSnmpWalker extends SnmpWalker {
     private final ExecutorService m_executor;
 
     public MockSnmpWalker(final SnmpAgentAddress agentAddress, final int snmpVersion, final PropertyOidContainer container, final String name, final CollectionTracker tracker, final int maxVarsPerPdu, final int maxRetries) {
-        super(agentAddress.getAddress(), name, maxVarsPerPdu, 1, maxRetries, tracker);
+        super(agentAddress.getAddress(), agentAddress.getPort(), name, maxVarsPerPdu, 1, maxRetries, tracker);
         m_agentAddress = agentAddress;
         m_snmpVersion = snmpVersion;
         m_container = container;
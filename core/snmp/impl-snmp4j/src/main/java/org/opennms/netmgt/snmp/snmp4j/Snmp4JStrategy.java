@@ -29,6 +29,7 @@
 package org.opennms.netmgt.snmp.snmp4j;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
@@ -48,6 +49,8 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+import javax.management.ObjectName;
+
 import org.opennms.core.logging.Logging;
 import org.opennms.netmgt.snmp.CollectionTracker;
 import org.opennms.netmgt.snmp.SnmpAgentConfig;
@@ -116,6 +119,10 @@ public class Snmp4JStrategy implements SnmpStrategy {
     private static long s_trackSummaryDelay = Long.getLong("org.opennms.core.snmp.trackSummaryDelay", 60);
     private static long s_trackSummaryLimit = Long.getLong("org.opennms.core.snmp.trackSummaryLimit", 10);
 
+    private static final String TRANSPORT_POOL_OBJECT_NAME = "org.opennms.netmgt.snmp:type=Snmp4JTransportPool";
+    private static Snmp4JTransportPool s_transportPool;
+    private static boolean s_transportPoolInitialized = false;
+
     /**
      * Initialize for v3 communications
      */
@@ -152,6 +159,54 @@ public class Snmp4JStrategy implements SnmpStrategy {
     public Snmp4JStrategy() {
         initialize();
     }
+
+    /**
+     * Returns the transports shared by the SNMPv1 and SNMPv2c requests when
+     * <code>org.opennms.snmp.snmp4j.pooledTransports</code> is true, creating
+     * them on first use.
+     *
+     * @return the pool, or null if requests use a session of their own
+     */
+    static synchronized Snmp4JTransportPool getTransportPool() {
+        if (!s_transportPoolInitialized) {
+            s_transportPoolInitialized = true;
+            if (Boolean.getBoolean("org.opennms.snmp.snmp4j.pooledTransports")) {
+                final int transports = Integer.getInteger("org.opennms.snmp.snmp4j.pooledTransports.count", Runtime.getRuntime().availableProcessors());
+                final int maxInFlightPerAgent = Integer.getInteger("org.opennms.snmp.snmp4j.pooledTransports.maxInFlightPerAgent", 10);
+                try {
+                    setTransportPool(new Snmp4JTransportPool(transports, maxInFlightPerAgent));
+                    LOG.info("Sharing {} SNMP transports with at most {} requests in flight per agent", transports, maxInFlightPerAgent);
+                } catch (final IOException e) {
+                    LOG.error("Failed to open the pooled SNMP transports, using a session per request", e);
+                }
+            }
+        }
+        return s_transportPool;
+    }
+
+    /**
+     * Replaces the shared transports, closing the previous ones.
+     *
+     * @param pool the pool, or null to use a session per request
+     */
+    static synchronized void setTransportPool(final Snmp4JTransportPool pool) {
+        s_transportPoolInitialized = true;
+        if (s_transportPool != null) {
+            s_transportPool.close();
+        }
+        s_transportPool = pool;
+        try {
+            final ObjectName name = new ObjectName(TRANSPORT_POOL_OBJECT_NAME);
+            if (ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            }
+            if (pool != null) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(pool, name);
+            }
+        } catch (final Exception e) {
+            LOG.warn("Failed to register the SNMP transport pool statistics with JMX", e);
+        }
+    }
     
     public void clearUsers() {
         if (m_usm != null) {
@@ -303,6 +358,21 @@ public class Snmp4JStrategy implements SnmpStrategy {
     }
 
     private void send(Snmp4JAgentConfig agentConfig, PDU pdu, boolean expectResponse, CompletableFuture<SnmpValue[]> future) {
+        final Snmp4JTransportPool pool = expectResponse && !agentConfig.isSnmpV3() ? getTransportPool() : null;
+        if (pool != null) {
+            pool.send(pdu, agentConfig.getTarget(), new ResponseListener() {
+                @Override
+                public void onResponse(final ResponseEvent responseEvent) {
+                    try {
+                        future.complete(processResponse(agentConfig, responseEvent));
+                    } catch (final Exception e) {
+                        future.completeExceptionally(new SnmpException(e));
+                    }
+                }
+            });
+            return;
+        }
+
         Snmp session;
 
         try {
@@ -0,0 +1,336 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.MessageDispatcher;
+import org.snmp4j.MessageDispatcherImpl;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.MPv1;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.smi.Address;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+/**
+ * A fixed set of SNMP sessions, each listening on its own UDP transport, which
+ * are shared by all of the SNMPv1 and SNMPv2c requests instead of opening a
+ * session per request.
+ * <p>
+ * The responses are matched to the requests by SNMP4J using the request id
+ * of the PDUs, so any number of requests can be outstanding on a transport,
+ * and the requests of independent walks of the same agent are pipelined.
+ * The number of requests in flight to a single agent is limited to a window
+ * which shrinks when the agent times out: requests above the window are
+ * queued, without holding a thread, until a previous request to the agent
+ * completes.
+ * </p>
+ * <p>
+ * The retries are sent by the pool rather than by SNMP4J so that they can be
+ * counted. The listener of a request is called once, with the response, the
+ * error, or the timeout after the last retry, on the thread of the transport
+ * or of the timer of the session.
+ * </p>
+ * <p>
+ * SNMPv3 requests are not supported, since the USM users of the agents would
+ * have to share the sessions.
+ * </p>
+ */
+public class Snmp4JTransportPool implements Snmp4JTransportPoolMBean {
+    private static final transient Logger LOG = LoggerFactory.getLogger(Snmp4JTransportPool.class);
+
+    /**
+     * The requests of an agent, limited to a window of requests in flight.
+     * The window is halved when a request to the agent times out and grows
+     * by one request with every response, up to the maximum number of
+     * requests in flight per agent.
+     */
+    private class Agent {
+        private final Queue<Request> m_waiting = new ArrayDeque<>();
+        private int m_inFlight;
+        private int m_window = m_maxInFlightPerAgent;
+
+        private void submit(final Request request) {
+            synchronized (this) {
+                if (m_inFlight >= m_window) {
+                    m_waiting.add(request);
+                    m_queued.incrementAndGet();
+                    return;
+                }
+                m_inFlight++;
+            }
+            request.send();
+        }
+
+        private synchronized void timedOut() {
+            m_window = Math.max(1, m_window / 2);
+        }
+
+        private void complete(final boolean responded) {
+            final List<Request> next = new ArrayList<>();
+            synchronized (this) {
+                if (responded) {
+                    m_window = Math.min(m_maxInFlightPerAgent, m_window + 1);
+                }
+                m_inFlight--;
+                while (m_inFlight < m_window && !m_waiting.isEmpty()) {
+                    next.add(m_waiting.poll());
+                    m_inFlight++;
+                }
+            }
+            for (final Request request : next) {
+                m_queued.decrementAndGet();
+                request.send();
+            }
+        }
+
+        private synchronized int getWindow() {
+            return m_window;
+        }
+    }
+
+    /**
+     * A request and its retries.
+     */
+    private class Request implements ResponseListener {
+        private final PDU m_pdu;
+        private final CommunityTarget m_target;
+        private final ResponseListener m_listener;
+        private final Agent m_agent;
+        private final Snmp m_session;
+        private int m_retriesLeft;
+
+        private Request(final PDU pdu, final Target target, final ResponseListener listener, final Agent agent) {
+            m_pdu = pdu;
+            m_target = singleAttempt(target);
+            m_listener = listener;
+            m_agent = agent;
+            m_session = nextSession();
+            m_retriesLeft = Math.max(0, target.getRetries());
+        }
+
+        private void send() {
+            m_outstanding.incrementAndGet();
+            m_sent.incrementAndGet();
+            try {
+                m_session.send(m_pdu, m_target, null, this);
+            } catch (final IOException | RuntimeException e) {
+                LOG.debug("Failed to send a PDU to {}", m_target.getAddress(), e);
+                m_outstanding.decrementAndGet();
+                complete(new ResponseEvent(m_session, m_target.getAddress(), m_pdu, null, null, e));
+            }
+        }
+
+        @Override
+        public void onResponse(final ResponseEvent event) {
+            // the request must be cancelled, otherwise SNMP4J keeps it around forever
+            m_session.cancel(event.getRequest(), this);
+            m_outstanding.decrementAndGet();
+
+            if (event.getResponse() == null && event.getError() == null) {
+                m_agent.timedOut();
+                if (m_retriesLeft > 0) {
+                    m_retriesLeft--;
+                    m_retries.incrementAndGet();
+                    LOG.debug("Request to {} timed out, retrying", m_target.getAddress());
+                    send();
+                    return;
+                }
+                m_timeouts.incrementAndGet();
+            }
+            complete(event);
+        }
+
+        private void complete(final ResponseEvent event) {
+            try {
+                m_listener.onResponse(event);
+            } catch (final RuntimeException e) {
+                LOG.warn("Unexpected error while handling the response of {}", m_target.getAddress(), e);
+            } finally {
+                m_agent.complete(event.getResponse() != null);
+            }
+        }
+    }
+
+    private final Snmp[] m_sessions;
+    private final AtomicInteger m_nextSession = new AtomicInteger();
+    private final int m_maxInFlightPerAgent;
+    private final Map<Address, Agent> m_agents = new ConcurrentHashMap<>();
+
+    private final AtomicLong m_outstanding = new AtomicLong();
+    private final AtomicLong m_queued = new AtomicLong();
+    private final AtomicLong m_sent = new AtomicLong();
+    private final AtomicLong m_timeouts = new AtomicLong();
+    private final AtomicLong m_retries = new AtomicLong();
+
+    /**
+     * Opens the transports and starts listening on them.
+     *
+     * @param transports the number of UDP transports
+     * @param maxInFlightPerAgent the maximum number of requests in flight to a single agent
+     * @throws IOException if a transport cannot be opened
+     */
+    public Snmp4JTransportPool(final int transports, final int maxInFlightPerAgent) throws IOException {
+        if (transports < 1 || maxInFlightPerAgent < 1) {
+            throw new IllegalArgumentException("The number of transports and the maximum number of requests in flight must be positive");
+        }
+        m_maxInFlightPerAgent = maxInFlightPerAgent;
+        m_sessions = new Snmp[transports];
+        try {
+            for (int i = 0; i < transports; i++) {
+                final TransportMapping<?> transport = new DefaultUdpTransportMapping();
+                final MessageDispatcher disp = new MessageDispatcherImpl();
+                disp.addMessageProcessingModel(new MPv1());
+                disp.addMessageProcessingModel(new MPv2c());
+                m_sessions[i] = new Snmp(disp, transport);
+                m_sessions[i].listen();
+                Snmp4JStrategy.trackSession(m_sessions[i]);
+            }
+        } catch (final IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the request through one of the transports, once fewer than the
+     * maximum number of requests to the agent are in flight. Errors are
+     * reported to the listener.
+     *
+     * @param pdu the request
+     * @param target the agent, which must be a {@link CommunityTarget}
+     * @param listener called with the response, the error, or the timeout
+     */
+    public void send(final PDU pdu, final Target target, final ResponseListener listener) {
+        if (!(target instanceof CommunityTarget)) {
+            throw new IllegalArgumentException("Only SNMPv1 and SNMPv2c requests can be sent through the pool");
+        }
+        final Agent agent = m_agents.computeIfAbsent(target.getAddress(), a -> new Agent());
+        agent.submit(new Request(pdu, target, listener, agent));
+    }
+
+    /**
+     * Closes all of the transports. Requests in flight are not completed.
+     */
+    public void close() {
+        for (final Snmp session : m_sessions) {
+            if (session == null) {
+                continue;
+            }
+            try {
+                session.close();
+            } catch (final IOException e) {
+                LOG.warn("Failed to close a pooled SNMP session", e);
+            } finally {
+                Snmp4JStrategy.reapSession(session);
+            }
+        }
+    }
+
+    private Snmp nextSession() {
+        return m_sessions[Math.floorMod(m_nextSession.getAndIncrement(), m_sessions.length)];
+    }
+
+    private static CommunityTarget singleAttempt(final Target target) {
+        final CommunityTarget copy = new CommunityTarget(target.getAddress(), ((CommunityTarget)target).getCommunity());
+        copy.setVersion(target.getVersion());
+        copy.setTimeout(target.getTimeout());
+        copy.setMaxSizeRequestPDU(target.getMaxSizeRequestPDU());
+        copy.setRetries(0);
+        return copy;
+    }
+
+    /**
+     * Returns the current window of requests in flight to the agent.
+     *
+     * @param address the address of the agent
+     * @return the window, which is the maximum for agents without requests
+     */
+    public int getWindow(final Address address) {
+        final Agent agent = m_agents.get(address);
+        return agent == null ? m_maxInFlightPerAgent : agent.getWindow();
+    }
+
+    @Override
+    public int getTransports() {
+        return m_sessions.length;
+    }
+
+    @Override
+    public int getMaxInFlightPerAgent() {
+        return m_maxInFlightPerAgent;
+    }
+
+    @Override
+    public long getOutstanding() {
+        return m_outstanding.get();
+    }
+
+    @Override
+    public long getQueued() {
+        return m_queued.get();
+    }
+
+    @Override
+    public long getSent() {
+        return m_sent.get();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return m_timeouts.get();
+    }
+
+    @Override
+    public long getRetries() {
+        return m_retries.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[transports=" + getTransports() + ", outstanding=" + getOutstanding() + ", queued=" + getQueued()
+            + ", sent=" + getSent() + ", timeouts=" + getTimeouts() + ", retries=" + getRetries() + "]";
+    }
+}
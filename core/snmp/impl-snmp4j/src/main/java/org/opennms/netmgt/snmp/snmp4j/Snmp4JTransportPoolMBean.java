@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+/**
+ * The statistics of the {@link Snmp4JTransportPool}, exposed over JMX.
+ */
+public interface Snmp4JTransportPoolMBean {
+
+    /**
+     * @return the number of UDP transports shared by the requests
+     */
+    int getTransports();
+
+    /**
+     * @return the maximum number of requests in flight to a single agent
+     */
+    int getMaxInFlightPerAgent();
+
+    /**
+     * @return the number of PDUs sent and waiting for a response
+     */
+    long getOutstanding();
+
+    /**
+     * @return the number of requests waiting for a previous request to the
+     *         same agent to complete
+     */
+    long getQueued();
+
+    /**
+     * @return the number of PDUs sent, including the retries
+     */
+    long getSent();
+
+    /**
+     * @return the number of requests which timed out after all of their retries
+     */
+    long getTimeouts();
+
+    /**
+     * @return the number of PDUs sent again after a timeout
+     */
+    long getRetries();
+}
@@ -135,7 +135,7 @@ public class Snmp4JWalker extends SnmpWalker {
      */
     public class Snmp4JResponseListener implements ResponseListener {
 
-        private void processResponse(final PDU response) throws SnmpException {
+        private void processResponse(final PDU request, final PDU response) throws SnmpException {
             try {
                 LOG.debug("Received a tracker PDU of type {} from {} of size {}, errorStatus = {}, errorStatusText = {}, errorIndex = {}", PDU.getTypeString(response.getType()), getAddress(), response.size(), response.getErrorStatus(), response.getErrorStatusText(), response.getErrorIndex());
                 if (response.getType() == PDU.REPORT) {
@@ -145,6 +145,7 @@ public class Snmp4JWalker extends SnmpWalker {
                         if (response.size() == 0) { // NMS-6484
                             handleError("A PDU with no errors and 0 varbinds was returned from the agent at " + getAddress() + ". This seems to be related with a broken SNMP agent.");
                         } else {
+                            responseReceived(getRequestedSize(request), response.size());
                             for (int i = 0; i < response.size(); i++) {
                                 final VariableBinding vb = response.get(i);
                                 final SnmpObjId receivedOid = SnmpObjId.get(vb.getOid().getValue());
@@ -162,8 +163,16 @@ public class Snmp4JWalker extends SnmpWalker {
 
         @Override
         public void onResponse(ResponseEvent responseEvent) {
-            // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
-            m_session.cancel(responseEvent.getRequest(), this);
+            if (m_pool != null) {
+                // the pool has already cancelled the request
+                if (m_closed) {
+                    LOG.debug("Ignoring a response received after the walker was closed");
+                    return;
+                }
+            } else {
+                // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
+                m_session.cancel(responseEvent.getRequest(), this);
+            }
 
             // Check to see if we got an interrupted exception
             if (responseEvent.getError() instanceof InterruptedException) {
@@ -177,7 +186,7 @@ public class Snmp4JWalker extends SnmpWalker {
             // If we have a PDU in the response, process it
             } else {
                 try {
-                    processResponse(responseEvent.getResponse());
+                    processResponse(responseEvent.getRequest(), responseEvent.getResponse());
                 } catch (final SnmpException e) {
                     handleFatalError(e);
                 }
@@ -189,17 +198,20 @@ public class Snmp4JWalker extends SnmpWalker {
     }
     
     private Snmp m_session;
+    private final Snmp4JTransportPool m_pool;
+    private volatile boolean m_closed = false;
     private final Target m_tgt;
     private final ResponseListener m_listener;
     private final Snmp4JAgentConfig m_agentConfig;
 
     public Snmp4JWalker(Snmp4JAgentConfig agentConfig, String name, CollectionTracker tracker) {
-        super(agentConfig.getInetAddress(), name, agentConfig.getMaxVarsPerPdu(), agentConfig.getMaxRepetitions(), agentConfig.getRetries(), tracker);
+        super(agentConfig.getInetAddress(), agentConfig.getPort(), name, agentConfig.getMaxVarsPerPdu(), agentConfig.getMaxRepetitions(), agentConfig.getRetries(), tracker);
         
         m_agentConfig = agentConfig;
         
         m_tgt = agentConfig.getTarget();
         m_listener = new Snmp4JResponseListener();
+        m_pool = agentConfig.isSnmpV3() ? null : Snmp4JStrategy.getTransportPool();
     }
     
         @Override
@@ -220,6 +232,11 @@ public class Snmp4JWalker extends SnmpWalker {
         @Override
     protected void sendNextPdu(WalkerPduBuilder pduBuilder) throws SnmpException {
         Snmp4JPduBuilder snmp4JPduBuilder = (Snmp4JPduBuilder)pduBuilder;
+        if (m_pool != null) {
+            LOG.debug("Sending tracker pdu of size {} through the transport pool", snmp4JPduBuilder.getPdu().size());
+            m_pool.send(snmp4JPduBuilder.getPdu(), m_tgt, m_listener);
+            return;
+        }
         try {
             if (m_session == null) {
                 m_session = m_agentConfig.createSnmpSession();
@@ -241,12 +258,28 @@ public class Snmp4JWalker extends SnmpWalker {
         }
     }
     
+    /**
+     * Returns the number of varbinds the agent can return for the request,
+     * which is larger than the size of a GETBULK request.
+     */
+    private static int getRequestedSize(final PDU request) {
+        if (request == null) {
+            return Integer.MAX_VALUE;
+        }
+        if (request.getType() != PDU.GETBULK) {
+            return request.size();
+        }
+        final int nonRepeaters = Math.min(Math.max(0, request.getNonRepeaters()), request.size());
+        return nonRepeaters + (request.size() - nonRepeaters) * Math.max(1, request.getMaxRepetitions());
+    }
+
     protected int getVersion() {
         return m_tgt.getVersion();
     }
 
     @Override
     public void close() {
+        m_closed = true;
         if (m_session != null) {
             try {
                 m_session.close();
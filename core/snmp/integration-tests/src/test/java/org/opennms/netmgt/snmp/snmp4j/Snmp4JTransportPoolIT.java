@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.netmgt.snmp.ColumnTracker;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpValue;
+import org.opennms.netmgt.snmp.SnmpWalker;
+import org.snmp4j.smi.Address;
+
+/**
+ * Tests the requests sent through the shared transports of the
+ * {@link Snmp4JTransportPool}.
+ */
+public class Snmp4JTransportPoolIT extends MockSnmpAgentITCase {
+
+    private final Snmp4JStrategy m_strategy = new Snmp4JStrategy();
+
+    private Snmp4JTransportPool m_pool;
+
+    @Override
+    protected boolean usingMockStrategy() {
+        return false;
+    }
+
+    @After
+    public void closePool() {
+        Snmp4JStrategy.setTransportPool(null);
+    }
+
+    private void createPool(final int maxInFlightPerAgent) throws Exception {
+        m_pool = new Snmp4JTransportPool(2, maxInFlightPerAgent);
+        Snmp4JStrategy.setTransportPool(m_pool);
+    }
+
+    @Test
+    public void testGetThroughThePool() throws Exception {
+        createPool(10);
+
+        final SnmpValue[] values = m_strategy.get(getAgentConfig(), new SnmpObjId[] {
+                SnmpObjId.get(".1.3.5.1.1.3.0"),
+                SnmpObjId.get(".1.3.5.1.1.4.0"),
+        });
+
+        assertNotNull("values should not be null", values);
+        assertEquals("values list size", 2, values.length);
+        assertEquals(42, values[0].toInt());
+        assertEquals(42, values[1].toInt());
+        assertEquals(1, m_pool.getSent());
+        assertEquals(0, m_pool.getOutstanding());
+    }
+
+    @Test
+    public void testWalkThroughThePool() throws Exception {
+        createPool(1);
+
+        final List<SnmpResult> results = new ArrayList<>();
+        final ColumnTracker tracker = new ColumnTracker(SnmpObjId.get(".1.3.5.1.1")) {
+            @Override
+            protected void storeResult(final SnmpResult res) {
+                results.add(res);
+            }
+        };
+        final SnmpAgentConfig agentConfig = getAgentConfig();
+        agentConfig.setVersion(SnmpAgentConfig.VERSION2C);
+
+        try (final SnmpWalker walker = m_strategy.createWalker(agentConfig, "Test", tracker)) {
+            walker.start();
+            assertTrue("walk did not complete", walker.waitFor(5000));
+            assertTrue("walk failed", !walker.failed());
+        }
+
+        assertEquals(9, results.size());
+        assertEquals(0, m_pool.getOutstanding());
+        assertEquals(0, m_pool.getQueued());
+    }
+
+    @Test
+    public void testRequestsAreQueuedAndRetriedUntilTheyTimeOut() throws Exception {
+        createPool(1);
+
+        // nothing listens on this port
+        final SnmpAgentConfig agentConfig = getAgentConfig();
+        agentConfig.setPort(getAgentPort() + 1);
+        agentConfig.setTimeout(500);
+        agentConfig.setRetries(1);
+
+        final SnmpObjId[] oids = new SnmpObjId[] { SnmpObjId.get(".1.3.5.1.1.3.0") };
+        final CompletableFuture<SnmpValue[]> first = m_strategy.getAsync(agentConfig, oids);
+        final CompletableFuture<SnmpValue[]> second = m_strategy.getAsync(agentConfig, oids);
+        assertEquals(1, m_pool.getOutstanding());
+        assertEquals(1, m_pool.getQueued());
+
+        assertNull(first.get(5, TimeUnit.SECONDS)[0]);
+        assertNull(second.get(5, TimeUnit.SECONDS)[0]);
+        assertEquals(0, m_pool.getOutstanding());
+        assertEquals(0, m_pool.getQueued());
+        assertEquals(2, m_pool.getTimeouts());
+        assertEquals(2, m_pool.getRetries());
+        assertEquals(4, m_pool.getSent());
+    }
+
+    @Test
+    public void testWindowShrinksWhenTheAgentTimesOut() throws Exception {
+        createPool(4);
+
+        // nothing listens on this port
+        final SnmpAgentConfig agentConfig = getAgentConfig();
+        agentConfig.setPort(getAgentPort() + 1);
+        agentConfig.setTimeout(500);
+        agentConfig.setRetries(1);
+
+        final Address address = Snmp4JAgentConfig.convertAddress(agentConfig.getAddress(), agentConfig.getPort());
+        assertEquals(4, m_pool.getWindow(address));
+
+        assertNull(m_strategy.getAsync(agentConfig, new SnmpObjId[] { SnmpObjId.get(".1.3.5.1.1.3.0") }).get(5, TimeUnit.SECONDS)[0]);
+        // halved by the timeout of the request and of its retry
+        assertEquals(1, m_pool.getWindow(address));
+    }
+}
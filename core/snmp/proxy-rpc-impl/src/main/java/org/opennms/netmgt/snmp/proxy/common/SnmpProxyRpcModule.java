@@ -28,6 +28,18 @@
 
 package org.opennms.netmgt.snmp.proxy.common;
 
+import static org.opennms.core.utils.BinaryCodec.readBytes;
+import static org.opennms.core.utils.BinaryCodec.readOid;
+import static org.opennms.core.utils.BinaryCodec.readString;
+import static org.opennms.core.utils.BinaryCodec.readVarInt;
+import static org.opennms.core.utils.BinaryCodec.writeBytes;
+import static org.opennms.core.utils.BinaryCodec.writeOid;
+import static org.opennms.core.utils.BinaryCodec.writeString;
+import static org.opennms.core.utils.BinaryCodec.writeVarInt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
@@ -39,12 +51,13 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 
-import org.opennms.core.rpc.xml.AbstractXmlRpcModule;
+import org.opennms.core.rpc.xml.AbstractBinaryRpcModule;
 import org.opennms.netmgt.snmp.AggregateTracker;
 import org.opennms.netmgt.snmp.Collectable;
 import org.opennms.netmgt.snmp.CollectionTracker;
 import org.opennms.netmgt.snmp.ColumnTracker;
 import org.opennms.netmgt.snmp.SingleInstanceTracker;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
 import org.opennms.netmgt.snmp.SnmpInstId;
 import org.opennms.netmgt.snmp.SnmpObjId;
 import org.opennms.netmgt.snmp.SnmpResult;
@@ -58,7 +71,7 @@ import org.opennms.netmgt.snmp.SnmpWalker;
  *
  * @author jwhite
  */
-public class SnmpProxyRpcModule extends AbstractXmlRpcModule<SnmpRequestDTO, SnmpMultiResponseDTO> {
+public class SnmpProxyRpcModule extends AbstractBinaryRpcModule<SnmpRequestDTO, SnmpMultiResponseDTO> {
 
     public static final SnmpProxyRpcModule INSTANCE = new SnmpProxyRpcModule();
 
@@ -196,4 +209,145 @@ public class SnmpProxyRpcModule extends AbstractXmlRpcModule<SnmpRequestDTO, Snm
     public String getId() {
         return RPC_MODULE_ID;
     }
+
+    @Override
+    protected void writeRequest(SnmpRequestDTO request, DataOutput out) throws IOException {
+        writeString(out, request.getLocation());
+        writeString(out, request.getSystemId());
+        writeString(out, request.getDescription());
+        writeAgent(out, request.getAgent());
+        writeVarInt(out, request.getGetRequests().size());
+        for (SnmpGetRequestDTO get : request.getGetRequests()) {
+            writeString(out, get.getCorrelationId());
+            writeOids(out, get.getOids());
+        }
+        writeVarInt(out, request.getWalkRequest().size());
+        for (SnmpWalkRequestDTO walk : request.getWalkRequest()) {
+            writeString(out, walk.getCorrelationId());
+            writeOids(out, walk.getOids());
+            writeVarInt(out, walk.getMaxRepetitions() == null ? 0 : walk.getMaxRepetitions() + 1);
+            writeOid(out, walk.getInstance() == null ? null : walk.getInstance().getIds());
+        }
+    }
+
+    @Override
+    protected SnmpRequestDTO readRequest(DataInput in) throws IOException {
+        final SnmpRequestDTO request = new SnmpRequestDTO();
+        request.setLocation(readString(in));
+        request.setSystemId(readString(in));
+        request.setDescription(readString(in));
+        request.setAgent(readAgent(in));
+        final int gets = readVarInt(in);
+        final List<SnmpGetRequestDTO> getRequests = new ArrayList<>(gets);
+        for (int i = 0; i < gets; i++) {
+            final SnmpGetRequestDTO get = new SnmpGetRequestDTO();
+            get.setCorrelationId(readString(in));
+            get.setOids(readOids(in));
+            getRequests.add(get);
+        }
+        request.setGetRequests(getRequests);
+        final int walks = readVarInt(in);
+        final List<SnmpWalkRequestDTO> walkRequests = new ArrayList<>(walks);
+        for (int i = 0; i < walks; i++) {
+            final SnmpWalkRequestDTO walk = new SnmpWalkRequestDTO();
+            walk.setCorrelationId(readString(in));
+            walk.setOids(readOids(in));
+            final int maxRepetitions = readVarInt(in);
+            walk.setMaxRepetitions(maxRepetitions == 0 ? null : maxRepetitions - 1);
+            final int[] instance = readOid(in);
+            walk.setInstance(instance == null ? null : SnmpObjId.get(instance));
+            walkRequests.add(walk);
+        }
+        request.setWalkRequests(walkRequests);
+        return request;
+    }
+
+    @Override
+    protected void writeResponse(SnmpMultiResponseDTO response, DataOutput out) throws IOException {
+        writeString(out, response.getErrorMessage());
+        writeVarInt(out, response.getResponses().size());
+        for (SnmpResponseDTO r : response.getResponses()) {
+            writeString(out, r.getCorrelationId());
+            writeVarInt(out, r.getResults().size());
+            for (SnmpResult result : r.getResults()) {
+                writeOid(out, result.getBase().getIds());
+                writeOid(out, result.getInstance() == null ? null : result.getInstance().getIds());
+                final SnmpValue value = result.getValue();
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    writeVarInt(out, value.getType());
+                    writeBytes(out, value.getBytes());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected SnmpMultiResponseDTO readResponse(DataInput in) throws IOException {
+        final SnmpMultiResponseDTO response = new SnmpMultiResponseDTO();
+        response.setErrorMessage(readString(in));
+        final int count = readVarInt(in);
+        final List<SnmpResponseDTO> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final SnmpResponseDTO r = new SnmpResponseDTO();
+            r.setCorrelationId(readString(in));
+            final int results = readVarInt(in);
+            final List<SnmpResult> snmpResults = new ArrayList<>(results);
+            for (int j = 0; j < results; j++) {
+                final SnmpObjId base = SnmpObjId.get(readOid(in));
+                final int[] instance = readOid(in);
+                SnmpValue value = null;
+                if (in.readBoolean()) {
+                    final int type = readVarInt(in);
+                    value = SnmpUtils.getValueFactory().getValue(type, readBytes(in));
+                }
+                snmpResults.add(new SnmpResult(base, instance == null ? null : new SnmpInstId(instance), value));
+            }
+            r.setResults(snmpResults);
+            responses.add(r);
+        }
+        response.setResponses(responses);
+        return response;
+    }
+
+    private static void writeAgent(DataOutput out, SnmpAgentConfig agent) throws IOException {
+        if (agent == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        final Map<String, String> attributes = agent.toMap();
+        writeVarInt(out, attributes.size() + 1);
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            writeString(out, attribute.getKey());
+            writeString(out, attribute.getValue());
+        }
+    }
+
+    private static SnmpAgentConfig readAgent(DataInput in) throws IOException {
+        final int count = readVarInt(in) - 1;
+        if (count < 0) {
+            return null;
+        }
+        final Map<String, String> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            attributes.put(readString(in), readString(in));
+        }
+        return SnmpAgentConfig.fromMap(attributes);
+    }
+
+    private static void writeOids(DataOutput out, List<SnmpObjId> oids) throws IOException {
+        writeVarInt(out, oids.size());
+        for (SnmpObjId oid : oids) {
+            writeOid(out, oid.getIds());
+        }
+    }
+
+    private static List<SnmpObjId> readOids(DataInput in) throws IOException {
+        final int count = readVarInt(in);
+        final List<SnmpObjId> oids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            oids.add(SnmpObjId.get(readOid(in)));
+        }
+        return oids;
+    }
 }
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.snmp.proxy.common;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.utils.BinaryCodec;
+import org.opennms.netmgt.snmp.SnmpInstId;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpUtils;
+import org.opennms.netmgt.snmp.SnmpValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the XML encoding of the SNMP responses sent from the Minions with the binary encoding.
+ *
+ * Measures the number of responses per second marshalled by the Minion and unmarshalled by OpenNMS, for the walk of
+ * the interface table of an agent with the given number of interfaces. The size of an encoded response on the wire is
+ * printed during setup.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.opennms.netmgt.snmp.proxy.common.SnmpProxyEncodingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SnmpProxyEncodingBenchmark {
+
+    private static final SnmpObjId IF_ENTRY = SnmpObjId.get(".1.3.6.1.2.1.2.2.1");
+
+    @Param({"XML", "BINARY"})
+    public BinaryCodec.Encoding encoding;
+
+    @Param({"10", "1000"})
+    public int interfaces;
+
+    private SnmpProxyRpcModule module;
+
+    private SnmpMultiResponseDTO response;
+
+    private String marshalled;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.module = new SnmpProxyRpcModule();
+        this.module.setEncoding(this.encoding);
+
+        final SnmpValueFactory values = SnmpUtils.getValueFactory();
+        final SnmpResponseDTO walk = new SnmpResponseDTO();
+        walk.setCorrelationId("ifTable");
+        // the columns of the interface tables are walked together, so the results come row by row
+        for (int i = 1; i <= this.interfaces; i++) {
+            final SnmpInstId instance = new SnmpInstId(i);
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("1"), instance, values.getInt32(i)));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("2"), instance, values.getOctetString(("GigabitEthernet0/" + i).getBytes(StandardCharsets.US_ASCII))));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("3"), instance, values.getInt32(6)));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("4"), instance, values.getInt32(1500)));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("5"), instance, values.getGauge32(1000000000L)));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("6"), instance, values.getOctetString(new byte[] { 0x00, 0x1b, 0x2c, 0x3d, (byte) (i >> 8), (byte) i })));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("7"), instance, values.getInt32(1)));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("8"), instance, values.getInt32(i % 10 == 0 ? 2 : 1)));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("9"), instance, values.getTimeTicks(4200L * i)));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("10"), instance, values.getCounter32(1234567L * i)));
+            walk.getResults().add(new SnmpResult(IF_ENTRY.append("16"), instance, values.getCounter32(7654321L * i)));
+            walk.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.2.1.31.1.1.1.6"), instance, values.getCounter64(BigInteger.valueOf(123456789012L * i))));
+        }
+        this.response = new SnmpMultiResponseDTO();
+        this.response.getResponses().add(walk);
+
+        this.marshalled = this.module.marshalResponse(this.response);
+        final int bytes = this.marshalled.getBytes(StandardCharsets.UTF_8).length;
+        System.out.printf("%n%s: %d bytes/response, %.1f bytes/result%n", this.encoding, bytes, (double) bytes / walk.getResults().size());
+    }
+
+    @Benchmark
+    public String marshal() {
+        return this.module.marshalResponse(this.response);
+    }
+
+    @Benchmark
+    public SnmpMultiResponseDTO unmarshal() {
+        return this.module.unmarshalResponse(this.marshalled);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SnmpProxyEncodingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -29,15 +29,30 @@
 package org.opennms.netmgt.snmp.proxy.common;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import org.junit.After;
 import org.junit.Test;
+import org.opennms.core.rpc.xml.AbstractBinaryRpcModule;
+import org.opennms.core.utils.BinaryCodec.Encoding;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.opennms.netmgt.snmp.SnmpInstId;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpResult;
 import org.opennms.netmgt.snmp.SnmpUtils;
 import org.opennms.netmgt.snmp.SnmpValue;
+import org.opennms.netmgt.snmp.SnmpValueFactory;
+import org.opennms.netmgt.snmp.snmp4j.Snmp4JStrategy;
 
 public class SnmpProxyRpcModuleTest {
 
@@ -76,4 +91,92 @@ public class SnmpProxyRpcModuleTest {
             assertEquals("Oups", e.getCause().getMessage());
         }
     }
+
+    @Test
+    public void testBinaryEncodingOfRequests() throws Exception {
+        final SnmpProxyRpcModule module = new SnmpProxyRpcModule();
+        module.setEncoding(Encoding.BINARY);
+
+        final SnmpAgentConfig agent = new SnmpAgentConfig(InetAddress.getByName("192.0.2.1"));
+        agent.setVersion(SnmpAgentConfig.VERSION2C);
+        agent.setReadCommunity("secret");
+        agent.setMaxRepetitions(5);
+
+        final SnmpGetRequestDTO get = new SnmpGetRequestDTO();
+        get.setCorrelationId("get");
+        get.setOids(Arrays.asList(SnmpObjId.get(".1.3.6.1.2.1.1.1.0"), SnmpObjId.get(".1.3.6.1.2.1.1.5.0")));
+
+        final SnmpWalkRequestDTO instance = new SnmpWalkRequestDTO();
+        instance.setCorrelationId("instance");
+        instance.setOids(Collections.singletonList(SnmpObjId.get(".1.3.6.1.2.1.2.2.1.2")));
+        instance.setInstance(SnmpObjId.get("1"));
+
+        final SnmpWalkRequestDTO columns = new SnmpWalkRequestDTO();
+        columns.setCorrelationId("columns");
+        columns.setOids(Arrays.asList(SnmpObjId.get(".1.3.6.1.2.1.2.2.1.2"), SnmpObjId.get(".1.3.6.1.2.1.2.2.1.3")));
+        columns.setMaxRepetitions(3);
+
+        final SnmpRequestDTO request = new SnmpRequestDTO();
+        request.setLocation("Raleigh");
+        request.setSystemId("minion-1");
+        request.setDescription("ifTable");
+        request.setAgent(agent);
+        request.setGetRequests(Collections.singletonList(get));
+        request.setWalkRequests(Arrays.asList(instance, columns));
+
+        final String requestString = module.marshalRequest(request);
+        assertTrue(AbstractBinaryRpcModule.isBinary(requestString));
+        assertEquals(request, module.unmarshalRequest(requestString));
+    }
+
+    @Test
+    public void testBinaryEncodingOfResponses() throws Exception {
+        System.setProperty("org.opennms.snmp.strategyClass", Snmp4JStrategy.class.getName());
+        final SnmpProxyRpcModule module = new SnmpProxyRpcModule();
+        module.setEncoding(Encoding.BINARY);
+
+        final SnmpValueFactory valueFactory = SnmpUtils.getValueFactory();
+        final SnmpResponseDTO get = new SnmpResponseDTO();
+        get.setCorrelationId("get");
+        get.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.2.1.1.5.0"), null,
+                valueFactory.getOctetString("router".getBytes(StandardCharsets.UTF_8))));
+        final SnmpResponseDTO walk = new SnmpResponseDTO();
+        walk.setCorrelationId("walk");
+        walk.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.2.1.31.1.1.1.6"), new SnmpInstId("1"),
+                valueFactory.getCounter64(BigInteger.TEN)));
+        walk.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.2.1.2.2.1.3"), new SnmpInstId("2"),
+                valueFactory.getInt32(6)));
+
+        final SnmpMultiResponseDTO response = new SnmpMultiResponseDTO();
+        response.getResponses().add(get);
+        response.getResponses().add(walk);
+
+        final String responseString = module.marshalResponse(response);
+        assertTrue(AbstractBinaryRpcModule.isBinary(responseString));
+        assertEquals(response, module.unmarshalResponse(responseString));
+
+        final SnmpMultiResponseDTO failed = new SnmpMultiResponseDTO(new IllegalStateException("failed"));
+        assertEquals(failed, module.unmarshalResponse(module.marshalResponse(failed)));
+    }
+
+    @Test
+    public void testBothEncodingsAreUnderstood() throws Exception {
+        System.setProperty("org.opennms.snmp.strategyClass", Snmp4JStrategy.class.getName());
+        final SnmpProxyRpcModule xmlModule = new SnmpProxyRpcModule();
+        xmlModule.setEncoding(Encoding.XML);
+        final SnmpProxyRpcModule binaryModule = new SnmpProxyRpcModule();
+        binaryModule.setEncoding(Encoding.BINARY);
+
+        final SnmpResponseDTO walk = new SnmpResponseDTO();
+        walk.setCorrelationId("walk");
+        walk.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.2.1.2.2.1.3"), new SnmpInstId("2"),
+                SnmpUtils.getValueFactory().getInt32(6)));
+        final SnmpMultiResponseDTO response = new SnmpMultiResponseDTO();
+        response.getResponses().add(walk);
+
+        final String xml = xmlModule.marshalResponse(response);
+        assertFalse(AbstractBinaryRpcModule.isBinary(xml));
+        assertEquals(response, binaryModule.unmarshalResponse(xml));
+        assertEquals(response, xmlModule.unmarshalResponse(binaryModule.marshalResponse(response)));
+    }
 }
@@ -31,8 +31,11 @@ package org.opennms.netmgt.collection.persistence.rrd;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -57,6 +60,7 @@ import org.opennms.netmgt.rrd.RrdException;
 import org.opennms.netmgt.rrd.RrdMetaDataUtils;
 import org.opennms.netmgt.rrd.RrdRepository;
 import org.opennms.netmgt.rrd.RrdStrategy;
+import org.opennms.netmgt.rrd.RrdUpdate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
@@ -81,6 +85,9 @@ public class RrdPersistOperationBuilder implements PersistOperationBuilder {
     /** Constant <code>MAX_DS_NAME_LENGTH=19</code> */
     public static final int MAX_DS_NAME_LENGTH = 19;
 
+    /** Whole numbers with a larger magnitude can't be represented exactly by a double. */
+    private static final long MAX_EXACT_LONG = 1L << 53;
+
     public RrdPersistOperationBuilder(RrdStrategy<?, ?> rrdStrategy,
                                       RrdRepository repository,
                                       ResourceIdentifier resource,
@@ -204,7 +211,7 @@ public class RrdPersistOperationBuilder implements PersistOperationBuilder {
             List<RrdDataSource> dataSources = getDataSources();
             if (dataSources != null && dataSources.size() > 0) {
                 createRRD(m_rrdStrategy, ownerName, absolutePath, m_rrdName, getRepository().getStep(), dataSources, getRepository().getRraList());
-                updateRRD(m_rrdStrategy, ownerName, absolutePath, m_rrdName, m_timeKeeper.getCurrentTime(), getValues());
+                updateRRD(ownerName, absolutePath, m_timeKeeper.getCurrentTime());
             }
         } catch (FileNotFoundException e) {
             LoggerFactory.getLogger(getClass()).warn("Could not get resource directory: " + e.getMessage(), e);
@@ -214,6 +221,42 @@ public class RrdPersistOperationBuilder implements PersistOperationBuilder {
         }
     }
 
+    /**
+     * Returns the values as a typed sample, or null if one of them can't be
+     * represented exactly by a double. This is the case for 64-bit counters
+     * beyond 2^53, which are written in their string form instead.
+     */
+    private RrdUpdate getUpdate(long time) {
+        final double[] values = new double[m_declarations.size()];
+        int i = 0;
+        for (Number value : m_declarations.values()) {
+            if (value == null || !Double.isFinite(value.doubleValue())) {
+                values[i++] = Double.NaN;
+            } else if (isExactDouble(value)) {
+                values[i++] = value.doubleValue();
+            } else {
+                return null;
+            }
+        }
+        return new RrdUpdate(time, values);
+    }
+
+    private static boolean isExactDouble(Number num) {
+        if (num instanceof Double || num instanceof Float || num instanceof Integer || num instanceof Short || num instanceof Byte) {
+            return true;
+        } else if (num instanceof Long) {
+            final long value = num.longValue();
+            return value >= -MAX_EXACT_LONG && value <= MAX_EXACT_LONG;
+        } else if (num instanceof BigInteger) {
+            return ((BigInteger) num).bitLength() <= 53;
+        }
+        try {
+            return new BigDecimal(num.toString()).compareTo(new BigDecimal(num.doubleValue())) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     private String getValues() {
         boolean first = true;
         final StringBuilder values = new StringBuilder();
@@ -284,31 +327,34 @@ public class RrdPersistOperationBuilder implements PersistOperationBuilder {
     }
 
     /**
-     * Add datapoints to a round robin database.
+     * Add the current values as a datapoint to the round robin database.
      *
      * @param owner the owner of the file. This is used in log messages
      * @param repositoryDir the directory the file resides in
-     * @param rrdName the name for the rrd file.
      * @param timestamp the timestamp in millis to use for the rrd update (this
      * gets rounded to the nearest second)
-     * @param val a colon separated list of values representing the updates for
-     * datasources for this rrd
      * @throws org.opennms.netmgt.rrd.RrdException if any.
      */
-    private static void updateRRD(RrdStrategy<?, ?> rrdStrategy, String owner, String repositoryDir, String rrdName, long timestamp, String val) throws RrdException {
+    private void updateRRD(String owner, String repositoryDir, long timestamp) throws RrdException {
         // Issue the RRD update
-        String rrdFile = repositoryDir + File.separator + rrdName + rrdStrategy.getDefaultFileExtension();
+        String rrdFile = repositoryDir + File.separator + m_rrdName + m_rrdStrategy.getDefaultFileExtension();
         long time = (timestamp + 500L) / 1000L;
 
-        String updateVal = Long.toString(time) + ":" + val;
+        // Use the typed API unless one of the values would lose precision
+        final RrdUpdate update = getUpdate(time);
+        final Object updateVal = update != null ? update : Long.toString(time) + ":" + getValues();
 
         LOG.info("updateRRD: updating RRD file {} with values '{}'", rrdFile, updateVal);
 
-        RrdStrategy<Object, Object> strategy = toGenericType(rrdStrategy);
+        RrdStrategy<Object, Object> strategy = toGenericType(m_rrdStrategy);
         Object rrd = null;
         try {
             rrd = strategy.openFile(rrdFile);
-            strategy.updateFile(rrd, owner, updateVal);
+            if (update != null) {
+                strategy.updateFile(rrd, owner, Collections.singletonList(update));
+            } else {
+                strategy.updateFile(rrd, owner, (String) updateVal);
+            }
         } catch (Throwable e) {
             LOG.error("updateRRD: Error updating RRD file {} with values '{}'", rrdFile, updateVal, e);
             throw new org.opennms.netmgt.rrd.RrdException("Error updating RRD file " + rrdFile + " with values '" + updateVal + "': " + e, e);
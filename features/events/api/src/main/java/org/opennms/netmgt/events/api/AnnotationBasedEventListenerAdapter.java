@@ -70,6 +70,7 @@ public class AnnotationBasedEventListenerAdapter implements StoppableEventListen
     private volatile Object m_annotatedListener;
     private volatile String m_logPrefix = null;
     private volatile int m_threads = 1;
+    private volatile boolean m_orderedByNode = false;
     private volatile EventSubscriptionService m_subscriptionService;
 
     private final Map<String, Method> m_ueiToHandlerMap = new HashMap<String, Method>();
@@ -296,6 +297,7 @@ public class AnnotationBasedEventListenerAdapter implements StoppableEventListen
         }
 
         m_threads = listenerInfo.threads();
+        m_orderedByNode = listenerInfo.orderedByNode();
 
         populatePreProcessorList();
         
@@ -348,6 +350,14 @@ public class AnnotationBasedEventListenerAdapter implements StoppableEventListen
         return m_threads;
     }
 
+    @Override
+    public boolean isOrderedByNode() {
+        if (m_annotatedListener instanceof ThreadAwareEventListener) {
+            return ((ThreadAwareEventListener) m_annotatedListener).isOrderedByNode();
+        }
+        return m_orderedByNode;
+    }
+
     private static class ClassComparator<T> implements Comparator<Class<? extends T>> {
         @Override
         public int compare(Class<? extends T> lhsType, Class<? extends T> rhsType) {
@@ -43,4 +43,14 @@ public interface ThreadAwareEventListener {
 
     int getNumThreads();
 
+    /**
+     * When using multiple threads, events for the same node are
+     * delivered in order by always handling them on the same thread.
+     *
+     * @return true if events for the same node must be handled in order
+     */
+    default boolean isOrderedByNode() {
+        return false;
+    }
+
 }
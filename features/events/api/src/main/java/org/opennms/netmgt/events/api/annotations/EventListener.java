@@ -56,4 +56,6 @@ public @interface EventListener {
 
     int threads() default 1;
 
+    boolean orderedByNode() default false;
+
 }
@@ -32,16 +32,19 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -63,7 +66,9 @@ import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 
 /**
  * An implementation of the EventIpcManager interface that can be used to
@@ -100,6 +105,34 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         }
     }
 
+    /**
+     * What to do with an event when the queue of a listener is full.
+     */
+    public enum ListenerOverflowPolicy {
+        /**
+         * Discard the new event.
+         */
+        DISCARD,
+        /**
+         * Discard the oldest queued event in favor of the new one.
+         */
+        DISCARD_OLDEST,
+        /**
+         * Block the broadcasting thread until there is room in the queue.
+         */
+        BLOCK;
+
+        public static ListenerOverflowPolicy fromConfig(final String value) {
+            return ListenerOverflowPolicy.valueOf(value.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    /**
+     * The maximum number of distinct UEIs for which the matching listeners
+     * are memoized in a routing table.
+     */
+    private static final int MAX_RESOLVED_UEIS = 10000;
+
     /**
      * Hash table of list of event listeners keyed by event UEI
      */
@@ -110,10 +143,17 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
      */
     private List<EventListener> m_listeners = new ArrayList<EventListener>();
 
+    /**
+     * Immutable snapshot of the listener registrations used to route events
+     * without locking. A new snapshot is published whenever the registrations
+     * above are changed.
+     */
+    private volatile ListenerRoutes m_routes = new ListenerRoutes(m_listeners, m_ueiListeners);
+
     /**
      * Hash table of event listener threads keyed by the listener's id
      */
-    private Map<String, EventListenerExecutor> m_listenerThreads = new HashMap<String, EventListenerExecutor>();
+    private Map<String, EventListenerExecutor> m_listenerThreads = new ConcurrentHashMap<String, EventListenerExecutor>();
 
     /**
      * The thread pool handling the events
@@ -126,13 +166,89 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
     
     private Integer m_handlerQueueLength;
 
+    private ListenerOverflowPolicy m_listenerOverflowPolicy = ListenerOverflowPolicy.DISCARD;
+
     private final MetricRegistry m_registry;
 
     /**
-     * A thread dedicated to each listener. The events meant for each listener
-     * is added to an execution queue when the 'sendNow()' is called. The
-     * ListenerThread reads events off of this queue and sends them to the
+     * Read-only routing table from event UEIs to the interested listeners.
+     */
+    private static class ListenerRoutes {
+        private final List<EventListener> m_allEvents;
+
+        private final Map<String, List<EventListener>> m_byUei;
+
+        /**
+         * Listeners matching an UEI, including the partial wild card
+         * "directory" matches, keyed by the UEI of the event.
+         */
+        private final Map<String, List<EventListener>> m_resolved = new ConcurrentHashMap<>();
+
+        ListenerRoutes(final List<EventListener> allEvents, final Map<String, List<EventListener>> byUei) {
+            m_allEvents = Collections.unmodifiableList(new ArrayList<>(allEvents));
+
+            final Map<String, List<EventListener>> copy = new HashMap<>();
+            for (final Map.Entry<String, List<EventListener>> entry : byUei.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    copy.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+                }
+            }
+            m_byUei = Collections.unmodifiableMap(copy);
+        }
+
+        List<EventListener> getAllEventsListeners() {
+            return m_allEvents;
+        }
+
+        boolean hasUeiListener(final String uei) {
+            return m_byUei.containsKey(uei);
+        }
+
+        List<EventListener> getUeiListeners(final String uei) {
+            List<EventListener> listeners = m_resolved.get(uei);
+            if (listeners == null) {
+                listeners = resolve(uei);
+                if (m_resolved.size() < MAX_RESOLVED_UEIS) {
+                    m_resolved.put(uei, listeners);
+                }
+            }
+            return listeners;
+        }
+
+        /**
+         * Loop to attempt partial wild card "directory" matches.
+         */
+        private List<EventListener> resolve(final String eventUei) {
+            final Set<EventListener> listeners = new LinkedHashSet<>();
+            for (String uei = eventUei; uei.length() > 0; ) {
+                final List<EventListener> ueiListeners = m_byUei.get(uei);
+                if (ueiListeners != null) {
+                    listeners.addAll(ueiListeners);
+                }
+
+                // Try wild cards: Find / before last character
+                int i = uei.lastIndexOf("/", uei.length() - 2);
+                if (i > 0) {
+                    // Split at "/", including the /
+                    uei = uei.substring (0, i + 1);
+                } else {
+                    // No more wild cards to match
+                    break;
+                }
+            }
+            return listeners.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(listeners));
+        }
+    }
+
+    /**
+     * The threads dedicated to each listener. The events meant for each
+     * listener are added to a bounded execution queue when 'broadcastNow()' is
+     * called. The threads read events off of this queue and send them to the
      * appropriate listener.
+     *
+     * Listeners requesting multiple threads with ordering by node get one
+     * single threaded queue per thread and the events are assigned to the
+     * queues by node ID.
      */
     private static class EventListenerExecutor {
         /**
@@ -141,67 +257,173 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         private final EventListener m_listener;
 
         /**
-         * The thread that is running this runnable.
+         * The threads that are running the queued events.
          */
-        private final ExecutorService m_delegateThread;
+        private final ThreadPoolExecutor[] m_delegateThreads;
+
+        private final ListenerOverflowPolicy m_overflowPolicy;
+
+        private final MetricRegistry m_registry;
+
+        private final String m_queuedMetricName;
+
+        private final String m_droppedMetricName;
+
+        private final String m_lagMetricName;
+
+        private final Meter m_dropped;
+
+        private final Timer m_lag;
 
         /**
          * Constructor
          */
-        EventListenerExecutor(EventListener listener, Integer handlerQueueLength) {
+        EventListenerExecutor(EventListener listener, Integer handlerQueueLength, ListenerOverflowPolicy overflowPolicy, MetricRegistry registry) {
             m_listener = listener;
+            m_overflowPolicy = overflowPolicy;
+            m_registry = registry;
 
             int numThreads = 1;
+            boolean orderedByNode = false;
             if (m_listener instanceof ThreadAwareEventListener) {
                 numThreads = ((ThreadAwareEventListener)m_listener).getNumThreads();
+                orderedByNode = ((ThreadAwareEventListener)m_listener).isOrderedByNode();
+            }
+
+            // This ThreadFactory will ensure that the log prefix of the calling thread
+            // is used for all events that this listener handles. Therefore, if Notifd
+            // registers for an event then all logs for handling that event will end up
+            // inside notifd.log.
+            final LogPreservingThreadFactory threadFactory = new LogPreservingThreadFactory(m_listener.getName(), numThreads);
+            if (orderedByNode && numThreads > 1) {
+                m_delegateThreads = new ThreadPoolExecutor[numThreads];
+                for (int i = 0; i < numThreads; i++) {
+                    m_delegateThreads[i] = createExecutor(1, handlerQueueLength, threadFactory);
+                }
+            } else {
+                m_delegateThreads = new ThreadPoolExecutor[] { createExecutor(numThreads, handlerQueueLength, threadFactory) };
             }
 
-            m_delegateThread = new ThreadPoolExecutor(
+            m_queuedMetricName = MetricRegistry.name("eventlisteners", m_listener.getName(), "queued");
+            m_droppedMetricName = MetricRegistry.name("eventlisteners", m_listener.getName(), "dropped");
+            m_lagMetricName = MetricRegistry.name("eventlisteners", m_listener.getName(), "lag");
+
+            m_registry.remove(m_queuedMetricName);
+            m_registry.register(m_queuedMetricName, new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    int queued = 0;
+                    for (ThreadPoolExecutor executor : m_delegateThreads) {
+                        queued += executor.getQueue().size();
+                    }
+                    return queued;
+                }
+            });
+            m_dropped = m_registry.meter(m_droppedMetricName);
+            m_lag = m_registry.timer(m_lagMetricName);
+        }
+
+        private ThreadPoolExecutor createExecutor(int numThreads, Integer handlerQueueLength, ThreadFactory threadFactory) {
+            return new ThreadPoolExecutor(
                     numThreads,
                     numThreads,
                     0L,
                     TimeUnit.MILLISECONDS,
-                    handlerQueueLength == null ? new LinkedBlockingQueue<Runnable>() : new LinkedBlockingQueue<Runnable>(handlerQueueLength),
-                    // This ThreadFactory will ensure that the log prefix of the calling thread
-                    // is used for all events that this listener handles. Therefore, if Notifd
-                    // registers for an event then all logs for handling that event will end up
-                    // inside notifd.log.
-                    new LogPreservingThreadFactory(m_listener.getName(), numThreads),
+                    handlerQueueLength == null ? new LinkedBlockingQueue<Runnable>() : new ArrayBlockingQueue<Runnable>(handlerQueueLength),
+                    threadFactory,
                     new RejectedExecutionHandler() {
                         @Override
                         public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-                            LOG.warn("Listener {}'s event queue is full, discarding event", m_listener.getName());
+                            if (executor.isShutdown()) {
+                                discard((ListenerTask)r);
+                                return;
+                            }
+
+                            switch (m_overflowPolicy) {
+                            case BLOCK:
+                                try {
+                                    executor.getQueue().put(r);
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                    discard((ListenerTask)r);
+                                }
+                                break;
+                            case DISCARD_OLDEST:
+                                final Runnable oldest = executor.getQueue().poll();
+                                if (oldest != null) {
+                                    discard((ListenerTask)oldest);
+                                }
+                                executor.execute(r);
+                                break;
+                            default:
+                                discard((ListenerTask)r);
+                            }
                         }
                     }
             );
         }
 
+        private void discard(ListenerTask task) {
+            LOG.warn("Listener {}'s event queue is full, discarding event", m_listener.getName());
+            m_dropped.mark();
+            task.m_future.complete(null);
+        }
+
         public CompletableFuture<Void> addEvent(final Event event) {
-            return CompletableFuture.runAsync(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                         if (LOG.isDebugEnabled()) LOG.debug("run: calling onEvent on {} for event {}", m_listener.getName(), event.toStringSimple());
-
-                        // Make sure we restore our log4j logging prefix after onEvent is called
-                        Map<String,String> mdc = Logging.getCopyOfContextMap();
-                        try {
-                            m_listener.onEvent(event);
-                        } finally {
-                            Logging.setContextMap(mdc);
-                        }
-                    } catch (Throwable t) {
-                        LOG.warn("run: an unexpected error occured during ListenerThread {}", m_listener.getName(), t);
-                    }
-                }
-            }, m_delegateThread);
+            final ListenerTask task = new ListenerTask(event);
+            getExecutor(event).execute(task);
+            return task.m_future;
+        }
+
+        private ThreadPoolExecutor getExecutor(final Event event) {
+            if (m_delegateThreads.length == 1 || !event.hasNodeid()) {
+                return m_delegateThreads[0];
+            }
+            return m_delegateThreads[(int)Math.floorMod(event.getNodeid(), (long)m_delegateThreads.length)];
         }
 
         /**
          * Stops the execution of this listener.
          */
         public void stop() {
-            m_delegateThread.shutdown();
+            for (ThreadPoolExecutor executor : m_delegateThreads) {
+                executor.shutdown();
+            }
+            m_registry.remove(m_queuedMetricName);
+            m_registry.remove(m_droppedMetricName);
+            m_registry.remove(m_lagMetricName);
+        }
+
+        private class ListenerTask implements Runnable {
+            private final Event m_event;
+
+            private final CompletableFuture<Void> m_future = new CompletableFuture<>();
+
+            private final long m_queuedAt = System.nanoTime();
+
+            ListenerTask(final Event event) {
+                m_event = event;
+            }
+
+            @Override
+            public void run() {
+                m_lag.update(System.nanoTime() - m_queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    if (LOG.isDebugEnabled()) LOG.debug("run: calling onEvent on {} for event {}", m_listener.getName(), m_event.toStringSimple());
+
+                    // Make sure we restore our log4j logging prefix after onEvent is called
+                    Map<String,String> mdc = Logging.getCopyOfContextMap();
+                    try {
+                        m_listener.onEvent(m_event);
+                    } finally {
+                        Logging.setContextMap(mdc);
+                    }
+                } catch (Throwable t) {
+                    LOG.warn("run: an unexpected error occured during ListenerThread {}", m_listener.getName(), t);
+                } finally {
+                    m_future.complete(null);
+                }
+            }
         }
     }
 
@@ -296,14 +518,16 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             LOG.debug("Event ID {} to be broadcasted: {}", event.getDbid(), event.getUei());
         }
 
-        if (LOG.isDebugEnabled() && m_listeners.isEmpty()) {
+        final ListenerRoutes routes = m_routes;
+
+        if (LOG.isDebugEnabled() && routes.getAllEventsListeners().isEmpty()) {
             LOG.debug("No listeners interested in all events");
         }
 
         List<CompletableFuture<Void>> listenerFutures = new ArrayList<>();
 
         // Send to listeners interested in receiving all events
-        for (EventListener listener : m_listeners) {
+        for (EventListener listener : routes.getAllEventsListeners()) {
             listenerFutures.add(queueEventToListener(event, listener));
         }
 
@@ -314,32 +538,12 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             return;
         }
 
-        /*
-         * Send to listeners who are interested in this event UEI.
-         * Loop to attempt partial wild card "directory" matches.
-         */
-        Set<EventListener> sentToListeners = new HashSet<EventListener>();
-        for (String uei = event.getUei(); uei.length() > 0; ) {
-            if (m_ueiListeners.containsKey(uei)) {
-                for (EventListener listener : m_ueiListeners.get(uei)) {
-                    if (!sentToListeners.contains(listener)) {
-                        listenerFutures.add(queueEventToListener(event, listener));
-                        sentToListeners.add(listener);
-                    }
-                }
-            }
-            
-            // Try wild cards: Find / before last character
-            int i = uei.lastIndexOf("/", uei.length() - 2);
-            if (i > 0) {
-                // Split at "/", including the /
-                uei = uei.substring (0, i + 1);
-            } else {
-                // No more wild cards to match
-                break;
-            }
+        // Send to listeners who are interested in this event UEI.
+        final List<EventListener> sentToListeners = routes.getUeiListeners(event.getUei());
+        for (EventListener listener : sentToListeners) {
+            listenerFutures.add(queueEventToListener(event, listener));
         }
-        
+
         if (sentToListeners.isEmpty()) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("No listener interested in event ID {}: {}", event.getDbid(), event.getUei());
@@ -354,7 +558,12 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
     }
 
     private CompletableFuture<Void> queueEventToListener(Event event, EventListener listener) {
-        return m_listenerThreads.get(listener.getName()).addEvent(event);
+        final EventListenerExecutor listenerThread = m_listenerThreads.get(listener.getName());
+        if (listenerThread == null) {
+            // The listener was removed since the routes were read
+            return CompletableFuture.completedFuture(null);
+        }
+        return listenerThread.addEvent(event);
     }
 
     /**
@@ -375,6 +584,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : m_ueiListeners.keySet()) {
             removeUeiForListener(uei, listener);
         }
+
+        publishRoutes();
     }
 
     /**
@@ -404,6 +615,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
         // Since we have a UEI-specific listener, remove the match-all listener
         removeMatchAllForListener(listener);
+
+        publishRoutes();
     }
 
     /**
@@ -438,6 +651,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : ueis) {
             removeUeiForListener(uei, listener);
         }
+
+        publishRoutes();
     }
 
     /**
@@ -457,6 +672,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         Assert.notNull(uei, "uei argument cannot be null");
 
         removeUeiForListener(uei, listener);
+
+        publishRoutes();
     }
 
     /**
@@ -477,14 +694,22 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             removeUeiForListener(uei, listener);
         }
 
-        // stop and remove the listener thread for this listener
-        if (m_listenerThreads.containsKey(listener.getName())) {
-            m_listenerThreads.get(listener.getName()).stop();
+        publishRoutes();
 
-            m_listenerThreads.remove(listener.getName());
+        // stop and remove the listener thread for this listener
+        final EventListenerExecutor listenerThread = m_listenerThreads.remove(listener.getName());
+        if (listenerThread != null) {
+            listenerThread.stop();
         }
     }
 
+    /**
+     * Publish a new routing table reflecting the current registrations.
+     */
+    private void publishRoutes() {
+        m_routes = new ListenerRoutes(m_listeners, m_ueiListeners);
+    }
+
     /**
      * Create a new queue and listener thread for this listener if one does not
      * already exist.
@@ -494,7 +719,7 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             return;
         }
         
-        EventListenerExecutor listenerThread = new EventListenerExecutor(listener, m_handlerQueueLength);
+        EventListenerExecutor listenerThread = new EventListenerExecutor(listener, m_handlerQueueLength, m_listenerOverflowPolicy, m_registry);
         m_listenerThreads.put(listener.getName(), listenerThread);
     }
 
@@ -634,12 +859,27 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         m_handlerQueueLength = size;
     }
 
+    /**
+     * <p>getListenerOverflowPolicy</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getListenerOverflowPolicy() {
+        return m_listenerOverflowPolicy.name();
+    }
+
+    /**
+     * <p>setListenerOverflowPolicy</p>
+     *
+     * @param listenerOverflowPolicy one of 'discard', 'discard-oldest' or 'block'
+     */
+    public void setListenerOverflowPolicy(String listenerOverflowPolicy) {
+        Assert.state(m_eventHandlerPool == null, "listenerOverflowPolicy property cannot be set after afterPropertiesSet() is called");
+        m_listenerOverflowPolicy = ListenerOverflowPolicy.fromConfig(listenerOverflowPolicy);
+    }
+
     @Override
     public boolean hasEventListener(final String uei) {
-        if (this.m_ueiListeners.containsKey(uei)) {
-            return this.m_ueiListeners.get(uei).size() > 0;
-        } else {
-            return false;
-        }
+        return m_routes.hasUeiListener(uei);
     }
 }
@@ -37,9 +37,12 @@ import static org.opennms.core.utils.InetAddressUtils.addr;
 
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
@@ -825,4 +828,154 @@ public class EventIpcManagerDefaultImplTest extends TestCase {
         // Release
         locker.release();
     }
+
+    private static class OrderedByNodeEventListener implements EventListener, ThreadAwareEventListener {
+        private final int numThreads;
+        private final Map<Long, List<String>> eventsByNode = new ConcurrentHashMap<>();
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public OrderedByNodeEventListener(int numThreads) {
+            this.numThreads = numThreads;
+        }
+
+        @Override
+        public String getName() {
+            return getClass().getCanonicalName();
+        }
+
+        @Override
+        public void onEvent(Event e) {
+            eventsByNode.computeIfAbsent(e.getNodeid(), k -> Collections.synchronizedList(new ArrayList<>())).add(e.getUei());
+            try {
+                Thread.sleep(e.getNodeid() % 3);
+            } catch (InterruptedException ex) {
+            }
+            counter.incrementAndGet();
+        }
+
+        @Override
+        public int getNumThreads() {
+            return numThreads;
+        }
+
+        @Override
+        public boolean isOrderedByNode() {
+            return true;
+        }
+    }
+
+    /**
+     * Verify that an event listener ordered by node receives the events
+     * of each node in the order they were broadcasted.
+     */
+    public void testOrderedByNodeEventListener() throws InterruptedException {
+        OrderedByNodeEventListener listener = new OrderedByNodeEventListener(4);
+        m_manager.addEventListener(listener);
+
+        for (int k = 0; k < 200; k++) {
+            EventBuilder bldr = new EventBuilder("uei.opennms.org/foo/" + k, "testOrderedByNodeEventListener");
+            bldr.setNodeid(k % 10);
+            m_manager.broadcastNow(bldr.getEvent(), false);
+        }
+
+        await().untilAtomic(listener.counter, is(equalTo(200)));
+
+        assertEquals(10, listener.eventsByNode.size());
+        for (Map.Entry<Long, List<String>> entry : listener.eventsByNode.entrySet()) {
+            List<String> ueis = entry.getValue();
+            assertEquals(20, ueis.size());
+            for (int i = 0; i < ueis.size(); i++) {
+                assertEquals("uei.opennms.org/foo/" + (i * 10 + entry.getKey()), ueis.get(i));
+            }
+        }
+    }
+
+    public void testDiscardOldestWhenListenerQueueIsFull() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+
+        EventListener blockingListener = new EventListener() {
+            @Override
+            public String getName() {
+                return "testDiscardOldestWhenListenerQueueIsFull";
+            }
+
+            @Override
+            public void onEvent(Event event) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+                received.add(event.getUei());
+            }
+        };
+
+        EventIpcManagerDefaultImpl manager = new EventIpcManagerDefaultImpl(m_registry);
+        manager.setEventHandler(m_eventHandler);
+        manager.setHandlerPoolSize(1);
+        manager.setHandlerQueueLength(5);
+        manager.setListenerOverflowPolicy("discard-oldest");
+        manager.afterPropertiesSet();
+
+        manager.addEventListener(blockingListener);
+
+        // The first event blocks the listener thread, the next 5 are enqueued and
+        // the last 4 push the oldest queued events out of the queue
+        manager.broadcastNow(new EventBuilder("uei.opennms.org/foo/0", "testDiscardOldestWhenListenerQueueIsFull").getEvent(), false);
+        blocked.await();
+        for (int i = 1; i < 10; i++) {
+            EventBuilder bldr = new EventBuilder("uei.opennms.org/foo/" + i, "testDiscardOldestWhenListenerQueueIsFull");
+            manager.broadcastNow(bldr.getEvent(), false);
+        }
+        assertEquals(4, m_registry.meter("eventlisteners.testDiscardOldestWhenListenerQueueIsFull.dropped").getCount());
+        release.countDown();
+
+        await().until(() -> received.size() == 6);
+        assertEquals("uei.opennms.org/foo/0", received.get(0));
+        assertEquals("uei.opennms.org/foo/5", received.get(1));
+        assertEquals("uei.opennms.org/foo/9", received.get(5));
+        assertEquals(6, m_registry.timer("eventlisteners.testDiscardOldestWhenListenerQueueIsFull.lag").getCount());
+
+        // Removing the listener also removes its metrics
+        manager.removeEventListener(blockingListener);
+        assertFalse(m_registry.getNames().contains("eventlisteners.testDiscardOldestWhenListenerQueueIsFull.queued"));
+    }
+
+    public void testSynchronousBroadcastDoesNotWaitForDiscardedEvents() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+
+        EventListener blockingListener = new EventListener() {
+            @Override
+            public String getName() {
+                return "testSynchronousBroadcastDoesNotWaitForDiscardedEvents";
+            }
+
+            @Override
+            public void onEvent(Event event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+
+        EventIpcManagerDefaultImpl manager = new EventIpcManagerDefaultImpl(m_registry);
+        manager.setEventHandler(m_eventHandler);
+        manager.setHandlerPoolSize(1);
+        manager.setHandlerQueueLength(1);
+        manager.afterPropertiesSet();
+
+        manager.addEventListener(blockingListener, "uei.opennms.org/foo");
+
+        // One event is being handled and one is queued
+        manager.broadcastNow(new EventBuilder("uei.opennms.org/foo", "test").getEvent(), false);
+        manager.broadcastNow(new EventBuilder("uei.opennms.org/foo", "test").getEvent(), false);
+
+        // The queue is full, the event is discarded and the broadcast returns
+        manager.broadcastNow(new EventBuilder("uei.opennms.org/foo", "test").getEvent(), true);
+
+        release.countDown();
+    }
 }
@@ -33,8 +33,11 @@ import static org.opennms.core.utils.InetAddressUtils.str;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -45,6 +48,7 @@ import org.opennms.netmgt.config.SyslogdConfig;
 import org.opennms.netmgt.config.syslogd.HideMatch;
 import org.opennms.netmgt.config.syslogd.HostaddrMatch;
 import org.opennms.netmgt.config.syslogd.HostnameMatch;
+import org.opennms.netmgt.config.syslogd.Match;
 import org.opennms.netmgt.config.syslogd.ParameterAssignment;
 import org.opennms.netmgt.config.syslogd.ProcessMatch;
 import org.opennms.netmgt.config.syslogd.UeiMatch;
@@ -96,6 +100,13 @@ public class ConvertToEvent {
         }
     );
 
+    /**
+     * The prefilters of the last <code>ueiMatch</code> and <code>hideMatch</code>
+     * lists, rebuilt whenever the rules change.
+     */
+    private static final AtomicReference<MatchPrefilter> UEI_PREFILTER = new AtomicReference<>();
+    private static final AtomicReference<MatchPrefilter> HIDE_PREFILTER = new AtomicReference<>();
+
     /**
      * Reduce the limit of the buffer to trim trailing nulls from the value.
      * 
@@ -268,7 +279,10 @@ public class ConvertToEvent {
         EventBuilder bldr = toEventBuilder(message, systemId, location);
 
         final List<UeiMatch> ueiMatch = (config.getUeiList() == null ? Collections.emptyList() : config.getUeiList());
-        for (final UeiMatch uei : ueiMatch) {
+        // Only evaluate the rules whose literals are contained in the message, in the order of the configuration
+        final BitSet ueiCandidates = ueiMatch.isEmpty() ? new BitSet() : getPrefilter(UEI_PREFILTER, ueiMatch, UeiMatch::getMatch).getCandidates(message.getMessage());
+        for (int i = ueiCandidates.nextSetBit(0); i >= 0 && i < ueiMatch.size(); i = ueiCandidates.nextSetBit(i + 1)) {
+            final UeiMatch uei = ueiMatch.get(i);
             final boolean messageMatchesUeiListEntry = containsIgnoreCase(uei.getFacilities(), facilityTxt) &&
                                               containsIgnoreCase(uei.getSeverities(), priorityTxt) &&
                                               matchProcess(uei.getProcessMatch().orElse(null), message.getProcessName()) &&
@@ -295,7 +309,9 @@ public class ConvertToEvent {
             // Match this regex against the full string of the message
             final String fullText = message.asRfc3164Message();
 
-            for (final HideMatch hide : hideMatch) {
+            final BitSet hideCandidates = getPrefilter(HIDE_PREFILTER, hideMatch, HideMatch::getMatch).getCandidates(fullText);
+            for (int i = hideCandidates.nextSetBit(0); i >= 0 && i < hideMatch.size(); i = hideCandidates.nextSetBit(i + 1)) {
+                final HideMatch hide = hideMatch.get(i);
                 if (hide.getMatch().getType().equals("substr")) {
                     if (fullText.contains(hide.getMatch().getExpression())) {
                         // We should hide the message based on this match
@@ -372,6 +388,15 @@ public class ConvertToEvent {
         return CACHED_PATTERNS.getUnchecked(expression);
     }
 
+    private static <T> MatchPrefilter getPrefilter(final AtomicReference<MatchPrefilter> cache, final List<T> rules, final Function<T, Match> getMatch) {
+        MatchPrefilter prefilter = cache.get();
+        if (prefilter == null || !prefilter.isFor(rules, getMatch)) {
+            prefilter = new MatchPrefilter(rules, getMatch);
+            cache.set(prefilter);
+        }
+        return prefilter;
+    }
+
     /**
      * Checks the message for substring matches to a {@link UeiMatch}. If the message
      * matches, then the UEI is updated (or the event is discarded if the discard
@@ -0,0 +1,517 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.opennms.netmgt.config.syslogd.Match;
+
+/**
+ * Narrows down the rules of a list of <code>ueiMatch</code> or
+ * <code>hideMatch</code> elements which can possibly match a message, so that
+ * only those have to be evaluated.
+ * <p>
+ * A rule can only match if the message contains all the literals the rule
+ * requires: the expression of a <code>substr</code> rule, or the runs of
+ * plain characters of a <code>regex</code> rule which are not optional.
+ * The literals of all the rules are searched for at once with an
+ * Aho-Corasick automaton, so that each message is scanned once regardless of
+ * the number of rules. Rules for which no literal can be determined, for
+ * example regular expressions with alternatives at the top level, are always
+ * candidates.
+ * </p>
+ * <p>
+ * The candidates are returned in the order of the rules, so evaluating them
+ * in that order gives the same first match as evaluating all the rules.
+ * </p>
+ */
+public class MatchPrefilter {
+
+    private static final int[] NONE = new int[0];
+
+    /**
+     * Escapes of predefined character classes and boundaries, which match
+     * something else than the escaped letter.
+     */
+    private static final String CLASS_ESCAPES = "dDwWsSbBAGZzhHvVRXnrtfae";
+
+    private static final class Node {
+        private char[] m_chars = new char[0];
+        private Node[] m_children = new Node[0];
+        private Node m_fail;
+        private int[] m_literals = NONE;
+
+        private Node getChild(char c) {
+            final int index = Arrays.binarySearch(m_chars, c);
+            return index < 0 ? null : m_children[index];
+        }
+
+        private Node addChild(char c) {
+            int index = Arrays.binarySearch(m_chars, c);
+            if (index >= 0) {
+                return m_children[index];
+            }
+            index = -index - 1;
+            final Node child = new Node();
+            final char[] chars = new char[m_chars.length + 1];
+            final Node[] children = new Node[m_children.length + 1];
+            System.arraycopy(m_chars, 0, chars, 0, index);
+            System.arraycopy(m_children, 0, children, 0, index);
+            chars[index] = c;
+            children[index] = child;
+            System.arraycopy(m_chars, index, chars, index + 1, m_chars.length - index);
+            System.arraycopy(m_children, index, children, index + 1, m_children.length - index);
+            m_chars = chars;
+            m_children = children;
+            return child;
+        }
+    }
+
+    private final String[] m_types;
+    private final String[] m_expressions;
+
+    private final Node m_root = new Node();
+
+    /**
+     * The literals required by each rule, ordered by the number of rules
+     * requiring them so that the first one is the most selective.
+     */
+    private final int[][] m_ruleLiterals;
+
+    /**
+     * The rules keyed by the first of their literals.
+     */
+    private final int[][] m_rulesByLiteral;
+
+    /**
+     * The rules which do not require any literal.
+     */
+    private final BitSet m_unfiltered = new BitSet();
+
+    public <T> MatchPrefilter(final List<T> rules, final Function<T, Match> getMatch) {
+        m_types = new String[rules.size()];
+        m_expressions = new String[rules.size()];
+
+        final Map<String, Integer> literalIds = new HashMap<>();
+        final List<Integer> literalUsage = new ArrayList<>();
+        final List<int[]> ruleLiterals = new ArrayList<>(rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            final Match match = getMatch.apply(rules.get(i));
+            m_types[i] = match == null ? null : match.getType();
+            m_expressions[i] = match == null ? null : match.getExpression();
+
+            final Set<String> literals = new LinkedHashSet<>(getRequiredLiterals(m_types[i], m_expressions[i]));
+            final int[] ids = new int[literals.size()];
+            int j = 0;
+            for (String literal : literals) {
+                Integer id = literalIds.get(literal);
+                if (id == null) {
+                    id = literalIds.size();
+                    literalIds.put(literal, id);
+                    literalUsage.add(0);
+                    addLiteral(literal, id);
+                }
+                literalUsage.set(id, literalUsage.get(id) + 1);
+                ids[j++] = id;
+            }
+            ruleLiterals.add(ids);
+        }
+        buildFailureLinks();
+
+        m_ruleLiterals = new int[rules.size()][];
+        final List<List<Integer>> rulesByLiteral = new ArrayList<>(literalIds.size());
+        for (int i = 0; i < literalIds.size(); i++) {
+            rulesByLiteral.add(new ArrayList<>());
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            final int[] ids = sortByUsage(ruleLiterals.get(i), literalUsage);
+            m_ruleLiterals[i] = ids;
+            if (ids.length == 0) {
+                m_unfiltered.set(i);
+            } else {
+                rulesByLiteral.get(ids[0]).add(i);
+            }
+        }
+        m_rulesByLiteral = new int[rulesByLiteral.size()][];
+        for (int i = 0; i < rulesByLiteral.size(); i++) {
+            m_rulesByLiteral[i] = rulesByLiteral.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Returns the rules which may match the given text.
+     *
+     * @param text the text the rules are applied to
+     * @return the indexes of the rules which may match, all the rules if the text is null
+     */
+    public BitSet getCandidates(final String text) {
+        final BitSet candidates = (BitSet) m_unfiltered.clone();
+        if (text == null) {
+            candidates.set(0, m_types.length);
+            return candidates;
+        }
+        if (m_rulesByLiteral.length == 0) {
+            return candidates;
+        }
+
+        final BitSet found = new BitSet(m_rulesByLiteral.length);
+        Node state = m_root;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            Node next = state.getChild(c);
+            while (next == null && state != m_root) {
+                state = state.m_fail;
+                next = state.getChild(c);
+            }
+            if (next != null) {
+                state = next;
+                for (int literal : state.m_literals) {
+                    found.set(literal);
+                }
+            }
+        }
+
+        for (int literal = found.nextSetBit(0); literal >= 0; literal = found.nextSetBit(literal + 1)) {
+            for (int rule : m_rulesByLiteral[literal]) {
+                if (containsAll(found, m_ruleLiterals[rule])) {
+                    candidates.set(rule);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @return whether this prefilter was built for the given rules
+     */
+    public <T> boolean isFor(final List<T> rules, final Function<T, Match> getMatch) {
+        if (rules.size() != m_types.length) {
+            return false;
+        }
+        for (int i = 0; i < m_types.length; i++) {
+            final Match match = getMatch.apply(rules.get(i));
+            if (match == null) {
+                if (m_types[i] != null || m_expressions[i] != null) {
+                    return false;
+                }
+            } else if (!Objects.equals(m_types[i], match.getType()) || !Objects.equals(m_expressions[i], match.getExpression())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsAll(final BitSet found, final int[] literals) {
+        // the first literal is the one the rule was found by
+        for (int i = 1; i < literals.length; i++) {
+            if (!found.get(literals[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] sortByUsage(final int[] ids, final List<Integer> usage) {
+        return Arrays.stream(ids).boxed()
+                .sorted((a, b) -> Integer.compare(usage.get(a), usage.get(b)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private void addLiteral(final String literal, final int id) {
+        Node node = m_root;
+        for (int i = 0; i < literal.length(); i++) {
+            node = node.addChild(literal.charAt(i));
+        }
+        node.m_literals = append(node.m_literals, id);
+    }
+
+    private void buildFailureLinks() {
+        final Queue<Node> queue = new ArrayDeque<>();
+        for (Node child : m_root.m_children) {
+            child.m_fail = m_root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final Node node = queue.remove();
+            for (int i = 0; i < node.m_chars.length; i++) {
+                final char c = node.m_chars[i];
+                final Node child = node.m_children[i];
+                Node fail = node.m_fail;
+                Node next = fail.getChild(c);
+                while (next == null && fail != m_root) {
+                    fail = fail.m_fail;
+                    next = fail.getChild(c);
+                }
+                child.m_fail = next == null ? m_root : next;
+                // the literals ending at the suffix also end here
+                for (int literal : child.m_fail.m_literals) {
+                    child.m_literals = append(child.m_literals, literal);
+                }
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int[] append(final int[] values, final int value) {
+        final int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    /**
+     * Returns the literals a text must contain to be matched by the rule.
+     *
+     * @param type the type of the rule, <code>substr</code> or <code>regex</code>
+     * @param expression the expression of the rule
+     * @return the required literals, empty if none could be determined
+     */
+    protected static List<String> getRequiredLiterals(final String type, final String expression) {
+        if (type == null || expression == null || expression.isEmpty()) {
+            return Collections.emptyList();
+        } else if (type.equals("substr")) {
+            return Collections.singletonList(expression);
+        } else if (type.startsWith("regex")) {
+            return getRequiredLiterals(expression);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the runs of plain characters the regular expression requires.
+     * The expression is only parsed as far as needed: whenever a construct is
+     * not understood, no literal is returned, which is always safe.
+     *
+     * @param regex the regular expression
+     * @return the required literals, empty if none could be determined
+     */
+    protected static List<String> getRequiredLiterals(final String regex) {
+        final List<String> literals = new ArrayList<>();
+        final StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            switch (c) {
+            case '\\':
+                if (i + 1 >= regex.length()) {
+                    return Collections.emptyList();
+                }
+                final char escaped = regex.charAt(i + 1);
+                if (Character.isLetterOrDigit(escaped)) {
+                    // quotes, back references, hexadecimal or unicode escapes and properties are not supported
+                    if (CLASS_ESCAPES.indexOf(escaped) < 0) {
+                        return Collections.emptyList();
+                    }
+                    flush(run, literals);
+                    i = skipQuantifier(regex, i + 2);
+                } else {
+                    i = appendLiteral(regex, i + 2, escaped, run, literals);
+                }
+                break;
+            case '[':
+                i = skipClass(regex, i);
+                if (i < 0) {
+                    return Collections.emptyList();
+                }
+                flush(run, literals);
+                i = skipQuantifier(regex, i);
+                break;
+            case '(':
+                // inline flags such as (?i) change how the rest of the expression matches
+                if (regex.startsWith("(?", i) && i + 2 < regex.length()
+                        && (Character.isLetter(regex.charAt(i + 2)) || regex.charAt(i + 2) == '-')) {
+                    return Collections.emptyList();
+                }
+                i = skipGroup(regex, i);
+                if (i < 0) {
+                    return Collections.emptyList();
+                }
+                flush(run, literals);
+                i = skipQuantifier(regex, i);
+                break;
+            case '.':
+            case '^':
+            case '$':
+                flush(run, literals);
+                i = skipQuantifier(regex, i + 1);
+                break;
+            case '|':
+            case ')':
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                // alternatives at the top level, or something unexpected
+                return Collections.emptyList();
+            default:
+                if (Character.isSurrogate(c)) {
+                    // a quantifier would apply to the whole code point
+                    flush(run, literals);
+                    i = skipQuantifier(regex, i + 1);
+                } else {
+                    i = appendLiteral(regex, i + 1, c, run, literals);
+                }
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    /**
+     * Appends the character to the current run, unless the quantifier following
+     * it makes it optional.
+     *
+     * @return the index following the character and its quantifier
+     */
+    private static int appendLiteral(final String regex, final int next, final char c, final StringBuilder run, final List<String> literals) {
+        if (next < regex.length()) {
+            final char quantifier = regex.charAt(next);
+            if (quantifier == '?' || quantifier == '*' || quantifier == '{') {
+                flush(run, literals);
+                return skipQuantifier(regex, next);
+            } else if (quantifier == '+') {
+                // the character is required, but the run does not continue after the repetitions
+                run.append(c);
+                flush(run, literals);
+                return skipQuantifier(regex, next);
+            }
+        }
+        run.append(c);
+        return next;
+    }
+
+    private static int skipQuantifier(final String regex, int i) {
+        if (i >= regex.length()) {
+            return i;
+        }
+        final char c = regex.charAt(i);
+        if (c == '?' || c == '*' || c == '+') {
+            i++;
+        } else if (c == '{') {
+            final int end = regex.indexOf('}', i);
+            if (end < 0) {
+                return regex.length();
+            }
+            i = end + 1;
+        } else {
+            return i;
+        }
+        // reluctant or possessive quantifiers
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index following the character class starting at the given index, or -1
+     */
+    private static int skipClass(final String regex, final int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        // a closing bracket at the start of the class is a literal
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i += 2;
+                continue;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index following the group starting at the given index, or -1
+     */
+    private static int skipGroup(final String regex, final int start) {
+        int i = start + 1;
+        int depth = 1;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i += 2;
+                continue;
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+                if (i < 0) {
+                    return -1;
+                }
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static void flush(final StringBuilder run, final List<String> literals) {
+        if (run.length() > 0) {
+            literals.add(run.toString());
+            run.setLength(0);
+        }
+    }
+}
@@ -28,18 +28,34 @@
 
 package org.opennms.netmgt.syslogd;
 
+import static org.opennms.core.utils.BinaryCodec.readBytes;
+import static org.opennms.core.utils.BinaryCodec.readInetAddress;
+import static org.opennms.core.utils.BinaryCodec.readString;
+import static org.opennms.core.utils.BinaryCodec.readVarInt;
+import static org.opennms.core.utils.BinaryCodec.writeBytes;
+import static org.opennms.core.utils.BinaryCodec.writeInetAddress;
+import static org.opennms.core.utils.BinaryCodec.writeString;
+import static org.opennms.core.utils.BinaryCodec.writeVarInt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 
 import org.opennms.core.ipc.sink.api.AggregationPolicy;
 import org.opennms.core.ipc.sink.api.AsyncPolicy;
-import org.opennms.core.ipc.sink.xml.AbstractXmlSinkModule;
+import org.opennms.core.ipc.sink.xml.AbstractBinarySinkModule;
 import org.opennms.netmgt.config.SyslogdConfig;
 import org.opennms.netmgt.dao.api.DistPollerDao;
 import org.opennms.netmgt.syslogd.api.SyslogConnection;
 import org.opennms.netmgt.syslogd.api.SyslogMessageDTO;
 import org.opennms.netmgt.syslogd.api.SyslogMessageLogDTO;
 
-public class SyslogSinkModule extends AbstractXmlSinkModule<SyslogConnection, SyslogMessageLogDTO> {
+public class SyslogSinkModule extends AbstractBinarySinkModule<SyslogConnection, SyslogMessageLogDTO> {
 
     public static final String MODULE_ID = "Syslog";
 
@@ -119,6 +135,59 @@ public class SyslogSinkModule extends AbstractXmlSinkModule<SyslogConnection, Sy
         };
     }
 
+    @Override
+    protected void writeMessage(SyslogMessageLogDTO log, DataOutput out) throws IOException {
+        writeString(out, log.getLocation());
+        writeString(out, log.getSystemId());
+        writeInetAddress(out, log.getSourceAddress());
+        writeVarInt(out, log.getSourcePort());
+        writeVarInt(out, log.getMessages().size());
+        for (SyslogMessageDTO message : log.getMessages()) {
+            final Date timestamp = message.getTimestamp();
+            out.writeBoolean(timestamp != null);
+            if (timestamp != null) {
+                out.writeLong(timestamp.getTime());
+            }
+            final ByteBuffer buffer = message.getBytes();
+            if (buffer == null) {
+                writeBytes(out, null);
+            } else {
+                // leave the position of the buffer untouched
+                final ByteBuffer bytes = buffer.duplicate();
+                writeVarInt(out, bytes.remaining() + 1);
+                if (bytes.hasArray()) {
+                    out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                } else {
+                    final byte[] copy = new byte[bytes.remaining()];
+                    bytes.get(copy);
+                    out.write(copy);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected SyslogMessageLogDTO readMessage(DataInput in) throws IOException {
+        final SyslogMessageLogDTO log = new SyslogMessageLogDTO();
+        log.setLocation(readString(in));
+        log.setSystemId(readString(in));
+        log.setSourceAddress(readInetAddress(in));
+        log.setSourcePort(readVarInt(in));
+        final int count = readVarInt(in);
+        final List<SyslogMessageDTO> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final SyslogMessageDTO message = new SyslogMessageDTO();
+            if (in.readBoolean()) {
+                message.setTimestamp(new Date(in.readLong()));
+            }
+            final byte[] bytes = readBytes(in);
+            message.setBytes(bytes == null ? null : ByteBuffer.wrap(bytes));
+            messages.add(message);
+        }
+        log.setMessages(messages);
+        return log;
+    }
+
     /**
      * Used for testing.
      */
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.opennms.netmgt.config.syslogd.Match;
+
+public class MatchPrefilterTest {
+
+    @Test
+    public void testRequiredLiterals() {
+        assertEquals(Arrays.asList("foo0: ", "load test ", " on "), MatchPrefilter.getRequiredLiterals(".*foo0: .*load test (\\S+) on ((pts\\/\\d+)|(tty\\d+)).*"));
+        assertEquals(Arrays.asList("ouble", "ecret"), MatchPrefilter.getRequiredLiterals("[Dd]ouble[Ss]ecret"));
+        assertEquals(Arrays.asList("Failed ", " for invalid user ", " from ", " port ", " ssh"), MatchPrefilter.getRequiredLiterals("^Failed (.*?) for invalid user (\\S+) from (.*?) port (\\d+) ssh(\\d)$"));
+        assertEquals(Arrays.asList("Bind to port ", " on ", " failed: ", "."), MatchPrefilter.getRequiredLiterals("^Bind to port (\\d+) on (.*?) failed: (.*)\\.$"));
+        // optional and repeated characters
+        assertEquals(Arrays.asList("ab", "d"), MatchPrefilter.getRequiredLiterals("abc?d"));
+        assertEquals(Arrays.asList("ab", "c"), MatchPrefilter.getRequiredLiterals("ab+c"));
+        assertEquals(Arrays.asList("a", "c"), MatchPrefilter.getRequiredLiterals("ab{2,3}c"));
+        assertEquals(Arrays.asList("x", "y"), MatchPrefilter.getRequiredLiterals("x[]a]*y"));
+        // nothing can be required
+        assertEquals(Collections.emptyList(), MatchPrefilter.getRequiredLiterals(".*"));
+        assertEquals(Collections.emptyList(), MatchPrefilter.getRequiredLiterals("foo|bar"));
+        assertEquals(Collections.emptyList(), MatchPrefilter.getRequiredLiterals("(?i)foo"));
+        assertEquals(Collections.emptyList(), MatchPrefilter.getRequiredLiterals("\\Qfoo\\E"));
+        assertEquals(Collections.emptyList(), MatchPrefilter.getRequiredLiterals("\\x41BC"));
+        assertEquals(Collections.emptyList(), MatchPrefilter.getRequiredLiterals("(a)\\1"));
+    }
+
+    @Test
+    public void testCandidates() {
+        final List<Match> rules = Arrays.asList(
+                match("regex", ".*foo1: .*load test (\\S+) on ((pts\\/\\d+)|(tty\\d+)).*"),
+                match("regex", ".*foo2: .*load test (\\S+) on ((pts\\/\\d+)|(tty\\d+)).*"),
+                match("substr", "CRISCO"),
+                match("regex", "^(.*)$"),
+                match("regexp", "foo1"));
+        final MatchPrefilter prefilter = new MatchPrefilter(rules, Function.identity());
+
+        final BitSet candidates = prefilter.getCandidates("foo2: load test 2 on tty1");
+        assertFalse(candidates.get(0));
+        assertTrue(candidates.get(1));
+        assertFalse(candidates.get(2));
+        assertTrue(candidates.get(3));
+        assertFalse(candidates.get(4));
+
+        // all the literals of a rule are required
+        assertFalse(prefilter.getCandidates("foo1: unit test").get(0));
+        assertTrue(prefilter.getCandidates("foo1: unit test").get(4));
+        assertTrue(prefilter.getCandidates("a CRISCO router").get(2));
+
+        assertEquals(rules.size(), prefilter.getCandidates(null).cardinality());
+    }
+
+    @Test
+    public void testIsFor() {
+        final List<Match> rules = new ArrayList<>(Arrays.asList(match("substr", "foo"), match("regex", "bar")));
+        final MatchPrefilter prefilter = new MatchPrefilter(rules, Function.identity());
+        assertTrue(prefilter.isFor(rules, Function.identity()));
+
+        rules.get(1).setExpression("baz");
+        assertFalse(prefilter.isFor(rules, Function.identity()));
+
+        rules.remove(1);
+        assertFalse(prefilter.isFor(rules, Function.identity()));
+    }
+
+    /**
+     * Every rule which matches a message must be a candidate for it.
+     */
+    @Test
+    public void testCandidatesIncludeAllMatches() {
+        final List<Match> rules = new ArrayList<>();
+        for (String regex : new String[] {
+                "^Failed (.*?) for invalid user (\\S+) from (.*?) port (\\d+) ssh(\\d)$",
+                "^Failed (.*?) for (\\S+) from (.*?) port (\\d+) ssh(\\d)$",
+                "^Authentication refused: (.*)$",
+                "^(?:(.*):\\s*)?Killed process (\\d+) \\((.*)\\).*$",
+                "^New http connection for user (.+), source ([0-9.]+) destination ([0-9.]+) ACCEPTED$",
+                "^(.*) of instance ([0-9.]+): STP status Forwarding$",
+                "[Dd]ouble[Ss]ecret",
+                "Line protocol on Interface (\\S+), changed state to (up|down)",
+                "colou?r",
+                "a+b+c+",
+                "x{0}y",
+                "\\[(\\d+)\\]: link (up|down)",
+                "port\\s+\\d+ is (?!up)",
+                "(?i)case insensitive",
+                "error|warning",
+        }) {
+            rules.add(match("regex", regex));
+        }
+        rules.add(match("substr", "Cannot bind any address."));
+        rules.add(match("substr", "TESTHIDING"));
+
+        final String[] messages = new String[] {
+                "Failed password for invalid user admin from 192.0.2.1 port 22 ssh2",
+                "Failed publickey for root from 192.0.2.1 port 22 ssh2",
+                "Authentication refused: bad ownership or modes for directory /root",
+                "Out of memory: Killed process 1234 (java) total-vm:1024kB",
+                "New http connection for user admin, source 192.0.2.1 destination 192.0.2.2 ACCEPTED",
+                "gi1/0/1 of instance 0: STP status Forwarding",
+                "my DoubleSecret password",
+                "Line protocol on Interface GigabitEthernet0/1, changed state to down",
+                "color", "colour", "aaabbbccc", "abc", "y", "xy",
+                "eth0[12]: link up",
+                "port  12 is down",
+                "CASE INSENSITIVE",
+                "warning: disk full",
+                "sshd: Cannot bind any address.",
+                "TESTHIDING something",
+                "",
+        };
+
+        final MatchPrefilter prefilter = new MatchPrefilter(rules, Function.identity());
+        for (String message : messages) {
+            final BitSet candidates = prefilter.getCandidates(message);
+            for (int i = 0; i < rules.size(); i++) {
+                final Match rule = rules.get(i);
+                final boolean matches = "substr".equals(rule.getType()) ? message.contains(rule.getExpression())
+                        : Pattern.compile(rule.getExpression(), Pattern.MULTILINE).matcher(message).find();
+                if (matches) {
+                    assertTrue("'" + rule.getExpression() + "' matches '" + message + "' but is not a candidate", candidates.get(i));
+                }
+            }
+        }
+    }
+
+    private static Match match(String type, String expression) {
+        final Match match = new Match();
+        match.setType(type);
+        match.setExpression(expression);
+        return match;
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.opennms.core.utils.BinaryCodec;
+import org.opennms.netmgt.config.SyslogdConfig;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.syslogd.api.SyslogMessageDTO;
+import org.opennms.netmgt.syslogd.api.SyslogMessageLogDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the XML encoding of the syslog message logs sent from the Minions with the binary encoding.
+ *
+ * Measures the number of messages per second marshalled by the producer and unmarshalled by the consumer, in batches
+ * of {@value #BATCH_SIZE} messages. The size of an encoded message on the wire is printed during setup.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.opennms.netmgt.syslogd.SyslogSinkEncodingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SyslogSinkEncodingBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"XML", "BINARY"})
+    public BinaryCodec.Encoding encoding;
+
+    private SyslogSinkModule module;
+
+    private SyslogMessageLogDTO log;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.module = new SyslogSinkModule(Mockito.mock(SyslogdConfig.class), Mockito.mock(DistPollerDao.class));
+        this.module.setEncoding(this.encoding);
+
+        this.log = new SyslogMessageLogDTO("MINION", "00000000-0000-0000-0000-000000000000",
+                new InetSocketAddress(InetAddress.getByName("192.0.2.1"), 514));
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final String message = "<189>" + i + ": Dec  7 12:02:06.123: %LINEPROTO-5-UPDOWN: Line protocol on Interface GigabitEthernet0/" + i + ", changed state to down";
+            this.log.getMessages().add(new SyslogMessageDTO(ByteBuffer.wrap(message.getBytes(StandardCharsets.US_ASCII))));
+        }
+
+        this.bytes = this.module.marshal(this.log);
+        System.out.printf("%n%s: %.1f bytes/message%n", this.encoding, (double) this.bytes.length / BATCH_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public byte[] marshal() {
+        return this.module.marshal(this.log);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public SyslogMessageLogDTO unmarshal() {
+        return this.module.unmarshal(this.bytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SyslogSinkEncodingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
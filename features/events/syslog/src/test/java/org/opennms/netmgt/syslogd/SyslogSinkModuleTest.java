@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.opennms.core.ipc.sink.xml.AbstractBinarySinkModule;
+import org.opennms.core.utils.BinaryCodec;
+import org.opennms.netmgt.config.SyslogdConfig;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.syslogd.api.SyslogMessageDTO;
+import org.opennms.netmgt.syslogd.api.SyslogMessageLogDTO;
+
+public class SyslogSinkModuleTest {
+
+    private final SyslogSinkModule m_module = new SyslogSinkModule(Mockito.mock(SyslogdConfig.class), Mockito.mock(DistPollerDao.class));
+
+    @Test
+    public void testBinaryEncoding() throws Exception {
+        final SyslogMessageLogDTO log = new SyslogMessageLogDTO("MINION", "00000000-0000-0000-0000-000000000000",
+                new InetSocketAddress(InetAddress.getByName("192.0.2.1"), 514));
+        log.getMessages().add(message("<31>main: 2010-08-19 localhost foo0: load test 0 on tty1"));
+        log.getMessages().add(message("<173>Dec  7 12:02:06 10.13.110.116 mgmtd[8326]: [mgmtd.NOTICE]: Configuration saved"));
+
+        m_module.setEncoding(BinaryCodec.Encoding.BINARY);
+        final byte[] binary = m_module.marshal(log);
+        assertTrue(AbstractBinarySinkModule.isBinary(binary));
+        assertEquals(log, m_module.unmarshal(binary));
+        // marshalling leaves the buffers of the messages untouched
+        assertEquals(log, m_module.unmarshal(m_module.marshal(log)));
+
+        // the messages of producers which still send XML are understood
+        m_module.setEncoding(BinaryCodec.Encoding.XML);
+        final byte[] xml = m_module.marshal(log);
+        assertFalse(AbstractBinarySinkModule.isBinary(xml));
+        assertEquals(log, m_module.unmarshal(xml));
+        assertTrue(binary.length < xml.length);
+    }
+
+    @Test
+    public void testEncodingDefaultsToXml() {
+        assertEquals(BinaryCodec.Encoding.XML, m_module.getEncoding());
+    }
+
+    private static SyslogMessageDTO message(String message) {
+        final SyslogMessageDTO dto = new SyslogMessageDTO(ByteBuffer.wrap(message.getBytes(StandardCharsets.US_ASCII)));
+        dto.setTimestamp(new Date(1500000000000L));
+        return dto;
+    }
+}
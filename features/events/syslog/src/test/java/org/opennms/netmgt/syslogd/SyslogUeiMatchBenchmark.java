@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.opennms.core.test.ConfigurationTestUtils;
+import org.opennms.netmgt.config.SyslogdConfigFactory;
+import org.opennms.netmgt.config.syslogd.Match;
+import org.opennms.netmgt.config.syslogd.UeiMatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares evaluating the <code>ueiMatch</code> rules one after the other with evaluating only the candidates
+ * returned by the {@link MatchPrefilter}, as {@link ConvertToEvent} does.
+ *
+ * Measures the number of messages per second for which the first matching rule is found, over a corpus of
+ * {@value #CORPUS_SIZE} messages. The average number of rules evaluated per message is printed during setup.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.opennms.netmgt.syslogd.SyslogUeiMatchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SyslogUeiMatchBenchmark {
+
+    private static final int CORPUS_SIZE = 1000;
+
+    private static final String[] MESSAGES = new String[] {
+            "Failed password for invalid user admin from 192.0.2.%d port 22 ssh2",
+            "Accepted publickey for root from 192.0.2.%d port 51234 ssh2",
+            "Out of memory: Killed process %d (java) total-vm:1024kB, anon-rss:512kB, file-rss:0kB",
+            "Line protocol on Interface GigabitEthernet0/%d, changed state to down",
+            "list in110 denied tcp 192.168.10.100(63923) -> 192.168.11.%d(1521), 1 packet",
+            "connect from unknown[192.0.2.%d]",
+            "pam_unix(cron:session): session opened for user root by (uid=%d)",
+            "Interface Gi1/0/%d changed state to up",
+    };
+
+    @Param({"/etc/syslogd-loadtest-configuration.xml", "/etc/syslogd-configuration.xml"})
+    public String configuration;
+
+    @Param({"SEQUENTIAL", "PREFILTERED"})
+    public String matching;
+
+    private List<Match> rules;
+
+    private Pattern[] patterns;
+
+    private MatchPrefilter prefilter;
+
+    private String[] corpus;
+
+    @Setup
+    public void setUp() throws Exception {
+        final SyslogdConfigFactory config;
+        try (InputStream stream = ConfigurationTestUtils.getInputStreamForResource(this, this.configuration)) {
+            config = new SyslogdConfigFactory(stream);
+        }
+        this.rules = new ArrayList<>();
+        for (UeiMatch uei : config.getUeiList()) {
+            this.rules.add(uei.getMatch());
+        }
+        this.patterns = new Pattern[this.rules.size()];
+        for (int i = 0; i < this.rules.size(); i++) {
+            if (this.rules.get(i).getType().startsWith("regex")) {
+                this.patterns[i] = Pattern.compile(this.rules.get(i).getExpression(), Pattern.MULTILINE);
+            }
+        }
+        this.prefilter = new MatchPrefilter(this.rules, m -> m);
+
+        // a third of the messages are meant for the load test rules, some of them matching none
+        final Random random = new Random(42);
+        this.corpus = new String[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            if (i % 3 == 0) {
+                final int n = random.nextInt(6000);
+                this.corpus[i] = String.format("foo%d: load test %d on tty%d", n, n, random.nextInt(8));
+            } else {
+                this.corpus[i] = String.format(MESSAGES[random.nextInt(MESSAGES.length)], random.nextInt(255));
+            }
+        }
+
+        long evaluated = 0;
+        for (String message : this.corpus) {
+            evaluated += "PREFILTERED".equals(this.matching) ? this.prefilter.getCandidates(message).cardinality() : this.rules.size();
+        }
+        System.out.printf("%n%s %s: %d rules, %.1f rules evaluated/message%n", this.configuration, this.matching,
+                this.rules.size(), (double) evaluated / CORPUS_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public int match() {
+        int matched = 0;
+        if ("PREFILTERED".equals(this.matching)) {
+            for (String message : this.corpus) {
+                final BitSet candidates = this.prefilter.getCandidates(message);
+                for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                    if (matches(i, message)) {
+                        matched += i;
+                        break;
+                    }
+                }
+            }
+        } else {
+            for (String message : this.corpus) {
+                for (int i = 0; i < this.rules.size(); i++) {
+                    if (matches(i, message)) {
+                        matched += i;
+                        break;
+                    }
+                }
+            }
+        }
+        return matched;
+    }
+
+    private boolean matches(int rule, String message) {
+        if (this.patterns[rule] != null) {
+            return this.patterns[rule].matcher(message).find();
+        }
+        return "substr".equals(this.rules.get(rule).getType()) && message.contains(this.rules.get(rule).getExpression());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SyslogUeiMatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
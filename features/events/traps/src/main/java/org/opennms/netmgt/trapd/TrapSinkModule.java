@@ -28,13 +28,32 @@
 
 package org.opennms.netmgt.trapd;
 
+import static org.opennms.core.utils.BinaryCodec.readBytes;
+import static org.opennms.core.utils.BinaryCodec.readInetAddress;
+import static org.opennms.core.utils.BinaryCodec.readOid;
+import static org.opennms.core.utils.BinaryCodec.readString;
+import static org.opennms.core.utils.BinaryCodec.readVarInt;
+import static org.opennms.core.utils.BinaryCodec.writeBytes;
+import static org.opennms.core.utils.BinaryCodec.writeInetAddress;
+import static org.opennms.core.utils.BinaryCodec.writeOid;
+import static org.opennms.core.utils.BinaryCodec.writeString;
+import static org.opennms.core.utils.BinaryCodec.writeVarInt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Objects;
 
 import org.opennms.core.ipc.sink.api.AggregationPolicy;
 import org.opennms.core.ipc.sink.api.AsyncPolicy;
-import org.opennms.core.ipc.sink.xml.AbstractXmlSinkModule;
+import org.opennms.core.ipc.sink.xml.AbstractBinarySinkModule;
 import org.opennms.netmgt.config.TrapdConfig;
 import org.opennms.netmgt.model.OnmsDistPoller;
+import org.opennms.netmgt.snmp.SnmpInstId;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpUtils;
+import org.opennms.netmgt.snmp.SnmpValue;
 import org.opennms.netmgt.snmp.TrapInformation;
 import org.opennms.netmgt.snmp.snmp4j.Snmp4JStrategy;
 import org.opennms.netmgt.snmp.snmp4j.Snmp4JTrapNotifier;
@@ -43,7 +62,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snmp4j.PDU;
 
-public class TrapSinkModule extends AbstractXmlSinkModule<TrapInformationWrapper, TrapLogDTO> {
+public class TrapSinkModule extends AbstractBinarySinkModule<TrapInformationWrapper, TrapLogDTO> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TrapSinkModule.class);
 
@@ -132,6 +151,80 @@ public class TrapSinkModule extends AbstractXmlSinkModule<TrapInformationWrapper
         };
     }
 
+    @Override
+    protected void writeMessage(TrapLogDTO log, DataOutput out) throws IOException {
+        writeString(out, log.getSystemId());
+        writeString(out, log.getLocation());
+        writeInetAddress(out, log.getTrapAddress());
+        writeVarInt(out, log.getMessages().size());
+        for (TrapDTO trap : log.getMessages()) {
+            writeInetAddress(out, trap.getAgentAddress());
+            writeString(out, trap.getCommunity());
+            writeString(out, trap.getVersion());
+            out.writeLong(trap.getTimestamp());
+            writeVarInt(out, trap.getPduLength());
+            out.writeLong(trap.getCreationTime());
+            writeBytes(out, trap.getRawMessage());
+            final TrapIdentityDTO identity = trap.getTrapIdentity();
+            out.writeBoolean(identity != null);
+            if (identity != null) {
+                out.writeInt(identity.getGeneric());
+                out.writeInt(identity.getSpecific());
+                writeString(out, identity.getEnterpriseId());
+            }
+            writeVarInt(out, trap.getResults().size());
+            for (SnmpResult result : trap.getResults()) {
+                writeOid(out, result.getBase().getIds());
+                writeOid(out, result.getInstance() == null ? null : result.getInstance().getIds());
+                final SnmpValue value = result.getValue();
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    writeVarInt(out, value.getType());
+                    writeBytes(out, value.getBytes());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected TrapLogDTO readMessage(DataInput in) throws IOException {
+        final TrapLogDTO log = new TrapLogDTO();
+        log.setSystemId(readString(in));
+        log.setLocation(readString(in));
+        log.setTrapAddress(readInetAddress(in));
+        final int count = readVarInt(in);
+        for (int i = 0; i < count; i++) {
+            final TrapDTO trap = new TrapDTO();
+            trap.setAgentAddress(readInetAddress(in));
+            trap.setCommunity(readString(in));
+            trap.setVersion(readString(in));
+            trap.setTimestamp(in.readLong());
+            trap.setPduLength(readVarInt(in));
+            trap.setCreationTime(in.readLong());
+            trap.setRawMessage(readBytes(in));
+            if (in.readBoolean()) {
+                final TrapIdentityDTO identity = new TrapIdentityDTO();
+                identity.setGeneric(in.readInt());
+                identity.setSpecific(in.readInt());
+                identity.setEnterpriseId(readString(in));
+                trap.setTrapIdentity(identity);
+            }
+            final int results = readVarInt(in);
+            for (int j = 0; j < results; j++) {
+                final SnmpObjId base = SnmpObjId.get(readOid(in));
+                final int[] instance = readOid(in);
+                SnmpValue value = null;
+                if (in.readBoolean()) {
+                    final int type = readVarInt(in);
+                    value = SnmpUtils.getValueFactory().getValue(type, readBytes(in));
+                }
+                trap.getResults().add(new SnmpResult(base, instance == null ? null : new SnmpInstId(instance), value));
+            }
+            log.addMessage(trap);
+        }
+        return log;
+    }
+
     /**
      * Converts the {@link TrapInformation} to a raw message.
      * This is only supported for Snmp4J {@link TrapInformation} implementations.
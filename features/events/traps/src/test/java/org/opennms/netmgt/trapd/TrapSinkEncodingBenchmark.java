@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.trapd;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.opennms.core.utils.BinaryCodec;
+import org.opennms.netmgt.model.OnmsDistPoller;
+import org.opennms.netmgt.snmp.SnmpInstId;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpUtils;
+import org.opennms.netmgt.snmp.SnmpValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the XML encoding of the trap logs sent from the Minions with the binary encoding.
+ *
+ * Measures the number of traps per second marshalled by the producer and unmarshalled by the consumer, in batches
+ * of {@value #BATCH_SIZE} traps. The size of an encoded trap on the wire is printed during setup.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.opennms.netmgt.trapd.TrapSinkEncodingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TrapSinkEncodingBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"XML", "BINARY"})
+    public BinaryCodec.Encoding encoding;
+
+    private TrapSinkModule module;
+
+    private TrapLogDTO log;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.module = new TrapSinkModule(new TrapdConfigBean(), Mockito.mock(OnmsDistPoller.class));
+        this.module.setEncoding(this.encoding);
+
+        final SnmpValueFactory values = SnmpUtils.getValueFactory();
+        this.log = new TrapLogDTO("00000000-0000-0000-0000-000000000000", "MINION", InetAddress.getByName("192.0.2.1"));
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final TrapDTO trap = new TrapDTO();
+            trap.setAgentAddress(InetAddress.getByName("192.0.2.1"));
+            trap.setCommunity("public");
+            trap.setVersion("v2");
+            trap.setTimestamp(4200 + i);
+            trap.setPduLength(5);
+            trap.setCreationTime(1500000000000L + i);
+            final TrapIdentityDTO identity = new TrapIdentityDTO();
+            identity.setGeneric(6);
+            identity.setSpecific(2);
+            identity.setEnterpriseId(".1.3.6.1.4.1.9.9.41.2");
+            trap.setTrapIdentity(identity);
+            trap.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.2.1.1.3"), new SnmpInstId(0), values.getTimeTicks(4200 + i)));
+            trap.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.6.3.1.1.4.1"), new SnmpInstId(0), values.getObjectId(SnmpObjId.get(".1.3.6.1.4.1.9.9.41.2.0.1"))));
+            trap.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.4.1.9.9.41.1.2.3.1.2"), new SnmpInstId(i), values.getOctetString("LINEPROTO".getBytes(StandardCharsets.US_ASCII))));
+            trap.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.4.1.9.9.41.1.2.3.1.3"), new SnmpInstId(i), values.getInt32(6)));
+            trap.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.4.1.9.9.41.1.2.3.1.5"), new SnmpInstId(i),
+                    values.getOctetString(("Line protocol on Interface GigabitEthernet0/" + i + ", changed state to down").getBytes(StandardCharsets.US_ASCII))));
+            this.log.addMessage(trap);
+        }
+
+        this.bytes = this.module.marshal(this.log);
+        System.out.printf("%n%s: %.1f bytes/trap%n", this.encoding, (double) this.bytes.length / BATCH_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public byte[] marshal() {
+        return this.module.marshal(this.log);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public TrapLogDTO unmarshal() {
+        return this.module.unmarshal(this.bytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TrapSinkEncodingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
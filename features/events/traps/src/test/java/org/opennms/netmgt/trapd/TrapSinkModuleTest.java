@@ -28,13 +28,22 @@
 
 package org.opennms.netmgt.trapd;
 
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.opennms.core.ipc.sink.api.Message;
 import org.opennms.core.ipc.sink.api.SinkModule;
+import org.opennms.core.ipc.sink.xml.AbstractBinarySinkModule;
+import org.opennms.core.utils.BinaryCodec;
 import org.opennms.netmgt.config.TrapdConfig;
 import org.opennms.netmgt.model.OnmsDistPoller;
+import org.opennms.netmgt.snmp.SnmpInstId;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpUtils;
 
 public class TrapSinkModuleTest {
 
@@ -57,4 +66,55 @@ public class TrapSinkModuleTest {
         Assert.assertNotEquals(module, mockModule);
         Assert.assertNotEquals(module.hashCode(), mockModule.hashCode());
     }
+
+    @Test
+    public void testBinaryEncoding() throws Exception {
+        final TrapSinkModule module = new TrapSinkModule(new TrapdConfigBean(), Mockito.mock(OnmsDistPoller.class));
+
+        final TrapLogDTO log = new TrapLogDTO("00000000-0000-0000-0000-000000000000", "MINION", InetAddress.getByName("192.0.2.1"));
+        final TrapDTO trap = new TrapDTO();
+        trap.setAgentAddress(InetAddress.getByName("2001:db8::1"));
+        trap.setCommunity("public");
+        trap.setVersion("v2");
+        trap.setTimestamp(5000);
+        trap.setPduLength(2);
+        trap.setCreationTime(1500000000000L);
+        final TrapIdentityDTO identity = new TrapIdentityDTO();
+        identity.setGeneric(6);
+        identity.setSpecific(1);
+        identity.setEnterpriseId(".1.3.6.1.4.1.5813");
+        trap.setTrapIdentity(identity);
+        trap.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.2.1.1.5"), new SnmpInstId(0),
+                SnmpUtils.getValueFactory().getOctetString("mockhost".getBytes(StandardCharsets.UTF_8))));
+        trap.getResults().add(new SnmpResult(SnmpObjId.get(".1.3.6.1.2.1.1.3.0"), null,
+                SnmpUtils.getValueFactory().getTimeTicks(4200)));
+        log.addMessage(trap);
+        log.addMessage(new TrapDTO());
+
+        module.setEncoding(BinaryCodec.Encoding.BINARY);
+        final byte[] binary = module.marshal(log);
+        Assert.assertTrue(AbstractBinarySinkModule.isBinary(binary));
+        Assert.assertEquals(log, module.unmarshal(binary));
+
+        // the messages of producers which still send XML are understood
+        module.setEncoding(BinaryCodec.Encoding.XML);
+        final byte[] xml = module.marshal(log);
+        Assert.assertFalse(AbstractBinarySinkModule.isBinary(xml));
+        Assert.assertEquals(log, module.unmarshal(xml));
+        Assert.assertTrue(binary.length < xml.length);
+    }
+
+    @Test
+    public void testBinaryEncodingOfRawMessages() throws Exception {
+        final TrapSinkModule module = new TrapSinkModule(new TrapdConfigBean(), Mockito.mock(OnmsDistPoller.class));
+        module.setEncoding(BinaryCodec.Encoding.BINARY);
+
+        final TrapLogDTO log = new TrapLogDTO("00000000-0000-0000-0000-000000000000", "MINION", InetAddress.getByName("192.0.2.1"));
+        final TrapDTO trap = new TrapDTO();
+        trap.setRawMessage(new byte[] { 0x30, 0x29, 0x02, 0x01, 0x01 });
+        log.addMessage(trap);
+
+        final TrapLogDTO decoded = module.unmarshal(module.marshal(log));
+        Assert.assertArrayEquals(trap.getRawMessage(), decoded.getMessages().get(0).getRawMessage());
+    }
 }
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.opennms.netmgt.flows.classification.ClassificationEngine;
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
+import org.opennms.netmgt.flows.classification.ClassificationRuleProvider;
+import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.internal.decision.DecisionTree;
+import org.opennms.netmgt.flows.classification.persistence.api.Rule;
+import org.opennms.netmgt.flows.classification.persistence.api.RulePriorityComparator;
+
+/**
+ * Alternative to the {@link DefaultClassificationEngine}, which compiles all rules into a {@link DecisionTree}
+ * (protocol -> port ranges -> pre-compiled address matchers) instead of keeping a list of classifiers for each port.
+ */
+public class CompiledClassificationEngine implements ClassificationEngine {
+
+    private final ClassificationRuleProvider ruleProvider;
+    private final FilterService filterService;
+    // Replaced as a whole on reload, so classification is never blocked while reloading
+    private volatile DecisionTree decisionTree;
+
+    public CompiledClassificationEngine(ClassificationRuleProvider ruleProvider, FilterService filterService) {
+        this(ruleProvider, filterService, true);
+    }
+
+    public CompiledClassificationEngine(ClassificationRuleProvider ruleProvider, FilterService filterService, boolean initialize) {
+        this.ruleProvider = Objects.requireNonNull(ruleProvider);
+        this.filterService = Objects.requireNonNull(filterService);
+        this.decisionTree = new DecisionTree(new ArrayList<>(), filterService);
+        if (initialize) {
+            this.reload();
+        }
+    }
+
+    @Override
+    public void reload() {
+        // Sort rules by priority, the position within the tree is derived from it
+        final List<Rule> rules = new ArrayList<>(ruleProvider.getRules());
+        rules.sort(new RulePriorityComparator());
+
+        decisionTree = new DecisionTree(rules, filterService);
+    }
+
+    @Override
+    public String classify(ClassificationRequest classificationRequest) {
+        return decisionTree.classify(classificationRequest);
+    }
+}
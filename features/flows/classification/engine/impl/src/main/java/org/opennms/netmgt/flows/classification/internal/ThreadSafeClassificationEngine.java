@@ -29,15 +29,17 @@
 package org.opennms.netmgt.flows.classification.internal;
 
 import java.util.Objects;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.opennms.netmgt.flows.classification.ClassificationEngine;
 import org.opennms.netmgt.flows.classification.ClassificationRequest;
 
+// The engines build their rule index off to the side and swap it atomically,
+// so classification does not need to be blocked while reloading. Only reloads are serialized.
 public class ThreadSafeClassificationEngine implements ClassificationEngine {
 
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock reloadLock = new ReentrantLock();
 
     private final ClassificationEngine delegate;
 
@@ -47,21 +49,16 @@ public class ThreadSafeClassificationEngine implements ClassificationEngine {
 
     @Override
     public String classify(ClassificationRequest classificationRequest) {
-        lock.readLock().lock();
-        try {
-            return delegate.classify(classificationRequest);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return delegate.classify(classificationRequest);
     }
 
     @Override
     public void reload() {
-        lock.writeLock().lock();
+        reloadLock.lock();
         try {
             delegate.reload();
         } finally {
-            lock.writeLock().unlock();
+            reloadLock.unlock();
         }
     }
 }
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.decision;
+
+import java.util.Objects;
+
+import org.opennms.core.utils.IPLike;
+import org.opennms.netmgt.flows.classification.internal.value.StringValue;
+
+/**
+ * Pre-compiled version of the address matching performed by the {@link org.opennms.netmgt.flows.classification.internal.matcher.IpMatcher}.
+ *
+ * IPv4 IPLIKE expressions are compiled into a bit set per octet, so matching an address does not require
+ * splitting and parsing the expression for each request. All other expressions are delegated to {@link IPLike}.
+ */
+public abstract class AddressMatcher {
+
+    public abstract boolean matches(String address);
+
+    /**
+     * Compiles the given address definition.
+     *
+     * @param input The address definition of a rule.
+     * @return The matcher or null if the definition matches any address.
+     */
+    public static AddressMatcher compile(String input) {
+        final StringValue value = new StringValue(input);
+        if (value.isNullOrEmpty() || value.isWildcard()) {
+            return null;
+        }
+        if (value.hasWildcard()) {
+            final IPv4Matcher ipv4Matcher = IPv4Matcher.parse(value.getValue());
+            if (ipv4Matcher != null) {
+                return ipv4Matcher;
+            }
+            return new IPLikeMatcher(value.getValue());
+        }
+        return new ExactMatcher(value.getValue());
+    }
+
+    private static class ExactMatcher extends AddressMatcher {
+        private final String address;
+
+        private ExactMatcher(String address) {
+            this.address = Objects.requireNonNull(address);
+        }
+
+        @Override
+        public boolean matches(String address) {
+            return this.address.equals(address);
+        }
+    }
+
+    private static class IPLikeMatcher extends AddressMatcher {
+        private final String expression;
+
+        private IPLikeMatcher(String expression) {
+            this.expression = Objects.requireNonNull(expression);
+        }
+
+        @Override
+        public boolean matches(String address) {
+            return IPLike.matches(address, expression);
+        }
+    }
+
+    private static class IPv4Matcher extends AddressMatcher {
+        // 4 octets, each a 256 bit set
+        private final long[] octets = new long[16];
+        private final String expression;
+
+        private IPv4Matcher(String expression) {
+            this.expression = expression;
+        }
+
+        private static IPv4Matcher parse(String expression) {
+            if (expression.indexOf(':') != -1 || expression.indexOf('%') != -1) {
+                return null;
+            }
+            final String[] fields = expression.split("\\.", 0);
+            if (fields.length != 4) {
+                return null;
+            }
+            final IPv4Matcher matcher = new IPv4Matcher(expression);
+            for (int octet=0; octet<4; octet++) {
+                for (String element : fields[octet].split(",", 0)) {
+                    if (!matcher.addElement(octet, element)) {
+                        return null;
+                    }
+                }
+            }
+            return matcher;
+        }
+
+        private boolean addElement(int octet, String element) {
+            if (element.isEmpty() || element.charAt(0) == '-') {
+                return false;
+            }
+            int start;
+            int end;
+            try {
+                if ("*".equals(element)) {
+                    start = 0;
+                    end = 255;
+                } else if (IPLike.countChar('-', element) == 1) {
+                    final String[] range = element.split("-");
+                    start = Integer.parseInt(range[0]);
+                    end = Integer.parseInt(range[1]);
+                } else {
+                    start = end = Integer.parseInt(element);
+                }
+            } catch (NumberFormatException ex) {
+                // Let IPLike decide how to handle this
+                return false;
+            }
+            // Values outside of an octet can never match a valid address
+            start = Math.max(start, 0);
+            end = Math.min(end, 255);
+            for (int i=start; i<=end; i++) {
+                octets[octet * 4 + (i >>> 6)] |= 1L << (i & 63);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean matches(String address) {
+            int octet = 0;
+            int value = 0;
+            int digits = 0;
+            for (int i=0; i<address.length(); i++) {
+                final char c = address.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    digits++;
+                    if (digits > 3) {
+                        return IPLike.matches(address, expression);
+                    }
+                } else if (c == '.' && digits > 0 && octet < 3) {
+                    if (!isSet(octet, value)) {
+                        return false;
+                    }
+                    octet++;
+                    value = 0;
+                    digits = 0;
+                } else {
+                    // Not a plain IPv4 address, let IPLike decide
+                    return IPLike.matches(address, expression);
+                }
+            }
+            if (octet != 3 || digits == 0) {
+                return IPLike.matches(address, expression);
+            }
+            return isSet(octet, value);
+        }
+
+        private boolean isSet(int octet, int value) {
+            if (value > 255) {
+                return false;
+            }
+            return (octets[octet * 4 + (value >>> 6)] & (1L << (value & 63))) != 0;
+        }
+    }
+}
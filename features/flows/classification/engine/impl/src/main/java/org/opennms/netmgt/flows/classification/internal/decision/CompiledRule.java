@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.decision;
+
+import java.util.Objects;
+
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
+import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.persistence.api.RuleDefinition;
+
+/**
+ * A rule, as it is evaluated by the {@link DecisionTree}.
+ *
+ * Protocol and the port which is used to index the rule are already verified by the tree,
+ * so only the remaining conditions are evaluated here, cheapest first.
+ */
+public class CompiledRule {
+
+    private final int ordinal;
+    private final String name;
+    private final PortSet srcPorts;
+    private final AddressMatcher srcAddress;
+    private final AddressMatcher dstAddress;
+    private final String exporterFilter;
+
+    public CompiledRule(int ordinal, RuleDefinition rule) {
+        Objects.requireNonNull(rule);
+        this.ordinal = ordinal;
+        this.name = rule.getName();
+        // The src port must only be verified if the rule is indexed by its dst port
+        this.srcPorts = rule.hasSrcPortDefinition() && rule.hasDstPortDefinition() ? PortSet.of(rule.getSrcPort()) : null;
+        this.srcAddress = AddressMatcher.compile(rule.getSrcAddress());
+        this.dstAddress = AddressMatcher.compile(rule.getDstAddress());
+        this.exporterFilter = rule.hasExportFilterDefinition() ? rule.getExporterFilter() : null;
+    }
+
+    public boolean matches(ClassificationRequest request, FilterService filterService) {
+        if (srcPorts != null && !srcPorts.contains(request.getSrcPort())) {
+            return false;
+        }
+        if (srcAddress != null && !srcAddress.matches(request.getSrcAddress())) {
+            return false;
+        }
+        if (dstAddress != null && !dstAddress.matches(request.getDstAddress())) {
+            return false;
+        }
+        if (exporterFilter != null && !filterService.matches(request.getExporterAddress(), exporterFilter)) {
+            return false;
+        }
+        return true;
+    }
+
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.decision;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
+import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.internal.value.StringValue;
+import org.opennms.netmgt.flows.classification.persistence.api.Protocol;
+import org.opennms.netmgt.flows.classification.persistence.api.Protocols;
+import org.opennms.netmgt.flows.classification.persistence.api.RuleDefinition;
+
+/**
+ * Immutable decision structure built from a set of rules.
+ *
+ * The rules are first partitioned by protocol. Within each protocol the rules are indexed
+ * by their dst port (if defined), by their src port (if only the src port is defined) or
+ * kept in a list of rules applying to any port.
+ * On classification the (up to) three candidate lists are merged by rule ordinal, which
+ * reflects the rule priority, and the first matching rule wins.
+ */
+public class DecisionTree {
+
+    private static final int PROTOCOL_COUNT = 256;
+
+    private final CompiledRule[] rules;
+    private final Branch[] protocolBranches = new Branch[PROTOCOL_COUNT];
+    private final Branch anyProtocolBranch;
+    private final FilterService filterService;
+
+    /**
+     * Creates the tree.
+     *
+     * @param sortedRules The rules, already sorted by priority (highest priority first).
+     * @param filterService The filter service to verify exporter filters.
+     */
+    public DecisionTree(List<? extends RuleDefinition> sortedRules, FilterService filterService) {
+        Objects.requireNonNull(sortedRules);
+        this.filterService = Objects.requireNonNull(filterService);
+        this.rules = new CompiledRule[sortedRules.size()];
+
+        // Determine the protocols of each rule. Rules without protocol apply to all protocols
+        // and the ports each rule is indexed by
+        final List<Set<Integer>> ruleProtocols = new ArrayList<>(sortedRules.size());
+        final List<PortSet> rulePorts = new ArrayList<>(sortedRules.size());
+        final Set<Integer> definedProtocols = new LinkedHashSet<>();
+        for (int i=0; i<sortedRules.size(); i++) {
+            final RuleDefinition rule = sortedRules.get(i);
+            rules[i] = new CompiledRule(i, rule);
+            if (rule.hasDstPortDefinition()) {
+                rulePorts.add(PortSet.of(rule.getDstPort()));
+            } else if (rule.hasSrcPortDefinition()) {
+                rulePorts.add(PortSet.of(rule.getSrcPort()));
+            } else {
+                rulePorts.add(null);
+            }
+            final Set<Integer> protocols = getProtocols(rule);
+            ruleProtocols.add(protocols);
+            if (protocols != null) {
+                definedProtocols.addAll(protocols);
+            }
+        }
+
+        // Build a branch for each referenced protocol, all others share the branch of rules without protocol
+        this.anyProtocolBranch = buildBranch(sortedRules, ruleProtocols, rulePorts, null);
+        for (int i=0; i<PROTOCOL_COUNT; i++) {
+            protocolBranches[i] = anyProtocolBranch;
+        }
+        for (Integer protocol : definedProtocols) {
+            if (protocol >= 0 && protocol < PROTOCOL_COUNT) {
+                protocolBranches[protocol] = buildBranch(sortedRules, ruleProtocols, rulePorts, protocol);
+            }
+        }
+    }
+
+    public String classify(ClassificationRequest request) {
+        final Branch branch = getBranch(request.getProtocol());
+        final int[] dstCandidates = branch.dstPortIndex.lookup(request.getDstPort());
+        final int[] srcCandidates = branch.srcPortIndex.lookup(request.getSrcPort());
+        final int[] anyCandidates = branch.anyPortRules;
+
+        // Merge the candidates in order of their priority.
+        // A rule is only contained in one of the candidate lists, as it is either indexed by dst port,
+        // src port or not at all
+        int d = 0, s = 0, a = 0;
+        while (true) {
+            final int dstOrdinal = d < dstCandidates.length ? dstCandidates[d] : Integer.MAX_VALUE;
+            final int srcOrdinal = s < srcCandidates.length ? srcCandidates[s] : Integer.MAX_VALUE;
+            final int anyOrdinal = a < anyCandidates.length ? anyCandidates[a] : Integer.MAX_VALUE;
+            final int ordinal;
+            if (dstOrdinal <= srcOrdinal && dstOrdinal <= anyOrdinal) {
+                ordinal = dstOrdinal;
+                d++;
+            } else if (srcOrdinal <= anyOrdinal) {
+                ordinal = srcOrdinal;
+                s++;
+            } else {
+                ordinal = anyOrdinal;
+                a++;
+            }
+            if (ordinal == Integer.MAX_VALUE) {
+                // We return null instead of 'Undefined', see DefaultClassificationEngine
+                return null;
+            }
+            final CompiledRule rule = rules[ordinal];
+            if (rule.matches(request, filterService)) {
+                return rule.getName();
+            }
+        }
+    }
+
+    public int getRuleCount() {
+        return rules.length;
+    }
+
+    private Branch getBranch(Protocol protocol) {
+        if (protocol == null || protocol.getDecimal() < 0 || protocol.getDecimal() >= PROTOCOL_COUNT) {
+            return anyProtocolBranch;
+        }
+        return protocolBranches[protocol.getDecimal()];
+    }
+
+    private static Branch buildBranch(List<? extends RuleDefinition> sortedRules, List<Set<Integer>> ruleProtocols, List<PortSet> rulePorts, Integer protocol) {
+        final PortIndex.Builder dstPortIndex = new PortIndex.Builder();
+        final PortIndex.Builder srcPortIndex = new PortIndex.Builder();
+        final List<Integer> anyPortRules = new ArrayList<>();
+        for (int i=0; i<sortedRules.size(); i++) {
+            final Set<Integer> protocols = ruleProtocols.get(i);
+            // Rules with protocol only apply to the branch of that protocol
+            if (protocols != null && (protocol == null || !protocols.contains(protocol))) {
+                continue;
+            }
+            final RuleDefinition rule = sortedRules.get(i);
+            if (rule.hasDstPortDefinition()) {
+                dstPortIndex.add(rulePorts.get(i), i);
+            } else if (rule.hasSrcPortDefinition()) {
+                srcPortIndex.add(rulePorts.get(i), i);
+            } else {
+                anyPortRules.add(i);
+            }
+        }
+        return new Branch(dstPortIndex.build(), srcPortIndex.build(), anyPortRules.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    // Returns null if the rule applies to all protocols
+    private static Set<Integer> getProtocols(RuleDefinition rule) {
+        if (!rule.hasProtocolDefinition()) {
+            return null;
+        }
+        final Set<Integer> protocols = new LinkedHashSet<>();
+        for (StringValue value : new StringValue(rule.getProtocol()).splitBy(",")) {
+            final Protocol protocol = Protocols.getProtocol(value.getValue());
+            if (protocol != null) {
+                protocols.add(protocol.getDecimal());
+            }
+        }
+        return protocols;
+    }
+
+    private static class Branch {
+        private final PortIndex dstPortIndex;
+        private final PortIndex srcPortIndex;
+        private final int[] anyPortRules;
+
+        private Branch(PortIndex dstPortIndex, PortIndex srcPortIndex, int[] anyPortRules) {
+            this.dstPortIndex = Objects.requireNonNull(dstPortIndex);
+            this.srcPortIndex = Objects.requireNonNull(srcPortIndex);
+            this.anyPortRules = Objects.requireNonNull(anyPortRules);
+        }
+    }
+}
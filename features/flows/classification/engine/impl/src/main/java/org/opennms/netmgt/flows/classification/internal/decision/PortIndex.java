@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.decision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Maps a port to the ordinals of all rules whose port definition contains that port.
+ *
+ * Instead of keeping a list for each of the 65536 possible ports, the port space is split into segments
+ * at every range boundary of any indexed rule. All ports within one segment share the same (sorted) rule ordinals
+ * and identical segments share the same array, so the memory consumed is proportional to the number of distinct
+ * port ranges and not to the number of ports.
+ */
+public class PortIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    public static final PortIndex EMPTY_INDEX = new PortIndex(new int[0], new int[0][]);
+
+    // The first port of each segment
+    private final int[] boundaries;
+
+    // The rule ordinals for each segment, sorted ascending
+    private final int[][] segments;
+
+    private PortIndex(int[] boundaries, int[][] segments) {
+        this.boundaries = Objects.requireNonNull(boundaries);
+        this.segments = Objects.requireNonNull(segments);
+    }
+
+    public int[] lookup(int port) {
+        int index = Arrays.binarySearch(boundaries, port);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        if (index < 0) {
+            return EMPTY;
+        }
+        return segments[index];
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    public static class Builder {
+        private final List<PortSet> portSets = new ArrayList<>();
+        private final List<Integer> ordinals = new ArrayList<>();
+
+        public Builder add(PortSet portSet, int ordinal) {
+            portSets.add(Objects.requireNonNull(portSet));
+            ordinals.add(ordinal);
+            return this;
+        }
+
+        public PortIndex build() {
+            if (portSets.isEmpty()) {
+                return EMPTY_INDEX;
+            }
+
+            // Each range starts a new segment and ends one after its last port
+            final TreeSet<Integer> boundarySet = new TreeSet<>();
+            for (PortSet portSet : portSets) {
+                for (int i=0; i<portSet.getRangeCount(); i++) {
+                    boundarySet.add(portSet.getStart(i));
+                    boundarySet.add(portSet.getEnd(i) + 1);
+                }
+            }
+            final int[] boundaries = boundarySet.stream().mapToInt(Integer::intValue).toArray();
+
+            // Assign the ordinals to all segments covered by each range
+            final List<List<Integer>> segmentOrdinals = new ArrayList<>(boundaries.length);
+            for (int i=0; i<boundaries.length; i++) {
+                segmentOrdinals.add(new ArrayList<>());
+            }
+            for (int i=0; i<portSets.size(); i++) {
+                final PortSet portSet = portSets.get(i);
+                final int ordinal = ordinals.get(i);
+                for (int r=0; r<portSet.getRangeCount(); r++) {
+                    final int first = Arrays.binarySearch(boundaries, portSet.getStart(r));
+                    final int last = Arrays.binarySearch(boundaries, portSet.getEnd(r) + 1);
+                    for (int s=first; s<last; s++) {
+                        segmentOrdinals.get(s).add(ordinal);
+                    }
+                }
+            }
+
+            // Sort and deduplicate the segments
+            final Map<List<Integer>, int[]> uniqueSegments = new HashMap<>();
+            final int[][] segments = new int[boundaries.length][];
+            for (int i=0; i<boundaries.length; i++) {
+                final List<Integer> ordinalList = segmentOrdinals.get(i);
+                ordinalList.sort(Integer::compare);
+                segments[i] = uniqueSegments.computeIfAbsent(ordinalList,
+                        key -> key.isEmpty() ? EMPTY : key.stream().mapToInt(Integer::intValue).toArray());
+            }
+            return new PortIndex(boundaries, segments);
+        }
+    }
+}
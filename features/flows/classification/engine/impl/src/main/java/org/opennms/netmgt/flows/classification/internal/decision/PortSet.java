@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.decision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import org.opennms.netmgt.flows.classification.internal.value.IntegerValue;
+import org.opennms.netmgt.flows.classification.internal.value.RangedValue;
+import org.opennms.netmgt.flows.classification.internal.value.StringValue;
+
+/**
+ * Compact representation of a set of ports as sorted, non-overlapping and inclusive ranges.
+ * The ranges are stored as pairs in a single primitive array to avoid boxing while matching.
+ */
+public class PortSet {
+
+    // [start0, end0, start1, end1, ...]
+    private final int[] ranges;
+
+    private PortSet(int[] ranges) {
+        this.ranges = Objects.requireNonNull(ranges);
+    }
+
+    public static PortSet of(String ports) {
+        final StringValue portValue = new StringValue(ports);
+        if (portValue.hasWildcard()) {
+            throw new IllegalArgumentException("Wildcards not supported");
+        }
+
+        // Same semantics as PortValue, but without expanding the ranges to each individual port
+        final List<int[]> ranges = new ArrayList<>();
+        for (StringValue value : portValue.splitBy(",")) {
+            if (value.isRanged()) {
+                final RangedValue rangedValue = new RangedValue(value);
+                if (rangedValue.getStart() < rangedValue.getEnd()) {
+                    ranges.add(new int[]{rangedValue.getStart(), rangedValue.getEnd() - 1});
+                }
+            } else {
+                final int port = new IntegerValue(value).getValue();
+                ranges.add(new int[]{port, port});
+            }
+        }
+        return merge(ranges);
+    }
+
+    // Sorts the given ranges and merges overlapping or adjacent ones
+    private static PortSet merge(List<int[]> ranges) {
+        ranges.sort(Comparator.comparingInt(range -> range[0]));
+        final int[] merged = new int[ranges.size() * 2];
+        int count = 0;
+        for (int[] range : ranges) {
+            if (count > 0 && merged[count - 1] + 1 >= range[0]) {
+                // Extend the current range
+                merged[count - 1] = Math.max(merged[count - 1], range[1]);
+            } else {
+                merged[count++] = range[0];
+                merged[count++] = range[1];
+            }
+        }
+        return new PortSet(Arrays.copyOf(merged, count));
+    }
+
+    public boolean contains(int port) {
+        // Binary search over the start values of each range
+        int low = 0;
+        int high = ranges.length / 2 - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (ranges[mid * 2 + 1] < port) {
+                low = mid + 1;
+            } else if (ranges[mid * 2] > port) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return ranges.length == 0;
+    }
+
+    public int getRangeCount() {
+        return ranges.length / 2;
+    }
+
+    public int getStart(int rangeIndex) {
+        return ranges[rangeIndex * 2];
+    }
+
+    public int getEnd(int rangeIndex) {
+        return ranges[rangeIndex * 2 + 1];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final PortSet that = (PortSet) o;
+        return Arrays.equals(ranges, that.ranges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ranges);
+    }
+}
@@ -31,7 +31,7 @@ package org.opennms.netmgt.flows.classification.internal.matcher;
 import java.util.Objects;
 
 import org.opennms.netmgt.flows.classification.ClassificationRequest;
-import org.opennms.netmgt.flows.classification.internal.value.PortValue;
+import org.opennms.netmgt.flows.classification.internal.decision.PortSet;
 
 import com.google.common.base.Function;
 
@@ -39,15 +39,15 @@ class PortMatcher implements Matcher {
 
     // Extracts the value from the ClassificationRequest. Allows to easily distinguish between srcPort and dstPort
     private final Function<ClassificationRequest, Integer> valueExtractor;
-    private final PortValue value;
+    private final PortSet value;
 
     protected PortMatcher(String ports, Function<ClassificationRequest, Integer> valueExtractor) {
-        this.value = new PortValue(ports);
+        this.value = PortSet.of(ports);
         this.valueExtractor = Objects.requireNonNull(valueExtractor);
     }
 
     @Override
     public boolean matches(ClassificationRequest request) {
-        return this.value.getPorts().contains(valueExtractor.apply(request));
+        return this.value.contains(valueExtractor.apply(request));
     }
 }
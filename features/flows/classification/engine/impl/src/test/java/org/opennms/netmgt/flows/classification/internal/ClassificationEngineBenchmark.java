@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.flows.classification.ClassificationEngine;
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
+import org.opennms.netmgt.flows.classification.ClassificationRequestBuilder;
+import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.persistence.api.Group;
+import org.opennms.netmgt.flows.classification.persistence.api.GroupBuilder;
+import org.opennms.netmgt.flows.classification.persistence.api.Protocol;
+import org.opennms.netmgt.flows.classification.persistence.api.ProtocolType;
+import org.opennms.netmgt.flows.classification.persistence.api.Rule;
+import org.opennms.netmgt.flows.classification.persistence.api.RuleBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link DefaultClassificationEngine} with the {@link CompiledClassificationEngine}.
+ *
+ * The rule set resembles the pre-defined rules shipped with OpenNMS (several thousand dst port rules for tcp and/or udp)
+ * plus some user-defined rules with address and port range definitions.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.opennms.netmgt.flows.classification.internal.ClassificationEngineBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ClassificationEngineBenchmark {
+
+    private static final int REQUEST_COUNT = 4096;
+
+    @Param({"default", "compiled"})
+    public String engineType;
+
+    @Param({"6000"})
+    public int ruleCount;
+
+    private ClassificationEngine engine;
+
+    private ClassificationRequest[] requests;
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final List<Rule> rules = createRules(ruleCount, new Random(1));
+        if ("compiled".equals(engineType)) {
+            engine = new CompiledClassificationEngine(() -> rules, FilterService.NOOP);
+        } else {
+            engine = new DefaultClassificationEngine(() -> rules, FilterService.NOOP);
+        }
+        requests = createRequests(REQUEST_COUNT, new Random(2));
+    }
+
+    @Benchmark
+    public String classify() {
+        index = (index + 1) & (REQUEST_COUNT - 1);
+        return engine.classify(requests[index]);
+    }
+
+    private static List<Rule> createRules(int ruleCount, Random random) {
+        final Group systemGroup = new GroupBuilder().withName("pre-defined").withPriority(0).build();
+        final Group userGroup = new GroupBuilder().withName("user-defined").withPriority(10).build();
+        final String[] protocols = new String[]{"tcp,udp", "tcp", "udp"};
+        final List<Rule> rules = new ArrayList<>(ruleCount);
+
+        // Roughly 2% are user defined rules
+        final int userRuleCount = Math.max(1, ruleCount / 50);
+        for (int i=0; i<ruleCount - userRuleCount; i++) {
+            rules.add(new RuleBuilder()
+                    .withName("application-" + i)
+                    .withDstPort(random.nextInt(49152))
+                    .withProtocol(protocols[random.nextInt(protocols.length)])
+                    .withGroup(systemGroup)
+                    .withPosition(i)
+                    .build());
+        }
+        for (int i=0; i<userRuleCount; i++) {
+            final RuleBuilder builder = new RuleBuilder()
+                    .withName("user-" + i)
+                    .withGroup(userGroup)
+                    .withPosition(i);
+            switch (i % 3) {
+                case 0:
+                    builder.withDstAddress("10." + random.nextInt(256) + ".*.*");
+                    break;
+                case 1:
+                    final int start = random.nextInt(60000);
+                    builder.withDstPort(start + "-" + (start + random.nextInt(1000) + 1));
+                    builder.withProtocol("tcp");
+                    break;
+                default:
+                    builder.withSrcAddress("192.168." + random.nextInt(256) + ".1-100");
+                    builder.withDstPort(random.nextInt(1024));
+                    break;
+            }
+            rules.add(builder.build());
+        }
+        return rules;
+    }
+
+    private static ClassificationRequest[] createRequests(int count, Random random) {
+        final Protocol[] protocols = new Protocol[]{ProtocolType.TCP, ProtocolType.TCP, ProtocolType.UDP, ProtocolType.ICMP};
+        final ClassificationRequest[] requests = new ClassificationRequest[count];
+        for (int i=0; i<count; i++) {
+            requests[i] = new ClassificationRequestBuilder()
+                    .withLocation("Default")
+                    .withProtocol(protocols[random.nextInt(protocols.length)])
+                    .withSrcAddress("192.168." + random.nextInt(256) + "." + random.nextInt(256))
+                    .withSrcPort(1024 + random.nextInt(64511))
+                    .withDstAddress("10." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256))
+                    .withDstPort(random.nextBoolean() ? random.nextInt(1024) : random.nextInt(65536))
+                    .withExporterAddress("127.0.0.1")
+                    .build();
+        }
+        return requests;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ClassificationEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.opennms.netmgt.flows.classification.ClassificationEngine;
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
+import org.opennms.netmgt.flows.classification.ClassificationRequestBuilder;
+import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.exception.InvalidFilterException;
+import org.opennms.netmgt.flows.classification.internal.classifier.Classifier;
+import org.opennms.netmgt.flows.classification.internal.classifier.CombinedClassifier;
+import org.opennms.netmgt.flows.classification.persistence.api.Group;
+import org.opennms.netmgt.flows.classification.persistence.api.GroupBuilder;
+import org.opennms.netmgt.flows.classification.persistence.api.Protocol;
+import org.opennms.netmgt.flows.classification.persistence.api.ProtocolType;
+import org.opennms.netmgt.flows.classification.persistence.api.Rule;
+import org.opennms.netmgt.flows.classification.persistence.api.RuleBuilder;
+import org.opennms.netmgt.flows.classification.persistence.api.RulePriorityComparator;
+
+import com.google.common.collect.Lists;
+
+public class CompiledClassificationEngineTest {
+
+    @Test
+    public void verifyRuleEngineBasic() {
+        final ClassificationEngine engine = new CompiledClassificationEngine(() ->
+            Lists.newArrayList(
+                    new RuleBuilder().withName("rule1").withSrcPort(80).build(),
+                    new RuleBuilder().withName("rule2").withDstPort(443).build(),
+                    new RuleBuilder().withName("rule3").withSrcPort(8888).withDstPort(9999).build(),
+                    new RuleBuilder().withName("rule4").withSrcPort(8888).withDstPort(80).build(),
+                    new RuleBuilder().withName("rule5").build()
+            ), FilterService.NOOP);
+
+        assertEquals("rule2", engine.classify(new ClassificationRequestBuilder().withSrcPort(9999).withDstPort(443).build()));
+        assertEquals("rule3", engine.classify(new ClassificationRequestBuilder().withSrcPort(8888).withDstPort(9999).build()));
+        assertEquals("rule4", engine.classify(new ClassificationRequestBuilder().withSrcPort(8888).withDstPort(80).build()));
+        assertEquals("rule1", engine.classify(new ClassificationRequestBuilder().withSrcPort(80).withDstPort(1234).build()));
+        assertEquals("rule5", engine.classify(new ClassificationRequestBuilder().withSrcPort(1234).withDstPort(1234).build()));
+    }
+
+    @Test
+    public void verifyProtocolAndAddressRules() {
+        final ClassificationEngine engine = new CompiledClassificationEngine(() -> Lists.newArrayList(
+                new RuleBuilder().withName("HTTP").withDstPort(80).withProtocol("tcp").build(),
+                new RuleBuilder().withName("HTTP-UDP").withDstPort(80).withProtocol("udp").build(),
+                new RuleBuilder().withName("CUSTOM").withDstAddress("192.168.1-3.*").withDstPort(80).withProtocol("tcp,udp").build(),
+                new RuleBuilder().withName("EXACT").withDstAddress("10.0.0.1").build()
+        ), FilterService.NOOP);
+
+        assertEquals("HTTP", engine.classify(new ClassificationRequest("Default", 80, "192.168.4.1", ProtocolType.TCP)));
+        assertEquals("HTTP-UDP", engine.classify(new ClassificationRequest("Default", 80, "192.168.4.1", ProtocolType.UDP)));
+        assertEquals("CUSTOM", engine.classify(new ClassificationRequest("Default", 80, "192.168.2.1", ProtocolType.TCP)));
+        assertEquals("CUSTOM", engine.classify(new ClassificationRequest("Default", 80, "192.168.3.255", ProtocolType.UDP)));
+        assertEquals("EXACT", engine.classify(new ClassificationRequest("Default", 80, "10.0.0.1", ProtocolType.TCP)));
+        assertEquals("EXACT", engine.classify(new ClassificationRequest("Default", 1234, "10.0.0.1", ProtocolType.ICMP)));
+        assertEquals(null, engine.classify(new ClassificationRequest("Default", 80, "192.168.2.1", ProtocolType.ICMP)));
+        assertEquals("HTTP", engine.classify(new ClassificationRequest("Default", 80, "fe80:0000:0000:0000:0000:0000:0000:0001", ProtocolType.TCP)));
+    }
+
+    @Test
+    public void verifyExporterFilter() {
+        final FilterService filterService = new FilterService() {
+            @Override
+            public void validate(String filterExpression) throws InvalidFilterException {
+
+            }
+
+            @Override
+            public boolean matches(String address, String filterExpression) {
+                return "10.0.0.1".equals(address) && "categoryName == 'Routers'".equals(filterExpression);
+            }
+        };
+        final ClassificationEngine engine = new CompiledClassificationEngine(() -> Lists.newArrayList(
+                new RuleBuilder().withName("HTTP").withDstPort(80).build(),
+                new RuleBuilder().withName("HTTP-ROUTER").withDstPort(80).withExporterFilter("categoryName == 'Routers'").build()
+        ), filterService);
+
+        assertEquals("HTTP-ROUTER", engine.classify(new ClassificationRequestBuilder().withDstPort(80).withExporterAddress("10.0.0.1").build()));
+        assertEquals("HTTP", engine.classify(new ClassificationRequestBuilder().withDstPort(80).withExporterAddress("10.0.0.2").build()));
+    }
+
+    @Test
+    public void verifyGroupPriority() {
+        final ClassificationEngine engine = new CompiledClassificationEngine(() -> Lists.newArrayList(
+                new RuleBuilder().withName("SYSTEM").withDstAddress("10.0.0.1").withDstPort(80).withGroup(new GroupBuilder().withName("system").withPriority(0).build()).build(),
+                new RuleBuilder().withName("USER").withDstPort(80).withGroup(new GroupBuilder().withName("user").withPriority(10).build()).build()
+        ), FilterService.NOOP);
+
+        assertEquals("USER", engine.classify(new ClassificationRequest("Default", 80, "10.0.0.1", ProtocolType.TCP)));
+    }
+
+    @Test
+    public void verifyFirstMatchingRuleWins() {
+        final Random random = new Random(42);
+        final Group[] groups = new Group[] {
+                new GroupBuilder().withName("system").withPriority(0).build(),
+                new GroupBuilder().withName("user").withPriority(10).build()
+        };
+        final List<Rule> rules = new ArrayList<>();
+        for (int i=0; i<500; i++) {
+            final RuleBuilder builder = new RuleBuilder().withName("rule" + i);
+            switch (random.nextInt(4)) {
+                case 0: builder.withDstPort(randomPorts(random)); break;
+                case 1: builder.withSrcPort(randomPorts(random)); break;
+                case 2: builder.withSrcPort(randomPorts(random)).withDstPort(randomPorts(random)); break;
+                default: break;
+            }
+            if (random.nextInt(3) == 0) {
+                builder.withDstAddress("10.0." + random.nextInt(4) + ".*");
+            }
+            if (random.nextInt(5) == 0) {
+                builder.withSrcAddress("10.1." + random.nextInt(4) + "." + random.nextInt(4));
+            }
+            if (random.nextInt(2) == 0) {
+                builder.withProtocol(random.nextBoolean() ? "tcp" : "tcp,udp");
+            }
+            builder.withGroup(groups[random.nextInt(groups.length)]);
+            rules.add(builder.build());
+        }
+        final ClassificationEngine engine = new CompiledClassificationEngine(() -> rules, FilterService.NOOP);
+
+        // The expected result is the first matching rule, in order of priority
+        final List<Rule> sortedRules = new ArrayList<>(rules);
+        sortedRules.sort(new RulePriorityComparator());
+        final List<Classifier> classifiers = sortedRules.stream()
+                .map(rule -> new CombinedClassifier(rule, FilterService.NOOP))
+                .collect(Collectors.toList());
+
+        final Protocol[] protocols = new Protocol[]{ ProtocolType.TCP, ProtocolType.UDP, ProtocolType.ICMP };
+        for (int i=0; i<20000; i++) {
+            final ClassificationRequest request = new ClassificationRequestBuilder()
+                    .withLocation("Default")
+                    .withProtocol(protocols[random.nextInt(protocols.length)])
+                    .withSrcAddress("10.1." + random.nextInt(4) + "." + random.nextInt(4))
+                    .withSrcPort(random.nextInt(1200))
+                    .withDstAddress("10.0." + random.nextInt(8) + "." + random.nextInt(255))
+                    .withDstPort(random.nextInt(1200))
+                    .build();
+            final String expected = classifiers.stream()
+                    .map(classifier -> classifier.classify(request))
+                    .filter(name -> name != null)
+                    .findFirst().orElse(null);
+            assertEquals(expected, engine.classify(request));
+        }
+    }
+
+    @Test
+    public void verifyAllPortsToEnsureEngineIsProperlyInitialized() {
+        final ClassificationEngine classificationEngine = new CompiledClassificationEngine(() -> new ArrayList<>(), FilterService.NOOP);
+        for (int i=Rule.MIN_PORT_VALUE; i<Rule.MAX_PORT_VALUE; i++) {
+            assertEquals(null, classificationEngine.classify(new ClassificationRequest("Default", i, "127.0.0.1", ProtocolType.TCP)));
+        }
+    }
+
+    private static String randomPorts(Random random) {
+        final int start = random.nextInt(1000);
+        if (random.nextBoolean()) {
+            return Integer.toString(start);
+        }
+        return start + "-" + (start + random.nextInt(200) + 1) + "," + random.nextInt(1000);
+    }
+}
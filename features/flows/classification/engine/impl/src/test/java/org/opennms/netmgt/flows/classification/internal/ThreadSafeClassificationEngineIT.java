@@ -28,24 +28,32 @@
 
 package org.opennms.netmgt.flows.classification.internal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.hamcrest.Matchers;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 import org.opennms.netmgt.flows.classification.ClassificationEngine;
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
 import org.opennms.netmgt.flows.classification.ClassificationRuleProvider;
 import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.persistence.api.ProtocolType;
+import org.opennms.netmgt.flows.classification.persistence.api.RuleBuilder;
+
+import com.google.common.collect.Lists;
 
 public class ThreadSafeClassificationEngineIT {
 
@@ -97,4 +105,38 @@ public class ThreadSafeClassificationEngineIT {
         assertThat(executionTime, Matchers.greaterThanOrEqualTo(expectedExecutionTime));
     }
 
-}
\ No newline at end of file
+    // Classification must not be blocked while the rules are reloaded, it uses the previously loaded rules instead
+    @Test
+    public void verifyClassifyIsNotBlockedByReload() throws Exception {
+        final CountDownLatch reloadStarted = new CountDownLatch(1);
+        final CountDownLatch reloadReleased = new CountDownLatch(1);
+        final AtomicBoolean initialized = new AtomicBoolean(false);
+        final ClassificationRuleProvider classificationRuleProvider = () -> {
+            if (initialized.compareAndSet(false, true)) {
+                return Lists.newArrayList(new RuleBuilder().withName("http").withDstPort(80).build());
+            }
+            reloadStarted.countDown();
+            try {
+                reloadReleased.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Thread interrupted.", e);
+            }
+            return Lists.newArrayList(new RuleBuilder().withName("http-new").withDstPort(80).build());
+        };
+        final ClassificationEngine classificationEngine = new ThreadSafeClassificationEngine(
+                new DefaultClassificationEngine(classificationRuleProvider, FilterService.NOOP));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> future = executor.submit(() -> classificationEngine.reload());
+            reloadStarted.await();
+            assertEquals("http", classificationEngine.classify(new ClassificationRequest("Default", 80, "127.0.0.1", ProtocolType.TCP)));
+
+            reloadReleased.countDown();
+            future.get();
+            assertEquals("http-new", classificationEngine.classify(new ClassificationRequest("Default", 80, "127.0.0.1", ProtocolType.TCP)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
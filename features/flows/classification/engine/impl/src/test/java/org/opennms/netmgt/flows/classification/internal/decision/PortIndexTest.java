@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.decision;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Set;
+
+import org.junit.Test;
+import org.opennms.netmgt.flows.classification.internal.value.PortValue;
+
+public class PortIndexTest {
+
+    @Test
+    public void verifyPortSetBehavesLikePortValue() {
+        for (String ports : new String[]{"80", "80,443", "8000-9000,80,8080", "0-65536", "10-10", "20-30,25-41,41"}) {
+            final Set<Integer> expected = new PortValue(ports).getPorts();
+            final PortSet portSet = PortSet.of(ports);
+            for (int i=-1; i<=65536; i++) {
+                assertThat(ports + " -> " + i, portSet.contains(i), is(expected.contains(i)));
+            }
+        }
+        assertThat(PortSet.of("20-30,25-41,41").getRangeCount(), is(1));
+    }
+
+    @Test
+    public void verifyLookup() {
+        final PortIndex portIndex = new PortIndex.Builder()
+                .add(PortSet.of("80"), 2)
+                .add(PortSet.of("0-1024"), 1)
+                .add(PortSet.of("443,80"), 0)
+                .build();
+
+        assertThat(portIndex.lookup(80), is(new int[]{0, 1, 2}));
+        assertThat(portIndex.lookup(443), is(new int[]{0, 1}));
+        assertThat(portIndex.lookup(0), is(new int[]{1}));
+        assertThat(portIndex.lookup(1023), is(new int[]{1}));
+        assertThat(portIndex.lookup(1024), is(new int[0]));
+        assertThat(portIndex.lookup(65535), is(new int[0]));
+
+        // Identical segments share the same rule ordinals
+        assertThat(portIndex.lookup(0) == portIndex.lookup(81), is(true));
+    }
+}
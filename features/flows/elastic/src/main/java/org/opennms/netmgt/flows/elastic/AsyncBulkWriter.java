@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.plugins.elasticsearch.rest.bulk.BulkException;
+import org.opennms.plugins.elasticsearch.rest.bulk.FailedItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes documents to Elasticsearch in bulk, decoupled from the threads producing the documents.
+ *
+ * Documents are buffered in a bounded spool. A dispatcher collects the spooled documents into batches,
+ * which are flushed once they reach the current batch size or the flush interval elapsed, and executes
+ * up to a fixed number of bulk requests concurrently. The batch size adapts to the observed latency:
+ * it grows while requests complete within the target latency and is halved on slow or failed requests.
+ *
+ * Producers block while the spool is full, so a slow cluster throttles the producers instead of
+ * exhausting the memory.
+ *
+ * Documents which could not be written are put back into the spool and retried with a later batch.
+ * Documents still failing after the given number of retries are reported to the producers using
+ * {@link #drainFailures()}.
+ */
+public class AsyncBulkWriter<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncBulkWriter.class);
+
+    private static final String SPOOLED_GAUGE = "bulkSpooled";
+    private static final String IN_FLIGHT_GAUGE = "bulkInFlight";
+    private static final String BATCH_SIZE_GAUGE = "bulkBatchSize";
+
+    @FunctionalInterface
+    public interface BulkAction<T> {
+        /**
+         * Writes the given documents, including any retries.
+         */
+        void execute(List<T> documents) throws IOException;
+    }
+
+    /**
+     * A spooled document and the number of times writing it failed.
+     */
+    private static class Spooled<T> {
+        private final T document;
+        private final int retries;
+
+        private Spooled(final T document, final int retries) {
+            this.document = document;
+            this.retries = retries;
+        }
+    }
+
+    private final MetricRegistry metricRegistry;
+
+    private final BulkAction<T> action;
+    private final Consumer<List<T>> onPersisted;
+
+    private final int maxInFlight;
+    private final int maxBatchSize;
+    private final int minBatchSize;
+    private final long flushIntervalMs;
+    private final long targetLatencyMs;
+    private final int maxRetries;
+
+    private final BlockingQueue<Spooled<T>> spool;
+    private final Semaphore inFlight;
+    private final AtomicInteger batchSize;
+
+    private final Queue<FailedItem<T>> failures = new ConcurrentLinkedQueue<>();
+
+    private final ExecutorService executor;
+    private final Thread dispatcher;
+
+    private volatile boolean running = true;
+
+    /**
+     * Bulk request latency
+     */
+    private final Timer bulkTimer;
+
+    /**
+     * Documents which could not be written
+     */
+    private final Meter documentsFailedMeter;
+
+    public AsyncBulkWriter(final MetricRegistry metricRegistry, final BulkAction<T> action, final Consumer<List<T>> onPersisted,
+                           final int maxInFlight, final int maxBatchSize, final long flushIntervalMs, final int spoolSize,
+                           final long targetLatencyMs, final int maxRetries) {
+        this.metricRegistry = Objects.requireNonNull(metricRegistry);
+        this.action = Objects.requireNonNull(action);
+        this.onPersisted = Objects.requireNonNull(onPersisted);
+        if (maxInFlight < 1 || maxBatchSize < 1 || spoolSize < 1 || flushIntervalMs < 1) {
+            throw new IllegalArgumentException("In-flight requests, batch size, flush interval and spool size must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxBatchSize = maxBatchSize;
+        this.minBatchSize = Math.max(1, maxBatchSize / 16);
+        this.flushIntervalMs = flushIntervalMs;
+        this.targetLatencyMs = targetLatencyMs;
+        this.maxRetries = maxRetries;
+
+        this.spool = new ArrayBlockingQueue<>(spoolSize);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.batchSize = new AtomicInteger(maxBatchSize);
+
+        this.bulkTimer = metricRegistry.timer("bulkLatency");
+        this.documentsFailedMeter = metricRegistry.meter("bulkDocumentsFailed");
+        metricRegistry.register(SPOOLED_GAUGE, (Gauge<Integer>) this.spool::size);
+        metricRegistry.register(IN_FLIGHT_GAUGE, (Gauge<Integer>) () -> this.maxInFlight - this.inFlight.availablePermits());
+        metricRegistry.register(BATCH_SIZE_GAUGE, (Gauge<Integer>) this.batchSize::get);
+
+        this.executor = Executors.newFixedThreadPool(maxInFlight, threadFactory("flow-bulk-writer-%d", maxInFlight));
+        this.dispatcher = threadFactory("flow-bulk-dispatcher-%d", 1).newThread(this::dispatch);
+        this.dispatcher.start();
+    }
+
+    private static ThreadFactory threadFactory(final String nameFormat, final int poolSize) {
+        return new ThreadFactoryBuilder()
+                .setNameFormat(nameFormat)
+                .setDaemon(true)
+                .setThreadFactory(new LogPreservingThreadFactory(nameFormat, poolSize))
+                .build();
+    }
+
+    /**
+     * Adds the documents to the spool, blocking while it is full.
+     */
+    public void write(final List<T> documents) throws InterruptedException {
+        if (!this.running) {
+            throw new IllegalStateException("Writer is stopped");
+        }
+        for (final T document : documents) {
+            this.spool.put(new Spooled<>(document, 0));
+        }
+    }
+
+    /**
+     * Returns the documents which could not be written since the last call and forgets about them.
+     */
+    public List<FailedItem<T>> drainFailures() {
+        final List<FailedItem<T>> drained = new ArrayList<>();
+        FailedItem<T> failure;
+        while ((failure = this.failures.poll()) != null) {
+            drained.add(failure);
+        }
+        return drained;
+    }
+
+    /**
+     * Writes all spooled documents, waits for pending requests to complete and unregisters the metrics.
+     */
+    public void stop() throws InterruptedException {
+        this.running = false;
+        try {
+            this.dispatcher.join();
+
+            this.executor.shutdown();
+            this.executor.awaitTermination(5, TimeUnit.MINUTES);
+
+            final int unwritten = this.spool.size() + this.failures.size();
+            if (unwritten > 0) {
+                LOG.warn("Stopped with {} documents which could not be written.", unwritten);
+            }
+        } finally {
+            this.metricRegistry.remove(SPOOLED_GAUGE);
+            this.metricRegistry.remove(IN_FLIGHT_GAUGE);
+            this.metricRegistry.remove(BATCH_SIZE_GAUGE);
+        }
+    }
+
+    public int getBatchSize() {
+        return this.batchSize.get();
+    }
+
+    private void dispatch() {
+        while (this.running || !this.spool.isEmpty()) {
+            try {
+                final List<Spooled<T>> batch = nextBatch();
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                this.inFlight.acquire();
+                this.executor.execute(() -> {
+                    try {
+                        execute(batch);
+                    } finally {
+                        this.inFlight.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted while dispatching bulk requests. {} documents are dropped.", this.spool.size());
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<Spooled<T>> nextBatch() throws InterruptedException {
+        final int size = this.batchSize.get();
+        final List<Spooled<T>> batch = new ArrayList<>(size);
+
+        final long deadline = System.currentTimeMillis() + this.flushIntervalMs;
+        while (batch.size() < size) {
+            this.spool.drainTo(batch, size - batch.size());
+
+            final long remaining = deadline - System.currentTimeMillis();
+            if (batch.size() >= size || remaining <= 0 || (!this.running && this.spool.isEmpty())) {
+                break;
+            }
+
+            final Spooled<T> spooled = this.spool.poll(remaining, TimeUnit.MILLISECONDS);
+            if (spooled != null) {
+                batch.add(spooled);
+            }
+        }
+        return batch;
+    }
+
+    private void execute(final List<Spooled<T>> batch) {
+        final List<T> documents = batch.stream()
+                .map(spooled -> spooled.document)
+                .collect(Collectors.toList());
+
+        final long start = System.nanoTime();
+        Set<T> failed = Collections.emptySet();
+        Exception cause = null;
+        try (final Timer.Context ctx = this.bulkTimer.time()) {
+            this.action.execute(documents);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to write {} documents: {}", documents.size(), e.getMessage(), e);
+            failed = getFailedDocuments(documents, e);
+            cause = e;
+        }
+
+        adapt(failed.isEmpty(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        final List<T> persisted = new ArrayList<>(documents.size());
+        for (int i = 0; i < batch.size(); i++) {
+            final Spooled<T> spooled = batch.get(i);
+            if (!failed.contains(spooled.document)) {
+                persisted.add(spooled.document);
+            } else if (!retry(spooled)) {
+                this.failures.add(new FailedItem<>(i, spooled.document, cause));
+                this.documentsFailedMeter.mark();
+            }
+        }
+
+        if (!persisted.isEmpty()) {
+            try {
+                this.onPersisted.accept(persisted);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to handle persisted documents: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Puts a failed document back into the spool, unless it ran out of retries or the spool is full.
+     */
+    private boolean retry(final Spooled<T> spooled) {
+        return this.running
+                && spooled.retries < this.maxRetries
+                && this.spool.offer(new Spooled<>(spooled.document, spooled.retries + 1));
+    }
+
+    /**
+     * Determines the documents which have not been written - all of them, unless the bulk result tells otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private Set<T> getFailedDocuments(final List<T> documents, final Exception e) {
+        final Set<T> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (e instanceof BulkException && ((BulkException) e).getBulkResult() != null) {
+            failed.addAll(((BulkException) e).getBulkResult().getFailedDocuments());
+        }
+        if (failed.isEmpty()) {
+            failed.addAll(documents);
+        }
+        return failed;
+    }
+
+    private void adapt(final boolean succeeded, final long latencyMs) {
+        if (succeeded && latencyMs <= this.targetLatencyMs) {
+            // Additive increase while the cluster keeps up
+            this.batchSize.updateAndGet(size -> Math.min(this.maxBatchSize, size + Math.max(1, this.maxBatchSize / 16)));
+        } else {
+            // Multiplicative decrease on slow or rejected requests
+            this.batchSize.updateAndGet(size -> Math.max(this.minBatchSize, size / 2));
+        }
+    }
+}
@@ -29,15 +29,21 @@
 package org.opennms.netmgt.flows.elastic;
 
 import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import org.opennms.core.cache.Cache;
 import org.opennms.core.cache.CacheBuilder;
 import org.opennms.core.cache.CacheConfig;
+import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
 import org.opennms.netmgt.dao.api.NodeDao;
@@ -84,7 +90,12 @@ public class DocumentEnricher {
                 .withCacheLoader(new CacheLoader<NodeInfoKey, Optional<NodeDocument>>() {
                     @Override
                     public Optional<NodeDocument> load(NodeInfoKey key) {
-                        return getNodeInfo(key.location, key.ipAddress);
+                        return getNodeInfos(Collections.singleton(key)).get(key);
+                    }
+
+                    @Override
+                    public Map<NodeInfoKey, Optional<NodeDocument>> loadAll(Iterable<? extends NodeInfoKey> keys) {
+                        return getNodeInfos(keys);
                     }
                 }).build();
         this.nodeLoadTimer = metricRegistry.timer("nodeLoadTime");
@@ -97,18 +108,32 @@ public class DocumentEnricher {
         }
 
         transactionOperations.execute(callback -> {
+            // Fetch the node data for all addresses of the batch at once
+            final NodeInfoKey exporterKey = new NodeInfoKey(source.getLocation(), source.getSourceAddress());
+            final Set<NodeInfoKey> keys = new HashSet<>();
+            keys.add(exporterKey);
+            documents.forEach(document -> {
+                if (document.getDstAddr() != null) {
+                    keys.add(new NodeInfoKey(source.getLocation(), document.getDstAddr()));
+                }
+                if (document.getSrcAddr() != null) {
+                    keys.add(new NodeInfoKey(source.getLocation(), document.getSrcAddr()));
+                }
+            });
+            final Map<NodeInfoKey, Optional<NodeDocument>> nodeInfos = getNodeInfoFromCache(keys);
+
             documents.forEach(document -> {
                 // Metadata from message
                 document.setHost(source.getSourceAddress());
                 document.setLocation(source.getLocation());
 
                 // Node data
-                getNodeInfoFromCache(source.getLocation(), source.getSourceAddress()).ifPresent(document::setNodeExporter);
+                nodeInfos.get(exporterKey).ifPresent(document::setNodeExporter);
                 if (document.getDstAddr() != null) {
-                    getNodeInfoFromCache(source.getLocation(), document.getDstAddr()).ifPresent(document::setNodeDst);
+                    nodeInfos.get(new NodeInfoKey(source.getLocation(), document.getDstAddr())).ifPresent(document::setNodeDst);
                 }
                 if (document.getSrcAddr() != null) {
-                    getNodeInfoFromCache(source.getLocation(), document.getSrcAddr()).ifPresent(document::setNodeSrc);
+                    nodeInfos.get(new NodeInfoKey(source.getLocation(), document.getSrcAddr())).ifPresent(document::setNodeSrc);
                 }
 
                 // Locality
@@ -140,39 +165,65 @@ public class DocumentEnricher {
         return inetAddress.isLoopbackAddress() || inetAddress.isLinkLocalAddress() || inetAddress.isSiteLocalAddress();
     }
 
-    private Optional<NodeDocument> getNodeInfoFromCache(String location, String ipAddress) {
-        final NodeInfoKey key = new NodeInfoKey(location, ipAddress);
+    /**
+     * Drops all cached data of the given node.
+     */
+    public void invalidateNode(final int nodeId) {
+        nodeInfoCache.invalidateIf((key, nodeInfo) -> nodeInfo.isPresent() && Objects.equals(nodeInfo.get().getNodeId(), nodeId));
+    }
+
+    /**
+     * Drops all cached data for the given address, including negative lookups.
+     */
+    public void invalidateAddress(final String ipAddress) {
+        nodeInfoCache.invalidateIf((key, nodeInfo) -> Objects.equals(key.ipAddress, ipAddress));
+    }
+
+    private Map<NodeInfoKey, Optional<NodeDocument>> getNodeInfoFromCache(Set<NodeInfoKey> keys) {
         try {
-            return nodeInfoCache.get(key);
+            return nodeInfoCache.getAll(keys);
         } catch (ExecutionException e) {
             LOG.error("Error while retrieving NodeDocument from NodeInfoCache: {}.", e.getMessage(), e);
             throw new RuntimeException(e);
         }
     }
 
-    private Optional<NodeDocument> getNodeInfo(String location, String ipAddress) {
-        return getNodeInfo(location, InetAddressUtils.addr(ipAddress));
-    }
+    private Map<NodeInfoKey, Optional<NodeDocument>> getNodeInfos(Iterable<? extends NodeInfoKey> keys) {
+        final Map<NodeInfoKey, Integer> nodeIds = new HashMap<>();
+        for (final NodeInfoKey key : keys) {
+            interfaceToNodeCache.getFirstNodeId(key.location, InetAddressUtils.addr(key.ipAddress))
+                    .ifPresent(nodeId -> nodeIds.put(key, nodeId));
+        }
 
-    private Optional<NodeDocument> getNodeInfo(String location, InetAddress ipAddress) {
-        final Optional<Integer> nodeId = interfaceToNodeCache.getFirstNodeId(location, ipAddress);
-        if (nodeId.isPresent()) {
+        // Load all nodes referenced by the keys using a single query
+        final Map<Integer, NodeDocument> nodeInfos = new HashMap<>();
+        if (!nodeIds.isEmpty()) {
             try (Timer.Context ctx = nodeLoadTimer.time()) {
-                final OnmsNode onmsNode = nodeDao.get(nodeId.get());
-                if (onmsNode != null) {
+                final List<OnmsNode> onmsNodes = nodeDao.findMatching(new CriteriaBuilder(OnmsNode.class)
+                        .in("id", new HashSet<>(nodeIds.values()))
+                        .toCriteria());
+                for (final OnmsNode onmsNode : onmsNodes) {
                     final NodeDocument nodeInfo = new NodeDocument();
                     nodeInfo.setForeignSource(onmsNode.getForeignSource());
                     nodeInfo.setForeignId(onmsNode.getForeignId());
-                    nodeInfo.setNodeId(nodeId.get());
+                    nodeInfo.setNodeId(onmsNode.getId());
                     nodeInfo.setCategories(onmsNode.getCategories().stream().map(OnmsCategory::getName).collect(Collectors.toList()));
-
-                    return Optional.of(nodeInfo);
-                } else {
-                    LOG.warn("Node with id: {} at location: {} with IP address: {} is in the interface to node cache, but wasn't found in the database.");
+                    nodeInfos.put(onmsNode.getId(), nodeInfo);
                 }
             }
         }
-        return Optional.empty();
+
+        // Every key gets a value - unknown addresses are cached as absent
+        final Map<NodeInfoKey, Optional<NodeDocument>> result = new HashMap<>();
+        for (final NodeInfoKey key : keys) {
+            final Integer nodeId = nodeIds.get(key);
+            if (nodeId != null && !nodeInfos.containsKey(nodeId)) {
+                LOG.warn("Node with id: {} at location: {} with IP address: {} is in the interface to node cache, but wasn't found in the database.",
+                        nodeId, key.location, key.ipAddress);
+            }
+            result.put(key, Optional.ofNullable(nodeId != null ? nodeInfos.get(nodeId) : null));
+        }
+        return result;
     }
 
     // Key class, which is used to cache NodeDocument objects
@@ -31,12 +31,14 @@ package org.opennms.netmgt.flows.elastic;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
@@ -58,6 +60,9 @@ import org.opennms.netmgt.flows.classification.ClassificationRequest;
 import org.opennms.netmgt.flows.classification.persistence.api.Protocol;
 import org.opennms.netmgt.flows.classification.persistence.api.Protocols;
 import org.opennms.netmgt.flows.elastic.index.IndexSelector;
+import org.opennms.netmgt.flows.elastic.rollup.FlowRollups;
+import org.opennms.netmgt.flows.elastic.rollup.RollupResolution;
+import org.opennms.netmgt.flows.elastic.rollup.RollupSelection;
 import org.opennms.netmgt.flows.filter.api.Filter;
 import org.opennms.netmgt.flows.filter.api.TimeRangeFilter;
 import org.opennms.netmgt.model.OnmsNode;
@@ -65,6 +70,7 @@ import org.opennms.netmgt.model.OnmsSnmpInterface;
 import org.opennms.plugins.elasticsearch.rest.bulk.BulkException;
 import org.opennms.plugins.elasticsearch.rest.bulk.BulkRequest;
 import org.opennms.plugins.elasticsearch.rest.bulk.BulkWrapper;
+import org.opennms.plugins.elasticsearch.rest.bulk.FailedItem;
 import org.opennms.plugins.elasticsearch.rest.index.IndexStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,6 +80,7 @@ import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -156,10 +163,29 @@ public class ElasticFlowRepository implements FlowRepository {
      */
     private final ConcurrentMap<Integer, Set<Integer>> markerCache = Maps.newConcurrentMap();
 
+    /**
+     * Pre-aggregated flows used to answer queries covering large time ranges.
+     */
+    private FlowRollups rollups;
+
+    private final MetricRegistry metricRegistry;
+
+    /**
+     * Writes the flow documents asynchronously - null if the documents are written on the calling thread.
+     */
+    private AsyncBulkWriter<FlowDocument> bulkWriter;
+
+    private int bulkMaxInFlight = 0;
+    private int bulkMaxBatchSize = 1000;
+    private long bulkFlushIntervalMs = 500;
+    private int bulkSpoolSize = 100000;
+    private long bulkTargetLatencyMs = 1000;
+
     public ElasticFlowRepository(MetricRegistry metricRegistry, JestClient jestClient, IndexStrategy indexStrategy,
                                  DocumentEnricher documentEnricher, ClassificationEngine classificationEngine,
                                  TransactionOperations transactionOperations, NodeDao nodeDao, SnmpInterfaceDao snmpInterfaceDao,
                                  int bulkRetryCount, long maxFlowDurationMs) {
+        this.metricRegistry = Objects.requireNonNull(metricRegistry);
         this.client = Objects.requireNonNull(jestClient);
         this.indexStrategy = Objects.requireNonNull(indexStrategy);
         this.documentEnricher = Objects.requireNonNull(documentEnricher);
@@ -217,30 +243,65 @@ public class ElasticFlowRepository implements FlowRepository {
 
         LOG.debug("Persisting {} flow documents.", flowDocuments.size());
         try (final Timer.Context ctx = logPersistingTimer.time()) {
-            final BulkRequest<FlowDocument> bulkRequest = new BulkRequest<>(client, flowDocuments, (documents) -> {
-                final Bulk.Builder bulkBuilder = new Bulk.Builder();
-                for (FlowDocument flowDocument : documents) {
-                   final String index = indexStrategy.getIndex(TYPE, Instant.ofEpochMilli(flowDocument.getTimestamp()));
-                   final Index.Builder indexBuilder = new Index.Builder(flowDocument)
-                        .index(index)
-                        .type(TYPE);
-                    bulkBuilder.addAction(indexBuilder.build());
+            if (bulkWriter != null) {
+                // Hand the documents off to the writer - this blocks while the spool is full
+                try {
+                    bulkWriter.write(flowDocuments);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new FlowException("Interrupted while spooling flow documents", ex);
+                }
+                // Report the documents of previous calls which could not be written
+                final List<FailedItem<FlowDocument>> failedItems = bulkWriter.drainFailures();
+                if (!failedItems.isEmpty()) {
+                    throw new PersistenceException(String.format("Could not write %d flow documents", failedItems.size()), failedItems);
                 }
-                return new BulkWrapper(bulkBuilder);
-            }, bulkRetryCount);
-            try {
-                // the bulk request considers retries
-                bulkRequest.execute();
-            } catch (BulkException ex) {
-                throw new PersistenceException(ex.getMessage(), ex.getBulkResult().getFailedDocuments());
-            } catch (IOException ex) {
-                LOG.error("An error occurred while executing the given request: {}", ex.getMessage(), ex);
-                throw new FlowException(ex.getMessage(), ex);
+            } else {
+                try {
+                    bulkIndex(flowDocuments);
+                } catch (BulkException ex) {
+                    throw new PersistenceException(ex.getMessage(), ex.getBulkResult().getFailedDocuments());
+                } catch (IOException ex) {
+                    LOG.error("An error occurred while executing the given request: {}", ex.getMessage(), ex);
+                    throw new FlowException(ex.getMessage(), ex);
+                }
+                onPersisted(flowDocuments);
+            }
+        }
+    }
+
+    private void bulkIndex(final List<FlowDocument> flowDocuments) throws IOException {
+        final BulkRequest<FlowDocument> bulkRequest = new BulkRequest<>(client, flowDocuments, (documents) -> {
+            final Bulk.Builder bulkBuilder = new Bulk.Builder();
+            for (FlowDocument flowDocument : documents) {
+               final String index = indexStrategy.getIndex(TYPE, Instant.ofEpochMilli(flowDocument.getTimestamp()));
+               final Index.Builder indexBuilder = new Index.Builder(flowDocument)
+                    .index(index)
+                    .type(TYPE);
+                bulkBuilder.addAction(indexBuilder.build());
             }
-            flowsPersistedMeter.mark(flowDocuments.size());
+            return new BulkWrapper(bulkBuilder);
+        }, bulkRetryCount);
+        // the bulk request considers retries
+        bulkRequest.execute();
+    }
+
+    private void onPersisted(final List<FlowDocument> flowDocuments) {
+        flowsPersistedMeter.mark(flowDocuments.size());
+
+        // Only roll up flows which have been persisted, otherwise rollups and raw flows diverge
+        if (rollups != null) {
+            rollups.add(flowDocuments);
         }
 
         // Mark nodes and interfaces as having associated flows
+        markHavingFlows(flowDocuments);
+    }
+
+    /**
+     * Marks the nodes and interfaces of the given persisted flows as having associated flows.
+     */
+    private void markHavingFlows(final List<FlowDocument> flowDocuments) {
         try (final Timer.Context ctx = logMarkingTimer.time()) {
             final List<Integer> nodesToUpdate = Lists.newArrayListWithExpectedSize(flowDocuments.size());
             final Map<Integer, List<Integer>> interfacesToUpdate = Maps.newHashMap();
@@ -285,6 +346,23 @@ public class ElasticFlowRepository implements FlowRepository {
         }
     }
 
+    /**
+     * Starts writing flow documents asynchronously, if enabled.
+     */
+    public void start() {
+        if (bulkMaxInFlight > 0 && bulkWriter == null) {
+            bulkWriter = new AsyncBulkWriter<>(metricRegistry, this::bulkIndex, this::onPersisted,
+                    bulkMaxInFlight, bulkMaxBatchSize, bulkFlushIntervalMs, bulkSpoolSize, bulkTargetLatencyMs, bulkRetryCount);
+        }
+    }
+
+    public void stop() throws InterruptedException {
+        if (bulkWriter != null) {
+            bulkWriter.stop();
+            bulkWriter = null;
+        }
+    }
+
     @Override
     public CompletableFuture<Long> getFlowCount(List<Filter> filters) {
         final String query = searchQueryProvider.getFlowCountQuery(filters);
@@ -293,17 +371,17 @@ public class ElasticFlowRepository implements FlowRepository {
 
     @Override
     public CompletableFuture<List<TrafficSummary<String>>> getTopNApplications(int N, boolean includeOther, List<Filter> filters) {
-        return getTotalBytesFromTopN(N, "netflow.application", UNKNOWN_APPLICATION_NAME, includeOther, filters);
+        return getTotalBytesFromTopN(N, "netflow.application", UNKNOWN_APPLICATION_NAME, includeOther, planQuery(filters));
     }
 
     @Override
     public CompletableFuture<Table<Directional<String>, Long, Double>> getTopNApplicationsSeries(int N, long step, boolean includeOther, List<Filter> filters) {
-        return getSeriesFromTopN(N, step, "netflow.application", UNKNOWN_APPLICATION_NAME, includeOther, filters).thenApply((res) -> mapTable(res, s -> s));
+        return getSeriesFromTopN(N, step, "netflow.application", UNKNOWN_APPLICATION_NAME, includeOther, planQuery(step, filters)).thenApply((res) -> mapTable(res, s -> s));
     }
 
     @Override
     public CompletableFuture<List<TrafficSummary<Conversation>>> getTopNConversations(int N, List<Filter> filters) {
-        return getTotalBytesFromTopN(N, "netflow.convo_key", null, false, filters).thenApply((res) -> res.stream()
+        return getTotalBytesFromTopN(N, "netflow.convo_key", null, false, planQuery(filters)).thenApply((res) -> res.stream()
                 .map(summary -> {
                     final ConversationKey convo = ConversationKeyUtils.fromJsonString(summary.getEntity());
                     final Conversation conversation = new Conversation(convo, classify(convo));
@@ -317,14 +395,14 @@ public class ElasticFlowRepository implements FlowRepository {
 
     @Override
     public CompletableFuture<Table<Directional<Conversation>, Long, Double>> getTopNConversationsSeries(int N, long step, List<Filter> filters) {
-        return getSeriesFromTopN(N, step, "netflow.convo_key", null, false, filters).thenApply((res) -> mapTable(res, (key) -> {
+        return getSeriesFromTopN(N, step, "netflow.convo_key", null, false, planQuery(step, filters)).thenApply((res) -> mapTable(res, (key) -> {
             final ConversationKey convo = ConversationKeyUtils.fromJsonString(key);
             final String application = classify(convo);
             return new Conversation(convo, application);
         }));
     }
 
-    private CompletableFuture<List<String>> getTopN(int N, String groupByTerm, String keyForMissingTerm, List<Filter> filters) {
+    private CompletableFuture<List<String>> getTopN(int N, String groupByTerm, String keyForMissingTerm, List<QueryPart> parts) {
         if (N < 1) {
             // Avoid a query and return an empty list
             return CompletableFuture.completedFuture(Collections.emptyList());
@@ -333,24 +411,68 @@ public class ElasticFlowRepository implements FlowRepository {
         // Increase the multiplier for increased accuracy
         // See https://www.elastic.co/guide/en/elasticsearch/reference/current/search-aggregations-bucket-terms-aggregation.html#_size
         final int multiplier = 2;
-        final String query = searchQueryProvider.getTopNQuery(multiplier*N, groupByTerm, keyForMissingTerm, filters);
-        return searchAsync(query, extractTimeRangeFilter(filters))
-                .thenApply(res -> {
-                    final TermsAggregation groupedBy = res.getAggregations().getTermsAggregation("grouped_by");
-                    if (groupedBy == null) {
-                        // No results
-                        return Collections.emptyList();
+        if (parts.size() == 1) {
+            final QueryPart part = parts.get(0);
+            final String query = searchQueryProvider.getTopNQuery(multiplier*N, groupByTerm, keyForMissingTerm, part.filters);
+            return searchAsync(query, extractTimeRangeFilter(part.filters), part.rollup)
+                    .thenApply(res -> {
+                        final TermsAggregation groupedBy = res.getAggregations().getTermsAggregation("grouped_by");
+                        if (groupedBy == null) {
+                            // No results
+                            return Collections.emptyList();
+                        }
+                        return groupedBy.getBuckets().stream()
+                                .map(TermsAggregation.Entry::getKey)
+                                .limit(N)
+                                .collect(Collectors.toList());
+                    });
+        }
+
+        // Sum up the totals of the terms over all parts and rank them again
+        CompletableFuture<Map<String, Double>> totalsFuture = CompletableFuture.completedFuture(new LinkedHashMap<>());
+        for (final QueryPart part : parts) {
+            final String query = searchQueryProvider.getTopNQuery(multiplier*N, groupByTerm, keyForMissingTerm, part.filters);
+            totalsFuture = totalsFuture.thenCombine(searchAsync(query, extractTimeRangeFilter(part.filters), part.rollup), (totals, res) -> {
+                final TermsAggregation groupedBy = res.getAggregations().getTermsAggregation("grouped_by");
+                if (groupedBy != null) {
+                    for (TermsAggregation.Entry bucket : groupedBy.getBuckets()) {
+                        final Double total = bucket.getSumAggregation("total_bytes").getSum();
+                        totals.merge(bucket.getKey(), total != null ? total : 0.0, Double::sum);
                     }
-                    return groupedBy.getBuckets().stream()
-                            .map(TermsAggregation.Entry::getKey)
-                            .limit(N)
-                            .collect(Collectors.toList());
-                });
+                }
+                return totals;
+            });
+        }
+        return totalsFuture.thenApply(totals -> totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .limit(N)
+                .collect(Collectors.toList()));
     }
 
     private CompletableFuture<Table<Directional<String>, Long, Double>> getSeriesFromTopN(List<String> topN, long step, String groupByTerm,
                                                                                           String keyForMissingTerm,
-                                                                                          boolean includeOther, List<Filter> filters) {
+                                                                                          boolean includeOther, List<QueryPart> parts) {
+        if (parts.size() == 1) {
+            return getSeriesFromTopN(topN, step, groupByTerm, keyForMissingTerm, includeOther, parts.get(0).filters, parts.get(0).rollup);
+        }
+
+        // Add up the series of all parts - buckets on the boundary between the parts may contain values from both
+        CompletableFuture<Table<Directional<String>, Long, Double>> seriesFuture = CompletableFuture.completedFuture(HashBasedTable.create());
+        for (final QueryPart part : parts) {
+            seriesFuture = seriesFuture.thenCombine(getSeriesFromTopN(topN, step, groupByTerm, keyForMissingTerm, includeOther, part.filters, part.rollup), (series, res) -> {
+                res.cellSet().forEach(cell -> series.put(cell.getRowKey(), cell.getColumnKey(),
+                        cell.getValue() + Optional.ofNullable(series.get(cell.getRowKey(), cell.getColumnKey())).orElse(0.0)));
+                return series;
+            });
+        }
+        return seriesFuture.thenApply(series -> TableUtils.sortTableByRowKeys(series, topN));
+    }
+
+    private CompletableFuture<Table<Directional<String>, Long, Double>> getSeriesFromTopN(List<String> topN, long step, String groupByTerm,
+                                                                                          String keyForMissingTerm,
+                                                                                          boolean includeOther, List<Filter> filters,
+                                                                                          Optional<RollupResolution> rollup) {
         final TimeRangeFilter timeRangeFilter = getRequiredTimeRangeFilter(filters);
         final ImmutableTable.Builder<Directional<String>, Long, Double> builder = ImmutableTable.builder();
         CompletableFuture<Void> seriesFuture;
@@ -360,7 +482,7 @@ public class ElasticFlowRepository implements FlowRepository {
         } else {
             final String seriesFromTopNQuery = searchQueryProvider.getSeriesFromTopNQuery(topN, step, timeRangeFilter.getStart(),
                     timeRangeFilter.getEnd(), groupByTerm, filters);
-            seriesFuture = searchAsync(seriesFromTopNQuery, timeRangeFilter)
+            seriesFuture = searchAsync(seriesFromTopNQuery, timeRangeFilter, rollup)
                     .thenApply(res -> {
                         toTable(builder, res);
                         return null;
@@ -373,7 +495,7 @@ public class ElasticFlowRepository implements FlowRepository {
             final String seriesFromMissingQuery = searchQueryProvider.getSeriesFromMissingQuery(step,
                     timeRangeFilter.getStart(), timeRangeFilter.getEnd(), groupByTerm, keyForMissingTerm, filters);
             seriesFuture = seriesFuture
-                    .thenCombine(searchAsync(seriesFromMissingQuery, extractTimeRangeFilter(filters)), (ignored,res) -> {
+                    .thenCombine(searchAsync(seriesFromMissingQuery, extractTimeRangeFilter(filters), rollup), (ignored,res) -> {
                 toTable(builder, res);
                 return null;
             });
@@ -383,7 +505,7 @@ public class ElasticFlowRepository implements FlowRepository {
             // We also want to gather series for terms not part of the Top N
             final String seriesFromOthersQuery = searchQueryProvider.getSeriesFromOthersQuery(topN, step,
                     timeRangeFilter.getStart(), timeRangeFilter.getEnd(), groupByTerm, missingTermIncludedInTopN, filters);
-            seriesFuture = seriesFuture.thenCombine(searchAsync(seriesFromOthersQuery, timeRangeFilter), (ignored,res) -> {
+            seriesFuture = seriesFuture.thenCombine(searchAsync(seriesFromOthersQuery, timeRangeFilter, rollup), (ignored,res) -> {
                 final MetricAggregation aggs = res.getAggregations();
                 final TermsAggregation directionAgg = aggs.getTermsAggregation("direction");
                 for (TermsAggregation.Entry directionBucket : directionAgg.getBuckets()) {
@@ -418,14 +540,15 @@ public class ElasticFlowRepository implements FlowRepository {
 
     private CompletableFuture<Table<Directional<String>, Long, Double>> getSeriesFromTopN(int N, long step, String groupByTerm,
                                                                                           String keyForMissingTerm, boolean includeOther,
-                                                                                          List<Filter> filters) {
-        return getTopN(N, groupByTerm, keyForMissingTerm, filters)
-                .thenCompose((topN) -> getSeriesFromTopN(topN, step, groupByTerm, keyForMissingTerm, includeOther, filters));
+                                                                                          List<QueryPart> parts) {
+        return getTopN(N, groupByTerm, keyForMissingTerm, parts)
+                .thenCompose((topN) -> getSeriesFromTopN(topN, step, groupByTerm, keyForMissingTerm, includeOther, parts));
     }
 
     private CompletableFuture<List<TrafficSummary<String>>> getTotalBytesFromTopN(List<String> topN, String groupByTerm,
                                                                                   String keyForMissingTerm,
-                                                                                  boolean includeOther, List<Filter> filters) {
+                                                                                  boolean includeOther, List<Filter> filters,
+                                                                                  Optional<RollupResolution> rollup) {
         final TimeRangeFilter timeRangeFilter = getRequiredTimeRangeFilter(filters);
         final long start = timeRangeFilter.getStart();
         // Remove 1 from the end to make sure we have a single bucket
@@ -439,7 +562,7 @@ public class ElasticFlowRepository implements FlowRepository {
             summariesFuture = CompletableFuture.completedFuture(new LinkedHashMap<>());
         } else {
             final String bytesFromTopNQuery = searchQueryProvider.getSeriesFromTopNQuery(topN, step, start, end, groupByTerm, filters);
-            summariesFuture = searchAsync(bytesFromTopNQuery, timeRangeFilter).thenApply(ElasticFlowRepository::toTrafficSummaries);
+            summariesFuture = searchAsync(bytesFromTopNQuery, timeRangeFilter, rollup).thenApply(ElasticFlowRepository::toTrafficSummaries);
         }
 
         final boolean missingTermIncludedInTopN = keyForMissingTerm != null && topN.contains(keyForMissingTerm);
@@ -447,7 +570,7 @@ public class ElasticFlowRepository implements FlowRepository {
             // We also need to query for items with a missing term, this will require a separate query
             final String bytesFromMissingQuery = searchQueryProvider.getSeriesFromMissingQuery(step, start, end,
                     groupByTerm, keyForMissingTerm, filters);
-            summariesFuture = summariesFuture.thenCombine(searchAsync(bytesFromMissingQuery, timeRangeFilter), (summaries,results) -> {
+            summariesFuture = summariesFuture.thenCombine(searchAsync(bytesFromMissingQuery, timeRangeFilter, rollup), (summaries,results) -> {
                 summaries.putAll(toTrafficSummaries(results));
                 return summaries;
             });
@@ -457,7 +580,7 @@ public class ElasticFlowRepository implements FlowRepository {
             // We also want to tally up traffic from other elements not part of the Top N
             final String bytesFromOthersQuery = searchQueryProvider.getSeriesFromOthersQuery(topN, step, start, end,
                     groupByTerm, missingTermIncludedInTopN, filters);
-            summariesFuture = summariesFuture.thenCombine(searchAsync(bytesFromOthersQuery, timeRangeFilter), (summaries,results) -> {
+            summariesFuture = summariesFuture.thenCombine(searchAsync(bytesFromOthersQuery, timeRangeFilter, rollup), (summaries,results) -> {
                 final MetricAggregation aggs = results.getAggregations();
                 final TrafficSummary<String> trafficSummary = new TrafficSummary<>(OTHER_APPLICATION_NAME);
                 final TermsAggregation directionAgg = aggs.getTermsAggregation("direction");
@@ -524,9 +647,45 @@ public class ElasticFlowRepository implements FlowRepository {
         return summaries;
     }
 
-    private CompletableFuture<List<TrafficSummary<String>>> getTotalBytesFromTopN(int N, String groupByTerm, String keyForMissingTerm, boolean includeOther, List<Filter> filters) {
-        return getTopN(N, groupByTerm, keyForMissingTerm, filters)
-                .thenCompose((topN) -> getTotalBytesFromTopN(topN, groupByTerm, keyForMissingTerm, includeOther, filters));
+    private CompletableFuture<List<TrafficSummary<String>>> getTotalBytesFromTopN(int N, String groupByTerm, String keyForMissingTerm, boolean includeOther,
+                                                                                  List<QueryPart> parts) {
+        return getTopN(N, groupByTerm, keyForMissingTerm, parts)
+                .thenCompose((topN) -> getTotalBytesFromTopN(topN, groupByTerm, keyForMissingTerm, includeOther, parts));
+    }
+
+    private CompletableFuture<List<TrafficSummary<String>>> getTotalBytesFromTopN(List<String> topN, String groupByTerm,
+                                                                                  String keyForMissingTerm, boolean includeOther,
+                                                                                  List<QueryPart> parts) {
+        if (parts.size() == 1) {
+            return getTotalBytesFromTopN(topN, groupByTerm, keyForMissingTerm, includeOther, parts.get(0).filters, parts.get(0).rollup);
+        }
+
+        // Add up the summaries of all parts
+        CompletableFuture<Map<String, TrafficSummary<String>>> summariesFuture = CompletableFuture.completedFuture(new LinkedHashMap<>());
+        for (final QueryPart part : parts) {
+            summariesFuture = summariesFuture.thenCombine(getTotalBytesFromTopN(topN, groupByTerm, keyForMissingTerm, includeOther, part.filters, part.rollup), (summaries, res) -> {
+                for (final TrafficSummary<String> summary : res) {
+                    final TrafficSummary<String> total = summaries.computeIfAbsent(summary.getEntity(), TrafficSummary::new);
+                    total.setBytesIn(total.getBytesIn() + summary.getBytesIn());
+                    total.setBytesOut(total.getBytesOut() + summary.getBytesOut());
+                }
+                return summaries;
+            });
+        }
+
+        return summariesFuture.thenApply(summaries -> {
+            // Now build a list in the same order as the given top N list
+            final List<TrafficSummary<String>> topNRes = new ArrayList<>(topN.size());
+            for (String topNEntry : topN) {
+                final TrafficSummary<String> summary = summaries.remove(topNEntry);
+                if (summary != null) {
+                    topNRes.add(summary);
+                }
+            }
+            // Append any remaining elements
+            topNRes.addAll(summaries.values());
+            return topNRes;
+        });
     }
 
     /**
@@ -570,6 +729,21 @@ public class ElasticFlowRepository implements FlowRepository {
     }
 
     private CompletableFuture<SearchResult> searchAsync(String query, TimeRangeFilter timeRangeFilter) {
+        return searchAsync(query, timeRangeFilter, Optional.empty());
+    }
+
+    private CompletableFuture<SearchResult> searchAsync(String query, TimeRangeFilter timeRangeFilter, Optional<RollupResolution> rollup) {
+        if (rollup.isPresent()) {
+            // Rollups are only selected for queries with a time range
+            final List<String> indices = rollups.getIndexNames(rollup.get(), timeRangeFilter);
+            LOG.debug("Executing asynchronous query on {} rollups {}: {}", rollup.get(), indices, query);
+            return executeAsync(new Search.Builder(query)
+                    .addType(FlowRollups.TYPE)
+                    .addIndices(indices)
+                    .setParameter("ignore_unavailable", "true")
+                    .build());
+        }
+
         Search.Builder builder = new Search.Builder(query)
                 .addType(TYPE);
         if(timeRangeFilter != null) {
@@ -623,6 +797,87 @@ public class ElasticFlowRepository implements FlowRepository {
         return target.build();
     }
 
+    public void setRollups(FlowRollups rollups) {
+        this.rollups = rollups;
+    }
+
+    public void setBulkMaxInFlight(int bulkMaxInFlight) {
+        this.bulkMaxInFlight = bulkMaxInFlight;
+    }
+
+    public void setBulkMaxBatchSize(int bulkMaxBatchSize) {
+        this.bulkMaxBatchSize = bulkMaxBatchSize;
+    }
+
+    public void setBulkFlushIntervalMs(long bulkFlushIntervalMs) {
+        this.bulkFlushIntervalMs = bulkFlushIntervalMs;
+    }
+
+    public void setBulkSpoolSize(int bulkSpoolSize) {
+        this.bulkSpoolSize = bulkSpoolSize;
+    }
+
+    public void setBulkTargetLatencyMs(long bulkTargetLatencyMs) {
+        this.bulkTargetLatencyMs = bulkTargetLatencyMs;
+    }
+
+    /**
+     * Plans a query computing the totals over the whole time range.
+     */
+    private List<QueryPart> planQuery(List<Filter> filters) {
+        final TimeRangeFilter timeRangeFilter = extractTimeRangeFilter(filters);
+        if (timeRangeFilter == null) {
+            return Collections.singletonList(new QueryPart(filters, Optional.empty()));
+        }
+        return planQuery(timeRangeFilter.getEnd() - timeRangeFilter.getStart(), filters);
+    }
+
+    /**
+     * Splits the time range of the query into a prefix answered using rollups, if available, and the remainder
+     * answered using raw flows.
+     */
+    private List<QueryPart> planQuery(long step, List<Filter> filters) {
+        final TimeRangeFilter timeRangeFilter = extractTimeRangeFilter(filters);
+        if (rollups == null || timeRangeFilter == null) {
+            return Collections.singletonList(new QueryPart(filters, Optional.empty()));
+        }
+
+        final Optional<RollupSelection> selection = rollups.select(timeRangeFilter.getStart(), timeRangeFilter.getEnd(), step);
+        if (!selection.isPresent()) {
+            return Collections.singletonList(new QueryPart(filters, Optional.empty()));
+        }
+
+        final RollupResolution resolution = selection.get().getResolution();
+        final long split = selection.get().getEnd();
+        if (split >= timeRangeFilter.getEnd()) {
+            return Collections.singletonList(new QueryPart(filters, Optional.of(resolution)));
+        }
+
+        LOG.debug("Answering query for {} - {} from {} rollups until {}", timeRangeFilter.getStart(), timeRangeFilter.getEnd(), resolution, split);
+        return Arrays.asList(
+                new QueryPart(withTimeRange(filters, new TimeRangeFilter(timeRangeFilter.getStart(), split)), Optional.of(resolution)),
+                new QueryPart(withTimeRange(filters, new TimeRangeFilter(split, timeRangeFilter.getEnd())), Optional.empty()));
+    }
+
+    private static List<Filter> withTimeRange(List<Filter> filters, TimeRangeFilter timeRangeFilter) {
+        return filters.stream()
+                .map(f -> f instanceof TimeRangeFilter ? timeRangeFilter : f)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * A part of a query, answered either using rollups or raw flows.
+     */
+    private static class QueryPart {
+        private final List<Filter> filters;
+        private final Optional<RollupResolution> rollup;
+
+        private QueryPart(List<Filter> filters, Optional<RollupResolution> rollup) {
+            this.filters = Objects.requireNonNull(filters);
+            this.rollup = Objects.requireNonNull(rollup);
+        }
+    }
+
     private static TimeRangeFilter getRequiredTimeRangeFilter(Collection<Filter> filters) {
         final TimeRangeFilter filter = extractTimeRangeFilter(filters);
         if (filter == null) {
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic;
+
+import java.util.Objects;
+
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.events.api.EventSubscriptionService;
+import org.opennms.netmgt.xml.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Drops node data cached by the {@link DocumentEnricher} when nodes or their interfaces change.
+ */
+public class NodeInfoCacheInvalidator implements EventListener {
+    private static final Logger LOG = LoggerFactory.getLogger(NodeInfoCacheInvalidator.class);
+
+    private static final ImmutableList<String> UEIS = ImmutableList.of(
+            EventConstants.NODE_UPDATED_EVENT_UEI,
+            EventConstants.NODE_DELETED_EVENT_UEI,
+            EventConstants.NODE_CATEGORY_MEMBERSHIP_CHANGED_EVENT_UEI,
+            EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI,
+            EventConstants.INTERFACE_DELETED_EVENT_UEI,
+            EventConstants.INTERFACE_REPARENTED_EVENT_UEI);
+
+    private final EventSubscriptionService eventSubscriptionService;
+
+    private final DocumentEnricher documentEnricher;
+
+    public NodeInfoCacheInvalidator(EventSubscriptionService eventSubscriptionService, DocumentEnricher documentEnricher) {
+        this.eventSubscriptionService = Objects.requireNonNull(eventSubscriptionService);
+        this.documentEnricher = Objects.requireNonNull(documentEnricher);
+    }
+
+    public void init() {
+        eventSubscriptionService.addEventListener(this, UEIS);
+    }
+
+    public void destroy() {
+        eventSubscriptionService.removeEventListener(this, UEIS);
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getName();
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        LOG.debug("Invalidating cached node data for event: {}", event.getUei());
+
+        if (event.getNodeid() != null) {
+            documentEnricher.invalidateNode(event.getNodeid().intValue());
+        }
+
+        // Addresses which were unknown before may have been assigned to a node
+        if (event.getInterface() != null) {
+            documentEnricher.invalidateAddress(event.getInterface());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.rollup;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import org.opennms.netmgt.flows.elastic.Direction;
+import org.opennms.netmgt.flows.elastic.FlowDocument;
+import org.opennms.netmgt.flows.elastic.NodeDocument;
+
+/**
+ * Accumulates the bytes of enriched flow documents into fixed size time buckets.
+ *
+ * The bytes of a flow are distributed over the buckets proportional to the overlap with the time
+ * the flow was active and are scaled by the sampling interval - this matches the proportional sum
+ * aggregation applied to raw flow documents at query time.
+ *
+ * Buckets are grouped by exporter, interfaces, application, conversation and direction. Draining
+ * the aggregator yields one document per group and bucket, shaped like a flow document spanning
+ * the bucket, so that the existing queries can be applied to rollup documents as well. Buckets may
+ * be drained while still receiving flows: partial sums of the same bucket end up in separate
+ * documents which add up at query time.
+ */
+public class FlowRollupAggregator {
+
+    private final List<RollupResolution> resolutions;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Key, Value> buckets = new ConcurrentHashMap<>();
+
+    public FlowRollupAggregator(final List<RollupResolution> resolutions) {
+        this.resolutions = Objects.requireNonNull(resolutions);
+    }
+
+    public void add(final List<FlowDocument> documents) {
+        this.lock.readLock().lock();
+        try {
+            for (final FlowDocument document : documents) {
+                add(document);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void add(final FlowDocument document) {
+        if (document.getBytes() == null) {
+            return;
+        }
+
+        final double multiplier = document.getSamplingInterval() != null && document.getSamplingInterval() > 0
+                ? document.getSamplingInterval()
+                : 1.0;
+        final double bytes = document.getBytes() * multiplier;
+
+        final long first = document.getFirstSwitched() != null ? document.getFirstSwitched() : document.getTimestamp();
+        final long last = Math.max(first, document.getLastSwitched() != null ? document.getLastSwitched() : document.getTimestamp());
+
+        for (final RollupResolution resolution : this.resolutions) {
+            if (first == last) {
+                this.value(resolution, resolution.floor(first), document).add(bytes);
+                continue;
+            }
+
+            for (long bucket = resolution.floor(first); bucket < last; bucket += resolution.getDurationMs()) {
+                final long overlap = Math.min(last, bucket + resolution.getDurationMs()) - Math.max(first, bucket);
+                this.value(resolution, bucket, document).add(bytes * overlap / (last - first));
+            }
+        }
+    }
+
+    private DoubleAdder value(final RollupResolution resolution, final long bucket, final FlowDocument document) {
+        return this.buckets.computeIfAbsent(new Key(resolution, bucket, document), k -> new Value(document)).bytes;
+    }
+
+    /**
+     * Returns the rollup documents for all buckets accumulated so far and resets the aggregator.
+     */
+    public Map<RollupResolution, List<FlowDocument>> drain() {
+        final Map<Key, Value> drained;
+        this.lock.writeLock().lock();
+        try {
+            drained = this.buckets;
+            this.buckets = new ConcurrentHashMap<>();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        final Map<RollupResolution, List<FlowDocument>> documents = new EnumMap<>(RollupResolution.class);
+        for (final Map.Entry<Key, Value> e : drained.entrySet()) {
+            final Key key = e.getKey();
+
+            final FlowDocument document = new FlowDocument();
+            document.setTimestamp(key.bucket);
+            document.setFirstSwitched(key.bucket);
+            document.setLastSwitched(key.bucket + key.resolution.getDurationMs() - 1);
+            document.setBytes(Math.round(e.getValue().bytes.sum()));
+            document.setSamplingInterval(1.0);
+            document.setHost(key.host);
+            document.setLocation(key.location);
+            document.setNodeExporter(e.getValue().nodeExporter);
+            document.setInputSnmp(key.inputSnmp);
+            document.setOutputSnmp(key.outputSnmp);
+            document.setApplication(key.application);
+            document.setConvoKey(key.convoKey);
+            document.setDirection(key.direction);
+
+            documents.computeIfAbsent(key.resolution, r -> new ArrayList<>()).add(document);
+        }
+        return documents;
+    }
+
+    private static class Value {
+        private final DoubleAdder bytes = new DoubleAdder();
+
+        private final NodeDocument nodeExporter;
+
+        private Value(final FlowDocument document) {
+            this.nodeExporter = document.getNodeExporter();
+        }
+    }
+
+    private static class Key {
+        private final RollupResolution resolution;
+        private final long bucket;
+        private final String host;
+        private final String location;
+        private final Integer exporterNodeId;
+        private final Integer inputSnmp;
+        private final Integer outputSnmp;
+        private final String application;
+        private final String convoKey;
+        private final Direction direction;
+
+        private Key(final RollupResolution resolution, final long bucket, final FlowDocument document) {
+            this.resolution = resolution;
+            this.bucket = bucket;
+            this.host = document.getHost();
+            this.location = document.getLocation();
+            this.exporterNodeId = document.getNodeExporter() != null ? document.getNodeExporter().getNodeId() : null;
+            this.inputSnmp = document.getInputSnmp();
+            this.outputSnmp = document.getOutputSnmp();
+            this.application = document.getApplication();
+            this.convoKey = document.getConvoKey();
+            this.direction = document.getDirection();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key that = (Key) o;
+            return bucket == that.bucket &&
+                    resolution == that.resolution &&
+                    direction == that.direction &&
+                    Objects.equals(host, that.host) &&
+                    Objects.equals(location, that.location) &&
+                    Objects.equals(exporterNodeId, that.exporterNodeId) &&
+                    Objects.equals(inputSnmp, that.inputSnmp) &&
+                    Objects.equals(outputSnmp, that.outputSnmp) &&
+                    Objects.equals(application, that.application) &&
+                    Objects.equals(convoKey, that.convoKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resolution, bucket, host, location, exporterNodeId, inputSnmp, outputSnmp, application, convoKey, direction);
+        }
+    }
+}
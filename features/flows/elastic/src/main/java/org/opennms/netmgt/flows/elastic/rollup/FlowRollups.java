@@ -0,0 +1,407 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.rollup;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import org.opennms.netmgt.flows.elastic.FlowDocument;
+import org.opennms.netmgt.flows.elastic.index.IndexSelector;
+import org.opennms.netmgt.flows.filter.api.TimeRangeFilter;
+import org.opennms.plugins.elasticsearch.rest.bulk.BulkException;
+import org.opennms.plugins.elasticsearch.rest.bulk.BulkRequest;
+import org.opennms.plugins.elasticsearch.rest.bulk.BulkWrapper;
+import org.opennms.plugins.elasticsearch.rest.index.IndexStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Index;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchResult;
+
+/**
+ * Maintains pre-aggregated flows at a per-minute and per-hour resolution in separate indices.
+ *
+ * Enriched flows are accumulated in memory and periodically written to the rollup indices. The time ranges for
+ * which all buckets have been written are tracked per resolution and persisted, so that gaps caused by outages or
+ * failed writes are never answered from rollups. Queries starting at an aligned timestamp are answered from the
+ * rollups up to the end of the covered range and from the raw flows for the remainder.
+ */
+public class FlowRollups {
+    private static final Logger LOG = LoggerFactory.getLogger(FlowRollups.class);
+
+    public static final String TYPE = "rollup";
+
+    public static final String COVERAGE_INDEX = "netflow-rollup-coverage";
+
+    public static final String COVERAGE_TYPE = "coverage";
+
+    private final JestClient client;
+
+    private final IndexStrategy indexStrategy;
+
+    private final int bulkRetryCount;
+
+    private final long maxFlowDurationMs;
+
+    private final boolean enabled;
+
+    private final long flushIntervalMs;
+
+    private final FlowRollupAggregator aggregator = new FlowRollupAggregator(Arrays.asList(RollupResolution.values()));
+
+    private final Map<RollupResolution, IndexSelector> indexSelectors = new ConcurrentHashMap<>();
+
+    /**
+     * Time ranges for which all buckets have been written, per resolution.
+     */
+    private final Map<RollupResolution, RangeSet<Long>> coverage = new EnumMap<>(RollupResolution.class);
+
+    /**
+     * Rollup documents which failed to be written, keyed by document ID. These are retried with the same IDs on the
+     * next flush, so that documents written by a partially failed request are not counted twice.
+     */
+    private final Map<RollupResolution, Map<String, FlowDocument>> pending = new EnumMap<>(RollupResolution.class);
+
+    /**
+     * Time at which the rollups have been started - buckets starting before may miss flows persisted earlier.
+     */
+    private long startedAt;
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Time taken to write the accumulated rollups
+     */
+    private final Timer flushTimer;
+
+    /**
+     * Rollup documents/second throughput
+     */
+    private final Meter rollupsPersistedMeter;
+
+    /**
+     * Queries answered using rollups
+     */
+    private final Meter rollupQueriesMeter;
+
+    public FlowRollups(MetricRegistry metricRegistry, JestClient jestClient, IndexStrategy indexStrategy,
+                       int bulkRetryCount, long maxFlowDurationMs, boolean enabled, long flushIntervalMs) {
+        this.client = Objects.requireNonNull(jestClient);
+        this.indexStrategy = Objects.requireNonNull(indexStrategy);
+        this.bulkRetryCount = bulkRetryCount;
+        this.maxFlowDurationMs = maxFlowDurationMs;
+        this.enabled = enabled;
+        this.flushIntervalMs = flushIntervalMs;
+
+        for (final RollupResolution resolution : RollupResolution.values()) {
+            this.indexSelectors.put(resolution, new IndexSelector(resolution.getIndexPrefix(), indexStrategy, resolution.getDurationMs()));
+            this.coverage.put(resolution, TreeRangeSet.create());
+            this.pending.put(resolution, new LinkedHashMap<>());
+        }
+
+        flushTimer = metricRegistry.timer("rollupFlush");
+        rollupsPersistedMeter = metricRegistry.meter("rollupsPersisted");
+        rollupQueriesMeter = metricRegistry.meter("rollupQueries");
+    }
+
+    public void start() {
+        if (!this.enabled) {
+            return;
+        }
+
+        this.startedAt = this.clock.getAsLong();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("flow-rollups-%d")
+                .build());
+        this.scheduler.execute(this::discoverAvailability);
+        this.scheduler.scheduleWithFixedDelay(this::flush, this.flushIntervalMs, this.flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (this.scheduler == null) {
+            return;
+        }
+
+        this.scheduler.shutdown();
+        try {
+            this.scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.scheduler = null;
+
+        // Write whatever is left
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void add(final List<FlowDocument> documents) {
+        if (this.enabled) {
+            this.aggregator.add(documents);
+        }
+    }
+
+    /**
+     * Selects the coarsest resolution able to answer a query for a prefix of the given time range.
+     *
+     * The query must start at a timestamp aligned to the resolution and, unless the whole range is requested as a
+     * single bucket, the step must be a multiple of the resolution. The selected prefix ends at an aligned timestamp
+     * within the covered range, and at a step boundary for series. The remainder of the range must be answered using
+     * raw flows.
+     *
+     * @param step the step of the series or the length of the range for totals
+     * @return the selection to use or empty if the query must be answered using raw flows only
+     */
+    public Optional<RollupSelection> select(final long start, final long end, final long step) {
+        if (!this.enabled || end <= start) {
+            return Optional.empty();
+        }
+
+        final boolean singleBucket = step >= end - start;
+
+        for (final RollupResolution resolution : RollupResolution.values()) {
+            if (!resolution.isAligned(start) || !(singleBucket || resolution.isAligned(step))) {
+                continue;
+            }
+
+            final Range<Long> covered;
+            synchronized (this.coverage) {
+                covered = this.coverage.get(resolution).rangeContaining(start);
+            }
+            if (covered == null) {
+                continue;
+            }
+
+            long split = resolution.floor(Math.min(end, covered.upperEndpoint()));
+            if (!singleBucket) {
+                split = start + (split - start) / step * step;
+            }
+            if (split <= start) {
+                continue;
+            }
+
+            this.rollupQueriesMeter.mark();
+            return Optional.of(new RollupSelection(resolution, start, split));
+        }
+        return Optional.empty();
+    }
+
+    public List<String> getIndexNames(final RollupResolution resolution, final TimeRangeFilter timeRangeFilter) {
+        return this.indexSelectors.get(resolution).getIndexNames(timeRangeFilter);
+    }
+
+    public synchronized void flush() {
+        try (final Timer.Context ctx = flushTimer.time()) {
+            // All flows added before draining are contained in the drained buckets
+            final long drainedAt = this.clock.getAsLong();
+            final Map<RollupResolution, List<FlowDocument>> drained = this.aggregator.drain();
+
+            for (final RollupResolution resolution : RollupResolution.values()) {
+                final Map<String, FlowDocument> documents = this.pending.get(resolution);
+                for (final FlowDocument document : drained.getOrDefault(resolution, Collections.emptyList())) {
+                    documents.put(UUID.randomUUID().toString(), document);
+                }
+
+                try {
+                    persist(resolution, documents);
+                } catch (Exception e) {
+                    LOG.error("Failed to persist {} flow rollups. {} documents are retried with the next flush: {}",
+                            resolution, documents.size(), e.getMessage(), e);
+                    continue;
+                }
+
+                // Buckets can still receive flows until the longest flow spanning them has been exported
+                final long coveredFrom = resolution.ceil(this.startedAt);
+                final long coveredUntil = resolution.floor(drainedAt - this.maxFlowDurationMs);
+                if (coveredUntil > coveredFrom) {
+                    markCovered(resolution, coveredFrom, coveredUntil);
+                }
+            }
+        }
+    }
+
+    private void persist(final RollupResolution resolution, final Map<String, FlowDocument> documents) throws IOException {
+        if (documents.isEmpty()) {
+            return;
+        }
+
+        final BulkRequest<Map.Entry<String, FlowDocument>> bulkRequest = new BulkRequest<>(client, new ArrayList<>(documents.entrySet()), (entries) -> {
+            final Bulk.Builder bulkBuilder = new Bulk.Builder();
+            for (final Map.Entry<String, FlowDocument> entry : entries) {
+                final String index = indexStrategy.getIndex(resolution.getIndexPrefix(), Instant.ofEpochMilli(entry.getValue().getTimestamp()));
+                bulkBuilder.addAction(new Index.Builder(entry.getValue())
+                        .index(index)
+                        .type(TYPE)
+                        .id(entry.getKey())
+                        .build());
+            }
+            return new BulkWrapper(bulkBuilder);
+        }, bulkRetryCount);
+
+        try {
+            bulkRequest.execute();
+        } catch (final BulkException e) {
+            // Only keep the documents which have not been written
+            if (e.getBulkResult() != null) {
+                final List<Map.Entry<String, FlowDocument>> failed = getFailedDocuments(e);
+                final int written = documents.size() - failed.size();
+                documents.keySet().retainAll(failed.stream().map(Map.Entry::getKey).collect(Collectors.toSet()));
+                rollupsPersistedMeter.mark(written);
+            }
+            throw e;
+        }
+
+        rollupsPersistedMeter.mark(documents.size());
+        documents.clear();
+    }
+
+    /**
+     * Gets the documents which have not been written, as the bulk result does not know their type.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Map.Entry<String, FlowDocument>> getFailedDocuments(final BulkException e) {
+        return e.getBulkResult().getFailedDocuments();
+    }
+
+    private void markCovered(final RollupResolution resolution, final long from, final long until) {
+        synchronized (this.coverage) {
+            this.coverage.get(resolution).add(Range.closedOpen(from, until));
+        }
+
+        // Persist the coverage of this run, so that it survives restarts
+        final Coverage document = new Coverage(resolution.name(), from, until);
+        try {
+            final JestResult result = this.client.execute(new Index.Builder(document)
+                    .index(COVERAGE_INDEX)
+                    .type(COVERAGE_TYPE)
+                    .id(resolution.name() + "-" + from)
+                    .build());
+            if (!result.isSucceeded()) {
+                LOG.warn("Failed to persist {} rollup coverage: {}", resolution, result.getErrorMessage());
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to persist {} rollup coverage: {}", resolution, e.getMessage());
+        }
+    }
+
+    /**
+     * Rollups written before a restart are still valid - restore the time ranges covered by previous runs.
+     */
+    private void discoverAvailability() {
+        final String query = "{\"size\": 10000, \"query\": {\"match_all\": {}}}";
+        try {
+            final SearchResult result = client.execute(new Search.Builder(query)
+                    .addIndex(COVERAGE_INDEX)
+                    .addType(COVERAGE_TYPE)
+                    .setParameter("ignore_unavailable", "true")
+                    .build());
+            if (!result.isSucceeded()) {
+                LOG.debug("Failed to query rollup coverage: {}", result.getErrorMessage());
+                return;
+            }
+
+            for (final SearchResult.Hit<Coverage, Void> hit : result.getHits(Coverage.class)) {
+                final RollupResolution resolution = RollupResolution.valueOf(hit.source.resolution);
+                if (hit.source.end > hit.source.start) {
+                    synchronized (this.coverage) {
+                        this.coverage.get(resolution).add(Range.closedOpen(hit.source.start, hit.source.end));
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("Failed to query rollup coverage: {}", e.getMessage());
+        }
+        LOG.info("Flow rollups available for: {}", getCoverage());
+    }
+
+    protected void setClock(final LongSupplier clock) {
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    protected Map<RollupResolution, RangeSet<Long>> getCoverage() {
+        final Map<RollupResolution, RangeSet<Long>> coverage = new EnumMap<>(RollupResolution.class);
+        synchronized (this.coverage) {
+            this.coverage.forEach((resolution, ranges) -> coverage.put(resolution, TreeRangeSet.create(ranges)));
+        }
+        return coverage;
+    }
+
+    protected synchronized int getPending(final RollupResolution resolution) {
+        return this.pending.get(resolution).size();
+    }
+
+    /**
+     * A time range covered by the rollups of a resolution.
+     */
+    static class Coverage {
+        private String resolution;
+        private long start;
+        private long end;
+
+        Coverage(final String resolution, final long start, final long end) {
+            this.resolution = resolution;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.rollup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolutions at which flows are pre-aggregated.
+ *
+ * Ordered from the coarsest to the finest resolution.
+ */
+public enum RollupResolution {
+    HOUR("netflow-rollup-1h", TimeUnit.HOURS.toMillis(1)),
+    MINUTE("netflow-rollup-1m", TimeUnit.MINUTES.toMillis(1));
+
+    private final String indexPrefix;
+    private final long durationMs;
+
+    RollupResolution(final String indexPrefix, final long durationMs) {
+        this.indexPrefix = indexPrefix;
+        this.durationMs = durationMs;
+    }
+
+    public String getIndexPrefix() {
+        return this.indexPrefix;
+    }
+
+    public long getDurationMs() {
+        return this.durationMs;
+    }
+
+    /**
+     * Returns the start of the bucket containing the given timestamp.
+     */
+    public long floor(final long timestamp) {
+        return timestamp - Math.floorMod(timestamp, this.durationMs);
+    }
+
+    /**
+     * Returns the start of the first bucket not starting before the given timestamp.
+     */
+    public long ceil(final long timestamp) {
+        final long floor = floor(timestamp);
+        return floor == timestamp ? floor : floor + this.durationMs;
+    }
+
+    public boolean isAligned(final long timestamp) {
+        return Math.floorMod(timestamp, this.durationMs) == 0;
+    }
+}
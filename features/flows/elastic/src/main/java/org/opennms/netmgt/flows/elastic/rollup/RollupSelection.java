@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.rollup;
+
+import java.util.Objects;
+
+/**
+ * The part of a queried time range which can be answered using rollups of a resolution.
+ *
+ * The range from {@link #getStart()} to {@link #getEnd()} is covered by the rollups. The remainder of the queried
+ * range, starting at {@link #getEnd()}, must be answered using raw flows.
+ */
+public class RollupSelection {
+    private final RollupResolution resolution;
+    private final long start;
+    private final long end;
+
+    public RollupSelection(final RollupResolution resolution, final long start, final long end) {
+        this.resolution = Objects.requireNonNull(resolution);
+        this.start = start;
+        this.end = end;
+    }
+
+    public RollupResolution getResolution() {
+        return this.resolution;
+    }
+
+    public long getStart() {
+        return this.start;
+    }
+
+    public long getEnd() {
+        return this.end;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final RollupSelection that = (RollupSelection) o;
+        return this.start == that.start &&
+                this.end == that.end &&
+                this.resolution == that.resolution;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.resolution, this.start, this.end);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RollupSelection[resolution=%s, start=%d, end=%d]", this.resolution, this.start, this.end);
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.opennms.plugins.elasticsearch.rest.bulk.FailedItem;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class AsyncBulkWriterTest {
+
+    @Test
+    public void canWriteAllDocumentsInBatches() throws Exception {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+
+        final AsyncBulkWriter<Integer> writer = new AsyncBulkWriter<>(new MetricRegistry(),
+                documents -> batchSizes.add(documents.size()),
+                persisted::addAll,
+                2, 100, 50, 1000, 1000, 0);
+
+        for (int i=0; i<10; i++) {
+            writer.write(IntStream.range(i * 250, (i + 1) * 250).boxed().collect(Collectors.toList()));
+        }
+        writer.stop();
+
+        assertThat(persisted.size(), equalTo(2500));
+        assertThat(persisted.stream().sorted().collect(Collectors.toList()),
+                equalTo(IntStream.range(0, 2500).boxed().collect(Collectors.toList())));
+        assertThat(batchSizes, everyItem(lessThanOrEqualTo(100)));
+    }
+
+    @Test
+    public void canReduceBatchSizeOnFailures() throws Exception {
+        final AtomicInteger failures = new AtomicInteger();
+        final List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+
+        final AsyncBulkWriter<Integer> writer = new AsyncBulkWriter<>(new MetricRegistry(),
+                documents -> {
+                    failures.incrementAndGet();
+                    throw new IOException("es_rejected_execution_exception");
+                },
+                persisted::addAll,
+                1, 160, 10, 1000, 1000, 0);
+
+        writer.write(IntStream.range(0, 1000).boxed().collect(Collectors.toList()));
+        writer.stop();
+
+        // Nothing was persisted and the batch size dropped to the minimum
+        assertThat(persisted.size(), equalTo(0));
+        assertThat(writer.drainFailures().size(), equalTo(1000));
+        assertThat(writer.getBatchSize(), equalTo(10));
+    }
+
+    @Test
+    public void canRetryFailedDocuments() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+
+        final AsyncBulkWriter<Integer> writer = new AsyncBulkWriter<>(new MetricRegistry(),
+                documents -> {
+                    if (attempts.incrementAndGet() <= 2) {
+                        throw new IOException("es_rejected_execution_exception");
+                    }
+                },
+                persisted::addAll,
+                1, 100, 10, 1000, 1000, 2);
+
+        writer.write(IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+
+        // The documents of the failed requests are written by later requests
+        await().atMost(10, TimeUnit.SECONDS).until(persisted::size, equalTo(100));
+        assertThat(attempts.get(), greaterThanOrEqualTo(3));
+        writer.stop();
+
+        assertThat(persisted.stream().sorted().collect(Collectors.toList()),
+                equalTo(IntStream.range(0, 100).boxed().collect(Collectors.toList())));
+        assertThat(writer.drainFailures(), empty());
+    }
+
+    @Test
+    public void canReportDocumentsFailingPermanently() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final AsyncBulkWriter<Integer> writer = new AsyncBulkWriter<>(new MetricRegistry(),
+                documents -> {
+                    attempts.incrementAndGet();
+                    throw new IOException("mapper_parsing_exception");
+                },
+                documents -> {},
+                1, 100, 10, 1000, 1000, 2);
+
+        writer.write(IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+
+        // Each document is tried three times before being reported
+        final List<FailedItem<Integer>> failures = Collections.synchronizedList(new ArrayList<>());
+        await().atMost(10, TimeUnit.SECONDS).until(() -> {
+            failures.addAll(writer.drainFailures());
+            return failures.size();
+        }, equalTo(100));
+        assertThat(failures.stream().map(FailedItem::getItem).sorted().collect(Collectors.toList()),
+                equalTo(IntStream.range(0, 100).boxed().collect(Collectors.toList())));
+        assertThat(attempts.get(), greaterThanOrEqualTo(3));
+        assertThat(writer.drainFailures(), empty());
+        writer.stop();
+    }
+
+    @Test
+    public void canBeRestartedUsingTheSameRegistry() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        for (int i=0; i<2; i++) {
+            final AsyncBulkWriter<Integer> writer = new AsyncBulkWriter<>(metricRegistry, documents -> {}, documents -> {},
+                    1, 100, 10, 1000, 1000, 0);
+            assertThat(metricRegistry.getGauges().keySet(), hasItems("bulkSpooled", "bulkInFlight", "bulkBatchSize"));
+            writer.stop();
+            assertThat(metricRegistry.getGauges().keySet(), empty());
+        }
+    }
+}
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.flows.elastic;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -46,15 +47,18 @@ import com.google.common.collect.Lists;
 public class DocumentEnricherTest {
 
     private DocumentEnricher enricher;
+    private InterfaceToNodeCache interfaceToNodeCache;
     private AtomicInteger nodeDaoGetCounter;
+    private AtomicInteger nodeDaoFindMatchingCounter;
 
     @Before
     public void setUp() {
         final MockDocumentEnricherFactory factory = new MockDocumentEnricherFactory();
         enricher = factory.getEnricher();
         final NodeDao nodeDao = factory.getNodeDao();
-        final InterfaceToNodeCache interfaceToNodeCache = factory.getInterfaceToNodeCache();
+        interfaceToNodeCache = factory.getInterfaceToNodeCache();
         nodeDaoGetCounter = factory.getNodeDaoGetCounter();
+        nodeDaoFindMatchingCounter = factory.getNodeDaoFindMatchingCounter();
 
         interfaceToNodeCache.setNodeId("Default", InetAddressUtils.addr("10.0.0.1"), 1);
         interfaceToNodeCache.setNodeId("Default", InetAddressUtils.addr("10.0.0.2"), 2);
@@ -72,8 +76,42 @@ public class DocumentEnricherTest {
         documents.add(createFlowDocument("10.0.0.1", "10.0.0.3"));
         enricher.enrich(documents, new FlowSource("Default", "127.0.0.1"));
 
-        // get is also called for each save, so we account for those as well
-        assertEquals(6, nodeDaoGetCounter.get());
+        // get is only called for each save, the nodes are loaded using a single query
+        assertEquals(3, nodeDaoGetCounter.get());
+        assertEquals(1, nodeDaoFindMatchingCounter.get());
+
+        // All node data of the second batch is cached, including the unknown exporter
+        enricher.enrich(documents, new FlowSource("Default", "127.0.0.1"));
+        assertEquals(1, nodeDaoFindMatchingCounter.get());
+
+        assertEquals(Integer.valueOf(1), documents.get(0).getNodeSrc().getNodeId());
+        assertEquals(Integer.valueOf(2), documents.get(0).getNodeDst().getNodeId());
+        assertEquals(Integer.valueOf(3), documents.get(1).getNodeDst().getNodeId());
+        assertNull(documents.get(0).getNodeExporter());
+    }
+
+    @Test
+    public void verifyCacheInvalidation() {
+        final List<FlowDocument> documents = Lists.newArrayList();
+        documents.add(createFlowDocument("10.0.0.1", "10.0.0.2"));
+        enricher.enrich(documents, new FlowSource("Default", "127.0.0.1"));
+        assertEquals(1, nodeDaoFindMatchingCounter.get());
+
+        // Unrelated nodes do not affect the cache
+        enricher.invalidateNode(3);
+        enricher.enrich(documents, new FlowSource("Default", "127.0.0.1"));
+        assertEquals(1, nodeDaoFindMatchingCounter.get());
+
+        enricher.invalidateNode(2);
+        enricher.enrich(documents, new FlowSource("Default", "127.0.0.1"));
+        assertEquals(2, nodeDaoFindMatchingCounter.get());
+
+        // Negative lookups are invalidated by address
+        interfaceToNodeCache.setNodeId("Default", InetAddressUtils.addr("127.0.0.1"), 3);
+        enricher.invalidateAddress("127.0.0.1");
+        enricher.enrich(documents, new FlowSource("Default", "127.0.0.1"));
+        assertEquals(3, nodeDaoFindMatchingCounter.get());
+        assertEquals(Integer.valueOf(3), documents.get(0).getNodeExporter().getNodeId());
     }
 
     private static FlowDocument createFlowDocument(String sourceIp, String destIp) {
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.rollup;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.opennms.netmgt.flows.elastic.Direction;
+import org.opennms.netmgt.flows.elastic.FlowDocument;
+
+public class FlowRollupAggregatorTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void canDistributeBytesOverBuckets() {
+        final FlowRollupAggregator aggregator = new FlowRollupAggregator(Arrays.asList(RollupResolution.values()));
+
+        // 4 minutes, starting in the middle of a minute and spanning an hour boundary
+        final long start = 10 * HOUR - 90 * 1000;
+        aggregator.add(Collections.singletonList(createFlowDocument("http", start, start + 4 * MINUTE, 4000L, 0.0)));
+
+        final Map<RollupResolution, List<FlowDocument>> rollups = aggregator.drain();
+
+        final List<FlowDocument> minutes = sorted(rollups.get(RollupResolution.MINUTE));
+        assertThat(minutes.stream().map(FlowDocument::getFirstSwitched).collect(Collectors.toList()),
+                contains(10 * HOUR - 2 * MINUTE, 10 * HOUR - MINUTE, 10 * HOUR, 10 * HOUR + MINUTE, 10 * HOUR + 2 * MINUTE));
+        assertThat(minutes.stream().map(FlowDocument::getBytes).collect(Collectors.toList()),
+                contains(500L, 1000L, 1000L, 1000L, 500L));
+
+        final List<FlowDocument> hours = sorted(rollups.get(RollupResolution.HOUR));
+        assertThat(hours.stream().map(FlowDocument::getBytes).collect(Collectors.toList()),
+                contains(1500L, 2500L));
+        assertThat(hours.get(1).getLastSwitched(), equalTo(11 * HOUR - 1));
+
+        // Draining resets the aggregator
+        assertTrue(aggregator.drain().isEmpty());
+    }
+
+    @Test
+    public void canGroupAndScaleFlows() {
+        final FlowRollupAggregator aggregator = new FlowRollupAggregator(Collections.singletonList(RollupResolution.HOUR));
+
+        aggregator.add(Arrays.asList(
+                createFlowDocument("http", HOUR, HOUR, 100L, 10.0),
+                createFlowDocument("http", HOUR + MINUTE, HOUR + 2 * MINUTE, 100L, 0.0),
+                createFlowDocument("https", HOUR, HOUR + MINUTE, 100L, 0.0)));
+
+        final List<FlowDocument> hours = rollupsByApplication(aggregator.drain().get(RollupResolution.HOUR));
+        assertThat(hours, hasSize(2));
+        assertThat(hours.get(0).getApplication(), equalTo("http"));
+        assertThat(hours.get(0).getBytes(), equalTo(1100L));
+        assertThat(hours.get(0).getSamplingInterval(), equalTo(1.0));
+        assertThat(hours.get(1).getApplication(), equalTo("https"));
+        assertThat(hours.get(1).getBytes(), equalTo(100L));
+    }
+
+    private static List<FlowDocument> sorted(List<FlowDocument> documents) {
+        return documents.stream()
+                .sorted(Comparator.comparing(FlowDocument::getFirstSwitched))
+                .collect(Collectors.toList());
+    }
+
+    private static List<FlowDocument> rollupsByApplication(List<FlowDocument> documents) {
+        return documents.stream()
+                .sorted(Comparator.comparing(FlowDocument::getApplication))
+                .collect(Collectors.toList());
+    }
+
+    private static FlowDocument createFlowDocument(String application, long firstSwitched, long lastSwitched, long bytes, double samplingInterval) {
+        final FlowDocument document = new FlowDocument();
+        document.setTimestamp(lastSwitched);
+        document.setFirstSwitched(firstSwitched);
+        document.setLastSwitched(lastSwitched);
+        document.setBytes(bytes);
+        document.setSamplingInterval(samplingInterval);
+        document.setApplication(application);
+        document.setDirection(Direction.INGRESS);
+        document.setHost("10.0.0.1");
+        document.setLocation("Default");
+        return document;
+    }
+}
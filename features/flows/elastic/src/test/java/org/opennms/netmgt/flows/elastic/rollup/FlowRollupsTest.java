@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic.rollup;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.flows.elastic.Direction;
+import org.opennms.netmgt.flows.elastic.FlowDocument;
+import org.opennms.plugins.elasticsearch.rest.index.IndexStrategy;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import com.google.gson.Gson;
+
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchResult;
+
+public class FlowRollupsTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private static final long MAX_FLOW_DURATION = 2 * MINUTE;
+
+    private final AtomicBoolean failing = new AtomicBoolean(false);
+
+    private final List<String> bulkIds = new ArrayList<>();
+
+    private long now = 10 * HOUR;
+
+    private FlowRollups rollups;
+
+    @Before
+    public void setUp() throws IOException {
+        final JestClient client = mock(JestClient.class);
+        when(client.execute(any())).thenAnswer(invocation -> {
+            final Object action = invocation.getArguments()[0];
+            if (action instanceof Bulk) {
+                final Matcher matcher = Pattern.compile("\"_id\":\"([^\"]+)\"").matcher(((Bulk) action).getData(new Gson()));
+                while (matcher.find()) {
+                    this.bulkIds.add(matcher.group(1));
+                }
+                if (this.failing.get()) {
+                    throw new IOException("es_rejected_execution_exception");
+                }
+                final BulkResult result = mock(BulkResult.class);
+                when(result.isSucceeded()).thenReturn(true);
+                return result;
+            }
+            if (action instanceof Search) {
+                // No coverage persisted by previous runs
+                final SearchResult result = mock(SearchResult.class);
+                when(result.isSucceeded()).thenReturn(false);
+                return result;
+            }
+            final JestResult result = mock(JestResult.class);
+            when(result.isSucceeded()).thenReturn(true);
+            return result;
+        });
+
+        this.rollups = new FlowRollups(new MetricRegistry(), client, IndexStrategy.MONTHLY, 1, MAX_FLOW_DURATION, true, MINUTE);
+        this.rollups.setClock(() -> this.now);
+        this.rollups.start();
+        this.rollups.stop();
+    }
+
+    @Test
+    public void canRetryFailedRollups() {
+        this.rollups.add(Collections.singletonList(createFlowDocument(this.now + MINUTE, this.now + 2 * MINUTE)));
+
+        // Nothing is covered as long as the rollups have not been written
+        this.failing.set(true);
+        this.now += HOUR;
+        this.rollups.flush();
+        assertThat(this.rollups.getPending(RollupResolution.MINUTE), equalTo(1));
+        assertThat(this.rollups.getPending(RollupResolution.HOUR), equalTo(1));
+        assertTrue(this.rollups.getCoverage().get(RollupResolution.MINUTE).isEmpty());
+        assertThat(this.rollups.select(10 * HOUR, 10 * HOUR + 30 * MINUTE, MINUTE), equalTo(Optional.empty()));
+
+        // The pending rollups are written with the next flush, using the same IDs
+        this.failing.set(false);
+        this.now += MINUTE;
+        this.rollups.flush();
+        assertThat(this.rollups.getPending(RollupResolution.MINUTE), equalTo(0));
+        assertThat(this.rollups.getPending(RollupResolution.HOUR), equalTo(0));
+        assertThat(this.bulkIds.size(), equalTo(4));
+        assertThat(this.bulkIds.subList(2, 4), equalTo(this.bulkIds.subList(0, 2)));
+
+        // Buckets ending before the longest flow could have been exported are covered
+        assertThat(this.rollups.getCoverage().get(RollupResolution.MINUTE),
+                equalTo(ImmutableRangeSet.of(Range.closedOpen(10 * HOUR, 11 * HOUR - MINUTE))));
+        assertTrue(this.rollups.getCoverage().get(RollupResolution.HOUR).isEmpty());
+    }
+
+    @Test
+    public void canSelectCoveredPrefix() {
+        this.now += 3 * HOUR + 30 * MINUTE;
+        this.rollups.flush();
+
+        // Covered until 13:28
+        assertThat(this.rollups.select(10 * HOUR, 12 * HOUR, HOUR),
+                equalTo(Optional.of(new RollupSelection(RollupResolution.HOUR, 10 * HOUR, 12 * HOUR))));
+
+        // The end of the range is not aligned - the remainder is answered using raw flows
+        assertThat(this.rollups.select(10 * HOUR, 14 * HOUR + 10 * 1000, HOUR),
+                equalTo(Optional.of(new RollupSelection(RollupResolution.HOUR, 10 * HOUR, 13 * HOUR))));
+        assertThat(this.rollups.select(10 * HOUR, 14 * HOUR, 10 * MINUTE),
+                equalTo(Optional.of(new RollupSelection(RollupResolution.MINUTE, 10 * HOUR, 13 * HOUR + 20 * MINUTE))));
+        assertThat(this.rollups.select(10 * HOUR, 14 * HOUR, 4 * HOUR),
+                equalTo(Optional.of(new RollupSelection(RollupResolution.HOUR, 10 * HOUR, 13 * HOUR))));
+        assertThat(this.rollups.select(10 * HOUR, 10 * HOUR + 40 * MINUTE, 40 * MINUTE),
+                equalTo(Optional.of(new RollupSelection(RollupResolution.MINUTE, 10 * HOUR, 10 * HOUR + 40 * MINUTE))));
+
+        // Unaligned starts or steps are never answered from rollups
+        assertThat(this.rollups.select(10 * HOUR + 1, 12 * HOUR, HOUR), equalTo(Optional.empty()));
+        assertThat(this.rollups.select(10 * HOUR, 12 * HOUR, 1000), equalTo(Optional.empty()));
+
+        // Ranges starting before the rollups were started are not covered
+        assertThat(this.rollups.select(9 * HOUR, 12 * HOUR, HOUR), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void doesNotAnswerGaps() {
+        // A flush failing during the second run leaves a gap
+        this.now += 2 * HOUR;
+        this.rollups.flush();
+
+        this.failing.set(true);
+        this.now += HOUR;
+        this.rollups.add(Collections.singletonList(createFlowDocument(11 * HOUR + 30 * MINUTE, 11 * HOUR + 31 * MINUTE)));
+        this.rollups.flush();
+
+        // Restart
+        this.rollups.start();
+        this.rollups.stop();
+        this.failing.set(false);
+        this.now += 2 * HOUR;
+        this.rollups.flush();
+
+        assertThat(this.rollups.select(10 * HOUR, 11 * HOUR, MINUTE),
+                equalTo(Optional.of(new RollupSelection(RollupResolution.MINUTE, 10 * HOUR, 11 * HOUR))));
+        assertThat(this.rollups.select(10 * HOUR, 15 * HOUR, MINUTE),
+                equalTo(Optional.of(new RollupSelection(RollupResolution.MINUTE, 10 * HOUR, 11 * HOUR + 58 * MINUTE))));
+        assertThat(this.rollups.select(12 * HOUR, 13 * HOUR, MINUTE), equalTo(Optional.empty()));
+        assertThat(this.rollups.select(13 * HOUR, 14 * HOUR, MINUTE),
+                equalTo(Optional.of(new RollupSelection(RollupResolution.MINUTE, 13 * HOUR, 14 * HOUR))));
+    }
+
+    private static FlowDocument createFlowDocument(long firstSwitched, long lastSwitched) {
+        final FlowDocument document = new FlowDocument();
+        document.setTimestamp(lastSwitched);
+        document.setFirstSwitched(firstSwitched);
+        document.setLastSwitched(lastSwitched);
+        document.setBytes(100L);
+        document.setApplication("http");
+        document.setDirection(Direction.INGRESS);
+        document.setHost("10.0.0.1");
+        document.setLocation("Default");
+        return document;
+    }
+}
@@ -0,0 +1,401 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.api;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.opennms.netmgt.measurements.model.Source;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Caches the samples of recently fetched sources in order to avoid re-reading
+ * the complete time range when the same graphs are refreshed.
+ *
+ * The samples are stored in step-aligned blocks, one for every source, keyed by
+ * the resource, attribute, data source, aggregation and the requested step.
+ * When a request starts within the blocks of all of its sources, only the samples
+ * following the blocks (the tail of a sliding window) are fetched from the delegate,
+ * and the remaining samples are served from memory.
+ *
+ * Only samples which are old enough not to change anymore are cached: samples within the
+ * last steps, the heartbeat or the interval of the request, whichever is longest, and trailing
+ * samples without a value are always fetched again. If the tail cannot
+ * be aligned with the cached blocks, i.e. because the delegate picked a different
+ * resolution, the complete range is fetched instead.
+ *
+ * The blocks are evicted in least-recently-used order once the memory budget is exceeded.
+ */
+public class CachingFetchStrategy implements MeasurementFetchStrategy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingFetchStrategy.class);
+
+    /**
+     * Memory budget of the cache, in megabytes. The cache is disabled when set to 0.
+     */
+    public static final long DEFAULT_CACHE_SIZE_MB = Long.getLong("org.opennms.measurements.cache.size", 32L);
+
+    /**
+     * Number of steps, counted back from the time of a fetch, during which the samples may still
+     * change and are therefore never cached.
+     */
+    public static final int UNSETTLED_STEPS = Integer.getInteger("org.opennms.measurements.cache.unsettledSteps", 2);
+
+    /**
+     * Approximate memory used by a block, in addition to its values.
+     */
+    private static final int BLOCK_OVERHEAD_BYTES = 128;
+
+    private final MeasurementFetchStrategy m_delegate;
+
+    private final Cache<BlockKey, Block> m_blocks;
+
+    public CachingFetchStrategy(MeasurementFetchStrategy delegate) {
+        this(delegate, DEFAULT_CACHE_SIZE_MB * 1024L * 1024L);
+    }
+
+    public CachingFetchStrategy(MeasurementFetchStrategy delegate, long maxBytes) {
+        m_delegate = Preconditions.checkNotNull(delegate, "delegate argument");
+        if (maxBytes > 0) {
+            m_blocks = CacheBuilder.newBuilder()
+                    .maximumWeight(maxBytes)
+                    .weigher(new Weigher<BlockKey, Block>() {
+                        @Override
+                        public int weigh(BlockKey key, Block block) {
+                            return BLOCK_OVERHEAD_BYTES + 8 * block.values.length;
+                        }
+                    })
+                    .recordStats()
+                    .build();
+        } else {
+            m_blocks = null;
+        }
+    }
+
+    @Override
+    public FetchResults fetch(long start, long end, long step, int maxrows, Long interval, Long heartbeat, List<Source> sources, boolean relaxed) throws Exception {
+        if (m_blocks == null || sources.isEmpty() || end <= start) {
+            return m_delegate.fetch(start, end, step, maxrows, interval, heartbeat, sources, relaxed);
+        }
+
+        // The keys must be built before invoking the delegate, since it may
+        // replace the attribute of a source with its fallback attribute
+        final List<BlockKey> keys = Lists.newArrayListWithCapacity(sources.size());
+        for (Source source : sources) {
+            keys.add(new BlockKey(source, step, interval, heartbeat));
+        }
+        final long fetchedAt = now();
+
+        // Determine the part of the range which is not covered by the cached blocks
+        final List<Block> blocks = Lists.newArrayListWithCapacity(sources.size());
+        Long cachedStep = null;
+        long uncachedFrom = end;
+        for (BlockKey key : keys) {
+            final Block block = m_blocks.getIfPresent(key);
+            if (block == null || (cachedStep != null && cachedStep != block.step)) {
+                cachedStep = null;
+                break;
+            }
+            // The first row of the response is the one which contains the start of the range
+            if (block.first > block.alignUp(start - block.step + 1)) {
+                cachedStep = null;
+                break;
+            }
+            cachedStep = block.step;
+            uncachedFrom = Math.min(uncachedFrom, block.getLast() + block.step);
+            blocks.add(block);
+        }
+
+        if (cachedStep != null) {
+            // Always fetch at least one step, so that constants and missing sources are reported by the delegate
+            final long tailStart = Math.max(start, Math.min(uncachedFrom, end - cachedStep));
+            if (tailStart > start) {
+                final FetchResults tail = m_delegate.fetch(tailStart, end, step, getTailMaxRows(start, end, tailStart, maxrows),
+                        interval, heartbeat, sources, relaxed);
+                if (tail == null) {
+                    return null;
+                }
+                final FetchResults results = merge(start, tail, sources, blocks);
+                if (results != null) {
+                    LOG.debug("Served the samples in [{}, {}) from the cache, and fetched the samples in [{}, {}].",
+                            start, tailStart, tailStart, end);
+                    store(results, sources, keys, interval, heartbeat, fetchedAt);
+                    return results;
+                }
+                LOG.debug("The samples fetched in [{}, {}] are not aligned with the cached samples. Fetching the complete range.",
+                        tailStart, end);
+            }
+        }
+
+        final FetchResults results = m_delegate.fetch(start, end, step, maxrows, interval, heartbeat, sources, relaxed);
+        if (results != null) {
+            store(results, sources, keys, interval, heartbeat, fetchedAt);
+        }
+        return results;
+    }
+
+    public CacheStats getStats() {
+        return m_blocks != null ? m_blocks.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+    public void invalidateAll() {
+        if (m_blocks != null) {
+            m_blocks.invalidateAll();
+        }
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Scales the maximum number of rows to the length of the tail, so that the
+     * delegate picks the same resolution as it would for the complete range.
+     */
+    private static int getTailMaxRows(long start, long end, long tailStart, int maxrows) {
+        if (maxrows <= 0) {
+            return maxrows;
+        }
+        return (int)Math.max(1, (long)Math.ceil((double)maxrows * (end - tailStart) / (end - start)));
+    }
+
+    /**
+     * Prepends the cached samples to the samples of the tail.
+     *
+     * @return <code>null</code> if the tail is not aligned with, or does not immediately follow, the cached blocks
+     */
+    private static FetchResults merge(long start, FetchResults tail, List<Source> sources, List<Block> blocks) {
+        final long step = blocks.get(0).step;
+        final long[] tailTimestamps = tail.getTimestamps();
+        if (tail.getStep() != step || tailTimestamps.length < 1 || !isContiguous(tailTimestamps, step)) {
+            return null;
+        }
+        final long tailFirst = tailTimestamps[0];
+        final long first = blocks.get(0).alignUp(start - step + 1);
+        for (Block block : blocks) {
+            if (floorMod(tailFirst - block.first, step) != 0 || tailFirst > block.getLast() + step) {
+                return null;
+            }
+        }
+
+        final int numCachedRows = tailFirst > first ? (int)((tailFirst - first) / step) : 0;
+        final int numRows = numCachedRows + tailTimestamps.length;
+        final long[] timestamps = new long[numRows];
+        for (int k = 0; k < numCachedRows; k++) {
+            timestamps[k] = first + k * step;
+        }
+        System.arraycopy(tailTimestamps, 0, timestamps, numCachedRows, tailTimestamps.length);
+
+        final Map<String, double[]> columns = Maps.newHashMapWithExpectedSize(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            final String label = sources.get(i).getLabel();
+            final double[] tailColumn = tail.getColumns().get(label);
+            if (tailColumn == null) {
+                // The source is missing, and the request is not relaxed
+                continue;
+            }
+            final double[] column = new double[numRows];
+            if (numCachedRows > 0) {
+                blocks.get(i).copyTo(first, column, numCachedRows);
+            }
+            System.arraycopy(tailColumn, 0, column, numCachedRows, tailTimestamps.length);
+            columns.put(label, column);
+        }
+
+        final FetchResults results = new FetchResults(timestamps, columns, step, tail.getConstants());
+        results.getMissingSources().addAll(tail.getMissingSources());
+        results.getFetchDurations().putAll(tail.getFetchDurations());
+        return results;
+    }
+
+    /**
+     * Caches the settled samples of the given results.
+     */
+    private void store(FetchResults results, List<Source> sources, List<BlockKey> keys, Long interval, Long heartbeat, long fetchedAt) {
+        final long step = results.getStep();
+        final long[] timestamps = results.getTimestamps();
+        if (step <= 0 || timestamps.length < 1 || !isContiguous(timestamps, step)) {
+            return;
+        }
+
+        // Only keep the samples which are old enough not to be updated anymore
+        final long settledUntil = fetchedAt - getUnsettledDuration(step, interval, heartbeat);
+        int numRows = 0;
+        while (numRows < timestamps.length && timestamps[numRows] <= settledUntil) {
+            numRows++;
+        }
+        // The delegate may use a longer heartbeat than the one requested, so samples may still
+        // arrive for the trailing rows without values
+        while (numRows > 0 && hasMissingValue(results, sources, numRows - 1)) {
+            numRows--;
+        }
+        if (numRows < 1) {
+            return;
+        }
+
+        for (int i = 0; i < sources.size(); i++) {
+            final String label = sources.get(i).getLabel();
+            final double[] column = results.getColumns().get(label);
+            if (column == null || results.getMissingSources().contains(label)) {
+                m_blocks.invalidate(keys.get(i));
+                continue;
+            }
+            final double[] values = new double[numRows];
+            System.arraycopy(column, 0, values, 0, numRows);
+            m_blocks.put(keys.get(i), new Block(timestamps[0], step, values));
+        }
+    }
+
+    /**
+     * Returns the duration, counted back from the time of a fetch, during which samples may still be updated.
+     */
+    private static long getUnsettledDuration(long step, Long interval, Long heartbeat) {
+        long duration = UNSETTLED_STEPS * step;
+        if (interval != null) {
+            duration = Math.max(duration, interval);
+        }
+        if (heartbeat != null) {
+            duration = Math.max(duration, heartbeat);
+        }
+        return duration;
+    }
+
+    private static boolean hasMissingValue(FetchResults results, List<Source> sources, int row) {
+        for (Source source : sources) {
+            final double[] column = results.getColumns().get(source.getLabel());
+            if (column != null && Double.isNaN(column[row])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isContiguous(long[] timestamps, long step) {
+        for (int k = 1; k < timestamps.length; k++) {
+            if (timestamps[k] - timestamps[k - 1] != step) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long floorMod(long x, long y) {
+        final long mod = x % y;
+        return mod < 0 ? mod + y : mod;
+    }
+
+    /**
+     * Identifies the samples of a source, independently of its label.
+     */
+    private static class BlockKey {
+        private final String resourceId;
+        private final String attribute;
+        private final String fallbackAttribute;
+        private final String dataSource;
+        private final String aggregation;
+        private final long step;
+        private final Long interval;
+        private final Long heartbeat;
+
+        private BlockKey(Source source, long step, Long interval, Long heartbeat) {
+            this.resourceId = source.getResourceId();
+            this.attribute = source.getAttribute();
+            this.fallbackAttribute = source.getFallbackAttribute();
+            this.dataSource = source.getDataSource();
+            this.aggregation = source.getAggregation();
+            this.step = step;
+            this.interval = interval;
+            this.heartbeat = heartbeat;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final BlockKey other = (BlockKey) obj;
+            return step == other.step
+                    && Objects.equals(resourceId, other.resourceId)
+                    && Objects.equals(attribute, other.attribute)
+                    && Objects.equals(fallbackAttribute, other.fallbackAttribute)
+                    && Objects.equals(dataSource, other.dataSource)
+                    && Objects.equals(aggregation, other.aggregation)
+                    && Objects.equals(interval, other.interval)
+                    && Objects.equals(heartbeat, other.heartbeat);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resourceId, attribute, fallbackAttribute, dataSource, aggregation, step, interval, heartbeat);
+        }
+    }
+
+    /**
+     * Contiguous, step-aligned samples of a single source.
+     */
+    private static class Block {
+        private final long first;
+        private final long step;
+        private final double[] values;
+
+        private Block(long first, long step, double[] values) {
+            this.first = first;
+            this.step = step;
+            this.values = values;
+        }
+
+        private long getLast() {
+            return first + (values.length - 1) * step;
+        }
+
+        /**
+         * Returns the first timestamp of the block's grid which is greater than or equal to the given timestamp.
+         */
+        private long alignUp(long timestamp) {
+            return timestamp + floorMod(first - timestamp, step);
+        }
+
+        private void copyTo(long from, double[] dest, int length) {
+            System.arraycopy(values, (int)((from - first) / step), dest, 0, length);
+        }
+    }
+}
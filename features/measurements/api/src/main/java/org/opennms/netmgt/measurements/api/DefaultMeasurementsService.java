@@ -29,6 +29,8 @@
 package org.opennms.netmgt.measurements.api;
 
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.opennms.netmgt.measurements.api.exceptions.FetchException;
 import org.opennms.netmgt.measurements.api.exceptions.MeasurementException;
@@ -40,6 +42,10 @@ import org.opennms.netmgt.measurements.model.Source;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.RowSortedTable;
 
@@ -51,11 +57,42 @@ public class DefaultMeasurementsService implements MeasurementsService {
     private final FilterEngine filterEngine;
     private final QueryRequestValidator queryRequestValidator = new QueryRequestValidator();
 
+    /**
+     * Time spent fetching the measurements of a request.
+     */
+    private final Timer fetchTimer;
+    /**
+     * Number of sources fetched by a request.
+     */
+    private final Histogram fetchFanOut;
+    /**
+     * Time spent fetching the measurements of a single source.
+     */
+    private final Timer sourceFetchTimer;
+    /**
+     * Sources for which no measurements could be fetched.
+     */
+    private final Meter missingSources;
+    /**
+     * Requests answered with partial results.
+     */
+    private final Meter partialResults;
+
     @Autowired
     public DefaultMeasurementsService(MeasurementFetchStrategy fetchStrategy, ExpressionEngine expressionEngine, FilterEngine filterEngine) {
+        this(fetchStrategy, expressionEngine, filterEngine, new MetricRegistry());
+    }
+
+    public DefaultMeasurementsService(MeasurementFetchStrategy fetchStrategy, ExpressionEngine expressionEngine, FilterEngine filterEngine, MetricRegistry metrics) {
         this.fetchStrategy = Preconditions.checkNotNull(fetchStrategy);
         this.expressionEngine = Preconditions.checkNotNull(expressionEngine);
         this.filterEngine = Preconditions.checkNotNull(filterEngine);
+        Preconditions.checkNotNull(metrics);
+        fetchTimer = metrics.timer("fetch");
+        fetchFanOut = metrics.histogram(MetricRegistry.name("fetch", "fanout"));
+        sourceFetchTimer = metrics.timer(MetricRegistry.name("fetch", "source"));
+        missingSources = metrics.meter(MetricRegistry.name("fetch", "missing"));
+        partialResults = metrics.meter(MetricRegistry.name("fetch", "partial"));
     }
 
     @Override
@@ -64,6 +101,8 @@ public class DefaultMeasurementsService implements MeasurementsService {
 
         // Fetch the measurements
         FetchResults results;
+        fetchFanOut.update(request.getSources().size());
+        final Timer.Context fetchTimerContext = fetchTimer.time();
         try {
             results = fetchStrategy.fetch(
                     request.getStart(),
@@ -76,11 +115,22 @@ public class DefaultMeasurementsService implements MeasurementsService {
                     request.isRelaxed());
         } catch (Exception e) {
             throw new FetchException(e, "Fetch failed: {}", e.getMessage());
+        } finally {
+            fetchTimerContext.stop();
         }
         if (results == null) {
             throw new ResourceNotFoundException(request);
         }
 
+        for (final Long duration : results.getFetchDurations().values()) {
+            sourceFetchTimer.update(duration, TimeUnit.NANOSECONDS);
+        }
+        final Set<String> missing = results.getMissingSources();
+        if (!missing.isEmpty()) {
+            missingSources.mark(missing.size());
+            partialResults.mark();
+        }
+
         // Apply the expression to the fetch results
         expressionEngine.applyExpressions(request, results);
 
@@ -107,6 +157,9 @@ public class DefaultMeasurementsService implements MeasurementsService {
         response.setTimestamps(results.getTimestamps());
         response.setColumns(results.getColumns());
         response.setConstants(results.getConstants());
+        if (!missing.isEmpty()) {
+            response.setMissingSources(missing.toArray(new String[missing.size()]));
+        }
         return response;
     }
 
@@ -30,11 +30,13 @@ package org.opennms.netmgt.measurements.api;
 
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 import com.google.common.collect.RowSortedTable;
+import com.google.common.collect.Sets;
 import com.google.common.collect.TreeBasedTable;
 
 /**
@@ -52,6 +54,17 @@ public class FetchResults {
 
     private final Map<String, Object> m_constants;
 
+    /**
+     * Labels of the sources for which no values could be fetched,
+     * and whose columns were filled with NaNs.
+     */
+    private final Set<String> m_missingSources = Sets.newLinkedHashSet();
+
+    /**
+     * Time spent fetching the values of each source, in nanoseconds.
+     */
+    private final Map<String, Long> m_fetchDurations = Maps.newHashMap();
+
     public FetchResults(final long[] timestamps, Map<String, double[]> columns, final long step, final Map<String, Object> constants) {
         Preconditions.checkNotNull(timestamps, "timestamps argument");
         Preconditions.checkNotNull(columns, "columns argument");
@@ -136,12 +149,21 @@ public class FetchResults {
         return m_constants;
     }
 
+    public Set<String> getMissingSources() {
+        return m_missingSources;
+    }
+
+    public Map<String, Long> getFetchDurations() {
+        return m_fetchDurations;
+    }
+
     public String toString() {
        return Objects.toStringHelper(this.getClass())
             .add("timestamps", Arrays.toString(m_timestamps))
             .add("columns", m_columns)
             .add("step", m_step)
             .add("constants", m_constants)
+            .add("missingSources", m_missingSources)
             .toString();
     }
 
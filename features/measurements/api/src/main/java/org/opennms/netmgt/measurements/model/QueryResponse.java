@@ -88,6 +88,11 @@ public class QueryResponse {
      */
     private List<QueryConstant> constants;
 
+    /**
+     * Labels of the sources for which no values could be fetched
+     */
+    private String[] missingSources;
+
     @XmlAttribute(name = "step")
     public long getStep() {
         return step;
@@ -190,6 +195,15 @@ public class QueryResponse {
         this.constants = c;
     }
 
+    @XmlElement(name="missing-sources")
+    public String[] getMissingSources() {
+        return missingSources;
+    }
+
+    public void setMissingSources(final String[] missingSources) {
+        this.missingSources = missingSources;
+    }
+
     /**
      * Convenience method.
      */
@@ -219,13 +233,14 @@ public class QueryResponse {
              && com.google.common.base.Objects.equal(this.constants, other.constants)
              && Arrays.equals(this.timestamps, other.timestamps)
              && Arrays.equals(this.labels, other.labels)
-             && Arrays.equals(this.columns, other.columns);
+             && Arrays.equals(this.columns, other.columns)
+             && Arrays.equals(this.missingSources, other.missingSources);
     }
 
     @Override
     public int hashCode() {
        return com.google.common.base.Objects.hashCode(
-                 this.step, this.start, this.end, this.timestamps, this.labels, this.columns, this.constants);
+                 this.step, this.start, this.end, this.timestamps, this.labels, this.columns, this.constants, this.missingSources);
     }
 
     @Override
@@ -238,6 +253,7 @@ public class QueryResponse {
                  .add("Labels", Arrays.toString(this.labels))
                  .add("Columns", Arrays.toString(this.columns))
                  .add("Constants", this.constants)
+                 .add("MissingSources", Arrays.toString(this.missingSources))
                  .toString();
     }
 
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Performs the individual fetches of a measurements request in parallel, using
+ * a bounded number of threads, and collects their results until the deadline
+ * of the request expires.
+ *
+ * When limited to a single thread, or when there is a single fetch to perform,
+ * the fetches are performed sequentially in the calling thread.
+ *
+ * In relaxed mode, fetches which fail or which do not complete in time are
+ * omitted from the results so that the request can be answered with partial
+ * results. Otherwise, the first failure is rethrown.
+ */
+public class ParallelFetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelFetcher.class);
+
+    /**
+     * Default number of fetches performed concurrently by a fetch strategy.
+     */
+    public static final int DEFAULT_PARALLELISM = Integer.getInteger("org.opennms.measurements.fetch.parallelism", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Default time in milliseconds after which the fetches of a request are abandoned, 0 to disable.
+     */
+    public static final long DEFAULT_TIMEOUT_MS = Long.getLong("org.opennms.measurements.fetch.timeout", 0L);
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    public ParallelFetcher(final String name, final int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        if (this.parallelism > 1) {
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(this.parallelism, this.parallelism,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        } else {
+            executor = null;
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Performs the given fetches.
+     *
+     * @param tasks the fetches, by key
+     * @param deadline the deadline of the request
+     * @param relaxed when <code>true</code>, failed and late fetches are omitted from the results instead of failing the request
+     * @return the results of the fetches which completed successfully
+     * @throws TimeoutException if a fetch did not complete before the deadline, when not relaxed
+     * @throws Exception the exception thrown by the first failed fetch, when not relaxed
+     */
+    public <K, V> Result<K, V> fetchAll(final Map<K, ? extends Callable<V>> tasks, final Deadline deadline, final boolean relaxed) throws Exception {
+        final Result<K, V> result = new Result<>();
+        if (executor == null || tasks.size() < 2) {
+            for (final Map.Entry<K, ? extends Callable<V>> task : tasks.entrySet()) {
+                if (deadline.isExpired()) {
+                    timedOut(task.getKey(), relaxed);
+                    continue;
+                }
+                final long start = System.nanoTime();
+                try {
+                    result.add(task.getKey(), task.getValue().call(), System.nanoTime() - start);
+                } catch (Exception e) {
+                    failed(task.getKey(), e, relaxed);
+                }
+            }
+            return result;
+        }
+
+        final Map<K, Future<Timed<V>>> futures = new LinkedHashMap<>();
+        for (final Map.Entry<K, ? extends Callable<V>> task : tasks.entrySet()) {
+            futures.put(task.getKey(), executor.submit(new Timed<V>(task.getValue())));
+        }
+        try {
+            for (final Map.Entry<K, Future<Timed<V>>> future : futures.entrySet()) {
+                try {
+                    final Timed<V> timed = deadline.isUnbounded() ? future.getValue().get()
+                            : future.getValue().get(deadline.getRemainingNanos(), TimeUnit.NANOSECONDS);
+                    result.add(future.getKey(), timed.value, timed.duration);
+                } catch (ExecutionException e) {
+                    failed(future.getKey(), e.getCause(), relaxed);
+                } catch (TimeoutException e) {
+                    timedOut(future.getKey(), relaxed);
+                }
+            }
+        } finally {
+            // Don't keep working on behalf of a request which already completed
+            for (final Future<Timed<V>> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+        return result;
+    }
+
+    private static void timedOut(final Object key, final boolean relaxed) throws TimeoutException {
+        if (!relaxed) {
+            throw new TimeoutException("Fetch of " + key + " did not complete before the deadline.");
+        }
+        LOG.warn("Fetch of {} did not complete before the deadline. Omitting it from the results.", key);
+    }
+
+    private static void failed(final Object key, final Throwable t, final boolean relaxed) throws Exception {
+        if (!relaxed) {
+            if (t instanceof Exception) {
+                throw (Exception)t;
+            } else if (t instanceof Error) {
+                throw (Error)t;
+            }
+            throw new ExecutionException(t);
+        }
+        LOG.warn("Fetch of {} failed. Omitting it from the results.", key, t);
+    }
+
+    /**
+     * The results of the fetches which completed successfully.
+     */
+    public static class Result<K, V> {
+        private final Map<K, V> values = Maps.newLinkedHashMap();
+        private final Map<K, Long> durations = Maps.newHashMap();
+
+        private void add(final K key, final V value, final long duration) {
+            values.put(key, value);
+            durations.put(key, duration);
+        }
+
+        public Map<K, V> getValues() {
+            return values;
+        }
+
+        /**
+         * @return the time spent performing each fetch, in nanoseconds
+         */
+        public Map<K, Long> getDurations() {
+            return durations;
+        }
+    }
+
+    /**
+     * The point in time after which the fetches of a request are abandoned.
+     */
+    public static class Deadline {
+        private static final Deadline NONE = new Deadline(0L);
+
+        private final long expiresAt;
+
+        private Deadline(final long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return a deadline expiring after the given time, or none if the time is not positive
+         */
+        public static Deadline after(final long timeout, final TimeUnit unit) {
+            if (timeout <= 0) {
+                return NONE;
+            }
+            return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+        }
+
+        /**
+         * @return a deadline for a request starting now, using the default timeout
+         */
+        public static Deadline fromDefaultTimeout() {
+            return after(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        public boolean isUnbounded() {
+            return this == NONE;
+        }
+
+        public long getRemainingNanos() {
+            return isUnbounded() ? Long.MAX_VALUE : expiresAt - System.nanoTime();
+        }
+
+        public boolean isExpired() {
+            return !isUnbounded() && getRemainingNanos() <= 0;
+        }
+    }
+
+    private static class Timed<V> implements Callable<Timed<V>> {
+        private final Callable<V> task;
+        private V value;
+        private long duration;
+
+        private Timed(final Callable<V> task) {
+            this.task = task;
+        }
+
+        @Override
+        public Timed<V> call() throws Exception {
+            final long start = System.nanoTime();
+            value = task.call();
+            duration = System.nanoTime() - start;
+            return this;
+        }
+    }
+}
@@ -85,6 +85,7 @@ public class Utils {
 
     /**
      * Enrich the <code>fetchResults</code> with NaN values for all <code>sources</code> which do not have values in the <code>fetchResults</code>.
+     * These sources are recorded in {@link FetchResults#getMissingSources()}.
      *
      * @param fetchResults
      * @param sources
@@ -96,6 +97,7 @@ public class Utils {
         for (Source eachSource : sources) {
             if (!fetchResults.getColumns().containsKey(eachSource.getLabel())) {
                 fetchResults.getColumns().put(eachSource.getLabel(), createNaNArray(rowCount));
+                fetchResults.getMissingSources().add(eachSource.getLabel());
             }
         }
     }
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opennms.netmgt.measurements.model.Source;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class CachingFetchStrategyTest {
+
+    private static final long STEP = 300 * 1000L;
+
+    private static final long NOW = 1000 * STEP;
+
+    private final MockFetchStrategy delegate = new MockFetchStrategy();
+
+    private final CachingFetchStrategy cache = new CachingFetchStrategy(delegate, 1024 * 1024) {
+        @Override
+        protected long now() {
+            return NOW;
+        }
+    };
+
+    @Test
+    public void canServeSlidingWindowFromCache() throws Exception {
+        final long start = NOW - 100 * STEP;
+        FetchResults results = cache.fetch(start, NOW, STEP, 0, null, null, getSources(), false);
+        assertEquals(1, delegate.fetches.size());
+        assertEquals(start, (long)delegate.fetches.get(0)[0]);
+        assertResultsEqual(delegate.fetch(start, NOW, STEP, 0, null, null, getSources(), false), results);
+
+        // Slide the window by three steps; only the unsettled rows and the new rows should be fetched
+        delegate.fetches.clear();
+        results = cache.fetch(start + 3 * STEP, NOW + 3 * STEP, STEP, 0, null, null, getSources(), false);
+        assertEquals(1, delegate.fetches.size());
+        assertEquals(NOW - STEP, (long)delegate.fetches.get(0)[0]);
+        assertResultsEqual(delegate.fetch(start + 3 * STEP, NOW + 3 * STEP, STEP, 0, null, null, getSources(), false), results);
+    }
+
+    @Test
+    public void canFetchCompleteRangeWhenResolutionChanges() throws Exception {
+        final long start = NOW - 100 * STEP;
+        cache.fetch(start, NOW, STEP, 0, null, null, getSources(), false);
+
+        // The delegate uses a coarser resolution for the tail
+        delegate.fetches.clear();
+        delegate.coarseStepFrom = NOW - 10 * STEP;
+        final FetchResults results = cache.fetch(start + STEP, NOW + STEP, STEP, 0, null, null, getSources(), false);
+        assertEquals(2, delegate.fetches.size());
+        assertEquals(start + STEP, (long)delegate.fetches.get(1)[0]);
+        assertEquals(STEP, results.getStep());
+    }
+
+    @Test
+    public void canFetchCompleteRangeWhenStartIsNotCached() throws Exception {
+        cache.fetch(NOW - 10 * STEP, NOW, STEP, 0, null, null, getSources(), false);
+
+        delegate.fetches.clear();
+        final FetchResults results = cache.fetch(NOW - 20 * STEP, NOW, STEP, 0, null, null, getSources(), false);
+        assertEquals(1, delegate.fetches.size());
+        assertEquals(NOW - 20 * STEP, (long)delegate.fetches.get(0)[0]);
+        assertResultsEqual(delegate.fetch(NOW - 20 * STEP, NOW, STEP, 0, null, null, getSources(), false), results);
+    }
+
+    @Test
+    public void canReuseBlocksAcrossLabels() throws Exception {
+        final long start = NOW - 100 * STEP;
+        cache.fetch(start, NOW, STEP, 0, null, null, getSources(), false);
+
+        final Source renamed = new Source("in", "node[1].interfaceSnmp[eth0]", "ifHCInOctets", null, false);
+        renamed.setAggregation("AVERAGE");
+        delegate.fetches.clear();
+        final FetchResults results = cache.fetch(start, NOW, STEP, 0, null, null, Collections.singletonList(renamed), false);
+        assertEquals(1, delegate.fetches.size());
+        assertEquals(NOW - STEP, (long)delegate.fetches.get(0)[0]);
+        assertEquals(101, results.getColumns().get("in").length);
+    }
+
+    @Test
+    public void canPropagateMissingResources() throws Exception {
+        final long start = NOW - 100 * STEP;
+        cache.fetch(start, NOW, STEP, 0, null, null, getSources(), false);
+
+        delegate.missing = true;
+        assertNull(cache.fetch(start + STEP, NOW + STEP, STEP, 0, null, null, getSources(), false));
+    }
+
+    @Test
+    public void doesNotCacheSamplesWithinHeartbeat() throws Exception {
+        final long start = NOW - 100 * STEP;
+        cache.fetch(start, NOW, STEP, 0, STEP, 5 * STEP, getSources(), false);
+
+        // Samples within the heartbeat may still be updated and must be fetched again
+        delegate.fetches.clear();
+        final FetchResults results = cache.fetch(start + STEP, NOW + STEP, STEP, 0, STEP, 5 * STEP, getSources(), false);
+        assertEquals(1, delegate.fetches.size());
+        assertEquals(NOW - 4 * STEP, (long)delegate.fetches.get(0)[0]);
+        assertResultsEqual(delegate.fetch(start + STEP, NOW + STEP, STEP, 0, STEP, 5 * STEP, getSources(), false), results);
+    }
+
+    @Test
+    public void doesNotCacheTrailingRowsWithoutValues() throws Exception {
+        final long start = NOW - 100 * STEP;
+        delegate.missingFrom = NOW - 10 * STEP;
+        cache.fetch(start, NOW, STEP, 0, null, null, getSources(), false);
+
+        // The samples arrive late
+        delegate.missingFrom = Long.MAX_VALUE;
+        delegate.fetches.clear();
+        final FetchResults results = cache.fetch(start + STEP, NOW + STEP, STEP, 0, null, null, getSources(), false);
+        assertEquals(1, delegate.fetches.size());
+        assertEquals(NOW - 10 * STEP, (long)delegate.fetches.get(0)[0]);
+        assertResultsEqual(delegate.fetch(start + STEP, NOW + STEP, STEP, 0, null, null, getSources(), false), results);
+    }
+
+    @Test
+    public void canBeDisabled() throws Exception {
+        final CachingFetchStrategy disabled = new CachingFetchStrategy(delegate, 0);
+        disabled.fetch(NOW - 10 * STEP, NOW, STEP, 0, null, null, getSources(), false);
+        disabled.fetch(NOW - 10 * STEP, NOW, STEP, 0, null, null, getSources(), false);
+        assertEquals(2, delegate.fetches.size());
+        assertEquals(NOW - 10 * STEP, (long)delegate.fetches.get(1)[0]);
+    }
+
+    private static List<Source> getSources() {
+        final Source in = new Source("ifInOctets", "node[1].interfaceSnmp[eth0]", "ifHCInOctets", null, false);
+        in.setAggregation("AVERAGE");
+        final Source out = new Source("ifOutOctets", "node[1].interfaceSnmp[eth0]", "ifHCOutOctets", null, false);
+        out.setAggregation("AVERAGE");
+        return Lists.newArrayList(in, out);
+    }
+
+    private static void assertResultsEqual(FetchResults expected, FetchResults actual) {
+        assertEquals(expected.getStep(), actual.getStep());
+        assertArrayEquals(expected.getTimestamps(), actual.getTimestamps());
+        assertEquals(expected.getColumns().keySet(), actual.getColumns().keySet());
+        for (String label : expected.getColumns().keySet()) {
+            assertArrayEquals(expected.getColumns().get(label), actual.getColumns().get(label), 0.0);
+        }
+        assertEquals(expected.getConstants(), actual.getConstants());
+    }
+
+    /**
+     * Generates a deterministic sample for every step of the requested range.
+     */
+    private static class MockFetchStrategy implements MeasurementFetchStrategy {
+        private final List<long[]> fetches = Lists.newArrayList();
+        private long coarseStepFrom = Long.MAX_VALUE;
+        private long missingFrom = Long.MAX_VALUE;
+        private boolean missing = false;
+
+        @Override
+        public FetchResults fetch(long start, long end, long step, int maxrows, Long interval, Long heartbeat, List<Source> sources, boolean relaxed) {
+            fetches.add(new long[] { start, end });
+            if (missing) {
+                return null;
+            }
+            final long effectiveStep = start >= coarseStepFrom ? 2 * step : step;
+            final long first = (start / effectiveStep) * effectiveStep;
+            final int numRows = (int)((end - first) / effectiveStep) + 1;
+            final long[] timestamps = new long[numRows];
+            final Map<String, double[]> columns = Maps.newHashMap();
+            for (Source source : sources) {
+                columns.put(source.getLabel(), new double[numRows]);
+            }
+            for (int k = 0; k < numRows; k++) {
+                timestamps[k] = first + k * effectiveStep;
+                for (Source source : sources) {
+                    columns.get(source.getLabel())[k] = timestamps[k] >= missingFrom ? Double.NaN
+                            : source.getAttribute().hashCode() + timestamps[k] / 1000d;
+                }
+            }
+            final Map<String, Object> constants = Maps.newHashMap();
+            constants.put("ifSpeed", "1000000");
+            return new FetchResults(timestamps, columns, effectiveStep, constants);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+import org.opennms.netmgt.measurements.utils.ParallelFetcher.Deadline;
+
+import com.google.common.collect.Maps;
+
+public class ParallelFetcherTest {
+
+    private final ParallelFetcher fetcher = new ParallelFetcher("test", 4);
+
+    @Test
+    public void canFetchInParallel() throws Exception {
+        // Every task waits for all of the others, so this only completes if they run concurrently
+        final CountDownLatch latch = new CountDownLatch(4);
+        final Map<String, Callable<Integer>> tasks = Maps.newLinkedHashMap();
+        for (int i = 0; i < 4; i++) {
+            final int value = i;
+            tasks.put("task" + i, new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    latch.countDown();
+                    assertTrue(latch.await(10, TimeUnit.SECONDS));
+                    return value;
+                }
+            });
+        }
+
+        final ParallelFetcher.Result<String, Integer> result = fetcher.fetchAll(tasks, Deadline.fromDefaultTimeout(), false);
+        assertEquals(4, result.getValues().size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), result.getValues().get("task" + i));
+            assertTrue(result.getDurations().containsKey("task" + i));
+        }
+    }
+
+    @Test
+    public void canOmitFailedFetchesWhenRelaxed() throws Exception {
+        final ParallelFetcher.Result<String, Integer> result = fetcher.fetchAll(getTasksWithFailure(), Deadline.fromDefaultTimeout(), true);
+        assertEquals(1, result.getValues().size());
+        assertEquals(Integer.valueOf(1), result.getValues().get("ok"));
+        assertFalse(result.getDurations().containsKey("failed"));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void canPropagateFailedFetches() throws Exception {
+        fetcher.fetchAll(getTasksWithFailure(), Deadline.fromDefaultTimeout(), false);
+    }
+
+    @Test
+    public void canOmitLateFetchesWhenRelaxed() throws Exception {
+        final ParallelFetcher.Result<String, Integer> result = fetcher.fetchAll(getTasksWithSlowTask(), Deadline.after(250, TimeUnit.MILLISECONDS), true);
+        assertEquals(1, result.getValues().size());
+        assertEquals(Integer.valueOf(1), result.getValues().get("ok"));
+    }
+
+    @Test(expected=TimeoutException.class)
+    public void canFailLateFetches() throws Exception {
+        fetcher.fetchAll(getTasksWithSlowTask(), Deadline.after(250, TimeUnit.MILLISECONDS), false);
+    }
+
+    @Test
+    public void canFetchSequentially() throws Exception {
+        final ParallelFetcher sequentialFetcher = new ParallelFetcher("test", 1);
+        final ParallelFetcher.Result<String, Integer> result = sequentialFetcher.fetchAll(getTasksWithFailure(), Deadline.fromDefaultTimeout(), true);
+        assertEquals(1, result.getValues().size());
+        assertEquals(Integer.valueOf(1), result.getValues().get("ok"));
+    }
+
+    private static Map<String, Callable<Integer>> getTasksWithFailure() {
+        final Map<String, Callable<Integer>> tasks = Maps.newLinkedHashMap();
+        tasks.put("ok", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 1;
+            }
+        });
+        tasks.put("failed", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                throw new IllegalStateException("Fetch failed.");
+            }
+        });
+        return tasks;
+    }
+
+    private static Map<String, Callable<Integer>> getTasksWithSlowTask() {
+        final Map<String, Callable<Integer>> tasks = Maps.newLinkedHashMap();
+        tasks.put("ok", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 1;
+            }
+        });
+        tasks.put("slow", new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                return 2;
+            }
+        });
+        return tasks;
+    }
+}
@@ -29,14 +29,18 @@
 package org.opennms.netmgt.measurements.impl;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.jrobin.core.RrdException;
 import org.opennms.netmgt.dao.api.ResourceDao;
 import org.opennms.netmgt.measurements.api.FetchResults;
 import org.opennms.netmgt.measurements.api.MeasurementFetchStrategy;
 import org.opennms.netmgt.measurements.model.Source;
+import org.opennms.netmgt.measurements.utils.ParallelFetcher;
+import org.opennms.netmgt.measurements.utils.ParallelFetcher.Deadline;
 import org.opennms.netmgt.measurements.utils.Utils;
 import org.opennms.netmgt.model.OnmsResource;
 import org.opennms.netmgt.model.ResourceId;
@@ -51,6 +55,11 @@ import com.google.common.collect.Maps;
 /**
  * Used to fetch measurements from RRD files.
  *
+ * The resources referenced by the sources are looked up in parallel, and
+ * implementations which support it fetch the values stored in different
+ * files in parallel. The number of threads used by each strategy is limited
+ * to {@link ParallelFetcher#DEFAULT_PARALLELISM}.
+ *
  * @author Jesse White <jesse@opennms.org>
  */
 public abstract class AbstractRrdBasedFetchStrategy implements MeasurementFetchStrategy {
@@ -60,6 +69,8 @@ public abstract class AbstractRrdBasedFetchStrategy implements MeasurementFetchS
     @Autowired
     private ResourceDao m_resourceDao;
 
+    private final ParallelFetcher m_fetcher = new ParallelFetcher(getClass().getSimpleName(), ParallelFetcher.DEFAULT_PARALLELISM);
+
     /**
      * {@inheritDoc}
      */
@@ -67,10 +78,15 @@ public abstract class AbstractRrdBasedFetchStrategy implements MeasurementFetchS
     public FetchResults fetch(long start, long end, long step, int maxrows,
                               Long interval, Long heartbeat, List<Source> sources, boolean relaxed) throws Exception {
 
+        final Deadline deadline = Deadline.fromDefaultTimeout();
+
         final Map<String, Object> constants = Maps.newHashMap();
 
         final Map<Source, String> rrdsBySource = Maps.newHashMap();
-        
+
+        // Group the sources by resource id to avoid looking up the same resource more than once
+        final Map<ResourceId, Callable<OnmsResource>> resourceLookups = Maps.newLinkedHashMap();
+        final Map<Source, ResourceId> resourceIdsBySource = Maps.newHashMap();
         for (final Source source : sources) {
             final ResourceId resourceId;
             try {
@@ -80,9 +96,23 @@ public abstract class AbstractRrdBasedFetchStrategy implements MeasurementFetchS
                 LOG.error("Ill-formed resource id: {}", source.getResourceId(), ex);
                 return null;
             }
+            resourceIdsBySource.put(source, resourceId);
+            if (!resourceLookups.containsKey(resourceId)) {
+                resourceLookups.put(resourceId, getResourceByIdCallable(resourceId));
+            }
+        }
+
+        final Map<ResourceId, OnmsResource> resourcesById = m_fetcher.fetchAll(resourceLookups, deadline, relaxed).getValues();
+
+        for (final Source source : sources) {
+            final ResourceId resourceId = resourceIdsBySource.get(source);
+            if (resourceId == null) {
+                // Ill-formed resource id
+                continue;
+            }
 
             // Grab the resource
-            final OnmsResource resource = m_resourceDao.getResourceById(resourceId);
+            final OnmsResource resource = resourcesById.get(resourceId);
             if (resource == null) {
                 if (relaxed) continue;
                 LOG.error("No resource with id: {}", source.getResourceId());
@@ -116,7 +146,22 @@ public abstract class AbstractRrdBasedFetchStrategy implements MeasurementFetchS
         }
 
         // Fetch
-        return fetchMeasurements(start, end, step, maxrows, rrdsBySource, constants, sources, relaxed);
+        return fetchMeasurements(start, end, step, maxrows, rrdsBySource, constants, sources, relaxed, deadline);
+    }
+
+    private Callable<OnmsResource> getResourceByIdCallable(final ResourceId resourceId) {
+        return new Callable<OnmsResource>() {
+            @Override
+            public OnmsResource call() {
+                final OnmsResource resource = m_resourceDao.getResourceById(resourceId);
+                if (resource != null) {
+                    // The attributes are typically lazy loaded, so we trigger the load here
+                    // while we're in a threaded context
+                    resource.getAttributes();
+                }
+                return resource;
+            }
+        };
     }
 
     /**
@@ -127,22 +172,93 @@ public abstract class AbstractRrdBasedFetchStrategy implements MeasurementFetchS
      *
      *  If relaxed is <code>true</code> and one or more RRD/JRB files are present,
      *  then {@link FetchResults} will be populated with {@link Double#NaN} for all missing entries.
+     *  This includes the entries of files which could not be read, or which could not be read
+     *  before the deadline when fetching files in parallel.
      */
     private FetchResults fetchMeasurements(long start, long end, long step, int maxrows,
                                            Map<Source, String> rrdsBySource, Map<String, Object> constants,
-                                           List<Source> sources, boolean relaxed) throws RrdException {
+                                           List<Source> sources, boolean relaxed, Deadline deadline) throws Exception {
         // NMS-8665: Avoid making calls to XPORT with no definitions
         if (relaxed && rrdsBySource.isEmpty()) {
             return Utils.createEmtpyFetchResults(step, constants);
         }
 
-        FetchResults fetchResults = fetchMeasurements(start, end, step, maxrows, rrdsBySource, constants);
+        final Map<String, Map<Source, String>> rrdsByFile = Maps.newLinkedHashMap();
+        if (isParallelFetchSupported()) {
+            // Fetch all of the sources stored in the same file at once
+            for (final Map.Entry<Source, String> entry : rrdsBySource.entrySet()) {
+                rrdsByFile.computeIfAbsent(entry.getValue(), f -> Maps.newHashMap()).put(entry.getKey(), entry.getValue());
+            }
+        } else {
+            rrdsByFile.put(String.join(", ", rrdsBySource.values()), rrdsBySource);
+        }
+
+        final Map<String, Callable<FetchResults>> fetches = Maps.newLinkedHashMap();
+        for (final Map.Entry<String, Map<Source, String>> entry : rrdsByFile.entrySet()) {
+            fetches.put(entry.getKey(), () -> fetchMeasurements(start, end, step, maxrows, entry.getValue(), constants));
+        }
+        final ParallelFetcher.Result<String, FetchResults> fetched = m_fetcher.fetchAll(fetches, deadline, relaxed);
+
+        FetchResults fetchResults = merge(fetched.getValues().values(), step, constants);
+        if (fetchResults == null) {
+            // The files were fetched with different steps, fetch them again all at once so that they are aligned
+            LOG.debug("Files fetched in parallel are not aligned, fetching {} again at once.", fetched.getValues().keySet());
+            final Map<Source, String> fetchedRrdsBySource = Maps.newHashMap();
+            for (final String rrdFile : fetched.getValues().keySet()) {
+                fetchedRrdsBySource.putAll(rrdsByFile.get(rrdFile));
+            }
+            final long fetchStart = System.nanoTime();
+            fetchResults = fetchMeasurements(start, end, step, maxrows, fetchedRrdsBySource, constants);
+            final long duration = System.nanoTime() - fetchStart;
+            for (final Source source : fetchedRrdsBySource.keySet()) {
+                fetchResults.getFetchDurations().put(source.getLabel(), duration);
+            }
+        } else {
+            for (final Map.Entry<String, Long> duration : fetched.getDurations().entrySet()) {
+                for (final Source source : rrdsByFile.get(duration.getKey()).keySet()) {
+                    fetchResults.getFetchDurations().put(source.getLabel(), duration.getValue());
+                }
+            }
+        }
+
         if (relaxed) {
             Utils.fillMissingValues(fetchResults, sources);
         }
         return fetchResults;
     }
 
+    /**
+     * Merges the results of fetches which were performed separately.
+     *
+     * @return the merged results, or <code>null</code> if the results do not share the same timestamps
+     */
+    private static FetchResults merge(Iterable<FetchResults> results, long step, Map<String, Object> constants) {
+        FetchResults first = null;
+        final Map<String, double[]> columns = Maps.newLinkedHashMap();
+        for (final FetchResults result : results) {
+            if (first == null) {
+                first = result;
+            } else if (first.getStep() != result.getStep() || !Arrays.equals(first.getTimestamps(), result.getTimestamps())) {
+                return null;
+            }
+            columns.putAll(result.getColumns());
+        }
+        if (first == null) {
+            return Utils.createEmtpyFetchResults(step, constants);
+        }
+        return new FetchResults(first.getTimestamps(), columns, first.getStep(), constants);
+    }
+
+    /**
+     * Used to determine whether the values stored in different files can be fetched in parallel,
+     * and merged afterwards.
+     *
+     * @return <code>true</code> if the files can be fetched in parallel, <code>false</code> to fetch them all at once
+     */
+    protected boolean isParallelFetchSupported() {
+        return false;
+    }
+
     /**
      * Performs the actual retrieval of the values from the RRD/JRB files.
      */
@@ -0,0 +1,1112 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongBinaryOperator;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+/**
+ * Parses the arithmetic and conditional subset of the JEXL expression
+ * language into a tree which is evaluated over entire columns at once.
+ *
+ * The evaluation mirrors the semantics of JEXL 2.1 in lenient mode: integer
+ * literals, <code>timestamp</code> and <code>__i</code> use integer arithmetic
+ * unless combined with a floating point value, real literals without a suffix
+ * are floats, division or modulo by zero yields 0, NaN compares as equal to
+ * itself and as smaller than any other value, and numbers are truthy unless
+ * they are 0 or NaN.
+ *
+ * Anything outside of this subset is rejected with an
+ * {@link UnsupportedExpressionException} so that the caller can fall back to JEXL.
+ */
+final class CompiledExpression {
+
+    private static final ImmutableSet<String> RESERVED_WORDS = ImmutableSet.of(
+            "or", "and", "eq", "ne", "lt", "gt", "le", "ge", "div", "mod", "not",
+            "null", "new", "var", "empty", "size", "function", "return",
+            "if", "else", "for", "foreach", "while", "in");
+
+    private static final Map<String, DoubleUnaryOperator> MATH_UNARY_FUNCTIONS = ImmutableMap.<String, DoubleUnaryOperator>builder()
+            .put("sin", Math::sin).put("cos", Math::cos).put("tan", Math::tan)
+            .put("asin", Math::asin).put("acos", Math::acos).put("atan", Math::atan)
+            .put("sinh", Math::sinh).put("cosh", Math::cosh).put("tanh", Math::tanh)
+            .put("exp", Math::exp).put("expm1", Math::expm1)
+            .put("log", Math::log).put("log10", Math::log10).put("log1p", Math::log1p)
+            .put("sqrt", Math::sqrt).put("cbrt", Math::cbrt)
+            .put("ceil", Math::ceil).put("floor", Math::floor).put("rint", Math::rint)
+            .put("toDegrees", Math::toDegrees).put("toRadians", Math::toRadians)
+            .build();
+
+    private static final Map<String, DoubleUnaryOperator> STRICTMATH_UNARY_FUNCTIONS = ImmutableMap.<String, DoubleUnaryOperator>builder()
+            .put("sin", StrictMath::sin).put("cos", StrictMath::cos).put("tan", StrictMath::tan)
+            .put("asin", StrictMath::asin).put("acos", StrictMath::acos).put("atan", StrictMath::atan)
+            .put("sinh", StrictMath::sinh).put("cosh", StrictMath::cosh).put("tanh", StrictMath::tanh)
+            .put("exp", StrictMath::exp).put("expm1", StrictMath::expm1)
+            .put("log", StrictMath::log).put("log10", StrictMath::log10).put("log1p", StrictMath::log1p)
+            .put("sqrt", StrictMath::sqrt).put("cbrt", StrictMath::cbrt)
+            .put("ceil", StrictMath::ceil).put("floor", StrictMath::floor).put("rint", StrictMath::rint)
+            .put("toDegrees", StrictMath::toDegrees).put("toRadians", StrictMath::toRadians)
+            .build();
+
+    private static final Map<String, DoubleBinaryOperator> MATH_BINARY_FUNCTIONS = ImmutableMap.<String, DoubleBinaryOperator>builder()
+            .put("atan2", Math::atan2).put("pow", Math::pow).put("hypot", Math::hypot)
+            .put("IEEEremainder", Math::IEEEremainder)
+            .build();
+
+    private static final Map<String, DoubleBinaryOperator> STRICTMATH_BINARY_FUNCTIONS = ImmutableMap.<String, DoubleBinaryOperator>builder()
+            .put("atan2", StrictMath::atan2).put("pow", StrictMath::pow).put("hypot", StrictMath::hypot)
+            .put("IEEEremainder", StrictMath::IEEEremainder)
+            .build();
+
+    private CompiledExpression() {
+    }
+
+    /**
+     * Thrown when an expression, or the values it references, fall outside
+     * of the subset supported by the compiled evaluation.
+     */
+    static class UnsupportedExpressionException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedExpressionException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    enum Kind {
+        /** Integer values, evaluated using long arithmetic. */
+        LONG,
+        /** Floating point values. */
+        DOUBLE,
+        /** Values which are either integers or floating point values, depending on the row. */
+        MIXED,
+        BOOLEAN
+    }
+
+    /**
+     * Resolves the variables referenced by an expression.
+     */
+    interface Scope {
+        Op resolve(String name) throws UnsupportedExpressionException;
+    }
+
+    /**
+     * The state shared by all of the expressions of a request.
+     */
+    static final class Frame {
+        private final int numRows;
+        private final long[] timestamps;
+        private final double[][] results;
+
+        Frame(long[] timestamps, int numExpressions) {
+            this.numRows = timestamps.length;
+            this.timestamps = timestamps;
+            this.results = new double[numExpressions][];
+        }
+
+        double[][] getResults() {
+            return results;
+        }
+    }
+
+    /**
+     * The values of an operation for every row.
+     */
+    static final class Column {
+        private final Kind kind;
+        private final long[] longs;
+        private final double[] doubles;
+        private final boolean[] booleans;
+
+        private Column(Kind kind, long[] longs, double[] doubles, boolean[] booleans) {
+            this.kind = kind;
+            this.longs = longs;
+            this.doubles = doubles;
+            this.booleans = booleans;
+        }
+
+        static Column ofLongs(long[] values) {
+            return new Column(Kind.LONG, values, null, null);
+        }
+
+        static Column ofDoubles(Kind kind, double[] values) {
+            return new Column(kind, null, values, null);
+        }
+
+        static Column ofBooleans(boolean[] values) {
+            return new Column(Kind.BOOLEAN, null, null, values);
+        }
+
+        double[] toDoubles() {
+            switch (kind) {
+                case LONG:
+                    final double[] values = new double[longs.length];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = longs[i];
+                    }
+                    return values;
+                case BOOLEAN:
+                    throw new IllegalStateException("Boolean values cannot be converted to doubles.");
+                default:
+                    return doubles;
+            }
+        }
+
+        boolean[] toBooleans() {
+            switch (kind) {
+                case BOOLEAN:
+                    return booleans;
+                case LONG:
+                    final boolean[] fromLongs = new boolean[longs.length];
+                    for (int i = 0; i < fromLongs.length; i++) {
+                        fromLongs[i] = longs[i] != 0L;
+                    }
+                    return fromLongs;
+                default:
+                    final boolean[] fromDoubles = new boolean[doubles.length];
+                    for (int i = 0; i < fromDoubles.length; i++) {
+                        fromDoubles[i] = !Double.isNaN(doubles[i]) && doubles[i] != 0d;
+                    }
+                    return fromDoubles;
+            }
+        }
+    }
+
+    /**
+     * An operation bound to the variables of a request.
+     */
+    abstract static class Op {
+        private final Kind kind;
+
+        private Op(Kind kind) {
+            this.kind = kind;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the value of the operation if it is a numeric literal, or null otherwise
+         */
+        Number getConstant() {
+            return null;
+        }
+
+        /**
+         * @return true if the evaluated values are shared with the fetch results, or another expression
+         */
+        boolean isReference() {
+            return false;
+        }
+
+        abstract Column evaluate(Frame frame) throws UnsupportedExpressionException;
+    }
+
+    /**
+     * A parsed expression, which must be bound to a {@link Scope} before it can be evaluated.
+     */
+    abstract static class Node {
+        abstract Op bind(Scope scope) throws UnsupportedExpressionException;
+    }
+
+    static Node parse(String expression) throws UnsupportedExpressionException {
+        final Parser parser = new Parser(expression);
+        final Node node = parser.ternary();
+        parser.skipWhitespace();
+        if (parser.pos < expression.length()) {
+            throw parser.unsupported();
+        }
+        return node;
+    }
+
+    static Op column(final double[] values) {
+        return new Op(Kind.DOUBLE) {
+            @Override
+            boolean isReference() {
+                return true;
+            }
+
+            @Override
+            Column evaluate(Frame frame) {
+                return Column.ofDoubles(Kind.DOUBLE, values);
+            }
+        };
+    }
+
+    static Op result(final int index) {
+        return new Op(Kind.DOUBLE) {
+            @Override
+            boolean isReference() {
+                return true;
+            }
+
+            @Override
+            Column evaluate(Frame frame) {
+                return Column.ofDoubles(Kind.DOUBLE, frame.results[index]);
+            }
+        };
+    }
+
+    static Op timestamps() {
+        return new Op(Kind.LONG) {
+            @Override
+            Column evaluate(Frame frame) {
+                return Column.ofLongs(frame.timestamps);
+            }
+        };
+    }
+
+    static Op rowIndex() {
+        return new Op(Kind.LONG) {
+            @Override
+            Column evaluate(Frame frame) {
+                final long[] values = new long[frame.numRows];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = i;
+                }
+                return Column.ofLongs(values);
+            }
+        };
+    }
+
+    /**
+     * @return an operation for the given constant, or null if the type of the constant is not supported
+     */
+    static Op constant(final Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            final double d = ((Number)value).doubleValue();
+            return new Op(Kind.DOUBLE) {
+                @Override
+                Number getConstant() {
+                    return d;
+                }
+
+                @Override
+                Column evaluate(Frame frame) {
+                    final double[] values = new double[frame.numRows];
+                    Arrays.fill(values, d);
+                    return Column.ofDoubles(Kind.DOUBLE, values);
+                }
+            };
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            final long l = ((Number)value).longValue();
+            return new Op(Kind.LONG) {
+                @Override
+                Number getConstant() {
+                    return l;
+                }
+
+                @Override
+                Column evaluate(Frame frame) {
+                    final long[] values = new long[frame.numRows];
+                    Arrays.fill(values, l);
+                    return Column.ofLongs(values);
+                }
+            };
+        } else if (value instanceof Boolean) {
+            final boolean b = (Boolean)value;
+            return new Op(Kind.BOOLEAN) {
+                @Override
+                Column evaluate(Frame frame) {
+                    final boolean[] values = new boolean[frame.numRows];
+                    Arrays.fill(values, b);
+                    return Column.ofBooleans(values);
+                }
+            };
+        }
+        return null;
+    }
+
+    private static UnsupportedExpressionException unsupported(String message) {
+        return new UnsupportedExpressionException(message);
+    }
+
+    /**
+     * Compares two floating point values the same way JEXL does, where
+     * NaN is equal to itself and smaller than any other value.
+     */
+    private static int compare(double lhs, double rhs) {
+        if (Double.isNaN(lhs)) {
+            return Double.isNaN(rhs) ? 0 : -1;
+        } else if (Double.isNaN(rhs)) {
+            return 1;
+        } else if (lhs < rhs) {
+            return -1;
+        } else if (lhs > rhs) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private enum Relation {
+        EQ, NE, LT, LE, GT, GE;
+
+        boolean test(int comparison) {
+            switch (this) {
+                case EQ:
+                    return comparison == 0;
+                case NE:
+                    return comparison != 0;
+                case LT:
+                    return comparison < 0;
+                case LE:
+                    return comparison <= 0;
+                case GT:
+                    return comparison > 0;
+                default:
+                    return comparison >= 0;
+            }
+        }
+    }
+
+    private static class Parser {
+        private final String s;
+        private int pos = 0;
+
+        private Parser(String s) {
+            this.s = s;
+        }
+
+        private UnsupportedExpressionException unsupported() {
+            return CompiledExpression.unsupported("Unsupported syntax at position " + pos + " of '" + s + "'.");
+        }
+
+        private void skipWhitespace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean accept(String token) {
+            skipWhitespace();
+            if (s.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) throws UnsupportedExpressionException {
+            if (!accept(token)) {
+                throw unsupported();
+            }
+        }
+
+        private Node ternary() throws UnsupportedExpressionException {
+            final Node condition = or();
+            if (accept("?")) {
+                if (accept(":")) {
+                    // The elvis operator
+                    throw unsupported();
+                }
+                final Node ifTrue = ternary();
+                expect(":");
+                final Node ifFalse = ternary();
+                return new Ternary(condition, ifTrue, ifFalse);
+            }
+            return condition;
+        }
+
+        private Node or() throws UnsupportedExpressionException {
+            Node node = and();
+            while (accept("||")) {
+                node = new Logical(true, node, and());
+            }
+            return node;
+        }
+
+        private Node and() throws UnsupportedExpressionException {
+            Node node = equality();
+            while (accept("&&")) {
+                node = new Logical(false, node, equality());
+            }
+            return node;
+        }
+
+        private Node equality() throws UnsupportedExpressionException {
+            Node node = relational();
+            while (true) {
+                if (accept("==")) {
+                    node = new Comparison(Relation.EQ, node, relational());
+                } else if (accept("!=")) {
+                    node = new Comparison(Relation.NE, node, relational());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node relational() throws UnsupportedExpressionException {
+            Node node = additive();
+            while (true) {
+                if (accept("<=")) {
+                    node = new Comparison(Relation.LE, node, additive());
+                } else if (accept(">=")) {
+                    node = new Comparison(Relation.GE, node, additive());
+                } else if (accept("<")) {
+                    node = new Comparison(Relation.LT, node, additive());
+                } else if (accept(">")) {
+                    node = new Comparison(Relation.GT, node, additive());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node additive() throws UnsupportedExpressionException {
+            Node node = multiplicative();
+            while (true) {
+                if (accept("+")) {
+                    node = new Arithmetic('+', node, multiplicative());
+                } else if (accept("-")) {
+                    node = new Arithmetic('-', node, multiplicative());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node multiplicative() throws UnsupportedExpressionException {
+            Node node = unary();
+            while (true) {
+                if (accept("*")) {
+                    node = new Arithmetic('*', node, unary());
+                } else if (accept("/")) {
+                    node = new Arithmetic('/', node, unary());
+                } else if (accept("%")) {
+                    node = new Arithmetic('%', node, unary());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node unary() throws UnsupportedExpressionException {
+            if (accept("-")) {
+                return new Negate(unary());
+            } else if (accept("!")) {
+                return new Not(unary());
+            }
+            return primary();
+        }
+
+        private Node primary() throws UnsupportedExpressionException {
+            if (accept("(")) {
+                final Node node = ternary();
+                expect(")");
+                return node;
+            }
+            skipWhitespace();
+            if (pos >= s.length()) {
+                throw unsupported();
+            }
+            final char c = s.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                return number();
+            } else if (isIdentifierStart(c)) {
+                final String identifier = identifier();
+                if ("true".equals(identifier) || "false".equals(identifier)) {
+                    return new Literal(Boolean.valueOf(identifier));
+                } else if (RESERVED_WORDS.contains(identifier)) {
+                    throw unsupported();
+                }
+
+                // Look for a namespaced function call
+                final int mark = pos;
+                if (accept(":")) {
+                    skipWhitespace();
+                    if (pos < s.length() && isIdentifierStart(s.charAt(pos))) {
+                        final String function = identifier();
+                        if (accept("(")) {
+                            final List<Node> arguments = Lists.newArrayList();
+                            if (!accept(")")) {
+                                do {
+                                    arguments.add(ternary());
+                                } while (accept(","));
+                                expect(")");
+                            }
+                            return new Call(identifier, function, arguments);
+                        }
+                    }
+                    pos = mark;
+                }
+
+                // Method calls, property and array accessors are not supported
+                skipWhitespace();
+                if (pos < s.length() && (s.charAt(pos) == '(' || s.charAt(pos) == '.' || s.charAt(pos) == '[')) {
+                    throw unsupported();
+                }
+                return new Variable(identifier);
+            }
+            throw unsupported();
+        }
+
+        private String identifier() {
+            final int start = pos;
+            while (pos < s.length() && (isIdentifierStart(s.charAt(pos)) || Character.isDigit(s.charAt(pos)))) {
+                pos++;
+            }
+            return s.substring(start, pos);
+        }
+
+        private Node number() throws UnsupportedExpressionException {
+            final int start = pos;
+            while (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                pos++;
+            }
+            final String digits = s.substring(start, pos);
+            if (digits.length() > 1 && digits.charAt(0) == '0') {
+                // Octal literals
+                throw unsupported();
+            }
+
+            final Number value;
+            if (pos + 1 < s.length() && s.charAt(pos) == '.' && Character.isDigit(s.charAt(pos + 1))) {
+                pos++;
+                while (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                    pos++;
+                }
+                final String real = s.substring(start, pos);
+                if (acceptSuffix('d', 'D')) {
+                    value = Double.valueOf(real);
+                } else {
+                    // Real literals without a suffix are floats in JEXL 2
+                    acceptSuffix('f', 'F');
+                    value = Float.valueOf(real);
+                }
+            } else if (acceptSuffix('l', 'L')) {
+                value = parseLong(digits);
+            } else {
+                Number natural;
+                try {
+                    natural = Integer.valueOf(digits);
+                } catch (NumberFormatException e) {
+                    natural = parseLong(digits);
+                }
+                value = natural;
+            }
+
+            // Exponents, hexadecimal digits and other suffixes are not supported
+            if (pos < s.length() && (isIdentifierStart(s.charAt(pos)) || Character.isDigit(s.charAt(pos)) || s.charAt(pos) == '.')) {
+                throw unsupported();
+            }
+            return new Literal(value);
+        }
+
+        private boolean acceptSuffix(char lower, char upper) {
+            if (pos < s.length() && (s.charAt(pos) == lower || s.charAt(pos) == upper)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private long parseLong(String digits) throws UnsupportedExpressionException {
+            try {
+                return Long.parseLong(digits);
+            } catch (NumberFormatException e) {
+                // Big integers
+                throw unsupported();
+            }
+        }
+
+        private static boolean isIdentifierStart(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+        }
+    }
+
+    private static class Literal extends Node {
+        private final Object value;
+
+        private Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Op bind(Scope scope) {
+            return constant(value);
+        }
+    }
+
+    private static class Variable extends Node {
+        private final String name;
+
+        private Variable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        Op bind(Scope scope) throws UnsupportedExpressionException {
+            return scope.resolve(name);
+        }
+    }
+
+    private static class Negate extends Node {
+        private final Node operand;
+
+        private Negate(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Op bind(Scope scope) throws UnsupportedExpressionException {
+            final Op op = operand.bind(scope);
+            if (op.getKind() == Kind.BOOLEAN) {
+                throw unsupported("Negation of boolean values.");
+            } else if (op.getConstant() instanceof Long) {
+                return constant(-op.getConstant().longValue());
+            } else if (op.getConstant() instanceof Double) {
+                return constant(-op.getConstant().doubleValue());
+            }
+            return new Op(op.getKind()) {
+                @Override
+                Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                    final Column column = op.evaluate(frame);
+                    if (column.kind == Kind.LONG) {
+                        final long[] values = new long[frame.numRows];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = -column.longs[i];
+                        }
+                        return Column.ofLongs(values);
+                    }
+                    final double[] values = new double[frame.numRows];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = -column.doubles[i];
+                    }
+                    return Column.ofDoubles(column.kind, values);
+                }
+            };
+        }
+    }
+
+    private static class Not extends Node {
+        private final Node operand;
+
+        private Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Op bind(Scope scope) throws UnsupportedExpressionException {
+            final Op op = operand.bind(scope);
+            return new Op(Kind.BOOLEAN) {
+                @Override
+                Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                    final boolean[] operands = op.evaluate(frame).toBooleans();
+                    final boolean[] values = new boolean[frame.numRows];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = !operands[i];
+                    }
+                    return Column.ofBooleans(values);
+                }
+            };
+        }
+    }
+
+    private static class Arithmetic extends Node {
+        private final char operator;
+        private final Node left;
+        private final Node right;
+
+        private Arithmetic(char operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Op bind(Scope scope) throws UnsupportedExpressionException {
+            final Op l = left.bind(scope);
+            final Op r = right.bind(scope);
+            if (l.getKind() == Kind.BOOLEAN || r.getKind() == Kind.BOOLEAN) {
+                throw unsupported("Arithmetic on boolean values.");
+            } else if (l.getKind() == Kind.DOUBLE || r.getKind() == Kind.DOUBLE) {
+                return new Op(Kind.DOUBLE) {
+                    @Override
+                    Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                        return Column.ofDoubles(Kind.DOUBLE, applyDoubles(l.evaluate(frame).toDoubles(), r.evaluate(frame).toDoubles()));
+                    }
+                };
+            } else if (l.getKind() == Kind.LONG && r.getKind() == Kind.LONG) {
+                if (operator == '%') {
+                    throw unsupported("Integer modulo.");
+                } else if (operator == '/' && (r.getConstant() == null || r.getConstant().longValue() == 0L)) {
+                    // Division by zero yields a double, so the type of the result would vary by row
+                    throw unsupported("Integer division by a variable.");
+                }
+                return new Op(Kind.LONG) {
+                    @Override
+                    Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                        return Column.ofLongs(applyLongs(l.evaluate(frame).longs, r.evaluate(frame).longs));
+                    }
+                };
+            }
+            throw unsupported("Arithmetic on values of mixed types.");
+        }
+
+        private double[] applyDoubles(double[] a, double[] b) {
+            final double[] values = new double[a.length];
+            switch (operator) {
+                case '+':
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = a[i] + b[i];
+                    }
+                    break;
+                case '-':
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = a[i] - b[i];
+                    }
+                    break;
+                case '*':
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = a[i] * b[i];
+                    }
+                    break;
+                case '/':
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = b[i] == 0d ? 0d : a[i] / b[i];
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = b[i] == 0d ? 0d : a[i] % b[i];
+                    }
+                    break;
+            }
+            return values;
+        }
+
+        private long[] applyLongs(long[] a, long[] b) throws UnsupportedExpressionException {
+            final long[] values = new long[a.length];
+            try {
+                switch (operator) {
+                    case '+':
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = Math.addExact(a[i], b[i]);
+                        }
+                        break;
+                    case '-':
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = Math.subtractExact(a[i], b[i]);
+                        }
+                        break;
+                    case '*':
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = Math.multiplyExact(a[i], b[i]);
+                        }
+                        break;
+                    default:
+                        for (int i = 0; i < values.length; i++) {
+                            if (a[i] == Long.MIN_VALUE && b[i] == -1L) {
+                                throw new ArithmeticException();
+                            }
+                            values[i] = a[i] / b[i];
+                        }
+                        break;
+                }
+            } catch (ArithmeticException e) {
+                // JEXL would promote the result to a big integer
+                throw unsupported("Integer overflow.");
+            }
+            return values;
+        }
+    }
+
+    private static class Comparison extends Node {
+        private final Relation relation;
+        private final Node left;
+        private final Node right;
+
+        private Comparison(Relation relation, Node left, Node right) {
+            this.relation = relation;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Op bind(Scope scope) throws UnsupportedExpressionException {
+            final Op l = left.bind(scope);
+            final Op r = right.bind(scope);
+            if (l.getKind() == Kind.BOOLEAN || r.getKind() == Kind.BOOLEAN) {
+                if (relation != Relation.EQ && relation != Relation.NE) {
+                    throw unsupported("Ordering of boolean values.");
+                }
+                return new Op(Kind.BOOLEAN) {
+                    @Override
+                    Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                        final boolean[] a = l.evaluate(frame).toBooleans();
+                        final boolean[] b = r.evaluate(frame).toBooleans();
+                        final boolean[] values = new boolean[frame.numRows];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = relation.test(a[i] == b[i] ? 0 : 1);
+                        }
+                        return Column.ofBooleans(values);
+                    }
+                };
+            } else if (l.getKind() == Kind.LONG && r.getKind() == Kind.LONG) {
+                return new Op(Kind.BOOLEAN) {
+                    @Override
+                    Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                        final long[] a = l.evaluate(frame).longs;
+                        final long[] b = r.evaluate(frame).longs;
+                        final boolean[] values = new boolean[frame.numRows];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = relation.test(Long.compare(a[i], b[i]));
+                        }
+                        return Column.ofBooleans(values);
+                    }
+                };
+            }
+            return new Op(Kind.BOOLEAN) {
+                @Override
+                Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                    final double[] a = l.evaluate(frame).toDoubles();
+                    final double[] b = r.evaluate(frame).toDoubles();
+                    final boolean[] values = new boolean[frame.numRows];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = relation.test(compare(a[i], b[i]));
+                    }
+                    return Column.ofBooleans(values);
+                }
+            };
+        }
+    }
+
+    private static class Logical extends Node {
+        private final boolean or;
+        private final Node left;
+        private final Node right;
+
+        private Logical(boolean or, Node left, Node right) {
+            this.or = or;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Op bind(Scope scope) throws UnsupportedExpressionException {
+            final Op l = left.bind(scope);
+            final Op r = right.bind(scope);
+            return new Op(Kind.BOOLEAN) {
+                @Override
+                Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                    final boolean[] a = l.evaluate(frame).toBooleans();
+                    final boolean[] b = r.evaluate(frame).toBooleans();
+                    final boolean[] values = new boolean[frame.numRows];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = or ? a[i] || b[i] : a[i] && b[i];
+                    }
+                    return Column.ofBooleans(values);
+                }
+            };
+        }
+    }
+
+    private static class Ternary extends Node {
+        private final Node condition;
+        private final Node ifTrue;
+        private final Node ifFalse;
+
+        private Ternary(Node condition, Node ifTrue, Node ifFalse) {
+            this.condition = condition;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+        }
+
+        @Override
+        Op bind(Scope scope) throws UnsupportedExpressionException {
+            final Op c = condition.bind(scope);
+            final Op t = ifTrue.bind(scope);
+            final Op f = ifFalse.bind(scope);
+            final Kind kind;
+            if (t.getKind() == f.getKind()) {
+                kind = t.getKind();
+            } else if (t.getKind() == Kind.BOOLEAN || f.getKind() == Kind.BOOLEAN) {
+                throw unsupported("Conditional on values of mixed types.");
+            } else {
+                kind = Kind.MIXED;
+            }
+            return new Op(kind) {
+                @Override
+                Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                    final boolean[] conditions = c.evaluate(frame).toBooleans();
+                    final Column a = t.evaluate(frame);
+                    final Column b = f.evaluate(frame);
+                    if (kind == Kind.LONG) {
+                        final long[] values = new long[frame.numRows];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = conditions[i] ? a.longs[i] : b.longs[i];
+                        }
+                        return Column.ofLongs(values);
+                    } else if (kind == Kind.BOOLEAN) {
+                        final boolean[] values = new boolean[frame.numRows];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = conditions[i] ? a.booleans[i] : b.booleans[i];
+                        }
+                        return Column.ofBooleans(values);
+                    }
+                    final double[] x = a.toDoubles();
+                    final double[] y = b.toDoubles();
+                    final double[] values = new double[frame.numRows];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = conditions[i] ? x[i] : y[i];
+                    }
+                    return Column.ofDoubles(kind, values);
+                }
+            };
+        }
+    }
+
+    private static class Call extends Node {
+        private final String namespace;
+        private final String function;
+        private final List<Node> arguments;
+
+        private Call(String namespace, String function, List<Node> arguments) {
+            this.namespace = namespace;
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        @Override
+        Op bind(Scope scope) throws UnsupportedExpressionException {
+            final boolean strict;
+            if ("math".equals(namespace)) {
+                strict = false;
+            } else if ("strictmath".equals(namespace)) {
+                strict = true;
+            } else {
+                throw unsupported("Functions in the '" + namespace + "' namespace.");
+            }
+
+            final List<Op> ops = Lists.newArrayListWithCapacity(arguments.size());
+            for (Node argument : arguments) {
+                final Op op = argument.bind(scope);
+                if (op.getKind() == Kind.BOOLEAN) {
+                    throw unsupported("Boolean function arguments.");
+                }
+                ops.add(op);
+            }
+
+            final DoubleUnaryOperator unary = (strict ? STRICTMATH_UNARY_FUNCTIONS : MATH_UNARY_FUNCTIONS).get(function);
+            if (unary != null && ops.size() == 1) {
+                final Op x = ops.get(0);
+                return new Op(Kind.DOUBLE) {
+                    @Override
+                    Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                        final double[] a = x.evaluate(frame).toDoubles();
+                        final double[] values = new double[frame.numRows];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = unary.applyAsDouble(a[i]);
+                        }
+                        return Column.ofDoubles(Kind.DOUBLE, values);
+                    }
+                };
+            }
+
+            final DoubleBinaryOperator binary = (strict ? STRICTMATH_BINARY_FUNCTIONS : MATH_BINARY_FUNCTIONS).get(function);
+            if (binary != null && ops.size() == 2) {
+                return binary(Kind.DOUBLE, ops.get(0), ops.get(1), binary, null);
+            }
+
+            // abs(), min() and max() are overloaded and preserve integer types
+            if ("abs".equals(function) && ops.size() == 1) {
+                final Op x = ops.get(0);
+                return new Op(x.getKind()) {
+                    @Override
+                    Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                        final Column column = x.evaluate(frame);
+                        if (column.kind == Kind.LONG) {
+                            final long[] values = new long[frame.numRows];
+                            for (int i = 0; i < values.length; i++) {
+                                values[i] = Math.abs(column.longs[i]);
+                            }
+                            return Column.ofLongs(values);
+                        }
+                        final double[] values = new double[frame.numRows];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = Math.abs(column.doubles[i]);
+                        }
+                        return Column.ofDoubles(column.kind, values);
+                    }
+                };
+            } else if ("min".equals(function) && ops.size() == 2) {
+                return minMax(ops.get(0), ops.get(1), Math::min, Math::min);
+            } else if ("max".equals(function) && ops.size() == 2) {
+                return minMax(ops.get(0), ops.get(1), Math::max, Math::max);
+            }
+            throw unsupported("Function " + namespace + ":" + function + " with " + ops.size() + " argument(s).");
+        }
+
+        private static Op minMax(Op a, Op b, DoubleBinaryOperator doubles, LongBinaryOperator longs) {
+            final Kind kind;
+            if (a.getKind() == Kind.LONG && b.getKind() == Kind.LONG) {
+                kind = Kind.LONG;
+            } else if (a.getKind() == Kind.DOUBLE || b.getKind() == Kind.DOUBLE) {
+                kind = Kind.DOUBLE;
+            } else {
+                kind = Kind.MIXED;
+            }
+            return binary(kind, a, b, doubles, longs);
+        }
+
+        private static Op binary(Kind kind, Op x, Op y, DoubleBinaryOperator doubles, LongBinaryOperator longs) {
+            return new Op(kind) {
+                @Override
+                Column evaluate(Frame frame) throws UnsupportedExpressionException {
+                    if (kind == Kind.LONG) {
+                        final long[] a = x.evaluate(frame).longs;
+                        final long[] b = y.evaluate(frame).longs;
+                        final long[] values = new long[frame.numRows];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = longs.applyAsLong(a[i], b[i]);
+                        }
+                        return Column.ofLongs(values);
+                    }
+                    final double[] a = x.evaluate(frame).toDoubles();
+                    final double[] b = y.evaluate(frame).toDoubles();
+                    final double[] values = new double[frame.numRows];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = doubles.applyAsDouble(a[i], b[i]);
+                    }
+                    return Column.ofDoubles(kind, values);
+                }
+            };
+        }
+    }
+}
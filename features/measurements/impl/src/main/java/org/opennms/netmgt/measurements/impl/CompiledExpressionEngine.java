@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.opennms.netmgt.measurements.api.ExpressionEngine;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.api.exceptions.ExpressionException;
+import org.opennms.netmgt.measurements.impl.CompiledExpression.Frame;
+import org.opennms.netmgt.measurements.impl.CompiledExpression.Kind;
+import org.opennms.netmgt.measurements.impl.CompiledExpression.Op;
+import org.opennms.netmgt.measurements.impl.CompiledExpression.UnsupportedExpressionException;
+import org.opennms.netmgt.measurements.model.Expression;
+import org.opennms.netmgt.measurements.model.QueryRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * An expression engine which compiles the arithmetic and conditional subset
+ * of JEXL into operations over entire columns, instead of evaluating every
+ * expression row by row against a map based context.
+ *
+ * Requests which contain expressions outside of this subset, i.e. calls to
+ * the <code>fn:</code> or <code>jexl:</code> namespaces, references to the
+ * <code>__label</code> sample arrays or to string constants, are delegated
+ * to the {@link JEXLExpressionEngine} as a whole.
+ */
+public class CompiledExpressionEngine implements ExpressionEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompiledExpressionEngine.class);
+
+    private static final int MAX_PARSED_EXPRESSIONS = 1000;
+
+    /**
+     * The additional constants which are made available by the {@link JEXLExpressionEngine}.
+     */
+    private static final Map<String, Double> BUILTIN_CONSTANTS = ImmutableMap.of(
+            "__inf", Double.POSITIVE_INFINITY,
+            "__neg_inf", Double.NEGATIVE_INFINITY,
+            "NaN", Double.NaN,
+            "__E", Math.E,
+            "__PI", Math.PI);
+
+    private final ExpressionEngine fallback;
+
+    /**
+     * Parsed expressions, keyed by their source. Expressions which could not
+     * be parsed are stored as empty values.
+     */
+    private final Cache<String, Optional<CompiledExpression.Node>> parsedExpressions = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PARSED_EXPRESSIONS)
+            .build();
+
+    public CompiledExpressionEngine() {
+        this(new JEXLExpressionEngine());
+    }
+
+    public CompiledExpressionEngine(ExpressionEngine fallback) {
+        this.fallback = Preconditions.checkNotNull(fallback, "fallback argument");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyExpressions(final QueryRequest request, final FetchResults results) throws ExpressionException {
+        Preconditions.checkNotNull(request, "request argument");
+        Preconditions.checkNotNull(results, "results argument");
+
+        final List<Expression> expressions = request.getExpressions();
+
+        // Don't do anything if there are no expressions
+        if (expressions.size() < 1) {
+            return;
+        }
+
+        final double[][] values;
+        try {
+            values = evaluate(expressions, results);
+        } catch (UnsupportedExpressionException e) {
+            LOG.debug("Delegating the evaluation of {} to JEXL: {}", expressions, e.getMessage());
+            fallback.applyExpressions(request, results);
+            return;
+        }
+
+        // Store the results
+        final Map<String, double[]> columns = results.getColumns();
+        for (int j = 0; j < expressions.size(); j++) {
+            if (!expressions.get(j).getTransient()) {
+                columns.put(expressions.get(j).getLabel(), values[j]);
+            }
+        }
+    }
+
+    private double[][] evaluate(final List<Expression> expressions, final FetchResults results) throws UnsupportedExpressionException {
+        // The JEXL engine indexes the expressions by label, so duplicates are left for it to deal with
+        final Map<String, Integer> labels = Maps.newHashMap();
+        for (int j = 0; j < expressions.size(); j++) {
+            if (labels.put(expressions.get(j).getLabel(), j) != null) {
+                throw new UnsupportedExpressionException("Duplicate expression label '" + expressions.get(j).getLabel() + "'.");
+            }
+        }
+
+        final long[] timestamps = results.getTimestamps();
+        final Frame frame = new Frame(timestamps, expressions.size());
+        final double[][] values = frame.getResults();
+        for (int j = 0; j < expressions.size(); j++) {
+            final int index = j;
+            final Op op = parse(expressions.get(j).getExpression())
+                    .bind(name -> resolve(name, index, labels, results));
+            if (op.getKind() == Kind.BOOLEAN) {
+                // Let JEXL fail with the appropriate error
+                throw new UnsupportedExpressionException("Expression with label '" + expressions.get(j).getLabel() + "' does not evaluate to a number.");
+            }
+            values[j] = op.evaluate(frame).toDoubles();
+            if (op.isReference()) {
+                values[j] = values[j].clone();
+            }
+        }
+        return values;
+    }
+
+    private CompiledExpression.Node parse(final String expression) throws UnsupportedExpressionException {
+        Optional<CompiledExpression.Node> node = parsedExpressions.getIfPresent(expression);
+        if (node == null) {
+            try {
+                node = Optional.of(CompiledExpression.parse(expression));
+            } catch (UnsupportedExpressionException e) {
+                node = Optional.empty();
+            }
+            parsedExpressions.put(expression, node);
+        }
+        if (!node.isPresent()) {
+            throw new UnsupportedExpressionException("Unsupported expression '" + expression + "'.");
+        }
+        return node.get();
+    }
+
+    /**
+     * Resolves a variable the same way the JEXL context is populated by the
+     * {@link JEXLExpressionEngine}: the values of the current row take precedence
+     * over the results of preceding expressions, which take precedence over the
+     * built-in and fetched constants.
+     */
+    private static Op resolve(final String name, final int index, final Map<String, Integer> labels, final FetchResults results) throws UnsupportedExpressionException {
+        final Map<String, double[]> columns = results.getColumns();
+        final double[] column = columns.get(name);
+        if (column != null) {
+            return CompiledExpression.column(column);
+        } else if (name.startsWith("__") && columns.containsKey(name.substring(2))) {
+            throw new UnsupportedExpressionException("Reference to the samples of '" + name.substring(2) + "'.");
+        } else if ("timestamp".equals(name)) {
+            return CompiledExpression.timestamps();
+        } else if ("__i".equals(name)) {
+            return CompiledExpression.rowIndex();
+        }
+
+        final Integer label = labels.get(name);
+        if (label != null) {
+            if (label < index) {
+                return CompiledExpression.result(label);
+            }
+            // JEXL would see the value from the previous row
+            throw new UnsupportedExpressionException("Forward reference to '" + name + "'.");
+        }
+
+        final Object value;
+        if (BUILTIN_CONSTANTS.containsKey(name)) {
+            value = BUILTIN_CONSTANTS.get(name);
+        } else if ("__diff_time".equals(name)) {
+            final long[] timestamps = results.getTimestamps();
+            value = timestamps.length < 1 ? 0d : (double)(timestamps[timestamps.length - 1] - timestamps[0]);
+        } else {
+            value = results.getConstants().get(name);
+        }
+
+        final Op constant = CompiledExpression.constant(value);
+        if (constant == null || constant.getKind() == Kind.BOOLEAN) {
+            throw new UnsupportedExpressionException("Unsupported value for '" + name + "': " + value);
+        }
+        return constant;
+    }
+}
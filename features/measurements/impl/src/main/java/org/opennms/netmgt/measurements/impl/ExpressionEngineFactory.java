@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.measurements.impl;
+
+import org.opennms.netmgt.measurements.api.ExpressionEngine;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Used to instantiate the expression engine.
+ *
+ * Expressions are evaluated using the {@link JEXLExpressionEngine} unless
+ * the {@link CompiledExpressionEngine} is enabled by setting the
+ * {@value #COMPILED_EXPRESSIONS_PROPERTY} system property to <code>true</code>.
+ */
+public class ExpressionEngineFactory {
+
+    public static final String COMPILED_EXPRESSIONS_PROPERTY = "org.opennms.measurements.expressions.compiled";
+
+    @Bean(name="expressionEngine")
+    public ExpressionEngine getExpressionEngine() {
+        if (Boolean.getBoolean(COMPILED_EXPRESSIONS_PROPERTY)) {
+            return new CompiledExpressionEngine();
+        }
+        return new JEXLExpressionEngine();
+    }
+}
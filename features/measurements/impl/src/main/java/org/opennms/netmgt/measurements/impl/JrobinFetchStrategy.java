@@ -46,6 +46,15 @@ import com.google.common.collect.Maps;
  */
 public class JrobinFetchStrategy extends AbstractRrdBasedFetchStrategy {
 
+    /**
+     * Each file is read by a separate {@link DataProcessor}, so
+     * files can be fetched in parallel.
+     */
+    @Override
+    protected boolean isParallelFetchSupported() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
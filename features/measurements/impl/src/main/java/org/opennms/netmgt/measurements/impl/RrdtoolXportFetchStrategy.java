@@ -77,6 +77,15 @@ public class RrdtoolXportFetchStrategy extends AbstractRrdBasedFetchStrategy {
      */
     public static final long XPORT_TIMEOUT_MS = 120000;
 
+    /**
+     * Each fetch is performed by a separate rrdtool process, so
+     * files can be fetched in parallel.
+     */
+    @Override
+    protected boolean isParallelFetchSupported() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.opennms.netmgt.measurements.api.ExpressionEngine;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.api.exceptions.ExpressionException;
+import org.opennms.netmgt.measurements.model.Expression;
+import org.opennms.netmgt.measurements.model.QueryRequest;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class CompiledExpressionEngineTest {
+
+    private final AtomicInteger fallbackCount = new AtomicInteger();
+
+    private final ExpressionEngine jexlExpressionEngine = new JEXLExpressionEngine();
+
+    private final ExpressionEngine compiledExpressionEngine = new CompiledExpressionEngine((request, results) -> {
+        fallbackCount.incrementAndGet();
+        jexlExpressionEngine.applyExpressions(request, results);
+    });
+
+    @Test
+    public void evaluatesExpressionsLikeJexl() throws ExpressionException {
+        for (final String expression : Lists.newArrayList(
+                "x * 5 + 7",
+                "(x + y) / 2",
+                "x / 0",
+                "x % 3.0d",
+                "x - y * -2",
+                "speed / 0.62137",
+                "speed * 8",
+                "timestamp / 1000",
+                "timestamp / 125.0d",
+                "1 * __diff_time",
+                "__i * 2 + x",
+                "x * __PI + __E",
+                "x > __inf ? 1 : __neg_inf",
+                "x == NaN ? 0 : x",
+                "( ( x == NaN ) && ( y == NaN ) ) ? NaN : ( ( x == NaN ) ? y : ( ( y == NaN ) ? x : ( x + y ) ) )",
+                "( ( x == NaN ) ? y : ( ( y == NaN ) ? x : math:min(x,y) ) )",
+                "x < y || !(x >= 2) ? x : y",
+                "x != y && x <= 4 ? 1 : 0",
+                "x ? 1 : 2",
+                "math:max(__i, 3)",
+                "math:abs(x - 5)",
+                "math:pow(x, 2) + math:sqrt(y)",
+                "math:atan2(x, y) + strictmath:log10(y)",
+                "math:max(x, y) - math:min(x, NaN)",
+                "-(x * 2)")) {
+            fallbackCount.set(0);
+            assertArrayEquals(expression, evaluate(jexlExpressionEngine, expression), evaluate(compiledExpressionEngine, expression), 0.0d);
+            assertEquals(expression, 0, fallbackCount.get());
+        }
+    }
+
+    @Test
+    public void delegatesUnsupportedExpressionsToJexl() throws ExpressionException {
+        for (final String expression : Lists.newArrayList(
+                "fn:arrayNaN(\"x\", 5)",
+                "__x[0] * 2",
+                "__i % 2",
+                "timestamp / (__i + 1)",
+                "description == 'eth0' ? x : y")) {
+            fallbackCount.set(0);
+            assertArrayEquals(expression, evaluate(jexlExpressionEngine, expression), evaluate(compiledExpressionEngine, expression), 0.0d);
+            assertEquals(expression, 1, fallbackCount.get());
+        }
+    }
+
+    @Test(expected=ExpressionException.class)
+    public void failsWhenExpressionHasInvalidSyntax() throws ExpressionException {
+        evaluate(compiledExpressionEngine, "/");
+    }
+
+    @Test(expected=ExpressionException.class)
+    public void failsWhenExpressionDoesNotReturnADouble() throws ExpressionException {
+        evaluate(compiledExpressionEngine, "!(!true)");
+    }
+
+    @Test
+    public void canReferencePrecedingExpressions() throws ExpressionException {
+        final QueryRequest request = new QueryRequest();
+        request.setExpressions(Lists.newArrayList(
+                new Expression("bits", "x * 8", true),
+                new Expression("kbits", "bits / 1000", false),
+                new Expression("copy", "x", false)));
+
+        final FetchResults results = createResults();
+        compiledExpressionEngine.applyExpressions(request, results);
+
+        assertEquals(0, fallbackCount.get());
+        assertNull(results.getColumns().get("bits"));
+        final double[] x = results.getColumns().get("x");
+        final double[] kbits = results.getColumns().get("kbits");
+        for (int i = 0; i < x.length; i++) {
+            assertEquals(x[i] * 8 / 1000, kbits[i], 0.0d);
+        }
+
+        // Results must not share the arrays of the sources
+        final double[] copy = results.getColumns().get("copy");
+        assertArrayEquals(x, copy, 0.0d);
+        assertFalse(x == copy);
+    }
+
+    private double[] evaluate(final ExpressionEngine engine, final String expression) throws ExpressionException {
+        final QueryRequest request = new QueryRequest();
+        request.setExpressions(Lists.newArrayList(new Expression("result", expression, false)));
+
+        final FetchResults results = createResults();
+        engine.applyExpressions(request, results);
+        return results.getColumns().get("result");
+    }
+
+    private static FetchResults createResults() {
+        final int N = 100;
+        final long[] timestamps = new long[N];
+        final double[] xValues = new double[N];
+        final double[] yValues = new double[N];
+        for (int i = 0; i < N; i++) {
+            timestamps[i] = i * 1000;
+            xValues[i] = i % 10 == 0 ? Double.NaN : (i % 7) - 2;
+            yValues[i] = i % 13 == 0 ? Double.NaN : i / 4.0d;
+        }
+
+        final Map<String, double[]> values = Maps.newHashMap();
+        values.put("x", xValues);
+        values.put("y", yValues);
+
+        final Map<String, Object> constants = Maps.newHashMap();
+        constants.put("speed", 65);
+        constants.put("description", "eth0");
+        return new FetchResults(timestamps, values, 1, constants);
+    }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.measurements.api.ExpressionEngine;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.api.exceptions.ExpressionException;
+import org.opennms.netmgt.measurements.model.Expression;
+import org.opennms.netmgt.measurements.model.QueryRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Compares the {@link JEXLExpressionEngine} with the {@link CompiledExpressionEngine}
+ * using the kind of expressions found in the graph definitions shipped with OpenNMS,
+ * i.e. unit conversions, sums and NaN guards over the octet counters of an interface.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.opennms.netmgt.measurements.impl.ExpressionEngineBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExpressionEngineBenchmark {
+
+    @Param({"jexl", "compiled"})
+    public String engine;
+
+    @Param({"400", "4000"})
+    public int rows;
+
+    private ExpressionEngine expressionEngine;
+
+    private QueryRequest request;
+
+    private long[] timestamps;
+
+    private Map<String, double[]> sources;
+
+    private Map<String, Object> constants;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        expressionEngine = "compiled".equals(engine) ? new CompiledExpressionEngine() : new JEXLExpressionEngine();
+
+        final List<Expression> expressions = Lists.newArrayList(
+                new Expression("inBits", "octIn * 8", false),
+                new Expression("outBits", "octOut * 8", false),
+                new Expression("outBitsNeg", "-1 * outBits", false),
+                new Expression("totalBits", "( ( inBits == NaN ) ? outBits : ( ( outBits == NaN ) ? inBits : ( inBits + outBits ) ) )", false),
+                new Expression("inPercent", "ifHighSpeed > 0 ? inBits / (ifHighSpeed * 10000.0d) : NaN", false),
+                new Expression("outPercent", "ifHighSpeed > 0 ? outBits / (ifHighSpeed * 10000.0d) : NaN", false),
+                new Expression("inKbits", "math:max(inBits, 0) / 1000", false));
+        request = new QueryRequest();
+        request.setExpressions(expressions);
+
+        final Random random = new Random(1);
+        timestamps = new long[rows];
+        final double[] octIn = new double[rows];
+        final double[] octOut = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            timestamps[i] = 1500000000000L + i * 300000L;
+            octIn[i] = random.nextInt(50) == 0 ? Double.NaN : random.nextDouble() * 1e6;
+            octOut[i] = random.nextInt(50) == 0 ? Double.NaN : random.nextDouble() * 1e6;
+        }
+        sources = Maps.newHashMap();
+        sources.put("octIn", octIn);
+        sources.put("octOut", octOut);
+
+        constants = Maps.newHashMap();
+        constants.put("ifHighSpeed", 1000d);
+    }
+
+    @Benchmark
+    public Map<String, double[]> applyExpressions() throws ExpressionException {
+        final FetchResults results = new FetchResults(timestamps, Maps.newHashMap(sources), 300, constants);
+        expressionEngine.applyExpressions(request, results);
+        return results.getColumns();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExpressionEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -34,18 +34,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 
 import org.opennms.netmgt.dao.api.ResourceDao;
 import org.opennms.netmgt.measurements.api.FetchResults;
 import org.opennms.netmgt.measurements.api.MeasurementFetchStrategy;
 import org.opennms.netmgt.measurements.model.Source;
+import org.opennms.netmgt.measurements.utils.ParallelFetcher;
+import org.opennms.netmgt.measurements.utils.ParallelFetcher.Deadline;
 import org.opennms.netmgt.measurements.utils.Utils;
 import org.opennms.netmgt.model.OnmsResource;
 import org.opennms.netmgt.model.ResourceId;
@@ -72,13 +69,14 @@ import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Used to retrieve measurements from {@link org.opennms.newts.api.SampleRepository}.
  *
  * If a request to {@link #fetch} spans multiple resources, separate calls to
- * the {@link SampleRepository} will be performed in parallel.
+ * the {@link SampleRepository} will be performed in parallel. The number of
+ * concurrent calls is limited by the "fetch_parallelism" attribute, and calls
+ * which do not complete before the deadline of the request are abandoned.
  *
  * Reading the samples and computing the aggregated values can be very CPU intensive.
  * The "parallelism" attribute is used to set an upper limit on how may concurrent threads
@@ -100,6 +98,12 @@ public class NewtsFetchStrategy implements MeasurementFetchStrategy {
 
     public static final int PARALLELISM = Integer.getInteger("org.opennms.newts.query.parallelism", Runtime.getRuntime().availableProcessors());
 
+    /**
+     * Most of the time spent in a call to the {@link SampleRepository} is spent waiting on Cassandra,
+     * so we allow more concurrent calls than there are threads performing aggregations.
+     */
+    public static final int FETCH_PARALLELISM = Integer.getInteger("org.opennms.newts.query.fetch_parallelism", 4 * PARALLELISM);
+
     @Autowired
     private Context m_context;
 
@@ -109,15 +113,14 @@ public class NewtsFetchStrategy implements MeasurementFetchStrategy {
     @Autowired
     private SampleRepository m_sampleRepository;
 
-    private final ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("NewtsFetchStrateg-%d").build();
-
-    private final ExecutorService threadPool = Executors.newCachedThreadPool(namedThreadFactory);
+    private final ParallelFetcher fetcher = new ParallelFetcher("NewtsFetchStrategy", FETCH_PARALLELISM);
 
     // Used to limit the number of threads that are performing aggregation calculations in parallel
     private final Semaphore availableAggregationThreads = new Semaphore(PARALLELISM);
 
     @Override
     public FetchResults fetch(long start, long end, long step, int maxrows, Long interval, Long heartbeat, List<Source> sources, boolean relaxed) {
+        final Deadline deadline = Deadline.fromDefaultTimeout();
         final LateAggregationParams lag = getLagParams(step, interval, heartbeat);
         final Optional<Timestamp> startTs = Optional.of(Timestamp.fromEpochMillis(start));
         final Optional<Timestamp> endTs = Optional.of(Timestamp.fromEpochMillis(end));
@@ -129,25 +132,27 @@ public class NewtsFetchStrategy implements MeasurementFetchStrategy {
                 .collect(Collectors.groupingBy((source) -> ResourceId.fromString(source.getResourceId())));
 
         // Lookup the OnmsResources in parallel
-        Map<ResourceId, Future<OnmsResource>> resourceFuturesById = Maps.newHashMapWithExpectedSize(sourcesByResourceId.size());
+        Map<ResourceId, Callable<OnmsResource>> resourceLookups = Maps.newHashMapWithExpectedSize(sourcesByResourceId.size());
         for (ResourceId resourceId : sourcesByResourceId.keySet()) {
-            resourceFuturesById.put(resourceId, threadPool.submit(getResourceByIdCallable(resourceId)));
+            resourceLookups.put(resourceId, getResourceByIdCallable(resourceId));
+        }
+        final Map<ResourceId, OnmsResource> resourcesById;
+        try {
+            resourcesById = fetcher.fetchAll(resourceLookups, deadline, relaxed).getValues();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
         }
 
         // Gather the results, fail if any of the resources were not found
         Map<OnmsResource, List<Source>> sourcesByResource = Maps.newHashMapWithExpectedSize(sourcesByResourceId.size());
-        for (Entry<ResourceId, Future<OnmsResource>> entry : resourceFuturesById.entrySet()) {
-            try {
-                OnmsResource resource = entry.getValue().get();
-                if (resource == null) {
-                    if (relaxed) continue;
-                    LOG.error("No resource with id: {}", entry.getKey());
-                    return null;
-                }
-                sourcesByResource.put(resource, sourcesByResourceId.get(entry.getKey()));
-            } catch (ExecutionException | InterruptedException e) {
-                throw Throwables.propagate(e);
+        for (ResourceId resourceId : sourcesByResourceId.keySet()) {
+            OnmsResource resource = resourcesById.get(resourceId);
+            if (resource == null) {
+                if (relaxed) continue;
+                LOG.error("No resource with id: {}", resourceId);
+                return null;
             }
+            sourcesByResource.put(resource, sourcesByResourceId.get(resourceId));
         }
 
         // Now group the sources by Newts Resource ID, which differs from the OpenNMS Resource ID.
@@ -193,22 +198,23 @@ public class NewtsFetchStrategy implements MeasurementFetchStrategy {
 
         // The Newts API only allows us to perform a query using a single (Newts) Resource ID,
         // so we perform multiple queries in parallel, and aggregate the results.
-        Map<String, Future<Collection<Row<Measurement>>>> measurementsByNewtsResourceId = Maps.newHashMapWithExpectedSize(sourcesByNewtsResourceId.size());
+        Map<String, Callable<Collection<Row<Measurement>>>> selectsByNewtsResourceId = Maps.newHashMapWithExpectedSize(sourcesByNewtsResourceId.size());
         for (Entry<String, List<Source>> entry : sourcesByNewtsResourceId.entrySet()) {
-            measurementsByNewtsResourceId.put(entry.getKey(), threadPool.submit(
-                    getMeasurementsForResourceCallable(entry.getKey(), entry.getValue(), startTs, endTs, lag)));
+            selectsByNewtsResourceId.put(entry.getKey(),
+                    getMeasurementsForResourceCallable(entry.getKey(), entry.getValue(), startTs, endTs, lag));
+        }
+        final ParallelFetcher.Result<String, Collection<Row<Measurement>>> measurementsByNewtsResourceId;
+        try {
+            measurementsByNewtsResourceId = fetcher.fetchAll(selectsByNewtsResourceId, deadline, relaxed);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
         }
 
         long[] timestamps = null;
         Map<String, double[]> columns = Maps.newHashMap();
 
-        for (Entry<String, Future<Collection<Row<Measurement>>>> entry : measurementsByNewtsResourceId.entrySet()) {
-            Collection<Row<Measurement>> rows;
-            try {
-                rows = entry.getValue().get();
-            } catch (InterruptedException | ExecutionException e) {
-                throw Throwables.propagate(e);
-            }
+        for (Entry<String, Collection<Row<Measurement>>> entry : measurementsByNewtsResourceId.getValues().entrySet()) {
+            Collection<Row<Measurement>> rows = entry.getValue();
 
             final int N = rows.size();
 
@@ -235,7 +241,17 @@ public class NewtsFetchStrategy implements MeasurementFetchStrategy {
             }
         }
 
+        if (timestamps == null) {
+            // None of the resources could be queried
+            timestamps = new long[0];
+        }
+
         FetchResults fetchResults = new FetchResults(timestamps, columns, lag.getStep(), constants);
+        for (Entry<String, Long> duration : measurementsByNewtsResourceId.getDurations().entrySet()) {
+            for (Source source : sourcesByNewtsResourceId.get(duration.getKey())) {
+                fetchResults.getFetchDurations().put(source.getLabel(), duration.getValue());
+            }
+        }
         if (relaxed) {
             Utils.fillMissingValues(fetchResults, sources);
         }
@@ -33,8 +33,11 @@ import java.util.Map;
 
 import org.opennms.core.spring.BeanUtils;
 import org.opennms.core.utils.ParameterMap;
+import org.opennms.netmgt.icmp.BatchPinger;
 import org.opennms.netmgt.icmp.PingConstants;
+import org.opennms.netmgt.icmp.Pinger;
 import org.opennms.netmgt.icmp.PingerFactory;
+import org.opennms.netmgt.icmp.SinglePingResponseCallback;
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.PollStatus;
@@ -75,6 +78,12 @@ public class IcmpMonitor extends AbstractServiceMonitor {
      * utilized for passing poll requests and receiving poll replies from
      * discovery. All exchanges are SOAP/XML compliant.
      * </P>
+     *
+     * <P>
+     * Unless the <code>batch</code> parameter is false, the ping is submitted
+     * into the next wave of echo requests of pingers implementing
+     * {@link BatchPinger}, rather than being tracked as a request of its own.
+     * </P>
      */
     @Override
     public PollStatus poll(MonitoredService svc, Map<String, Object> parameters) {
@@ -90,8 +99,18 @@ public class IcmpMonitor extends AbstractServiceMonitor {
             int packetSize = ParameterMap.getKeyedInteger(parameters, "packet-size", PingConstants.DEFAULT_PACKET_SIZE);
             final int dscp = ParameterMap.getKeyedDecodedInteger(parameters, "dscp", 0);
             final boolean allowFragmentation = ParameterMap.getKeyedBoolean(parameters, "allow-fragmentation", true);
+            final boolean batch = ParameterMap.getKeyedBoolean(parameters, "batch", true);
 
-            rtt = pingerFactory.get().getInstance(dscp, allowFragmentation).ping(host, timeout, retries,packetSize);
+            final Pinger pinger = pingerFactory.get().getInstance(dscp, allowFragmentation);
+            if (batch && pinger instanceof BatchPinger) {
+                final SinglePingResponseCallback cb = new SinglePingResponseCallback(host);
+                ((BatchPinger)pinger).submit(host, timeout, retries, packetSize, cb);
+                cb.waitFor();
+                cb.rethrowError();
+                rtt = cb.getResponseTime();
+            } else {
+                rtt = pinger.ping(host, timeout, retries,packetSize);
+            }
         } catch (Throwable e) {
             LOG.debug("failed to ping {}", host, e);
             return PollStatus.unavailable(e.getMessage());
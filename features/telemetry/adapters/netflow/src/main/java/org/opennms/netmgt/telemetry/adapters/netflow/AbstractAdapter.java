@@ -28,10 +28,12 @@
 
 package org.opennms.netmgt.telemetry.adapters.netflow;
 
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 
+import org.bson.RawBsonDocument;
 import org.opennms.netmgt.flows.api.Converter;
 import org.opennms.netmgt.flows.api.Flow;
 import org.opennms.netmgt.flows.api.FlowException;
@@ -41,6 +43,8 @@ import org.opennms.netmgt.telemetry.adapters.api.Adapter;
 import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessage;
 import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessageLog;
 import org.opennms.netmgt.telemetry.config.api.Protocol;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowRecord;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -113,6 +117,24 @@ public abstract class AbstractAdapter<P> implements Adapter {
 
     protected abstract P parse(TelemetryMessage message);
 
+    /**
+     * Parses a flow record encoded by the listener. Documents encoded as BSON by older listeners are converted to a
+     * flow record of the given schema.
+     */
+    protected static FlowRecord parseFlowRecord(final TelemetryMessage message, final FlowSchema schema) {
+        final ByteBuffer buffer = ByteBuffer.wrap(message.getByteArray());
+        if (!FlowRecord.isFlowRecord(buffer)) {
+            return BsonUtils.toFlowRecord(new RawBsonDocument(buffer.array()), schema);
+        }
+
+        final FlowRecord record = FlowRecord.decode(buffer);
+        if (record.getSchema() != schema) {
+            LOG.warn("Invalid flow record. Expected {}, received {}. Dropping flow record.", schema, record.getSchema());
+            return null;
+        }
+        return record;
+    }
+
     public void destroy() {
         // not needed
     }
@@ -29,6 +29,9 @@
 package org.opennms.netmgt.telemetry.adapters.netflow;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -38,6 +41,10 @@ import org.bson.BsonInt32;
 import org.bson.BsonInt64;
 import org.bson.BsonString;
 import org.bson.BsonValue;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowField;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowRecord;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowSchema;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowValue;
 
 public class BsonUtils {
 
@@ -79,6 +86,80 @@ public class BsonUtils {
                 .findFirst();
     }
 
+    /**
+     * Converts a BSON document as sent by older listeners to a flow record of the given schema.
+     */
+    public static FlowRecord toFlowRecord(final BsonDocument doc, final FlowSchema schema) {
+        final FlowRecord record = new FlowRecord(schema);
+        for (final Map.Entry<String, BsonValue> e : doc.entrySet()) {
+            if ("@version".equals(e.getKey())) {
+                continue;
+            }
+
+            final FlowValue value = toFlowValue(e.getKey(), e.getValue());
+            if (value == null) {
+                continue;
+            }
+
+            final FlowField field = schema.lookup(e.getKey());
+            if (field != null) {
+                record.set(field, value);
+            } else {
+                record.addOther(value);
+            }
+        }
+        return record;
+    }
+
+    private static FlowValue toFlowValue(final String name, final BsonValue value) {
+        switch (value.getBsonType()) {
+            case NULL:
+                return FlowValue.ofNull(name);
+            case BOOLEAN:
+                return FlowValue.ofBoolean(name, value.asBoolean().getValue());
+            case INT64:
+                return FlowValue.ofSigned(name, value.asInt64().getValue());
+            case INT32:
+                return FlowValue.ofSigned(name, value.asInt32().getValue());
+            case DOUBLE:
+                return FlowValue.ofFloat(name, value.asDouble().getValue());
+            case STRING:
+                return FlowValue.ofString(name, value.asString().getValue());
+            case BINARY:
+                return FlowValue.ofBytes(name, value.asBinary().getData());
+            case DOCUMENT: {
+                final BsonDocument doc = value.asDocument();
+                if (doc.containsKey("epoch")) {
+                    return FlowValue.ofTime(name, Instant.ofEpochSecond(
+                            getInt64(doc, "epoch").get(),
+                            getInt64(doc, "nanos").orElse(0L)));
+                }
+                if (doc.containsKey("v") && doc.get("v").isBinary()) {
+                    return FlowValue.ofMac(name,
+                            getInt32(doc, "s").orElse(FlowValue.NO_SEMANTIC),
+                            doc.getBinary("v").getData());
+                }
+                if (doc.containsKey("semantic") && doc.containsKey("values")) {
+                    final List<List<FlowValue>> rows = new ArrayList<>();
+                    for (final BsonValue row : doc.getArray("values")) {
+                        final List<FlowValue> values = new ArrayList<>();
+                        for (final Map.Entry<String, BsonValue> e : row.asDocument().entrySet()) {
+                            final FlowValue element = toFlowValue(e.getKey(), e.getValue());
+                            if (element != null) {
+                                values.add(element);
+                            }
+                        }
+                        rows.add(values);
+                    }
+                    return FlowValue.ofList(name, getInt32(doc, "semantic").get(), rows);
+                }
+                return null;
+            }
+            default:
+                return null;
+        }
+    }
+
     public static Optional<Instant> getTime(final BsonDocument doc, final String... path) {
         return get(doc, path).map(BsonValue::asDocument)
                 .map(ts -> {
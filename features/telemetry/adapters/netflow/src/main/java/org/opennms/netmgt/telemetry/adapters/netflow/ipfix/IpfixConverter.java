@@ -31,14 +31,14 @@ package org.opennms.netmgt.telemetry.adapters.netflow.ipfix;
 import java.util.Collections;
 import java.util.List;
 
-import org.bson.BsonDocument;
 import org.opennms.netmgt.flows.api.Converter;
 import org.opennms.netmgt.flows.api.Flow;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowRecord;
 
-public class IpfixConverter implements Converter<BsonDocument> {
+public class IpfixConverter implements Converter<FlowRecord> {
 
     @Override
-    public List<Flow> convert(final BsonDocument packet) {
+    public List<Flow> convert(final FlowRecord packet) {
         return Collections.singletonList(new IpfixFlow(packet));
     }
 }
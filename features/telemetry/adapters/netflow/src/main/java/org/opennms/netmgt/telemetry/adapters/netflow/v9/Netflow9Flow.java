@@ -29,35 +29,34 @@
 package org.opennms.netmgt.telemetry.adapters.netflow.v9;
 
 import static org.opennms.netmgt.telemetry.adapters.netflow.BsonUtils.first;
-import static org.opennms.netmgt.telemetry.adapters.netflow.BsonUtils.getInt64;
-import static org.opennms.netmgt.telemetry.adapters.netflow.BsonUtils.getString;
+import static org.opennms.netmgt.telemetry.listeners.api.flow.Netflow9Field.*;
 
 import java.util.Objects;
 
-import org.bson.BsonDocument;
 import org.opennms.netmgt.flows.api.Flow;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowRecord;
 
 class Netflow9Flow implements Flow {
-    private final BsonDocument document;
+    private final FlowRecord record;
 
-    public Netflow9Flow(final BsonDocument document) {
-        this.document = Objects.requireNonNull(document);
+    public Netflow9Flow(final FlowRecord record) {
+        this.record = Objects.requireNonNull(record);
     }
 
     @Override
     public long getTimestamp() {
-        return getInt64(this.document, "@unixSecs").get() * 1000;
+        return this.record.getInt64(UNIX_SECS).get() * 1000;
     }
 
     @Override
     public Long getBytes() {
-        return getInt64(this.document, "IN_BYTES")
+        return this.record.getInt64(IN_BYTES)
                 .orElse(null);
     }
 
     @Override
     public Direction getDirection() {
-        return getInt64(this.document, "DIRECTION")
+        return this.record.getInt64(DIRECTION)
                 .map(v -> v == 0 ? Direction.INGRESS
                         : v == 1 ? Direction.EGRESS
                         : null)
@@ -66,120 +65,120 @@ class Netflow9Flow implements Flow {
 
     @Override
     public String getDstAddr() {
-        return first(getString(this.document, "IPV6_DST_ADDR"),
-                getString(this.document, "IPV4_DST_ADDR"))
+        return first(this.record.getString(IPV6_DST_ADDR),
+                this.record.getString(IPV4_DST_ADDR))
                 .orElse(null);
     }
 
     @Override
     public Integer getDstAs() {
-        return getInt64(this.document, "DST_AS")
+        return this.record.getInt64(DST_AS)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Integer getDstMaskLen() {
-        return first(getInt64(this.document, "IPV6_DST_MASK"),
-                getInt64(this.document, "DST_MASK"))
+        return first(this.record.getInt64(IPV6_DST_MASK),
+                this.record.getInt64(DST_MASK))
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Integer getDstPort() {
-        return getInt64(this.document, "L4_DST_PORT")
+        return this.record.getInt64(L4_DST_PORT)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Integer getEngineId() {
-        return getInt64(this.document, "ENGINE_ID")
+        return this.record.getInt64(ENGINE_ID)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Integer getEngineType() {
-        return getInt64(this.document, "ENGINE_TYPE")
+        return this.record.getInt64(ENGINE_TYPE)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Long getFirstSwitched() {
-        return getInt64(this.document, "FIRST_SWITCHED")
+        return this.record.getInt64(FIRST_SWITCHED)
                 .map(t -> this.getBootTime() + t)
                 .orElse(null);
     }
 
     @Override
     public int getFlowRecords() {
-        return getInt64(this.document, "@recordCount")
+        return this.record.getInt64(RECORD_COUNT)
                 .map(Long::intValue)
                 .orElse(0);
     }
 
     @Override
     public long getFlowSeqNum() {
-        return getInt64(this.document, "@sequenceNumber")
+        return this.record.getInt64(SEQUENCE_NUMBER)
                 .orElse(0L);
     }
 
     @Override
     public Integer getInputSnmp() {
-        return getInt64(this.document, "INPUT_SNMP")
+        return this.record.getInt64(INPUT_SNMP)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Integer getIpProtocolVersion() {
-        return getInt64(this.document, "IP_PROTOCOL_VERSION")
+        return this.record.getInt64(IP_PROTOCOL_VERSION)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Long getLastSwitched() {
-        return getInt64(this.document, "LAST_SWITCHED")
+        return this.record.getInt64(LAST_SWITCHED)
                 .map(t -> this.getBootTime() + t)
                 .orElse(null);
     }
 
     @Override
     public String getNextHop() {
-        return first(getString(this.document, "IPV6_NEXT_HOP"),
-                getString(this.document, "IPV4_NEXT_HOP"),
-                getString(this.document, "BPG_IPV6_NEXT_HOP"),
-                getString(this.document, "BPG_IPV4_NEXT_HOP"))
+        return first(this.record.getString(IPV6_NEXT_HOP),
+                this.record.getString(IPV4_NEXT_HOP),
+                this.record.getString(BPG_IPV6_NEXT_HOP),
+                this.record.getString(BPG_IPV4_NEXT_HOP))
                 .orElse(null);
     }
 
     @Override
     public Integer getOutputSnmp() {
-        return getInt64(this.document, "OUTPUT_SNMP")
+        return this.record.getInt64(OUTPUT_SNMP)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Long getPackets() {
-        return getInt64(this.document, "IN_PKTS")
+        return this.record.getInt64(IN_PKTS)
                 .orElse(null);
     }
 
     @Override
     public Integer getProtocol() {
-        return getInt64(this.document, "PROTOCOL")
+        return this.record.getInt64(PROTOCOL)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Flow.SamplingAlgorithm getSamplingAlgorithm() {
-        final int samplingAlgorithm = getInt64(this.document, "SAMPLING_ALGORITHM")
+        final int samplingAlgorithm = this.record.getInt64(SAMPLING_ALGORITHM)
                 .map(Long::intValue)
                 .orElse(0);
 
@@ -195,50 +194,50 @@ class Netflow9Flow implements Flow {
 
     @Override
     public Double getSamplingInterval() {
-        return getInt64(this.document, "SAMPLING_INTERVAL")
+        return this.record.getInt64(SAMPLING_INTERVAL)
                 .map(Long::doubleValue)
                 .orElse(null);
     }
 
     @Override
     public String getSrcAddr() {
-        return first(getString(this.document, "IPV6_SRC_ADDR"),
-                getString(this.document, "IPV4_SRC_ADDR"))
+        return first(this.record.getString(IPV6_SRC_ADDR),
+                this.record.getString(IPV4_SRC_ADDR))
                 .orElse(null);
     }
 
     @Override
     public Integer getSrcAs() {
-        return getInt64(this.document, "SRC_AS")
+        return this.record.getInt64(SRC_AS)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Integer getSrcMaskLen() {
-        return first(getInt64(this.document, "IPV6_SRC_MASK"),
-                getInt64(this.document, "SRC_MASK"))
+        return first(this.record.getInt64(IPV6_SRC_MASK),
+                this.record.getInt64(SRC_MASK))
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Integer getSrcPort() {
-        return getInt64(this.document, "L4_SRC_PORT")
+        return this.record.getInt64(L4_SRC_PORT)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Integer getTcpFlags() {
-        return getInt64(this.document, "TCP_FLAGS")
+        return this.record.getInt64(TCP_FLAGS)
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     @Override
     public Integer getTos() {
-        return getInt64(this.document, "TOS")
+        return this.record.getInt64(TOS)
                 .map(Long::intValue)
                 .orElse(null);
     }
@@ -250,14 +249,14 @@ class Netflow9Flow implements Flow {
 
     @Override
     public Integer getVlan() {
-        return first(getInt64(this.document, "SRC_VLAN"),
-                getInt64(this.document, "DST_VLAN"))
+        return first(this.record.getInt64(SRC_VLAN),
+                this.record.getInt64(DST_VLAN))
                 .map(Long::intValue)
                 .orElse(null);
     }
 
     private long getSysUpTime() {
-        return getInt64(this.document, "@sysUpTime").get();
+        return this.record.getInt64(SYS_UP_TIME).get();
     }
 
     private long getBootTime() {
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.adapters.netflow;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.bson.RawBsonDocument;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowField;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowRecord;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowSchema;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowValue;
+import org.opennms.netmgt.telemetry.listeners.flow.PacketHandler;
+import org.opennms.netmgt.telemetry.listeners.flow.Protocol;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.Semantics;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.Value;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.BooleanValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.DateTimeValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.FloatValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.IPv4AddressValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.IPv6AddressValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.ListValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.MacAddressValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.NullValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.OctetArrayValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.SignedValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.StringValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.UndeclaredValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.UnsignedValue;
+
+import com.google.common.primitives.UnsignedLong;
+
+public class BsonUtilsTest {
+
+    /**
+     * Both encodings of a flow must result in the same record with the same values for the adapters.
+     */
+    @Test
+    public void testBsonAndBinaryEncodingsMatch() throws Exception {
+        final Iterable<Value<?>> values = Arrays.asList(
+                new UnsignedValue("octetDeltaCount", Optional.of(Semantics.DELTA_COUNTER), UnsignedLong.valueOf(1234)),
+                new SignedValue("bgpSourceAsNumber", Optional.empty(), -42),
+                new FloatValue("samplingProbability", Optional.empty(), 0.25),
+                new StringValue("interfaceName", Optional.empty(), "eth0"),
+                new IPv4AddressValue("sourceIPv4Address", Optional.empty(), (Inet4Address) Inet4Address.getByName("10.0.0.1")),
+                new IPv6AddressValue("destinationIPv6Address", Optional.empty(), (Inet6Address) Inet6Address.getByName("fe80::1")),
+                new DateTimeValue("flowStartMilliseconds", Optional.empty(), Instant.ofEpochSecond(12345678, 900)),
+                new DateTimeValue("flowEndMilliseconds", Optional.empty(), Instant.ofEpochSecond(12345679)),
+                new MacAddressValue("sourceMacAddress", Optional.of(Semantics.IDENTIFIER), new byte[] { 0, 1, 2, 3, 4, 5 }),
+                new MacAddressValue("destinationMacAddress", Optional.empty(), new byte[] { 5, 4, 3, 2, 1, 0 }),
+                new BooleanValue("dataRecordsReliability", Optional.empty(), false),
+                new NullValue("paddingOctets", Optional.empty()),
+                new OctetArrayValue("ipHeaderPacketSection", Optional.empty(), new byte[] { 1, 2, 3 }),
+                new UndeclaredValue(1234, new byte[] { 4, 5 }),
+                new ListValue("basicList", Optional.empty(), ListValue.Semantic.UNDEFINED, Arrays.asList(
+                        Arrays.asList(
+                                new UnsignedValue("e0", Optional.empty(), UnsignedLong.valueOf(7)),
+                                new IPv4AddressValue("e1", Optional.empty(), (Inet4Address) Inet4Address.getByName("10.0.0.2"))
+                        ),
+                        Arrays.asList(
+                                new ListValue("e2", Optional.empty(), ListValue.Semantic.ORDERED, Arrays.asList(
+                                        Arrays.asList(new BooleanValue("e3", Optional.empty(), true))
+                                ))
+                        )
+                ))
+        );
+
+        final FlowRecord bson = BsonUtils.toFlowRecord(new RawBsonDocument(PacketHandler.serialize(Protocol.IPFIX, values).array()), FlowSchema.IPFIX);
+        final FlowRecord binary = FlowRecord.decode(PacketHandler.encode(Protocol.IPFIX, values));
+
+        for (final FlowField field : FlowSchema.IPFIX.getFields()) {
+            Assert.assertEquals(field.getName(), bson.get(field).map(BsonUtilsTest::normalize), binary.get(field).map(BsonUtilsTest::normalize));
+            Assert.assertEquals(field.getName(), bson.getInt64(field), binary.getInt64(field));
+            Assert.assertEquals(field.getName(), bson.getString(field), binary.getString(field));
+        }
+        Assert.assertEquals(normalize(bson.getOthers()), normalize(binary.getOthers()));
+        Assert.assertEquals(8, binary.getOthers().size());
+    }
+
+    /**
+     * BSON does neither distinguish signed and unsigned numbers nor addresses and strings.
+     */
+    private static FlowValue normalize(final FlowValue value) {
+        switch (value.getType()) {
+            case UNSIGNED:
+                return FlowValue.ofSigned(value.getName(), value.getNumber());
+            case ADDRESS:
+                return FlowValue.ofString(value.getName(), value.getString());
+            case LIST:
+                return FlowValue.ofList(value.getName(), value.getSemantic(), value.getList().stream()
+                        .map(BsonUtilsTest::normalize)
+                        .collect(Collectors.toList()));
+            default:
+                return value;
+        }
+    }
+
+    private static List<FlowValue> normalize(final List<FlowValue> values) {
+        return values.stream()
+                .map(BsonUtilsTest::normalize)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.adapters.netflow;
+
+import static org.opennms.netmgt.telemetry.listeners.api.utils.BufferUtils.slice;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.flows.api.Flow;
+import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessage;
+import org.opennms.netmgt.telemetry.adapters.netflow.v9.Netflow9Converter;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowSchema;
+import org.opennms.netmgt.telemetry.listeners.flow.PacketHandler;
+import org.opennms.netmgt.telemetry.listeners.flow.Protocol;
+import org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Header;
+import org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Packet;
+import org.opennms.netmgt.telemetry.listeners.flow.session.Session;
+import org.opennms.netmgt.telemetry.listeners.flow.session.TcpSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the BSON encoding of flows with the binary flow record encoding.
+ *
+ * Measures the time taken by the adapter to decode a message and read all values of the resulting flow. The average
+ * size of an encoded flow is printed during setup.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.opennms.netmgt.telemetry.adapters.netflow.FlowEncodingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FlowEncodingBenchmark {
+
+    @Param({"BSON", "BINARY"})
+    public PacketHandler.Encoding encoding;
+
+    private final Netflow9Converter converter = new Netflow9Converter();
+
+    private List<TelemetryMessage> messages;
+
+    private int index;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.messages = new ArrayList<>();
+
+        final Session session = new TcpSession();
+        for (final String resource : new String[]{"/flows/netflow9_template.dat", "/flows/netflow9_records.dat"}) {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(getClass().getResource(resource).toURI())));
+            final Header header = new Header(slice(buffer, Header.SIZE));
+            final Packet packet = new Packet(session, header, buffer);
+            packet.getRecords().forEach(record -> {
+                final ByteBuffer encoded = this.encoding == PacketHandler.Encoding.BINARY
+                        ? PacketHandler.encode(Protocol.NETFLOW9, record)
+                        : PacketHandler.serialize(Protocol.NETFLOW9, record);
+
+                final byte[] bytes = new byte[encoded.remaining()];
+                encoded.get(bytes);
+                this.messages.add(new TelemetryMessage() {
+                    @Override
+                    public long getTimestamp() {
+                        return 0;
+                    }
+
+                    @Override
+                    public byte[] getByteArray() {
+                        return bytes;
+                    }
+                });
+            });
+        }
+
+        final double bytesPerFlow = this.messages.stream().mapToInt(m -> m.getByteArray().length).average().getAsDouble();
+        System.out.printf("%n%s: %.1f bytes/flow%n", this.encoding, bytesPerFlow);
+    }
+
+    @Benchmark
+    public void decode(final Blackhole blackhole) {
+        final TelemetryMessage message = this.messages.get(this.index++ % this.messages.size());
+
+        for (final Flow flow : this.converter.convert(AbstractAdapter.parseFlowRecord(message, FlowSchema.NETFLOW9))) {
+            blackhole.consume(flow.getTimestamp());
+            blackhole.consume(flow.getBytes());
+            blackhole.consume(flow.getDirection());
+            blackhole.consume(flow.getDstAddr());
+            blackhole.consume(flow.getDstAs());
+            blackhole.consume(flow.getDstMaskLen());
+            blackhole.consume(flow.getDstPort());
+            blackhole.consume(flow.getEngineId());
+            blackhole.consume(flow.getEngineType());
+            blackhole.consume(flow.getFirstSwitched());
+            blackhole.consume(flow.getFlowRecords());
+            blackhole.consume(flow.getFlowSeqNum());
+            blackhole.consume(flow.getInputSnmp());
+            blackhole.consume(flow.getIpProtocolVersion());
+            blackhole.consume(flow.getLastSwitched());
+            blackhole.consume(flow.getNextHop());
+            blackhole.consume(flow.getOutputSnmp());
+            blackhole.consume(flow.getPackets());
+            blackhole.consume(flow.getProtocol());
+            blackhole.consume(flow.getSamplingAlgorithm());
+            blackhole.consume(flow.getSamplingInterval());
+            blackhole.consume(flow.getSrcAddr());
+            blackhole.consume(flow.getSrcAs());
+            blackhole.consume(flow.getSrcMaskLen());
+            blackhole.consume(flow.getSrcPort());
+            blackhole.consume(flow.getTcpFlags());
+            blackhole.consume(flow.getTos());
+            blackhole.consume(flow.getVlan());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FlowEncodingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -42,13 +42,18 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
-import org.bson.BsonDocument;
 import org.bson.RawBsonDocument;
 import org.junit.Test;
 import org.opennms.netmgt.flows.api.Flow;
+import org.opennms.netmgt.telemetry.adapters.netflow.BsonUtils;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowRecord;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowSchema;
 import org.opennms.netmgt.telemetry.listeners.flow.InvalidPacketException;
 import org.opennms.netmgt.telemetry.listeners.flow.PacketHandler;
+import org.opennms.netmgt.telemetry.listeners.flow.Protocol;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.Value;
 import org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Header;
 import org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Packet;
 import org.opennms.netmgt.telemetry.listeners.flow.session.Session;
@@ -61,7 +66,20 @@ public class Netflow9ConverterTest {
     @Test
     public void canParseNetflow9Flows() {
         // Generate flows from existing packet payloads
-        List<Flow> flows = getFlowsForPayloadsInSession("/flows/netflow9_template.dat", "/flows/netflow9_records.dat");
+        List<Flow> flows = getFlowsForPayloadsInSession(rec -> FlowRecord.decode(PacketHandler.encode(Protocol.NETFLOW9, rec)),
+                "/flows/netflow9_template.dat", "/flows/netflow9_records.dat");
+        verifyFlows(flows);
+    }
+
+    @Test
+    public void canParseNetflow9FlowsFromBson() {
+        // Generate flows from existing packet payloads using the BSON encoding of older listeners
+        List<Flow> flows = getFlowsForPayloadsInSession(rec -> BsonUtils.toFlowRecord(new RawBsonDocument(PacketHandler.serialize(Protocol.NETFLOW9, rec).array()), FlowSchema.NETFLOW9),
+                "/flows/netflow9_template.dat", "/flows/netflow9_records.dat");
+        verifyFlows(flows);
+    }
+
+    private void verifyFlows(List<Flow> flows) {
         assertThat(flows, hasSize(5));
         // Verify a flow
         Flow flow = flows.get(4);
@@ -81,7 +99,7 @@ public class Netflow9ConverterTest {
         assertThat(flow.getVlan(), nullValue());
     }
 
-    private List<Flow> getFlowsForPayloadsInSession(String... resources) {
+    private List<Flow> getFlowsForPayloadsInSession(Function<Iterable<Value<?>>, FlowRecord> encoding, String... resources) {
         final List<byte[]> payloads = new ArrayList<>(resources.length);
         for (String resource : resources) {
             URL resourceURL = getClass().getResource(resource);
@@ -91,10 +109,10 @@ public class Netflow9ConverterTest {
                 throw new RuntimeException(e);
             }
         }
-        return getFlowsForPayloadsInSession(payloads);
+        return getFlowsForPayloadsInSession(encoding, payloads);
     }
 
-    private List<Flow> getFlowsForPayloadsInSession(List<byte[]> payloads) {
+    private List<Flow> getFlowsForPayloadsInSession(Function<Iterable<Value<?>>, FlowRecord> encoding, List<byte[]> payloads) {
         final List<Flow> flows = new ArrayList<>();
         final Session session = new TcpSession();
         for (byte[] payload : payloads) {
@@ -104,9 +122,7 @@ public class Netflow9ConverterTest {
                 header = new Header(slice(buffer, Header.SIZE));
                 final Packet packet = new Packet(session, header, buffer);
                 packet.getRecords().forEach(rec -> {
-                    final ByteBuffer bf = PacketHandler.serialize(org.opennms.netmgt.telemetry.listeners.flow.Protocol.NETFLOW9, rec);
-                    final BsonDocument doc = new RawBsonDocument(bf.array());
-                    flows.addAll(nf9Converter.convert(doc));
+                    flows.addAll(nf9Converter.convert(encoding.apply(rec)));
                 });
             } catch (InvalidPacketException e) {
                 throw new RuntimeException(e);
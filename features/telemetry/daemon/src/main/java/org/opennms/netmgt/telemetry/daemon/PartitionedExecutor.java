@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.daemon;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Executes tasks on a fixed set of single threaded partitions.
+ *
+ * Tasks submitted with the same key are always handled by the same partition and are therefore
+ * executed in submission order. Each partition is backed by a bounded queue: if the queue is full,
+ * the submitting thread blocks until there is room again, so that a slow consumer propagates
+ * backpressure to its producer instead of buffering without limit.
+ */
+public class PartitionedExecutor implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedExecutor.class);
+
+    private static final Runnable POISON = () -> {};
+
+    private final String name;
+    private final Partition[] partitions;
+
+    private final MetricRegistry metrics;
+    private final Timer blocked;
+
+    public PartitionedExecutor(final String name, final int numPartitions, final int queueSize, final MetricRegistry metrics) {
+        this.name = Objects.requireNonNull(name);
+        if (numPartitions < 1) {
+            throw new IllegalArgumentException("At least one partition is required");
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Queue size must be positive");
+        }
+
+        this.partitions = new Partition[numPartitions];
+        for (int i=0; i<numPartitions; i++) {
+            this.partitions[i] = new Partition(i, queueSize);
+        }
+
+        this.metrics = Objects.requireNonNull(metrics);
+        this.blocked = metrics.timer(MetricRegistry.name(name, "blocked"));
+        metrics.register(MetricRegistry.name(name, "queued"), (Gauge<Integer>) this::getQueued);
+
+        for (final Partition partition : this.partitions) {
+            partition.thread.start();
+        }
+    }
+
+    /**
+     * Submits the task to the partition responsible for the given key.
+     *
+     * Blocks while the queue of the partition is full.
+     */
+    public void execute(final Object key, final Runnable task) throws InterruptedException {
+        final Partition partition = this.partitions[Math.floorMod(Objects.hashCode(key), this.partitions.length)];
+
+        if (partition.queue.offer(task)) {
+            return;
+        }
+
+        try (final Timer.Context ctx = this.blocked.time()) {
+            partition.queue.put(task);
+        }
+    }
+
+    public int getQueued() {
+        int queued = 0;
+        for (final Partition partition : this.partitions) {
+            queued += partition.queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * Stops accepting work and waits for all queued tasks to complete. The metrics of the executor are removed from
+     * the registry, so that an executor with the same name can be created afterwards.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        for (final Partition partition : this.partitions) {
+            partition.queue.put(POISON);
+        }
+
+        for (final Partition partition : this.partitions) {
+            partition.thread.join(TimeUnit.MINUTES.toMillis(1));
+            if (partition.thread.isAlive()) {
+                LOG.warn("Partition {} of {} did not terminate in time. Interrupting.", partition.index, this.name);
+                partition.thread.interrupt();
+            }
+        }
+
+        this.metrics.remove(MetricRegistry.name(this.name, "queued"));
+        this.metrics.remove(MetricRegistry.name(this.name, "blocked"));
+    }
+
+    private class Partition implements Runnable {
+        private final int index;
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+
+        private Partition(final int index, final int queueSize) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.thread = new Thread(this, String.format("%s-%d", PartitionedExecutor.this.name, index));
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final Runnable task;
+                try {
+                    task = this.queue.take();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (task == POISON) {
+                    return;
+                }
+
+                try {
+                    task.run();
+                } catch (final Throwable t) {
+                    LOG.error("Unhandled exception in partition {} of {}.", this.index, PartitionedExecutor.this.name, t);
+                }
+            }
+        }
+    }
+}
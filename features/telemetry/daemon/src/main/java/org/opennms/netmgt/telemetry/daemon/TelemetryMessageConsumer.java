@@ -48,21 +48,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 
 public class TelemetryMessageConsumer implements MessageConsumer<TelemetryMessage, TelemetryProtos.TelemetryMessageLog> {
     private final Logger LOG = LoggerFactory.getLogger(TelemetryMessageConsumer.class);
 
+    public static final int DEFAULT_ADAPTER_QUEUE_SIZE = 100;
+
     @Autowired
     private TelemetryAdapterRegistry adapterRegistry;
 
     private final Protocol protocolDef;
     private final TelemetrySinkModule sinkModule;
+    private final MetricRegistry metrics;
     private final List<Adapter> adapters;
+    private final List<Timer> timers;
+
+    // One stage per adapter, chained in configuration order - empty if the adapters are invoked on the consumer thread
+    private final List<PartitionedExecutor> stages;
 
-    public TelemetryMessageConsumer(Protocol protocol, TelemetrySinkModule sinkModule) throws Exception {
+    public TelemetryMessageConsumer(Protocol protocol, TelemetrySinkModule sinkModule, MetricRegistry metrics) throws Exception {
         this.protocolDef = Objects.requireNonNull(protocol);
         this.sinkModule = Objects.requireNonNull(sinkModule);
+        this.metrics = Objects.requireNonNull(metrics);
         adapters = new ArrayList<>(protocol.getAdapters().size());
+        timers = new ArrayList<>(protocol.getAdapters().size());
+        stages = new ArrayList<>(protocol.getAdapters().size());
     }
 
     @PostConstruct
@@ -80,6 +92,16 @@ public class TelemetryMessageConsumer implements MessageConsumer<TelemetryMessag
                 throw new Exception("No adapter found for class: " + adapterDef.getClassName());
             }
             adapters.add(adapter);
+            timers.add(metrics.timer(MetricRegistry.name(protocolDef.getName(), adapterDef.getName(), "handle")));
+        }
+
+        // Hand the message logs off to a pipeline of partitioned stages, if enabled
+        final int threads = protocolDef.getAdapterThreads().orElse(0);
+        if (threads > 0) {
+            final int queueSize = protocolDef.getAdapterQueueSize().orElse(DEFAULT_ADAPTER_QUEUE_SIZE);
+            for (org.opennms.netmgt.telemetry.config.model.Adapter adapterDef : protocolDef.getAdapters()) {
+                stages.add(new PartitionedExecutor(MetricRegistry.name(protocolDef.getName(), adapterDef.getName()), threads, queueSize, metrics));
+            }
         }
     }
 
@@ -87,21 +109,64 @@ public class TelemetryMessageConsumer implements MessageConsumer<TelemetryMessag
     public void handleMessage(TelemetryProtos.TelemetryMessageLog messageLog) {
         try (Logging.MDCCloseable mdc = Logging.withPrefixCloseable(Telemetryd.LOG_PREFIX)) {
             LOG.trace("Received message log: {}", messageLog);
-            // Handle the message with all of the adapters
-            for (Adapter adapter : adapters) {
-                try {
-                    adapter.handleMessageLog(messageLog);
-                } catch (RuntimeException e) {
-                    LOG.warn("Adapter: {} failed to handle message log: {}. Skipping.", adapter, messageLog, e);
-                    continue;
+            if (stages.isEmpty()) {
+                // Handle the message with all of the adapters
+                for (int i=0; i<adapters.size(); i++) {
+                    handleMessageLog(i, messageLog);
                 }
+            } else {
+                // Partition by exporter to preserve the order of the message logs per source - blocks if the first
+                // stage is saturated which in turn throttles the consumer
+                submit(0, messageLog);
             }
         }
     }
 
+    private void submit(final int stage, final TelemetryProtos.TelemetryMessageLog messageLog) {
+        try {
+            stages.get(stage).execute(messageLog.getSourceAddress(), () -> {
+                try (Logging.MDCCloseable mdc = Logging.withPrefixCloseable(Telemetryd.LOG_PREFIX)) {
+                    handleMessageLog(stage, messageLog);
+                    if (stage + 1 < stages.size()) {
+                        submit(stage + 1, messageLog);
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while handing off message log: {}. Dropping.", messageLog);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleMessageLog(final int index, final TelemetryProtos.TelemetryMessageLog messageLog) {
+        final Adapter adapter = adapters.get(index);
+        try (Timer.Context ctx = timers.get(index).time()) {
+            adapter.handleMessageLog(messageLog);
+        } catch (RuntimeException e) {
+            LOG.warn("Adapter: {} failed to handle message log: {}. Skipping.", adapter, messageLog, e);
+        }
+    }
+
     @PreDestroy
     public void destroy() {
+        // Drain the stages in order, so that pending message logs are passed on to the following stages
+        for (PartitionedExecutor stage : stages) {
+            try {
+                stage.close();
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted while waiting for pending message logs.");
+                Thread.currentThread().interrupt();
+            }
+        }
+        stages.clear();
+
         adapters.forEach((adapter) -> adapter.destroy());
+
+        // Remove the timers, so that a re-created consumer for the same protocol starts with fresh metrics
+        for (org.opennms.netmgt.telemetry.config.model.Adapter adapterDef : protocolDef.getAdapters()) {
+            metrics.remove(MetricRegistry.name(protocolDef.getName(), adapterDef.getName(), "handle"));
+        }
+        timers.clear();
     }
 
     @Override
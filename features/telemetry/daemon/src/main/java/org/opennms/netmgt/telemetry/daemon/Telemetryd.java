@@ -50,6 +50,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
 
+import com.codahale.metrics.MetricRegistry;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -80,6 +82,9 @@ public class Telemetryd implements SpringServiceDaemon {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private MetricRegistry telemetrydMetricRegistry;
+
     private List<TelemetryMessageConsumer> consumers = new ArrayList<>();
     private List<AsyncDispatcher<?>> dispatchers = new ArrayList<>();
     private List<Listener> listeners = new ArrayList<>();
@@ -108,7 +113,7 @@ public class Telemetryd implements SpringServiceDaemon {
             beanFactory.initializeBean(sinkModule, "sinkModule");
 
             // Create the consumer, but don't start it yet
-            final TelemetryMessageConsumer consumer = new TelemetryMessageConsumer(protocol, sinkModule);
+            final TelemetryMessageConsumer consumer = new TelemetryMessageConsumer(protocol, sinkModule, telemetrydMetricRegistry);
             beanFactory.autowireBean(consumer);
             beanFactory.initializeBean(consumer, "consumer");
             consumers.add(consumer);
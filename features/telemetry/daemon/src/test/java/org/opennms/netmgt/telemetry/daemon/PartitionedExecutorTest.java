@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.daemon;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class PartitionedExecutorTest {
+
+    @Test
+    public void testOrderPerKey() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final Map<String, List<Integer>> results = Collections.synchronizedMap(new HashMap<>());
+
+        try (final PartitionedExecutor executor = new PartitionedExecutor("test", 4, 10, metrics)) {
+            for (int i=0; i<1000; i++) {
+                final String key = "10.0.0." + (i % 7);
+                final int value = i;
+                executor.execute(key, () -> results.computeIfAbsent(key, k -> new ArrayList<>()).add(value));
+            }
+        }
+
+        assertThat(results.size(), equalTo(7));
+        for (final Map.Entry<String, List<Integer>> e : results.entrySet()) {
+            final List<Integer> sorted = new ArrayList<>(e.getValue());
+            Collections.sort(sorted);
+            assertThat(e.getValue(), equalTo(sorted));
+        }
+
+        // The metrics are removed when the executor is closed
+        assertThat(metrics.getMetrics().keySet(), equalTo(Collections.emptySet()));
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+
+        try (final PartitionedExecutor executor = new PartitionedExecutor("test", 1, 2, metrics)) {
+            // Block the worker
+            executor.execute("a", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            // Fill the queue
+            for (int i=0; i<2; i++) {
+                final int value = i;
+                executor.execute("a", () -> results.add(value));
+            }
+
+            // The next submission must block until the worker is released
+            final AtomicBoolean submitted = new AtomicBoolean(false);
+            final Thread producer = new Thread(() -> {
+                try {
+                    executor.execute("a", () -> results.add(2));
+                    submitted.set(true);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            producer.start();
+
+            producer.join(TimeUnit.MILLISECONDS.toMillis(500));
+            assertTrue(producer.isAlive());
+            assertThat(executor.getQueued(), equalTo(2));
+
+            release.countDown();
+            producer.join();
+            assertTrue(submitted.get());
+            assertThat(metrics.timer("test.blocked").getCount(), equalTo(1L));
+        }
+
+        assertThat(results, contains(0, 1, 2));
+        assertThat(metrics.getMetrics().keySet(), equalTo(Collections.emptySet()));
+    }
+}
@@ -0,0 +1,433 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.listeners.api.flow;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A flow record holding the values of the fields defined by a {@link FlowSchema}.
+ *
+ * Values of schema fields are stored and accessed by the position of the field in the schema. All other values of
+ * the flow are kept by name, so the record carries the same information as the BSON document it replaces. The binary
+ * encoding consists of a header followed by the values, each prefixed by a key and a type tag:
+ *
+ * <pre>
+ *   uint32  magic
+ *   uint8   version
+ *   varint  protocol
+ *   ( varint key, [ bytes name ], uint8 type, value )*
+ * </pre>
+ *
+ * The key is the field position plus one or zero for a value outside of the schema which is followed by its name.
+ * Numbers are encoded as variable length integers (signed values in zig-zag encoding), floats as 8 byte IEEE 754
+ * doubles, addresses, strings and octet arrays as length prefixed bytes, booleans as single byte and timestamps as
+ * epoch seconds followed by the nano adjustment. MAC addresses are prefixed by their semantic plus one and lists are
+ * written as semantic and number of rows followed by the length of each row and its named values.
+ *
+ * Version 1 records, where the key is the plain field position, are still decoded.
+ */
+public final class FlowRecord {
+
+    // The magic is chosen to never be a valid length of a BSON document, which starts with its length in little endian
+    private static final int MAGIC = 0xF1F0F2F3;
+
+    private static final int VERSION = 2;
+
+    private final FlowSchema schema;
+
+    private final FlowValue[] values;
+
+    private List<FlowValue> others = null;
+
+    public FlowRecord(final FlowSchema schema) {
+        this.schema = Objects.requireNonNull(schema);
+        this.values = new FlowValue[schema.getFields().size()];
+    }
+
+    public FlowSchema getSchema() {
+        return this.schema;
+    }
+
+    public void set(final FlowField field, final FlowValue value) {
+        this.values[field.ordinal()] = Objects.requireNonNull(value);
+    }
+
+    public void setUnsigned(final FlowField field, final long value) {
+        set(field, FlowValue.ofUnsigned(field.getName(), value));
+    }
+
+    public void setSigned(final FlowField field, final long value) {
+        set(field, FlowValue.ofSigned(field.getName(), value));
+    }
+
+    public void setFloat(final FlowField field, final double value) {
+        set(field, FlowValue.ofFloat(field.getName(), value));
+    }
+
+    public void setAddress(final FlowField field, final InetAddress value) {
+        set(field, FlowValue.ofAddress(field.getName(), value));
+    }
+
+    public void setString(final FlowField field, final String value) {
+        set(field, FlowValue.ofString(field.getName(), value));
+    }
+
+    public void setTime(final FlowField field, final Instant value) {
+        set(field, FlowValue.ofTime(field.getName(), value));
+    }
+
+    /**
+     * Adds a value which is not a field of the schema.
+     */
+    public void addOther(final FlowValue value) {
+        if (this.others == null) {
+            this.others = new ArrayList<>();
+        }
+        this.others.add(Objects.requireNonNull(value));
+    }
+
+    /**
+     * Returns the values which are not fields of the schema in the order they were added.
+     */
+    public List<FlowValue> getOthers() {
+        return this.others != null
+                ? Collections.unmodifiableList(this.others)
+                : Collections.emptyList();
+    }
+
+    public Optional<FlowValue> get(final FlowField field) {
+        final int index = field.ordinal();
+        return index < this.values.length
+                ? Optional.ofNullable(this.values[index])
+                : Optional.empty();
+    }
+
+    private FlowValue.Type type(final FlowField field) {
+        final int index = field.ordinal();
+        return index < this.values.length && this.values[index] != null
+                ? this.values[index].getType()
+                : null;
+    }
+
+    public boolean has(final FlowField field) {
+        return type(field) != null;
+    }
+
+    public Optional<Long> getInt64(final FlowField field) {
+        final FlowValue.Type type = type(field);
+        if (type == FlowValue.Type.UNSIGNED || type == FlowValue.Type.SIGNED) {
+            return Optional.of(this.values[field.ordinal()].getNumber());
+        }
+        return Optional.empty();
+    }
+
+    public Optional<Double> getDouble(final FlowField field) {
+        if (type(field) == FlowValue.Type.FLOAT) {
+            return Optional.of(this.values[field.ordinal()].getDouble());
+        }
+        return Optional.empty();
+    }
+
+    public Optional<Boolean> getBoolean(final FlowField field) {
+        if (type(field) == FlowValue.Type.BOOLEAN) {
+            return Optional.of(this.values[field.ordinal()].getBoolean());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the value of a string field or the textual representation of an address field.
+     */
+    public Optional<String> getString(final FlowField field) {
+        final FlowValue.Type type = type(field);
+        if (type == FlowValue.Type.ADDRESS || type == FlowValue.Type.STRING) {
+            return Optional.ofNullable(this.values[field.ordinal()].getString());
+        }
+        return Optional.empty();
+    }
+
+    public Optional<Instant> getTime(final FlowField field) {
+        if (type(field) == FlowValue.Type.TIME) {
+            return Optional.of(this.values[field.ordinal()].getTime());
+        }
+        return Optional.empty();
+    }
+
+    public ByteBuffer encode() {
+        final Encoder encoder = new Encoder();
+        encoder.writeInt(MAGIC);
+        encoder.writeByte(VERSION);
+        encoder.writeVarint(this.schema.getProtocol());
+
+        for (int i=0; i<this.values.length; i++) {
+            if (this.values[i] == null) {
+                continue;
+            }
+
+            encoder.writeVarint(i + 1);
+            writeValue(encoder, this.values[i]);
+        }
+
+        if (this.others != null) {
+            for (final FlowValue value : this.others) {
+                encoder.writeVarint(0);
+                encoder.writeBytes(value.getName().getBytes(StandardCharsets.UTF_8));
+                writeValue(encoder, value);
+            }
+        }
+
+        return encoder.toByteBuffer();
+    }
+
+    private static void writeValue(final Encoder encoder, final FlowValue value) {
+        encoder.writeByte(value.getType().getTag());
+
+        switch (value.getType()) {
+            case NULL:
+                break;
+            case BOOLEAN:
+                encoder.writeByte(value.getBoolean() ? 1 : 0);
+                break;
+            case UNSIGNED:
+                encoder.writeVarint(value.getNumber());
+                break;
+            case SIGNED:
+                encoder.writeVarint((value.getNumber() << 1) ^ (value.getNumber() >> 63));
+                break;
+            case FLOAT:
+                encoder.writeLong(value.getNumber());
+                break;
+            case ADDRESS:
+            case BYTES:
+                encoder.writeBytes(value.getBytes());
+                break;
+            case STRING:
+                encoder.writeBytes(value.getString().getBytes(StandardCharsets.UTF_8));
+                break;
+            case TIME:
+                encoder.writeVarint(value.getTime().getEpochSecond());
+                encoder.writeVarint(value.getTime().getNano());
+                break;
+            case MAC:
+                encoder.writeVarint(value.getSemantic() + 1);
+                encoder.writeBytes(value.getBytes());
+                break;
+            case LIST:
+                encoder.writeVarint(value.getSemantic());
+                encoder.writeVarint(value.getList().size());
+                for (final List<FlowValue> row : value.getList()) {
+                    encoder.writeVarint(row.size());
+                    for (final FlowValue element : row) {
+                        encoder.writeBytes(element.getName().getBytes(StandardCharsets.UTF_8));
+                        writeValue(encoder, element);
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Checks if the buffer contains a binary encoded flow record.
+     */
+    public static boolean isFlowRecord(final ByteBuffer buffer) {
+        return buffer.remaining() > 4 && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    public static FlowRecord decode(final ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a flow record");
+        }
+
+        final int version = buffer.get() & 0xFF;
+        if (version != 1 && version != VERSION) {
+            throw new IllegalArgumentException("Unsupported flow record version: " + version);
+        }
+
+        final int protocol = (int) readVarint(buffer);
+        final FlowSchema schema = FlowSchema.forProtocol(protocol);
+        if (schema == null) {
+            throw new IllegalArgumentException("Unsupported flow protocol: " + protocol);
+        }
+
+        final FlowRecord record = new FlowRecord(schema);
+        while (buffer.hasRemaining()) {
+            final int key = (int) readVarint(buffer);
+
+            if (version == 1 || key > 0) {
+                final int index = version == 1 ? key : key - 1;
+
+                // Fields unknown to this schema version are read and dropped
+                if (index < record.values.length) {
+                    record.values[index] = readValue(buffer, schema.getFields().get(index).getName());
+                } else {
+                    readValue(buffer, "");
+                }
+            } else {
+                record.addOther(readValue(buffer, readString(buffer)));
+            }
+        }
+
+        return record;
+    }
+
+    private static FlowValue readValue(final ByteBuffer buffer, final String name) {
+        final int tag = buffer.get() & 0xFF;
+        final FlowValue.Type type = FlowValue.Type.forTag(tag);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown value type: " + tag);
+        }
+
+        switch (type) {
+            case NULL:
+                return FlowValue.ofNull(name);
+            case BOOLEAN:
+                return FlowValue.ofBoolean(name, buffer.get() != 0);
+            case UNSIGNED:
+                return FlowValue.ofUnsigned(name, readVarint(buffer));
+            case SIGNED: {
+                final long value = readVarint(buffer);
+                return FlowValue.ofSigned(name, (value >>> 1) ^ -(value & 1));
+            }
+            case FLOAT:
+                return FlowValue.ofFloat(name, Double.longBitsToDouble(buffer.getLong()));
+            case ADDRESS:
+                return FlowValue.ofAddress(name, readBytes(buffer));
+            case STRING:
+                return FlowValue.ofString(name, readString(buffer));
+            case TIME: {
+                final long epoch = readVarint(buffer);
+                final long nanos = readVarint(buffer);
+                return FlowValue.ofTime(name, Instant.ofEpochSecond(epoch, nanos));
+            }
+            case BYTES:
+                return FlowValue.ofBytes(name, readBytes(buffer));
+            case MAC: {
+                final int semantic = (int) readVarint(buffer) - 1;
+                return FlowValue.ofMac(name, semantic, readBytes(buffer));
+            }
+            case LIST: {
+                final int semantic = (int) readVarint(buffer);
+                final int size = (int) readVarint(buffer);
+                final List<List<FlowValue>> rows = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    final int length = (int) readVarint(buffer);
+                    final List<FlowValue> row = new ArrayList<>(length);
+                    for (int j = 0; j < length; j++) {
+                        row.add(readValue(buffer, readString(buffer)));
+                    }
+                    rows.add(Collections.unmodifiableList(row));
+                }
+                return FlowValue.ofList(name, semantic, rows);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown value type: " + type);
+        }
+    }
+
+    private static long readVarint(final ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static byte[] readBytes(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[(int) readVarint(buffer)];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static final class Encoder {
+        private byte[] buffer = new byte[128];
+        private int position = 0;
+
+        private void ensure(final int size) {
+            if (this.position + size > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + size));
+            }
+        }
+
+        private void writeByte(final int value) {
+            ensure(1);
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void writeInt(final int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                this.buffer[this.position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeLong(final long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                this.buffer[this.position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void writeBytes(final byte[] bytes) {
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+            this.position += bytes.length;
+        }
+
+        private ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(this.buffer, 0, this.position);
+        }
+    }
+}
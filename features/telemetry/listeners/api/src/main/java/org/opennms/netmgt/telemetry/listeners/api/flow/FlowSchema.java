@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.listeners.api.flow;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pre-defined set of fields transported for each flow protocol.
+ */
+public enum FlowSchema {
+    NETFLOW9(9, Netflow9Field.values()),
+    IPFIX(10, IpfixField.values());
+
+    private final int protocol;
+
+    private final List<FlowField> fields;
+
+    private final Map<String, FlowField> fieldsByName = new HashMap<>();
+
+    FlowSchema(final int protocol, final FlowField[] fields) {
+        this.protocol = protocol;
+        this.fields = Collections.unmodifiableList(Arrays.asList(fields));
+
+        for (final FlowField field : fields) {
+            this.fieldsByName.put(field.getName(), field);
+        }
+    }
+
+    public int getProtocol() {
+        return this.protocol;
+    }
+
+    public List<FlowField> getFields() {
+        return this.fields;
+    }
+
+    /**
+     * Returns the field with the given information element name or {@code null} if the field is not part of the schema.
+     */
+    public FlowField lookup(final String name) {
+        return this.fieldsByName.get(name);
+    }
+
+    public static FlowSchema forProtocol(final int protocol) {
+        for (final FlowSchema schema : values()) {
+            if (schema.protocol == protocol) {
+                return schema;
+            }
+        }
+        return null;
+    }
+}
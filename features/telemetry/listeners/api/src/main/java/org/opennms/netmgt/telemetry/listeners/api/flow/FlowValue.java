@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.telemetry.listeners.api.flow;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A single named and typed value of a {@link FlowRecord}.
+ *
+ * Values are immutable. Lists hold rows of values, each row being the values of a (sub-)template record.
+ */
+public final class FlowValue {
+
+    public enum Type {
+        UNSIGNED(1),
+        SIGNED(2),
+        FLOAT(3),
+        ADDRESS(4),
+        STRING(5),
+        TIME(6),
+        BOOLEAN(7),
+        BYTES(8),
+        MAC(9),
+        NULL(10),
+        LIST(11);
+
+        private final int tag;
+
+        Type(final int tag) {
+            this.tag = tag;
+        }
+
+        public int getTag() {
+            return this.tag;
+        }
+
+        public static Type forTag(final int tag) {
+            for (final Type type : values()) {
+                if (type.tag == tag) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Marks the absence of the semantic of a MAC address value.
+     */
+    public static final int NO_SEMANTIC = -1;
+
+    private final String name;
+    private final Type type;
+
+    private final long number;
+    private final Object object;
+
+    private FlowValue(final String name, final Type type, final long number, final Object object) {
+        this.name = Objects.requireNonNull(name);
+        this.type = Objects.requireNonNull(type);
+        this.number = number;
+        this.object = object;
+    }
+
+    public static FlowValue ofNull(final String name) {
+        return new FlowValue(name, Type.NULL, 0L, null);
+    }
+
+    public static FlowValue ofBoolean(final String name, final boolean value) {
+        return new FlowValue(name, Type.BOOLEAN, value ? 1L : 0L, null);
+    }
+
+    public static FlowValue ofUnsigned(final String name, final long value) {
+        return new FlowValue(name, Type.UNSIGNED, value, null);
+    }
+
+    public static FlowValue ofSigned(final String name, final long value) {
+        return new FlowValue(name, Type.SIGNED, value, null);
+    }
+
+    public static FlowValue ofFloat(final String name, final double value) {
+        return new FlowValue(name, Type.FLOAT, Double.doubleToRawLongBits(value), null);
+    }
+
+    public static FlowValue ofAddress(final String name, final InetAddress value) {
+        return ofAddress(name, value.getAddress());
+    }
+
+    public static FlowValue ofAddress(final String name, final byte[] value) {
+        return new FlowValue(name, Type.ADDRESS, 0L, Objects.requireNonNull(value));
+    }
+
+    public static FlowValue ofString(final String name, final String value) {
+        return new FlowValue(name, Type.STRING, 0L, Objects.requireNonNull(value));
+    }
+
+    public static FlowValue ofTime(final String name, final Instant value) {
+        return new FlowValue(name, Type.TIME, 0L, Objects.requireNonNull(value));
+    }
+
+    public static FlowValue ofBytes(final String name, final byte[] value) {
+        return new FlowValue(name, Type.BYTES, 0L, Objects.requireNonNull(value));
+    }
+
+    /**
+     * @param semantic the ordinal of the information element semantics or {@link #NO_SEMANTIC}
+     */
+    public static FlowValue ofMac(final String name, final int semantic, final byte[] value) {
+        return new FlowValue(name, Type.MAC, semantic, Objects.requireNonNull(value));
+    }
+
+    /**
+     * @param semantic the ordinal of the list semantic
+     */
+    public static FlowValue ofList(final String name, final int semantic, final List<List<FlowValue>> rows) {
+        return new FlowValue(name, Type.LIST, semantic, Collections.unmodifiableList(Objects.requireNonNull(rows)));
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the value of a signed or unsigned number or the bits of a float.
+     */
+    public long getNumber() {
+        return this.number;
+    }
+
+    public double getDouble() {
+        return Double.longBitsToDouble(this.number);
+    }
+
+    public boolean getBoolean() {
+        return this.number != 0L;
+    }
+
+    /**
+     * Returns the semantic of a MAC address or list value.
+     */
+    public int getSemantic() {
+        return (int) this.number;
+    }
+
+    /**
+     * Returns the value of a string or the textual representation of an address. The conversion of the address is
+     * not cached to keep the value immutable.
+     */
+    public String getString() {
+        if (this.type == Type.ADDRESS) {
+            try {
+                return InetAddress.getByAddress((byte[]) this.object).getHostAddress();
+            } catch (final UnknownHostException e) {
+                return null;
+            }
+        }
+        if (this.type == Type.STRING) {
+            return (String) this.object;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the raw bytes of an address, MAC address or octet array value.
+     */
+    public byte[] getBytes() {
+        return this.object instanceof byte[] ? (byte[]) this.object : null;
+    }
+
+    public Instant getTime() {
+        return this.type == Type.TIME ? (Instant) this.object : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<List<FlowValue>> getList() {
+        return this.type == Type.LIST ? (List<List<FlowValue>>) this.object : null;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FlowValue)) {
+            return false;
+        }
+        final FlowValue that = (FlowValue) o;
+        return this.number == that.number &&
+                Objects.equals(this.name, that.name) &&
+                this.type == that.type &&
+                Objects.deepEquals(this.object, that.object);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.name, this.type, this.number,
+                this.object instanceof byte[] ? Arrays.hashCode((byte[]) this.object) : this.object);
+    }
+
+    @Override
+    public String toString() {
+        final Object value;
+        switch (this.type) {
+            case UNSIGNED:
+            case SIGNED:
+                value = this.number;
+                break;
+            case FLOAT:
+                value = getDouble();
+                break;
+            case BOOLEAN:
+                value = getBoolean();
+                break;
+            case ADDRESS:
+                value = getString();
+                break;
+            case BYTES:
+            case MAC:
+                value = Arrays.toString((byte[]) this.object);
+                break;
+            default:
+                value = this.object;
+        }
+        return this.name + "=" + this.type + ":" + value;
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.listeners.api.flow;
+
+/**
+ * Fields of an IPFIX record transported from the listener to the adapter.
+ *
+ * The ordinal of each field is used as its identifier on the wire. New fields must therefore only be appended.
+ */
+public enum IpfixField implements FlowField {
+    RECORD_COUNT("@recordCount"),
+    SEQUENCE_NUMBER("@sequenceNumber"),
+    EXPORT_TIME("@exportTime"),
+    BGP_DESTINATION_AS_NUMBER("bgpDestinationAsNumber"),
+    BGP_NEXT_HOP_IPV4_ADDRESS("bgpNextHopIPv4Address"),
+    BGP_NEXT_HOP_IPV6_ADDRESS("bgpNextHopIPv6Address"),
+    BGP_SOURCE_AS_NUMBER("bgpSourceAsNumber"),
+    DESTINATION_IPV4_ADDRESS("destinationIPv4Address"),
+    DESTINATION_IPV4_PREFIX_LENGTH("destinationIPv4PrefixLength"),
+    DESTINATION_IPV6_ADDRESS("destinationIPv6Address"),
+    DESTINATION_IPV6_PREFIX_LENGTH("destinationIPv6PrefixLength"),
+    DESTINATION_TRANSPORT_PORT("destinationTransportPort"),
+    DOT1Q_CUSTOMER_VLAN_ID("dot1qCustomerVlanId"),
+    DOT1Q_VLAN_ID("dot1qVlanId"),
+    EGRESS_INTERFACE("egressInterface"),
+    ENGINE_ID("engineId"),
+    ENGINE_TYPE("engineType"),
+    FLOW_DIRECTION("flowDirection"),
+    FLOW_END_DELTA_MICROSECONDS("flowEndDeltaMicroseconds"),
+    FLOW_END_MICROSECONDS("flowEndMicroseconds"),
+    FLOW_END_MILLISECONDS("flowEndMilliseconds"),
+    FLOW_END_NANOSECONDS("flowEndNanoseconds"),
+    FLOW_END_SECONDS("flowEndSeconds"),
+    FLOW_END_SYS_UP_TIME("flowEndSysUpTime"),
+    FLOW_SAMPLING_TIME_INTERVAL("flowSamplingTimeInterval"),
+    FLOW_SAMPLING_TIME_SPACING("flowSamplingTimeSpacing"),
+    FLOW_START_DELTA_MICROSECONDS("flowStartDeltaMicroseconds"),
+    FLOW_START_MICROSECONDS("flowStartMicroseconds"),
+    FLOW_START_MILLISECONDS("flowStartMilliseconds"),
+    FLOW_START_NANOSECONDS("flowStartNanoseconds"),
+    FLOW_START_SECONDS("flowStartSeconds"),
+    FLOW_START_SYS_UP_TIME("flowStartSysUpTime"),
+    HASH_OUTPUT_RANGE_MAX("hashOutputRangeMax"),
+    HASH_OUTPUT_RANGE_MIN("hashOutputRangeMin"),
+    HASH_SELECTED_RANGE_MAX("hashSelectedRangeMax"),
+    HASH_SELECTED_RANGE_MIN("hashSelectedRangeMin"),
+    INGRESS_INTERFACE("ingressInterface"),
+    IP_CLASS_OF_SERVICE("ipClassOfService"),
+    IP_NEXT_HOP_IPV4_ADDRESS("ipNextHopIPv4Address"),
+    IP_NEXT_HOP_IPV6_ADDRESS("ipNextHopIPv6Address"),
+    IP_VERSION("ipVersion"),
+    LAYER2_OCTET_DELTA_COUNT("layer2OctetDeltaCount"),
+    OCTET_DELTA_COUNT("octetDeltaCount"),
+    PACKET_DELTA_COUNT("packetDeltaCount"),
+    POST_DOT1Q_CUSTOMER_VLAN_ID("postDot1qCustomerVlanId"),
+    POST_DOT1Q_VLAN_ID("postDot1qVlanId"),
+    POST_LAYER2_OCTET_DELTA_COUNT("postLayer2OctetDeltaCount"),
+    POST_OCTET_DELTA_COUNT("postOctetDeltaCount"),
+    POST_PACKET_DELTA_COUNT("postPacketDeltaCount"),
+    POST_VLAN_ID("postVlanId"),
+    PROTOCOL_IDENTIFIER("protocolIdentifier"),
+    SAMPLER_MODE("samplerMode"),
+    SAMPLER_RANDOM_INTERVAL("samplerRandomInterval"),
+    SAMPLING_ALGORITHM("samplingAlgorithm"),
+    SAMPLING_FLOW_INTERVAL("samplingFlowInterval"),
+    SAMPLING_FLOW_SPACING("samplingFlowSpacing"),
+    SAMPLING_INTERVAL("samplingInterval"),
+    SAMPLING_POPULATION("samplingPopulation"),
+    SAMPLING_PROBABILITY("samplingProbability"),
+    SAMPLING_SIZE("samplingSize"),
+    SELECTOR_ALGORITHM("selectorAlgorithm"),
+    SOURCE_IPV4_ADDRESS("sourceIPv4Address"),
+    SOURCE_IPV4_PREFIX_LENGTH("sourceIPv4PrefixLength"),
+    SOURCE_IPV6_ADDRESS("sourceIPv6Address"),
+    SOURCE_IPV6_PREFIX_LENGTH("sourceIPv6PrefixLength"),
+    SOURCE_TRANSPORT_PORT("sourceTransportPort"),
+    SYSTEM_INIT_TIME_MILLISECONDS("systemInitTimeMilliseconds"),
+    TCP_CONTROL_BITS("tcpControlBits"),
+    TRANSPORT_OCTET_DELTA_COUNT("transportOctetDeltaCount"),
+    TRANSPORT_PACKET_DELTA_COUNT("transportPacketDeltaCount"),
+    VLAN_ID("vlanId");
+
+    private final String name;
+
+    IpfixField(final String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.listeners.api.flow;
+
+/**
+ * Fields of a Netflow v9 record transported from the listener to the adapter.
+ *
+ * The ordinal of each field is used as its identifier on the wire. New fields must therefore only be appended.
+ */
+public enum Netflow9Field implements FlowField {
+    RECORD_COUNT("@recordCount"),
+    SEQUENCE_NUMBER("@sequenceNumber"),
+    SYS_UP_TIME("@sysUpTime"),
+    UNIX_SECS("@unixSecs"),
+    BPG_IPV4_NEXT_HOP("BPG_IPV4_NEXT_HOP"),
+    BPG_IPV6_NEXT_HOP("BPG_IPV6_NEXT_HOP"),
+    DIRECTION("DIRECTION"),
+    DST_AS("DST_AS"),
+    DST_MASK("DST_MASK"),
+    DST_VLAN("DST_VLAN"),
+    ENGINE_ID("ENGINE_ID"),
+    ENGINE_TYPE("ENGINE_TYPE"),
+    FIRST_SWITCHED("FIRST_SWITCHED"),
+    INPUT_SNMP("INPUT_SNMP"),
+    IN_BYTES("IN_BYTES"),
+    IN_PKTS("IN_PKTS"),
+    IPV4_DST_ADDR("IPV4_DST_ADDR"),
+    IPV4_NEXT_HOP("IPV4_NEXT_HOP"),
+    IPV4_SRC_ADDR("IPV4_SRC_ADDR"),
+    IPV6_DST_ADDR("IPV6_DST_ADDR"),
+    IPV6_DST_MASK("IPV6_DST_MASK"),
+    IPV6_NEXT_HOP("IPV6_NEXT_HOP"),
+    IPV6_SRC_ADDR("IPV6_SRC_ADDR"),
+    IPV6_SRC_MASK("IPV6_SRC_MASK"),
+    IP_PROTOCOL_VERSION("IP_PROTOCOL_VERSION"),
+    L4_DST_PORT("L4_DST_PORT"),
+    L4_SRC_PORT("L4_SRC_PORT"),
+    LAST_SWITCHED("LAST_SWITCHED"),
+    OUTPUT_SNMP("OUTPUT_SNMP"),
+    PROTOCOL("PROTOCOL"),
+    SAMPLING_ALGORITHM("SAMPLING_ALGORITHM"),
+    SAMPLING_INTERVAL("SAMPLING_INTERVAL"),
+    SRC_AS("SRC_AS"),
+    SRC_MASK("SRC_MASK"),
+    SRC_VLAN("SRC_VLAN"),
+    TCP_FLAGS("TCP_FLAGS"),
+    TOS("TOS");
+
+    private final String name;
+
+    Netflow9Field(final String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+}
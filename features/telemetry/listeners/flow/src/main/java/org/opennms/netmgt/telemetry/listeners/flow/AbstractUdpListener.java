@@ -30,11 +30,14 @@ package org.opennms.netmgt.telemetry.listeners.flow;
 
 import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.opennms.core.ipc.sink.api.AsyncDispatcher;
 import org.opennms.netmgt.telemetry.listeners.api.Listener;
 import org.opennms.netmgt.telemetry.listeners.api.TelemetryMessage;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowField;
 import org.opennms.netmgt.telemetry.listeners.flow.session.UdpSessionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,14 +80,28 @@ public abstract class AbstractUdpListener implements Listener {
     private ScheduledFuture<?> housekeepingFuture;
     private int maxPacketSize = 8096;
 
+    private boolean skipUnusedFields = false;
+
+    private PacketHandler.Encoding encoding = PacketHandler.Encoding.BSON;
+
     protected abstract ChannelHandler buildDecoder(final UdpSessionManager sessionManager);
 
+    /**
+     * Returns the names of the fields consumed by the adapters for this protocol. Only these fields are decoded if
+     * {@link #isSkipUnusedFields()} is enabled.
+     */
+    protected Set<String> getUsedFields() {
+        return this.protocol.schema.getFields().stream()
+                .map(FlowField::getName)
+                .collect(Collectors.toSet());
+    }
+
     protected AbstractUdpListener(final Protocol protocol) {
         this.protocol = protocol;
     }
 
     public void start() throws InterruptedException {
-        this.sessionManager = new UdpSessionManager(this.templateTimeout);
+        this.sessionManager = new UdpSessionManager(this.templateTimeout, this.skipUnusedFields ? this.getUsedFields() : null);
 
         this.bossGroup = new NioEventLoopGroup();
 
@@ -105,7 +122,7 @@ public abstract class AbstractUdpListener implements Listener {
                     protected void initChannel(final DatagramChannel ch) throws Exception {
                         ch.pipeline()
                                 .addLast(AbstractUdpListener.this.buildDecoder(AbstractUdpListener.this.sessionManager))
-                                .addLast(new PacketHandler(AbstractUdpListener.this.protocol, AbstractUdpListener.this.dispatcher))
+                                .addLast(new PacketHandler(AbstractUdpListener.this.protocol, AbstractUdpListener.this.encoding, AbstractUdpListener.this.dispatcher))
                                 .addLast(new ChannelInboundHandlerAdapter() {
                                     @Override
                                     public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
@@ -172,6 +189,22 @@ public abstract class AbstractUdpListener implements Listener {
         this.templateTimeout = templateTimeout;
     }
 
+    public boolean isSkipUnusedFields() {
+        return this.skipUnusedFields;
+    }
+
+    public void setSkipUnusedFields(final boolean skipUnusedFields) {
+        this.skipUnusedFields = skipUnusedFields;
+    }
+
+    public PacketHandler.Encoding getEncoding() {
+        return this.encoding;
+    }
+
+    public void setEncoding(final PacketHandler.Encoding encoding) {
+        this.encoding = encoding;
+    }
+
     @Override
     public void setDispatcher(final AsyncDispatcher<TelemetryMessage> dispatcher) {
         this.dispatcher = dispatcher;
@@ -30,6 +30,8 @@ package org.opennms.netmgt.telemetry.listeners.flow;
 
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 
@@ -39,6 +41,9 @@ import org.bson.BsonWriter;
 import org.bson.io.BasicOutputBuffer;
 import org.opennms.core.ipc.sink.api.AsyncDispatcher;
 import org.opennms.netmgt.telemetry.listeners.api.TelemetryMessage;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowField;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowRecord;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowValue;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.RecordProvider;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.Value;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.values.BooleanValue;
@@ -64,13 +69,35 @@ import io.netty.channel.SimpleChannelInboundHandler;
 public class PacketHandler extends SimpleChannelInboundHandler<DefaultAddressedEnvelope<RecordProvider, InetSocketAddress>> {
     private static final Logger LOG = LoggerFactory.getLogger(PacketHandler.class);
 
+    public enum Encoding {
+        /**
+         * All values of a record are written as BSON document.
+         */
+        BSON,
+
+        /**
+         * All values of a record are written as binary {@link FlowRecord}. Requires adapters which are able to decode
+         * flow records.
+         */
+        BINARY,
+    }
+
     private final Protocol protocol;
 
+    private final Encoding encoding;
+
     private final AsyncDispatcher<TelemetryMessage> dispatcher;
 
     public PacketHandler(final Protocol protocol,
                          final AsyncDispatcher<TelemetryMessage> dispatcher) {
+        this(protocol, Encoding.BSON, dispatcher);
+    }
+
+    public PacketHandler(final Protocol protocol,
+                         final Encoding encoding,
+                         final AsyncDispatcher<TelemetryMessage> dispatcher) {
         this.protocol = Objects.requireNonNull(protocol);
+        this.encoding = Objects.requireNonNull(encoding);
         this.dispatcher = Objects.requireNonNull(dispatcher);
     }
 
@@ -79,7 +106,9 @@ public class PacketHandler extends SimpleChannelInboundHandler<DefaultAddressedE
         LOG.trace("Got packet: {}", packet);
 
         packet.content().getRecords().forEach(record -> {
-            final ByteBuffer buffer = serialize(this.protocol, record);
+            final ByteBuffer buffer = this.encoding == Encoding.BINARY
+                    ? encode(this.protocol, record)
+                    : serialize(this.protocol, record);
 
             // Build the message to dispatch
             final TelemetryMessage msg = new TelemetryMessage(packet.sender(), buffer);
@@ -116,6 +145,29 @@ public class PacketHandler extends SimpleChannelInboundHandler<DefaultAddressedE
         return output.getByteBuffers().get(0).asNIO();
     }
 
+    public static ByteBuffer encode(final Protocol protocol, final Iterable<Value<?>> record) {
+        // Build binary record from flow - values not defined by the schema are kept by name
+        final FlowRecord flowRecord = new FlowRecord(protocol.schema);
+
+        for (final Value<?> value : record) {
+            final FlowValue flowValue = toFlowValue(value);
+            final FlowField field = protocol.schema.lookup(value.getName());
+            if (field != null) {
+                flowRecord.set(field, flowValue);
+            } else {
+                flowRecord.addOther(flowValue);
+            }
+        }
+
+        return flowRecord.encode();
+    }
+
+    private static FlowValue toFlowValue(final Value<?> value) {
+        final FlowValueVisitor visitor = new FlowValueVisitor();
+        value.visit(visitor);
+        return visitor.result;
+    }
+
     private static class FlowBuilderVisitor implements Value.Visitor {
         // TODO: Really use ordinal for enums?
 
@@ -214,4 +266,84 @@ public class PacketHandler extends SimpleChannelInboundHandler<DefaultAddressedE
             this.writer.writeBinaryData(value.getName(), new BsonBinary(value.getValue()));
         }
     }
+
+    // Mirrors the FlowBuilderVisitor to keep the same information in both encodings
+    private static class FlowValueVisitor implements Value.Visitor {
+        private FlowValue result;
+
+        @Override
+        public void accept(final NullValue value) {
+            this.result = FlowValue.ofNull(value.getName());
+        }
+
+        @Override
+        public void accept(final BooleanValue value) {
+            this.result = FlowValue.ofBoolean(value.getName(), value.getValue());
+        }
+
+        @Override
+        public void accept(final DateTimeValue value) {
+            this.result = FlowValue.ofTime(value.getName(), value.getValue());
+        }
+
+        @Override
+        public void accept(final FloatValue value) {
+            this.result = FlowValue.ofFloat(value.getName(), value.getValue());
+        }
+
+        @Override
+        public void accept(final IPv4AddressValue value) {
+            this.result = FlowValue.ofAddress(value.getName(), value.getValue());
+        }
+
+        @Override
+        public void accept(final IPv6AddressValue value) {
+            this.result = FlowValue.ofAddress(value.getName(), value.getValue());
+        }
+
+        @Override
+        public void accept(final MacAddressValue value) {
+            this.result = FlowValue.ofMac(value.getName(),
+                    value.getSemantics().map(Enum::ordinal).orElse(FlowValue.NO_SEMANTIC),
+                    value.getValue());
+        }
+
+        @Override
+        public void accept(final OctetArrayValue value) {
+            this.result = FlowValue.ofBytes(value.getName(), value.getValue());
+        }
+
+        @Override
+        public void accept(final SignedValue value) {
+            this.result = FlowValue.ofSigned(value.getName(), value.getValue());
+        }
+
+        @Override
+        public void accept(final StringValue value) {
+            this.result = FlowValue.ofString(value.getName(), value.getValue());
+        }
+
+        @Override
+        public void accept(final ListValue value) {
+            final List<List<FlowValue>> rows = new ArrayList<>(value.getValue().size());
+            for (final List<Value<?>> row : value.getValue()) {
+                final List<FlowValue> values = new ArrayList<>(row.size());
+                for (final Value<?> element : row) {
+                    values.add(toFlowValue(element));
+                }
+                rows.add(values);
+            }
+            this.result = FlowValue.ofList(value.getName(), value.getSemantic().ordinal(), rows);
+        }
+
+        @Override
+        public void accept(final UnsignedValue value) {
+            this.result = FlowValue.ofUnsigned(value.getName(), value.getValue().longValue());
+        }
+
+        @Override
+        public void accept(final UndeclaredValue value) {
+            this.result = FlowValue.ofBytes(value.getName(), value.getValue());
+        }
+    }
 }
@@ -28,13 +28,18 @@
 
 package org.opennms.netmgt.telemetry.listeners.flow;
 
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowSchema;
+
 public enum Protocol {
-    NETFLOW9(org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Header.VERSION),
-    IPFIX(org.opennms.netmgt.telemetry.listeners.flow.ipfix.proto.Header.VERSION);
+    NETFLOW9(org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Header.VERSION, FlowSchema.NETFLOW9),
+    IPFIX(org.opennms.netmgt.telemetry.listeners.flow.ipfix.proto.Header.VERSION, FlowSchema.IPFIX);
 
     public final int magic;
 
-    Protocol(final int magic) {
+    public final FlowSchema schema;
+
+    Protocol(final int magic, final FlowSchema schema) {
         this.magic = magic;
+        this.schema = schema;
     }
 }
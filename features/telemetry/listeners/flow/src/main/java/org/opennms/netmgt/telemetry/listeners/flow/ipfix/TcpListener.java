@@ -60,6 +60,8 @@ public class TcpListener implements Listener {
     private String host = null;
     private int port = 4739;
 
+    private PacketHandler.Encoding encoding = PacketHandler.Encoding.BSON;
+
     private AsyncDispatcher<TelemetryMessage> dispatcher;
 
     private EventLoopGroup bossGroup;
@@ -88,7 +90,7 @@ public class TcpListener implements Listener {
 
                         ch.pipeline()
                                 .addLast(new TcpPacketDecoder(ch.remoteAddress(), ch.localAddress(), session))
-                                .addLast(new PacketHandler(Protocol.IPFIX, TcpListener.this.dispatcher))
+                                .addLast(new PacketHandler(Protocol.IPFIX, TcpListener.this.encoding, TcpListener.this.dispatcher))
                                 .addLast(new ChannelInboundHandlerAdapter() {
                                     @Override
                                     public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
@@ -139,6 +141,14 @@ public class TcpListener implements Listener {
         this.port = port;
     }
 
+    public PacketHandler.Encoding getEncoding() {
+        return this.encoding;
+    }
+
+    public void setEncoding(final PacketHandler.Encoding encoding) {
+        this.encoding = encoding;
+    }
+
     @Override
     public void setDispatcher(final AsyncDispatcher<TelemetryMessage> dispatcher) {
         this.dispatcher = dispatcher;
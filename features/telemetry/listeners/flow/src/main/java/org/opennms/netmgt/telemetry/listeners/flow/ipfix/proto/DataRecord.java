@@ -28,6 +28,7 @@
 
 package org.opennms.netmgt.telemetry.listeners.flow.ipfix.proto;
 
+import static org.opennms.netmgt.telemetry.listeners.api.utils.BufferUtils.skip;
 import static org.opennms.netmgt.telemetry.listeners.api.utils.BufferUtils.slice;
 import static org.opennms.netmgt.telemetry.listeners.api.utils.BufferUtils.uint16;
 import static org.opennms.netmgt.telemetry.listeners.api.utils.BufferUtils.uint8;
@@ -104,7 +105,12 @@ public final class DataRecord implements Record {
 
         final List<Value<?>> fields = new ArrayList(this.template.fields.size());
         for (final Field field : this.template.fields) {
-            fields.add(parseField(field, resolver, buffer));
+            // Values of option records are always kept as they are looked up by data records later on
+            if (this.template.type == Template.Type.OPTIONS_TEMPLATE || resolver.isRequired(field)) {
+                fields.add(parseField(field, resolver, buffer));
+            } else {
+                skipField(field, buffer);
+            }
         }
 
         this.scopes = Collections.unmodifiableList(scopes);
@@ -129,6 +135,21 @@ public final class DataRecord implements Record {
     public static Value<?> parseField(final Field field,
                                       final Session.Resolver resolver,
                                       final ByteBuffer buffer) throws InvalidPacketException {
+        return field.parse(resolver, slice(buffer, fieldLength(field, buffer)));
+    }
+
+    public static void skipField(final Field field,
+                                 final ByteBuffer buffer) throws InvalidPacketException {
+        final int length = fieldLength(field, buffer);
+        if (length > buffer.remaining()) {
+            throw new InvalidPacketException(buffer, "Field '%s' exceeds record: %d > %d", field.getName(), length, buffer.remaining());
+        }
+
+        skip(buffer, length);
+    }
+
+    private static int fieldLength(final Field field,
+                                   final ByteBuffer buffer) {
         int length = field.length();
         if (length == VARIABLE_SIZED) {
             length = uint8(buffer);
@@ -136,7 +157,6 @@ public final class DataRecord implements Record {
                 length = uint16(buffer);
             }
         }
-
-        return field.parse(resolver, slice(buffer, length));
+        return length;
     }
 }
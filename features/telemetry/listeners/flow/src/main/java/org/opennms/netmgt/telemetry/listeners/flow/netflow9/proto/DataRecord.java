@@ -28,6 +28,7 @@
 
 package org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto;
 
+import static org.opennms.netmgt.telemetry.listeners.api.utils.BufferUtils.skip;
 import static org.opennms.netmgt.telemetry.listeners.api.utils.BufferUtils.slice;
 
 import java.nio.ByteBuffer;
@@ -81,7 +82,15 @@ public final class DataRecord implements Record {
 
         final List<Value<?>> fields = new ArrayList(this.template.fields.size());
         for (final Field field : template.fields) {
-            fields.add(field.parse(resolver, slice(buffer, field.length())));
+            // Values of option records are always kept as they are looked up by data records later on
+            if (this.template.type == Template.Type.OPTIONS_TEMPLATE || resolver.isRequired(field)) {
+                fields.add(field.parse(resolver, slice(buffer, field.length())));
+            } else {
+                if (field.length() > buffer.remaining()) {
+                    throw new InvalidPacketException(buffer, "Field '%s' exceeds record: %d > %d", field.getName(), field.length(), buffer.remaining());
+                }
+                skip(buffer, field.length());
+            }
         }
 
         this.scopes = Collections.unmodifiableList(scopes);
@@ -93,6 +93,11 @@ public final class FieldSpecifier implements Field {
         return this.fieldLength;
     }
 
+    @Override
+    public String getName() {
+        return this.informationElement.getName();
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -36,6 +36,8 @@ import org.opennms.netmgt.telemetry.listeners.flow.ie.Value;
 public interface Field {
     int length();
 
+    String getName();
+
     Value<?> parse(final Session.Resolver resolver,
                    final ByteBuffer buffer) throws InvalidPacketException;
 }
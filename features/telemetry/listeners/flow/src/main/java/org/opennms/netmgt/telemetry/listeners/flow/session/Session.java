@@ -39,6 +39,14 @@ public interface Session {
     interface Resolver {
         Optional<Template> lookupTemplate(final int templateId);
         List<Value<?>> lookupOptions(final List<Value<?>> values);
+
+        /**
+         * Returns {@code false} if the value of the given field is not needed and the decoder can skip over it
+         * without parsing.
+         */
+        default boolean isRequired(final Field field) {
+            return true;
+        }
     }
 
     void addTemplate(final long observationDomainId, final Template template);
@@ -46,8 +46,10 @@ import java.util.stream.Collectors;
 
 import org.opennms.netmgt.telemetry.listeners.flow.ie.Value;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class UdpSessionManager {
     private final class UdpSession implements Session {
@@ -96,6 +98,13 @@ public class UdpSessionManager {
 
                 return new ArrayList(options.values());
             }
+
+            @Override
+            public boolean isRequired(final Field field) {
+                return UdpSessionManager.this.requiredFields == null
+                        || UdpSessionManager.this.requiredFields.contains(field.getName())
+                        || UdpSessionManager.this.scopeFields.contains(field.getName());
+            }
         }
 
         private final InetSocketAddress remoteAddress;
@@ -110,6 +119,13 @@ public class UdpSessionManager {
         public void addTemplate(final long observationDomainId, final Template template) {
             final Key key = new Key(this.remoteAddress, this.localAddress, observationDomainId, template.id);
             UdpSessionManager.this.templates.put(key, new TemplateWrapper(template));
+
+            // Fields used as scope by any options template must be kept to allow options lookup
+            if (template.type == Template.Type.OPTIONS_TEMPLATE) {
+                for (final Scope scope : template.scopes) {
+                    UdpSessionManager.this.scopeFields.add(scope.getName());
+                }
+            }
         }
 
         @Override
@@ -189,10 +205,23 @@ public class UdpSessionManager {
     private final Map<Key, TemplateWrapper> templates = Maps.newHashMap();
     private final Map<Key, Map<Set<Value<?>>, List<Value<?>>>> options = Maps.newHashMap();
 
+    private final Set<String> scopeFields = Sets.newHashSet();
+
     private final Duration timeout;
 
+    private final Set<String> requiredFields;
+
     public UdpSessionManager(final Duration timeout) {
+        this(timeout, null);
+    }
+
+    /**
+     * @param requiredFields names of the fields to decode or {@code null} to decode all fields. Fields used as scope
+     *                       of an options template are always decoded.
+     */
+    public UdpSessionManager(final Duration timeout, final Set<String> requiredFields) {
         this.timeout = timeout;
+        this.requiredFields = requiredFields != null ? ImmutableSet.copyOf(requiredFields) : null;
     }
 
     public void doHousekeeping() {
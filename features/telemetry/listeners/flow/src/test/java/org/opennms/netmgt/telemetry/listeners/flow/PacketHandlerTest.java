@@ -28,6 +28,7 @@
 
 package org.opennms.netmgt.telemetry.listeners.flow;
 
+import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.nio.ByteBuffer;
 import java.time.Instant;
@@ -37,15 +38,24 @@ import java.util.Optional;
 import org.bson.RawBsonDocument;
 import org.junit.Assert;
 import org.junit.Test;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowRecord;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowSchema;
+import org.opennms.netmgt.telemetry.listeners.api.flow.FlowValue;
+import org.opennms.netmgt.telemetry.listeners.api.flow.IpfixField;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.Semantics;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.Value;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.values.BooleanValue;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.values.DateTimeValue;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.values.FloatValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.IPv4AddressValue;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.values.IPv6AddressValue;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.values.ListValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.MacAddressValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.NullValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.OctetArrayValue;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.values.SignedValue;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.values.StringValue;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.values.UndeclaredValue;
 import org.opennms.netmgt.telemetry.listeners.flow.ie.values.UnsignedValue;
 
 import com.google.common.primitives.UnsignedLong;
@@ -96,4 +106,97 @@ public class PacketHandlerTest {
         Assert.assertEquals(5, bson.getDocument("name5").getArray("values").get(0).asDocument().getInt64("name5t0e0").getValue());
         Assert.assertEquals(1.5, bson.getDocument("name5").getArray("values").get(3).asDocument().getDocument("name5t3e0").getArray("values").get(0).asDocument().getDouble("name5t3e0t0e0").doubleValue(), 0.0);
     }
+
+    @Test
+    public void testBinary() throws Exception {
+        final Iterable<Value<?>> record = Arrays.asList(
+                new UnsignedValue("@exportTime", Optional.empty(), UnsignedLong.valueOf(1431516026)),
+                new StringValue("interfaceName", Optional.empty(), "eth0"),
+                new UnsignedValue("octetDeltaCount", Optional.of(Semantics.DELTA_COUNTER), UnsignedLong.fromLongBits(0x8000000000000005L)),
+                new SignedValue("bgpSourceAsNumber", Optional.empty(), -42),
+                new IPv6AddressValue("sourceIPv6Address", Optional.of(Semantics.IDENTIFIER), (Inet6Address) Inet6Address.getByName("fe80::1")),
+                new DateTimeValue("flowStartMilliseconds", Optional.empty(), Instant.ofEpochSecond(12345678, 900)),
+                new FloatValue("samplingProbability", Optional.empty(), 1.0 / 3.0)
+        );
+
+        final ByteBuffer output = PacketHandler.encode(Protocol.IPFIX, record);
+        Assert.assertTrue(FlowRecord.isFlowRecord(output));
+
+        final FlowRecord flowRecord = FlowRecord.decode(output);
+        Assert.assertEquals(FlowSchema.IPFIX, flowRecord.getSchema());
+        Assert.assertEquals(Optional.of(1431516026L), flowRecord.getInt64(IpfixField.EXPORT_TIME));
+        Assert.assertEquals(Optional.of(0x8000000000000005L), flowRecord.getInt64(IpfixField.OCTET_DELTA_COUNT));
+        Assert.assertEquals(Optional.of(-42L), flowRecord.getInt64(IpfixField.BGP_SOURCE_AS_NUMBER));
+        Assert.assertEquals(Optional.of("fe80:0:0:0:0:0:0:1"), flowRecord.getString(IpfixField.SOURCE_IPV6_ADDRESS));
+        Assert.assertEquals(Optional.of(Instant.ofEpochSecond(12345678, 900)), flowRecord.getTime(IpfixField.FLOW_START_MILLISECONDS));
+        Assert.assertEquals(Optional.of(1.0 / 3.0), flowRecord.getDouble(IpfixField.SAMPLING_PROBABILITY));
+        Assert.assertFalse(flowRecord.has(IpfixField.DESTINATION_IPV6_ADDRESS));
+        Assert.assertEquals(Optional.empty(), flowRecord.getString(IpfixField.OCTET_DELTA_COUNT));
+
+        // BSON documents are not mistaken for flow records
+        Assert.assertFalse(FlowRecord.isFlowRecord(PacketHandler.serialize(Protocol.IPFIX, record)));
+    }
+
+    @Test
+    public void testBinaryKeepsAllValues() throws Exception {
+        final byte[] mac = new byte[] { 0x00, 0x1b, 0x21, 0x3c, 0x4d, 0x5e };
+        final Iterable<Value<?>> record = Arrays.asList(
+                new IPv4AddressValue("sourceIPv4Address", Optional.empty(), (Inet4Address) Inet4Address.getByName("10.0.0.1")),
+                new MacAddressValue("sourceMacAddress", Optional.of(Semantics.IDENTIFIER), mac),
+                new BooleanValue("dataRecordsReliability", Optional.empty(), true),
+                new NullValue("paddingOctets", Optional.empty()),
+                new OctetArrayValue("ipHeaderPacketSection", Optional.empty(), new byte[] { 1, 2, 3 }),
+                new UndeclaredValue(Optional.of(9L), 1234, new byte[] { 4, 5 }),
+                new ListValue("subTemplateList", Optional.empty(), ListValue.Semantic.ALL_OF, Arrays.asList(
+                        Arrays.asList(
+                                new SignedValue("e0", Optional.empty(), -5),
+                                new StringValue("e1", Optional.empty(), "x")
+                        ),
+                        Arrays.asList(
+                                new ListValue("e2", Optional.empty(), ListValue.Semantic.NONE_OF, Arrays.asList())
+                        )
+                ))
+        );
+
+        final FlowRecord flowRecord = FlowRecord.decode(PacketHandler.encode(Protocol.IPFIX, record));
+
+        // Converting the address does not change the record
+        Assert.assertEquals(Optional.of("10.0.0.1"), flowRecord.getString(IpfixField.SOURCE_IPV4_ADDRESS));
+        Assert.assertEquals(FlowValue.Type.ADDRESS, flowRecord.get(IpfixField.SOURCE_IPV4_ADDRESS).get().getType());
+        Assert.assertEquals(Optional.of("10.0.0.1"), flowRecord.getString(IpfixField.SOURCE_IPV4_ADDRESS));
+
+        Assert.assertEquals(Arrays.asList(
+                FlowValue.ofMac("sourceMacAddress", Semantics.IDENTIFIER.ordinal(), mac),
+                FlowValue.ofBoolean("dataRecordsReliability", true),
+                FlowValue.ofNull("paddingOctets"),
+                FlowValue.ofBytes("ipHeaderPacketSection", new byte[] { 1, 2, 3 }),
+                FlowValue.ofBytes(UndeclaredValue.nameFor(Optional.of(9L), 1234), new byte[] { 4, 5 }),
+                FlowValue.ofList("subTemplateList", ListValue.Semantic.ALL_OF.ordinal(), Arrays.asList(
+                        Arrays.asList(
+                                FlowValue.ofSigned("e0", -5),
+                                FlowValue.ofString("e1", "x")
+                        ),
+                        Arrays.asList(
+                                FlowValue.ofList("e2", ListValue.Semantic.NONE_OF.ordinal(), Arrays.asList())
+                        )
+                ))
+        ), flowRecord.getOthers());
+    }
+
+    @Test
+    public void testDecodeVersion1() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putInt(0xF1F0F2F3);
+        buffer.put((byte) 1);
+        buffer.put((byte) 10);
+        buffer.put((byte) IpfixField.BGP_SOURCE_AS_NUMBER.ordinal());
+        buffer.put((byte) 2);
+        buffer.put((byte) 83); // zig-zag encoded -42
+        buffer.flip();
+
+        final FlowRecord flowRecord = FlowRecord.decode(buffer);
+        Assert.assertEquals(FlowSchema.IPFIX, flowRecord.getSchema());
+        Assert.assertEquals(Optional.of(-42L), flowRecord.getInt64(IpfixField.BGP_SOURCE_AS_NUMBER));
+        Assert.assertTrue(flowRecord.getOthers().isEmpty());
+    }
 }
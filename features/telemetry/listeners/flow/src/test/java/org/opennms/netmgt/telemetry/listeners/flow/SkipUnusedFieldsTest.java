@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.listeners.flow;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.opennms.netmgt.telemetry.listeners.api.utils.BufferUtils.slice;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.RecordProvider;
+import org.opennms.netmgt.telemetry.listeners.flow.ipfix.proto.Header;
+import org.opennms.netmgt.telemetry.listeners.flow.ipfix.proto.Packet;
+import org.opennms.netmgt.telemetry.listeners.flow.ie.Value;
+import org.opennms.netmgt.telemetry.listeners.flow.session.Session;
+import org.opennms.netmgt.telemetry.listeners.flow.session.UdpSessionManager;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class SkipUnusedFieldsTest {
+    private final static Path FOLDER = Paths.get("src/test/resources/flows");
+
+    private final static InetSocketAddress REMOTE = InetSocketAddress.createUnresolved("10.0.0.1", 4711);
+    private final static InetSocketAddress LOCAL = InetSocketAddress.createUnresolved("10.0.0.2", 4738);
+
+    @Test
+    public void testIpfix() throws Exception {
+        verify(ImmutableSet.of("sourceIPv4Address", "destinationIPv4Address", "octetDeltaCount"),
+                this::parseIpfix,
+                "ipfix.dat", "ipfix_test_openbsd_pflow_tpl.dat", "ipfix_test_openbsd_pflow_data.dat");
+    }
+
+    @Test
+    public void testIpfixWithOptions() throws Exception {
+        verify(ImmutableSet.of("sourceIPv4Address", "destinationIPv4Address"),
+                this::parseIpfix,
+                "ipfix_test_yaf_tpls_option_tpl.dat", "ipfix_test_yaf_tpl45841.dat", "ipfix_test_yaf_data45841.dat");
+    }
+
+    @Test
+    public void testNetflow9() throws Exception {
+        verify(ImmutableSet.of("IPV4_SRC_ADDR", "IPV4_DST_ADDR", "IN_BYTES"),
+                this::parseNetflow9,
+                "netflow9_test_cisco_asa_1_tpl.dat", "netflow9_test_cisco_asa_1_data.dat");
+    }
+
+    private interface PacketParser {
+        RecordProvider parse(final Session session, final ByteBuffer buffer) throws Exception;
+    }
+
+    private RecordProvider parseIpfix(final Session session, final ByteBuffer buffer) throws Exception {
+        final Header header = new Header(slice(buffer, Header.SIZE));
+        return new Packet(session, REMOTE, header, slice(buffer, header.length - Header.SIZE));
+    }
+
+    private RecordProvider parseNetflow9(final Session session, final ByteBuffer buffer) throws Exception {
+        final org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Header header =
+                new org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Header(slice(buffer, org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Header.SIZE));
+        return new org.opennms.netmgt.telemetry.listeners.flow.netflow9.proto.Packet(session, header, buffer);
+    }
+
+    private void verify(final Set<String> requiredFields, final PacketParser parser, final String... files) throws Exception {
+        final List<Map<String, Value<?>>> allRecords = parse(new UdpSessionManager(Duration.ofMinutes(30)), parser, files);
+        final List<Map<String, Value<?>>> requiredRecords = parse(new UdpSessionManager(Duration.ofMinutes(30), requiredFields), parser, files);
+
+        assertThat(requiredRecords.size(), is(allRecords.size()));
+
+        for (int i=0; i<allRecords.size(); i++) {
+            final Map<String, Value<?>> all = allRecords.get(i);
+            final Map<String, Value<?>> required = requiredRecords.get(i);
+
+            // All required fields are decoded with the same values
+            for (final String name : requiredFields) {
+                assertThat(required.get(name), is(all.get(name)));
+            }
+
+            // Each decoded field is part of the full record
+            for (final Map.Entry<String, Value<?>> e : required.entrySet()) {
+                assertThat(e.getValue(), is(all.get(e.getKey())));
+            }
+        }
+
+        // At least some fields must have been skipped
+        assertThat(requiredRecords.stream().mapToInt(Map::size).sum() < allRecords.stream().mapToInt(Map::size).sum(), is(true));
+    }
+
+    private List<Map<String, Value<?>>> parse(final UdpSessionManager sessionManager, final PacketParser parser, final String... files) throws Exception {
+        final Session session = sessionManager.getSession(REMOTE, LOCAL);
+
+        final List<Map<String, Value<?>>> records = Lists.newArrayList();
+        for (final String file : files) {
+            try (final FileChannel channel = FileChannel.open(FOLDER.resolve(file))) {
+                final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                channel.read(buffer);
+                buffer.flip();
+
+                do {
+                    parser.parse(session, buffer).getRecords().forEach(record -> {
+                        final Map<String, Value<?>> values = Maps.newLinkedHashMap();
+                        record.forEach(value -> values.put(value.getName(), value));
+                        records.add(values);
+                    });
+                } while (buffer.hasRemaining());
+            }
+        }
+        return records;
+    }
+}
@@ -125,6 +125,14 @@ public class EventdConfiguration implements Serializable {
     @XmlAttribute(name = "logEventSummaries")
     private Boolean m_logEventSummaries;
 
+    /**
+     * What to do with an event when the queue of a listener is full: 'discard'
+     *  the new event, 'discard-oldest' queued event or 'block' the broadcast
+     *  until there is room in the queue.
+     */
+    @XmlAttribute(name = "listenerOverflowPolicy")
+    private String m_listenerOverflowPolicy;
+
     @XmlValue
     private String m_contents;
 
@@ -211,6 +219,14 @@ public class EventdConfiguration implements Serializable {
         m_logEventSummaries = logEventSummaries;
     }
 
+    public Optional<String> getListenerOverflowPolicy() {
+        return Optional.ofNullable(m_listenerOverflowPolicy);
+    }
+
+    public void setListenerOverflowPolicy(final String listenerOverflowPolicy) {
+        m_listenerOverflowPolicy = listenerOverflowPolicy;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(
@@ -223,7 +239,8 @@ public class EventdConfiguration implements Serializable {
                             m_getNextEventID, 
                             m_socketSoTimeoutRequired, 
                             m_socketSoTimeoutPeriod, 
-                            m_logEventSummaries);
+                            m_logEventSummaries, 
+                            m_listenerOverflowPolicy);
     }
 
     @Override
@@ -243,7 +260,8 @@ public class EventdConfiguration implements Serializable {
                     && Objects.equals(this.m_getNextEventID, that.m_getNextEventID)
                     && Objects.equals(this.m_socketSoTimeoutRequired, that.m_socketSoTimeoutRequired)
                     && Objects.equals(this.m_socketSoTimeoutPeriod, that.m_socketSoTimeoutPeriod)
-                    && Objects.equals(this.m_logEventSummaries, that.m_logEventSummaries);
+                    && Objects.equals(this.m_logEventSummaries, that.m_logEventSummaries)
+                    && Objects.equals(this.m_listenerOverflowPolicy, that.m_listenerOverflowPolicy);
         }
         return false;
     }
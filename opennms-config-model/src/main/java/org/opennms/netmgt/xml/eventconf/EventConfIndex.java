@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.xml.eventconf;
+
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_EID;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_GENERIC;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_SPECIFIC;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable index over the event definitions of an {@link Events} element
+ * used to find the first definition matching an event without evaluating
+ * the matchers of every definition.
+ *
+ * The definitions are discriminated by:
+ * <ul>
+ *   <li>the partition key, further split by the exact generic and specific
+ *   values of the definitions in the partition,</li>
+ *   <li>a trie of the enterprise id prefixes for unpartitioned definitions
+ *   which only use wildcard enterprise ids (i.e. <code>.1.3.6.1.4.1.9.%</code>),</li>
+ *   <li>the remaining unpartitioned definitions.</li>
+ * </ul>
+ *
+ * Only the definitions in the buckets selected by the event are matched,
+ * and the one with the lowest position in the configuration wins, so the
+ * result is the same as testing all definitions in order.
+ *
+ * Instances are never modified once built and can be read concurrently.
+ */
+final class EventConfIndex {
+
+    private static final Field ID = EventMatchers.field(TAG_SNMP_EID);
+    private static final Field GENERIC = EventMatchers.field(TAG_SNMP_GENERIC);
+    private static final Field SPECIFIC = EventMatchers.field(TAG_SNMP_SPECIFIC);
+
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final Partition m_partition;
+
+    private final Event[] m_events;
+
+    private final Map<String, TrapBucket> m_partitionedEvents;
+
+    private final PrefixNode m_prefixedEvents;
+
+    private final int[] m_otherEvents;
+
+    EventConfIndex(final Partition partition, final List<Event> events) {
+        m_partition = partition;
+        m_events = events.toArray(new Event[events.size()]);
+
+        final Map<String, TrapBucket.Builder> partitioned = new LinkedHashMap<>();
+        final PrefixNode.Builder prefixed = new PrefixNode.Builder();
+        final Candidates others = new Candidates();
+
+        for (int position = 0; position < m_events.length; position++) {
+            final Event event = m_events[position];
+
+            final List<String> keys = partition.group(event);
+            if (keys != null) {
+                for (final String key : keys) {
+                    partitioned.computeIfAbsent(key, k -> new TrapBucket.Builder()).add(event, position);
+                }
+                continue;
+            }
+
+            final List<String> prefixes = getIdPrefixes(event);
+            if (prefixes != null) {
+                for (final String prefix : prefixes) {
+                    prefixed.add(prefix, position);
+                }
+                continue;
+            }
+
+            others.add(position);
+        }
+
+        final Map<String, TrapBucket> buckets = new HashMap<>();
+        for (final Map.Entry<String, TrapBucket.Builder> entry : partitioned.entrySet()) {
+            buckets.put(entry.getKey(), entry.getValue().build());
+        }
+        m_partitionedEvents = Collections.unmodifiableMap(buckets);
+        m_prefixedEvents = prefixed.build();
+        m_otherEvents = others.toArray();
+    }
+
+    /**
+     * Find the first event definition matching the given event.
+     *
+     * @param matchingEvent the event to match
+     * @return the first matching definition or null if none matches
+     */
+    Event findFirstMatchingEvent(final org.opennms.netmgt.xml.event.Event matchingEvent) {
+        int first = NO_MATCH;
+
+        final String key = m_partition.group(matchingEvent);
+        if (key != null) {
+            final TrapBucket bucket = m_partitionedEvents.get(key);
+            if (bucket != null) {
+                first = bucket.findFirstMatch(matchingEvent, this);
+            }
+        }
+
+        final String id = ID.get(matchingEvent);
+        if (id != null) {
+            first = Math.min(first, m_prefixedEvents.findFirstMatch(id, matchingEvent, this, first));
+        }
+
+        first = Math.min(first, findFirstMatch(m_otherEvents, matchingEvent, first));
+
+        return first == NO_MATCH ? null : m_events[first];
+    }
+
+    /**
+     * Returns the position of the first definition in the given positions
+     * matching the event or {@link #NO_MATCH}. Positions greater or equal
+     * to the given limit are not considered, as a better match is already
+     * known.
+     */
+    private int findFirstMatch(final int[] positions, final org.opennms.netmgt.xml.event.Event matchingEvent, final int limit) {
+        for (final int position : positions) {
+            if (position >= limit) {
+                break;
+            }
+            if (m_events[position].matches(matchingEvent)) {
+                return position;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * Returns the prefixes of the enterprise id mask element if all of its
+     * values are wildcards, or null otherwise.
+     */
+    private static List<String> getIdPrefixes(final Event event) {
+        final List<String> values = event.getMaskElementValues(TAG_SNMP_EID);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+
+        final List<String> prefixes = new ArrayList<>(values.size());
+        for (final String value : values) {
+            if (value == null || value.startsWith("~") || !value.endsWith("%")) {
+                return null;
+            }
+            prefixes.add(value.substring(0, value.length() - 1));
+        }
+        return prefixes;
+    }
+
+    /**
+     * Returns the possible combinations of the generic and specific mask
+     * values if both are restricted to exact values, or null otherwise.
+     */
+    private static List<String> getTrapKeys(final Event event) {
+        final List<String> generics = getExactValues(event, TAG_SNMP_GENERIC);
+        final List<String> specifics = getExactValues(event, TAG_SNMP_SPECIFIC);
+        if (generics == null || specifics == null) {
+            return null;
+        }
+
+        final List<String> keys = new ArrayList<>(generics.size() * specifics.size());
+        for (final String generic : generics) {
+            for (final String specific : specifics) {
+                keys.add(trapKey(generic, specific));
+            }
+        }
+        return keys;
+    }
+
+    private static List<String> getExactValues(final Event event, final String mename) {
+        final List<String> values = event.getMaskElementValues(mename);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        for (final String value : values) {
+            if (value == null || value.startsWith("~") || value.endsWith("%")) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    private static String trapKey(final String generic, final String specific) {
+        return generic + "/" + specific;
+    }
+
+    /**
+     * Growable list of positions in ascending order.
+     */
+    private static final class Candidates {
+        private int[] m_positions = new int[4];
+        private int m_size = 0;
+
+        void add(final int position) {
+            // Positions are added in order, skip duplicates
+            if (m_size > 0 && m_positions[m_size - 1] == position) {
+                return;
+            }
+            if (m_size == m_positions.length) {
+                final int[] positions = new int[m_size * 2];
+                System.arraycopy(m_positions, 0, positions, 0, m_size);
+                m_positions = positions;
+            }
+            m_positions[m_size++] = position;
+        }
+
+        int[] toArray() {
+            final int[] positions = new int[m_size];
+            System.arraycopy(m_positions, 0, positions, 0, m_size);
+            return positions;
+        }
+    }
+
+    /**
+     * The definitions of a partition, keyed by their generic and specific values.
+     */
+    private static final class TrapBucket {
+        private final Map<String, int[]> m_byTrap;
+
+        private final int[] m_others;
+
+        private TrapBucket(final Map<String, int[]> byTrap, final int[] others) {
+            m_byTrap = byTrap;
+            m_others = others;
+        }
+
+        int findFirstMatch(final org.opennms.netmgt.xml.event.Event matchingEvent, final EventConfIndex index) {
+            int first = NO_MATCH;
+            if (!m_byTrap.isEmpty()) {
+                final String generic = GENERIC.get(matchingEvent);
+                final String specific = SPECIFIC.get(matchingEvent);
+                if (generic != null && specific != null) {
+                    final int[] positions = m_byTrap.get(trapKey(generic, specific));
+                    if (positions != null) {
+                        first = index.findFirstMatch(positions, matchingEvent, first);
+                    }
+                }
+            }
+            return Math.min(first, index.findFirstMatch(m_others, matchingEvent, first));
+        }
+
+        private static final class Builder {
+            private final Map<String, Candidates> m_byTrap = new HashMap<>();
+            private final Candidates m_others = new Candidates();
+
+            void add(final Event event, final int position) {
+                final List<String> trapKeys = getTrapKeys(event);
+                if (trapKeys == null) {
+                    m_others.add(position);
+                } else {
+                    for (final String trapKey : trapKeys) {
+                        m_byTrap.computeIfAbsent(trapKey, k -> new Candidates()).add(position);
+                    }
+                }
+            }
+
+            TrapBucket build() {
+                final Map<String, int[]> byTrap = new HashMap<>();
+                for (final Map.Entry<String, Candidates> entry : m_byTrap.entrySet()) {
+                    byTrap.put(entry.getKey(), entry.getValue().toArray());
+                }
+                return new TrapBucket(byTrap, m_others.toArray());
+            }
+        }
+    }
+
+    /**
+     * Node of a character trie over the enterprise id prefixes.
+     */
+    private static final class PrefixNode {
+        private static final int[] EMPTY = new int[0];
+
+        private final Map<Character, PrefixNode> m_children;
+
+        private final int[] m_positions;
+
+        private PrefixNode(final Map<Character, PrefixNode> children, final int[] positions) {
+            m_children = children;
+            m_positions = positions;
+        }
+
+        int findFirstMatch(final String id, final org.opennms.netmgt.xml.event.Event matchingEvent, final EventConfIndex index, final int limit) {
+            int first = limit;
+            PrefixNode node = this;
+            int depth = 0;
+            while (node != null) {
+                if (node.m_positions.length > 0) {
+                    first = Math.min(first, index.findFirstMatch(node.m_positions, matchingEvent, first));
+                }
+                if (depth == id.length()) {
+                    break;
+                }
+                node = node.m_children.get(id.charAt(depth++));
+            }
+            return first;
+        }
+
+        private static final class Builder {
+            private final Map<Character, Builder> m_children = new HashMap<>();
+            private final Candidates m_positions = new Candidates();
+            private boolean m_empty = true;
+
+            void add(final String prefix, final int position) {
+                Builder node = this;
+                for (int i = 0; i < prefix.length(); i++) {
+                    node = node.m_children.computeIfAbsent(prefix.charAt(i), c -> new Builder());
+                }
+                node.m_positions.add(position);
+                node.m_empty = false;
+            }
+
+            PrefixNode build() {
+                final Map<Character, PrefixNode> children;
+                if (m_children.isEmpty()) {
+                    children = Collections.emptyMap();
+                } else {
+                    children = new HashMap<>();
+                    for (final Map.Entry<Character, Builder> entry : m_children.entrySet()) {
+                        children.put(entry.getKey(), entry.getValue().build());
+                    }
+                }
+                return new PrefixNode(children, m_empty ? EMPTY : m_positions.toArray());
+            }
+        }
+    }
+}
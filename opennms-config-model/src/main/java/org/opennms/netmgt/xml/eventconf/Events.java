@@ -38,7 +38,6 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -48,7 +47,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.function.Consumer;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -100,16 +98,10 @@ public class Events implements Serializable {
     private Map<String, Events> m_loadedEventFiles = new LinkedHashMap<>();
 
     @XmlTransient
-    private Partition m_partition;
+    private volatile EventConfIndex m_index;
 
     @XmlTransient
-    private Map<String, List<Event>> m_partitionedEvents;
-
-    @XmlTransient
-    private List<Event> m_nullPartitionedEvents;
-
-    @XmlTransient
-    private Map<String, Event> m_eventsByUei = new HashMap<>();
+    private volatile Map<String, Event> m_eventsByUei = new HashMap<>();
 
     @XmlTransient
     private List<Event> m_wildcardEvents;
@@ -248,30 +240,10 @@ public class Events implements Serializable {
     }
 
     private void partitionEvents(final Partition partition) {
-        m_partition = partition;
-
-        m_partitionedEvents = new LinkedHashMap<String, List<Event>>();
-        m_nullPartitionedEvents = new ArrayList<Event>();
-
-        for(final Event event : m_events) {
-            final List<String> keys = partition.group(event);
-            if (keys == null) {
-                m_nullPartitionedEvents.add(event);
-            } else {
-                for(final String key : keys) {
-                    List<Event> events = m_partitionedEvents.get(key);
-                    if (events == null) {
-                        events = new ArrayList<Event>(1);
-                        m_partitionedEvents.put(key, events);
-                    }
-                    events.add(event);
-                }
-            }
-        }
+        // Swap in the new index at once, so that concurrent lookups never see a partial index
+        m_index = new EventConfIndex(partition, m_events);
     }
 
-
-
     public Event findFirstMatchingEvent(final org.opennms.netmgt.xml.event.Event matchingEvent) {
         // Atempt to match the event definition by UEI
         final String ueiToMatch = matchingEvent.getUei();
@@ -282,28 +254,17 @@ public class Events implements Serializable {
             }
         }
 
-        // If the UEI match failed, fallback to searching with the matchers through the partitions
-        final String key = m_partition.group(matchingEvent);
-        Collection<Event> potentialMatches = m_nullPartitionedEvents;
-        if (key != null) {
-            final List<Event> events = m_partitionedEvents.get(key);
-            if (events != null) {
-                potentialMatches = new TreeSet<Event>(m_nullPartitionedEvents);
-                potentialMatches.addAll(events);
-            }
-        }
-
-        for(final Event event : potentialMatches) {
-            if (event.matches(matchingEvent)) {
-                return event;
-            }
+        // If the UEI match failed, fallback to searching with the matchers through the index
+        final Event event = m_index.findFirstMatchingEvent(matchingEvent);
+        if (event != null) {
+            return event;
         }
 
         for(Entry<String, Events> loadedEvents : m_loadedEventFiles.entrySet()) {
             final Events subEvents = loadedEvents.getValue();
-            final Event event = subEvents.findFirstMatchingEvent(matchingEvent);
-            if (event != null) {
-                return event;
+            final Event subEvent = subEvents.findFirstMatchingEvent(matchingEvent);
+            if (subEvent != null) {
+                return subEvent;
             }
         }
 
@@ -363,7 +324,8 @@ public class Events implements Serializable {
     }
 
     private void indexEventsByUei() {
-        m_eventsByUei.clear();
+        // Build the index aside and swap it in once complete
+        final Map<String, Event> eventsByUei = new HashMap<>();
 
         final Set<String> ueisWithManyEventDefinitions = new HashSet<>();
 
@@ -375,14 +337,14 @@ public class Events implements Serializable {
                 return;
             }
 
-            if (m_eventsByUei.putIfAbsent(uei, e) != null) {
+            if (eventsByUei.putIfAbsent(uei, e) != null) {
                 // Keep trap of the UEIs that have many event definitions
                 ueisWithManyEventDefinitions.add(uei);
             }
         });
 
         // Remove UEIs for which there are many event definitions
-        ueisWithManyEventDefinitions.forEach(m_eventsByUei::remove);
+        ueisWithManyEventDefinitions.forEach(eventsByUei::remove);
 
         // Now remove event definitions from the index if any
         // mask elements from any other event definitions match
@@ -410,7 +372,7 @@ public class Events implements Serializable {
         // 2) Remove event definition from the index if they are matched
         // by any of the known UEI matchers.
         if (matchers.size() >= 1) {
-            events: for(Iterator<Entry<String, Event>> it = m_eventsByUei.entrySet().iterator(); it.hasNext(); ) {
+            events: for(Iterator<Entry<String, Event>> it = eventsByUei.entrySet().iterator(); it.hasNext(); ) {
                 final Entry<String, Event> entry = it.next();
                 for (EventMatcher matcher : matchers) {
                     // Build an event instance
@@ -425,6 +387,8 @@ public class Events implements Serializable {
                 }
             }
         }
+
+        m_eventsByUei = eventsByUei;
     }
 
     public Events getLoadEventsByFile(final String relativePath) {
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.xml.eventconf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opennms.netmgt.xml.event.Snmp;
+
+public class EventConfIndexTest {
+
+    private static final String[] ENTERPRISES = new String[] {
+            ".1.3.6.1.4.1.9.9.41.2",
+            ".1.3.6.1.4.1.9.9.43.2",
+            ".1.3.6.1.4.1.2636.4.1",
+            ".1.3.6.1.4.1.111.15.2",
+            ".1.3.6.1.6.3.1.1.5"
+    };
+
+    /**
+     * Same partitioning as used by the DefaultEventConfDao.
+     */
+    private static final Partition PARTITION = new Partition() {
+        private final Field m_field = EventMatchers.field("id");
+
+        @Override
+        public List<String> group(Event eventConf) {
+            final List<String> keys = eventConf.getMaskElementValues("id");
+            if (keys == null) return null;
+            for (String key : keys) {
+                if (key.endsWith("%")) return null;
+                if (key.startsWith("~")) return null;
+            }
+            return keys;
+        }
+
+        @Override
+        public String group(org.opennms.netmgt.xml.event.Event matchingEvent) {
+            return m_field.get(matchingEvent);
+        }
+    };
+
+    @Test
+    public void canFindFirstMatchingDefinition() {
+        final Event generic = eventConf("uei.opennms.org/generic", ".1.3.6.1.4.1.9.%", null, null);
+        final Event specific = eventConf("uei.opennms.org/specific", ".1.3.6.1.4.1.9.9.41.2", "6", "1");
+        final Event anySpecific = eventConf("uei.opennms.org/anySpecific", ".1.3.6.1.4.1.9.9.41.2", "6", "%");
+        final Event internal = eventConf("uei.opennms.org/internal", null, null, null);
+        final EventConfIndex index = new EventConfIndex(PARTITION, Arrays.asList(specific, generic, anySpecific, internal));
+
+        assertSame(specific, index.findFirstMatchingEvent(trap(".1.3.6.1.4.1.9.9.41.2", 6, 1)));
+        // The wildcard definition comes before the definition for any specific
+        assertSame(generic, index.findFirstMatchingEvent(trap(".1.3.6.1.4.1.9.9.41.2", 6, 2)));
+        assertSame(generic, index.findFirstMatchingEvent(trap(".1.3.6.1.4.1.9.1", 6, 2)));
+        assertNull(index.findFirstMatchingEvent(trap(".1.3.6.1.4.1.8.1", 6, 2)));
+
+        final org.opennms.netmgt.xml.event.Event event = new org.opennms.netmgt.xml.event.Event();
+        event.setUei("uei.opennms.org/internal");
+        assertSame(internal, index.findFirstMatchingEvent(event));
+    }
+
+    /**
+     * Verifies that the index finds the same definitions as testing
+     * each definition in order.
+     */
+    @Test
+    public void matchesLikeLinearSearch() {
+        final Random random = new Random(42);
+
+        final List<Event> eventConfs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            eventConfs.add(randomEventConf(random, i));
+        }
+        final EventConfIndex index = new EventConfIndex(PARTITION, eventConfs);
+
+        for (int i = 0; i < 5000; i++) {
+            final org.opennms.netmgt.xml.event.Event event = randomTrap(random);
+            if (random.nextInt(10) == 0) {
+                event.setUei("uei.opennms.org/test/" + random.nextInt(500));
+            }
+
+            Event expected = null;
+            for (final Event eventConf : eventConfs) {
+                if (eventConf.matches(event)) {
+                    expected = eventConf;
+                    break;
+                }
+            }
+            assertEquals(expected, index.findFirstMatchingEvent(event));
+        }
+    }
+
+    private static Event randomEventConf(final Random random, final int i) {
+        final String enterprise = ENTERPRISES[random.nextInt(ENTERPRISES.length)];
+        final String id;
+        switch (random.nextInt(6)) {
+            case 0:
+                id = null;
+                break;
+            case 1:
+                id = enterprise.substring(0, enterprise.lastIndexOf('.') + 1) + "%";
+                break;
+            case 2:
+                id = "~" + enterprise.replace(".", "\\.").substring(0, 14) + ".*";
+                break;
+            default:
+                id = enterprise;
+        }
+        final String genericValue = random.nextInt(10) == 0 ? "%" : Integer.toString(random.nextInt(7));
+        final String specificValue = random.nextInt(5) == 0 ? "%" : Integer.toString(random.nextInt(20));
+        if (id == null && random.nextBoolean()) {
+            return eventConf("uei.opennms.org/test/" + i, null, null, null);
+        }
+        return eventConf("uei.opennms.org/test/" + i, id, genericValue, specificValue);
+    }
+
+    private static org.opennms.netmgt.xml.event.Event randomTrap(final Random random) {
+        String enterprise = ENTERPRISES[random.nextInt(ENTERPRISES.length)];
+        if (random.nextInt(10) == 0) {
+            enterprise += "." + random.nextInt(3);
+        }
+        return trap(enterprise, random.nextInt(7), random.nextInt(20));
+    }
+
+    private static Event eventConf(final String uei, final String id, final String generic, final String specific) {
+        final Event eventConf = new Event();
+        eventConf.setUei(uei);
+        if (id != null || generic != null || specific != null) {
+            final Mask mask = new Mask();
+            if (id != null) {
+                mask.addMaskelement(maskElement("id", id));
+            }
+            if (generic != null) {
+                mask.addMaskelement(maskElement("generic", generic));
+            }
+            if (specific != null) {
+                mask.addMaskelement(maskElement("specific", specific));
+            }
+            eventConf.setMask(mask);
+        }
+        eventConf.initialize(new EventOrdering().next());
+        return eventConf;
+    }
+
+    private static Maskelement maskElement(final String name, final String value) {
+        final Maskelement maskElement = new Maskelement();
+        maskElement.setMename(name);
+        maskElement.addMevalue(value);
+        return maskElement;
+    }
+
+    private static org.opennms.netmgt.xml.event.Event trap(final String enterprise, final int generic, final int specific) {
+        final Snmp snmp = new Snmp();
+        snmp.setId(enterprise);
+        snmp.setGeneric(generic);
+        snmp.setSpecific(specific);
+
+        final org.opennms.netmgt.xml.event.Event event = new org.opennms.netmgt.xml.event.Event();
+        event.setSnmp(snmp);
+        return event;
+    }
+}
@@ -225,6 +225,20 @@ public class EventdConfigManager implements EventdConfig {
         }
     }
 
+    /**
+     * What to do with an event when the queue of an event listener is full.
+     *
+     * @return one of 'discard', 'discard-oldest' or 'block'
+     */
+    public String getListenerOverflowPolicy() {
+        getReadLock().lock();
+        try {
+            return m_config.getListenerOverflowPolicy().orElse("discard");
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
     /**
      * Return the SQL statement to get the next event ID.
      *
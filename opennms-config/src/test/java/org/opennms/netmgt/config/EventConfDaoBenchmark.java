@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.test.ConfigurationTestUtils;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.eventconf.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Compares the indexed lookup of the {@link DefaultEventConfDao} with testing
+ * each event definition in order, using the event definitions shipped with OpenNMS.
+ *
+ * The trap workload is made of traps matching the definitions with an enterprise id
+ * and of traps from unknown enterprises. The syslog workload is made of events with
+ * the UEIs of the syslog definitions.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.opennms.netmgt.config.EventConfDaoBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EventConfDaoBenchmark {
+
+    private static final int EVENT_COUNT = 4096;
+
+    @Param({"indexed", "linear"})
+    public String lookup;
+
+    @Param({"trap", "syslog"})
+    public String workload;
+
+    private DefaultEventConfDao eventConfDao;
+
+    private List<Event> eventConfs;
+
+    private org.opennms.netmgt.xml.event.Event[] events;
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        eventConfDao = new DefaultEventConfDao();
+        eventConfDao.setConfigResource(new FileSystemResource(new File(ConfigurationTestUtils.getDaemonEtcDirectory(), "eventconf.xml")));
+        eventConfDao.afterPropertiesSet();
+        eventConfs = eventConfDao.getAllEvents();
+
+        final Random random = new Random(1);
+        if ("syslog".equals(workload)) {
+            events = createSyslogEvents(eventConfs, random);
+        } else {
+            events = createTraps(eventConfs, random);
+        }
+    }
+
+    @Benchmark
+    public Event findByEvent() {
+        index = (index + 1) & (EVENT_COUNT - 1);
+        if ("linear".equals(lookup)) {
+            for (final Event eventConf : eventConfs) {
+                if (eventConf.matches(events[index])) {
+                    return eventConf;
+                }
+            }
+            return null;
+        }
+        return eventConfDao.findByEvent(events[index]);
+    }
+
+    private static org.opennms.netmgt.xml.event.Event[] createTraps(final List<Event> eventConfs, final Random random) {
+        final List<Event> trapConfs = new ArrayList<>();
+        for (final Event eventConf : eventConfs) {
+            if (isExact(eventConf.getMaskElementValues("id"))
+                    && isNumber(eventConf.getMaskElementValues("generic"))
+                    && isNumber(eventConf.getMaskElementValues("specific"))) {
+                trapConfs.add(eventConf);
+            }
+        }
+
+        final org.opennms.netmgt.xml.event.Event[] traps = new org.opennms.netmgt.xml.event.Event[EVENT_COUNT];
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            final EventBuilder bldr = new EventBuilder(null, "trapd");
+            // Roughly 10% of the traps come from unknown enterprises
+            if (random.nextInt(10) == 0) {
+                bldr.setEnterpriseId(".1.3.6.1.4.1." + (100000 + random.nextInt(1000)) + ".1");
+                bldr.setGeneric(6);
+                bldr.setSpecific(random.nextInt(100));
+            } else {
+                final Event trapConf = trapConfs.get(random.nextInt(trapConfs.size()));
+                bldr.setEnterpriseId(trapConf.getMaskElementValues("id").get(0));
+                bldr.setGeneric(Integer.parseInt(trapConf.getMaskElementValues("generic").get(0)));
+                bldr.setSpecific(Integer.parseInt(trapConf.getMaskElementValues("specific").get(0)));
+            }
+            traps[i] = bldr.getEvent();
+        }
+        return traps;
+    }
+
+    private static org.opennms.netmgt.xml.event.Event[] createSyslogEvents(final List<Event> eventConfs, final Random random) {
+        final List<String> ueis = new ArrayList<>();
+        for (final Event eventConf : eventConfs) {
+            if (eventConf.getUei() != null && eventConf.getUei().contains("syslog")) {
+                ueis.add(eventConf.getUei());
+            }
+        }
+
+        final org.opennms.netmgt.xml.event.Event[] syslogEvents = new org.opennms.netmgt.xml.event.Event[EVENT_COUNT];
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            final EventBuilder bldr = new EventBuilder(ueis.get(random.nextInt(ueis.size())), "syslogd");
+            bldr.setHost("host-" + random.nextInt(100));
+            bldr.addParam("syslogmessage", "message " + i);
+            syslogEvents[i] = bldr.getEvent();
+        }
+        return syslogEvents;
+    }
+
+    private static boolean isExact(final List<String> values) {
+        if (values == null || values.size() != 1) {
+            return false;
+        }
+        final String value = values.get(0);
+        return !value.isEmpty() && !value.startsWith("~") && !value.endsWith("%");
+    }
+
+    private static boolean isNumber(final List<String> values) {
+        return values != null && values.size() == 1 && values.get(0).matches("\\d+");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventConfDaoBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Collects the response times of the pings of a {@link BatchPinger} wave.</p>
+ */
+public class BatchPingResponseCallback implements PingResponseCallback {
+    private final CountDownLatch m_latch;
+
+    /**
+     * Value of round-trip-time for the ping of each host in microseconds.
+     */
+    private final Map<InetAddress, Number> m_responseTimes = new LinkedHashMap<>();
+
+    private volatile Throwable m_error;
+
+    /**
+     * <p>Constructor for BatchPingResponseCallback.</p>
+     *
+     * @param hosts the hosts which are pinged
+     */
+    public BatchPingResponseCallback(Collection<InetAddress> hosts) {
+        for (final InetAddress host : hosts) {
+            m_responseTimes.put(host, null);
+        }
+        m_latch = new CountDownLatch(m_responseTimes.size());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void handleResponse(InetAddress address, EchoPacket response) {
+        try {
+            if (response != null) {
+                synchronized (m_responseTimes) {
+                    m_responseTimes.put(address, response.elapsedTime(TimeUnit.MICROSECONDS));
+                }
+            }
+        } finally {
+            m_latch.countDown();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void handleTimeout(InetAddress address, EchoPacket request) {
+        m_latch.countDown();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void handleError(InetAddress address, EchoPacket request, Throwable t) {
+        try {
+            m_error = t;
+        } finally {
+            m_latch.countDown();
+        }
+    }
+
+    /**
+     * <p>waitFor</p>
+     *
+     * @throws java.lang.InterruptedException if any.
+     */
+    public void waitFor() throws InterruptedException {
+        m_latch.await();
+    }
+
+    /**
+     * <p>waitFor</p>
+     *
+     * @param timeout a long.
+     * @return true if all of the pings completed before the timeout elapsed
+     * @throws java.lang.InterruptedException if any.
+     */
+    public boolean waitFor(long timeout) throws InterruptedException {
+        return m_latch.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    public Throwable getError() {
+        return m_error;
+    }
+
+    /**
+     * <p>getResponseTimes</p>
+     *
+     * @return the response times of the hosts, null for the hosts which did not respond
+     */
+    public Map<InetAddress, Number> getResponseTimes() {
+        synchronized (m_responseTimes) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(m_responseTimes));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A {@link Pinger} which can send many echo requests at once.
+ * <p>
+ * Requests submitted by concurrent callers are collected into waves which are
+ * sent back-to-back over a single socket, and the replies are matched to the
+ * requests by their identifier and sequence number in a single receiver
+ * thread, so that a ping does not cost a thread or a timer of its own.
+ * </p>
+ *
+ * @see BatchPingResponseCallback
+ */
+public interface BatchPinger {
+
+    /**
+     * Submits a ping into the next wave of echo requests and returns
+     * immediately. Exactly one of the methods of the callback is called once
+     * the host replied, or the ping timed out after all of its retries.
+     *
+     * @param host The {@link java.net.InetAddress} address to poll.
+     * @param timeout The time to wait between each retry.
+     * @param retries The number of times to retry.
+     * @param packetsize The size in byte of the ICMP packet.
+     * @param cb the {@link org.opennms.netmgt.icmp.PingResponseCallback} callback to call upon success or error
+     */
+    public void submit(InetAddress host, long timeout, int retries, int packetsize, PingResponseCallback cb) throws Exception;
+
+    /**
+     * Pings all of the hosts in a single wave and waits for all of the pings
+     * to complete.
+     *
+     * @param hosts The {@link java.net.InetAddress} addresses to poll.
+     * @param timeout The time to wait between each retry.
+     * @param retries The number of times to retry.
+     * @param packetsize The size in byte of the ICMP packet.
+     * @return the response time in microseconds of each of the hosts, in the
+     *     order of the given hosts. If a host did not respond with an echo
+     *     reply, its response time is null.
+     */
+    public Map<InetAddress, Number> ping(Collection<InetAddress> hosts, long timeout, int retries, int packetsize) throws Exception;
+
+}
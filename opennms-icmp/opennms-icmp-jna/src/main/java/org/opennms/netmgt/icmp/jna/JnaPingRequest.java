@@ -249,7 +249,7 @@ public class JnaPingRequest implements Request<JnaPingRequestId, JnaPingRequest,
             m_expiration = System.currentTimeMillis() + m_timeout;
             v6.ping(addr6, m_id.getIdentifier(), m_id.getSequenceNumber(), m_id.getThreadId(), 1, 0, m_packetsize);
         } catch (final Throwable t) {
-            m_callback.handleError(getAddress(), this, t);
+            processError(t);
         }
     }
 
@@ -260,7 +260,7 @@ public class JnaPingRequest implements Request<JnaPingRequestId, JnaPingRequest,
             m_expiration = System.currentTimeMillis() + m_timeout;
             v4.ping(addr4, m_id.getIdentifier(), m_id.getSequenceNumber(), m_id.getThreadId(), 1, 0, m_packetsize);
         } catch (final Throwable t) {
-            m_callback.handleError(getAddress(), this, t);
+            processError(t);
         }
     }
 
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.jna;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opennms.core.logging.Logging;
+import org.opennms.protocols.rt.ReplyHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends echo requests in waves over the sockets of a {@link JnaIcmpMessenger}.
+ * <p>
+ * Requests are submitted from any thread and queued. A single thread takes
+ * everything queued since the previous wave, sends it back-to-back, and
+ * expires the requests whose timeout elapsed, sending their retries. The
+ * replies are matched to the outstanding requests by their address,
+ * identifier, sequence number and thread id in the socket reader threads of
+ * the messenger. Unlike the {@link org.opennms.protocols.rt.RequestTracker}
+ * used for single pings, there is no per-request hand-off between threads.
+ * </p>
+ *
+ * @see org.opennms.netmgt.icmp.BatchPinger
+ */
+public class JnaPingWave implements ReplyHandler<JnaPingReply>, Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(JnaPingWave.class);
+
+    private final int m_pingerId;
+    private final JnaIcmpMessenger m_messenger;
+
+    private final AtomicInteger m_sequenceNumber = new AtomicInteger();
+
+    private final BlockingQueue<JnaPingRequest> m_submitted = new LinkedBlockingQueue<>();
+
+    private final Map<JnaPingRequestId, JnaPingRequest> m_outstanding = new ConcurrentHashMap<>();
+
+    /**
+     * The requests in the order they expire, only accessed by the wave thread.
+     */
+    private final PriorityQueue<JnaPingRequest> m_timeouts = new PriorityQueue<>();
+
+    private Thread m_thread;
+    private volatile boolean m_stopped = false;
+
+    public JnaPingWave(final int pingerId) throws Exception {
+        m_pingerId = pingerId;
+        m_messenger = new JnaIcmpMessenger(pingerId);
+    }
+
+    public void start() {
+        m_messenger.start(this);
+        m_thread = new Thread(this, "JNA-ICMP-Wave-" + m_pingerId);
+        m_thread.setDaemon(true);
+        m_thread.start();
+    }
+
+    public void stop() {
+        m_stopped = true;
+        if (m_thread != null) {
+            m_thread.interrupt();
+        }
+        m_thread = null;
+    }
+
+    public int getPingerId() {
+        return m_pingerId;
+    }
+
+    /**
+     * @return the sequence number of the next request, the ICMP sequence
+     *     number being 16 bits wide
+     */
+    public int nextSequenceNumber() {
+        return m_sequenceNumber.getAndIncrement() & 0xFFFF;
+    }
+
+    /**
+     * @return the number of requests waiting for a reply
+     */
+    public int getOutstanding() {
+        return m_outstanding.size();
+    }
+
+    public boolean isV4Available() {
+        return m_messenger.isV4Available();
+    }
+
+    public boolean isV6Available() {
+        return m_messenger.isV6Available();
+    }
+
+    public void setTrafficClass(final int tc) throws IOException {
+        m_messenger.setTrafficClass(tc);
+    }
+
+    public void setAllowFragmentation(final boolean allow) throws IOException {
+        m_messenger.setAllowFragmentation(allow);
+    }
+
+    /**
+     * Queues the request for the next wave.
+     *
+     * @param request the request, which must carry the identifier of this wave
+     */
+    public void submit(final JnaPingRequest request) {
+        if (m_stopped) {
+            throw new IllegalStateException("The ping wave has been stopped");
+        }
+        m_submitted.add(request);
+    }
+
+    @Override
+    public void handleReply(final JnaPingReply reply) {
+        final JnaPingRequest request = m_outstanding.remove(reply.getRequestId());
+        if (request == null) {
+            LOG.debug("Ignoring a reply without an outstanding request: {}", reply);
+            return;
+        }
+        request.processResponse(reply);
+    }
+
+    @Override
+    public void run() {
+        Logging.putPrefix("icmp");
+        final List<JnaPingRequest> wave = new ArrayList<>();
+        while (!m_stopped) {
+            try {
+                final JnaPingRequest first = m_submitted.poll(getWaitTime(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    wave.add(first);
+                    m_submitted.drainTo(wave);
+                    LOG.trace("Sending a wave of {} echo requests", wave.size());
+                    for (final JnaPingRequest request : wave) {
+                        send(request);
+                    }
+                    wave.clear();
+                }
+                expire();
+            } catch (final InterruptedException e) {
+                LOG.debug("Interrupted, stopping the ping wave");
+                break;
+            } catch (final Throwable t) {
+                LOG.warn("Unexpected error while sending a ping wave", t);
+            }
+        }
+    }
+
+    private long getWaitTime() {
+        final JnaPingRequest next = m_timeouts.peek();
+        return next == null ? 1000 : Math.max(0, next.getDelay(TimeUnit.MILLISECONDS));
+    }
+
+    private void send(final JnaPingRequest request) {
+        // track the request first, so that a fast reply finds it
+        m_outstanding.put(request.getId(), request);
+        m_messenger.sendRequest(request);
+        if (request.isProcessed()) {
+            // the request failed and its callback has already been notified
+            m_outstanding.remove(request.getId(), request);
+        } else {
+            m_timeouts.add(request);
+        }
+    }
+
+    private void expire() {
+        JnaPingRequest request;
+        while ((request = m_timeouts.peek()) != null && request.isExpired()) {
+            m_timeouts.poll();
+            // a reply might have completed the request in the meantime
+            if (m_outstanding.remove(request.getId(), request)) {
+                final JnaPingRequest retry = request.processTimeout();
+                if (retry != null) {
+                    send(retry);
+                }
+            }
+        }
+    }
+}
@@ -35,10 +35,14 @@ import static org.opennms.netmgt.icmp.PingConstants.DEFAULT_TIMEOUT;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.security.SecureRandom;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import org.opennms.core.logging.Logging;
+import org.opennms.netmgt.icmp.BatchPingResponseCallback;
+import org.opennms.netmgt.icmp.BatchPinger;
 import org.opennms.netmgt.icmp.ParallelPingResponseCallback;
 import org.opennms.netmgt.icmp.PingResponseCallback;
 import org.opennms.netmgt.icmp.Pinger;
@@ -54,13 +58,16 @@ import org.slf4j.LoggerFactory;
  *
  * @author brozow
  */
-public class JnaPinger implements Pinger {
+public class JnaPinger implements Pinger, BatchPinger {
     private static final Logger LOG = LoggerFactory.getLogger(JnaPinger.class);
 
     private final int m_pingerId = new SecureRandom().nextInt(Short.MAX_VALUE);
 
     private RequestTracker<JnaPingRequest, JnaPingReply> m_pingTracker;
     private JnaIcmpMessenger m_messenger;
+    private JnaPingWave m_wave;
+    private Integer m_trafficClass;
+    private Boolean m_allowFragmentation;
 
     /**
      * Initializes this singleton
@@ -85,6 +92,20 @@ public class JnaPinger implements Pinger {
         }
     }
 
+    /**
+     * Creates the wave used by the batch pings, which has its own sockets and
+     * identifier so that its replies are not handed to the request tracker.
+     */
+    private synchronized JnaPingWave getWave() throws Exception {
+        if (m_wave != null) return m_wave;
+        final JnaPingWave wave = new JnaPingWave(new SecureRandom().nextInt(Short.MAX_VALUE));
+        if (m_trafficClass != null) wave.setTrafficClass(m_trafficClass);
+        if (m_allowFragmentation != null) wave.setAllowFragmentation(m_allowFragmentation);
+        wave.start();
+        m_wave = wave;
+        return m_wave;
+    }
+
     @Override
     public void initialize4() throws Exception {
         initialize();
@@ -257,16 +278,61 @@ public class JnaPinger implements Pinger {
         return parallelPing(host, count, timeout, pingInterval, DEFAULT_PACKET_SIZE);
     }
 
+    /**
+     * Submits a ping into the next wave of echo requests.
+     *
+     * @param host The {@link java.net.InetAddress} address to poll.
+     * @param timeout The time to wait between each retry.
+     * @param retries The number of times to retry.
+     * @param packetsize The size in byte of the ICMP packet.
+     * @param cb a {@link org.opennms.netmgt.icmp.PingResponseCallback} object.
+     * @throws java.lang.Exception if any.
+     */
+    @Override
+    public void submit(final InetAddress host, final long timeout, final int retries, final int packetsize, final PingResponseCallback cb) throws Exception {
+        final JnaPingWave wave = getWave();
+        wave.submit(new JnaPingRequest(host, wave.getPingerId(), wave.nextSequenceNumber(), timeout, retries, packetsize, cb));
+    }
+
+    /**
+     * Pings all of the hosts in a single wave and waits for all of the pings
+     * to complete.
+     *
+     * @param hosts The {@link java.net.InetAddress} addresses to poll.
+     * @param timeout The time to wait between each retry.
+     * @param retries The number of times to retry.
+     * @param packetsize The size in byte of the ICMP packet.
+     * @return the response times in microseconds, null for the hosts which did not respond
+     * @throws java.lang.Exception if any.
+     */
+    @Override
+    public Map<InetAddress, Number> ping(final Collection<InetAddress> hosts, final long timeout, final int retries, final int packetsize) throws Exception {
+        final BatchPingResponseCallback cb = new BatchPingResponseCallback(hosts);
+        for (final InetAddress host : cb.getResponseTimes().keySet()) {
+            submit(host, timeout, retries, packetsize, cb);
+        }
+        cb.waitFor();
+        return cb.getResponseTimes();
+    }
+
     @Override
     public void setAllowFragmentation(boolean allow) throws Exception {
         initialize();
         m_messenger.setAllowFragmentation(allow);
+        synchronized (this) {
+            m_allowFragmentation = allow;
+            if (m_wave != null) m_wave.setAllowFragmentation(allow);
+        }
     }
 
     @Override
     public void setTrafficClass(int tc) throws Exception {
         initialize();
         m_messenger.setTrafficClass(tc);
+        synchronized (this) {
+            m_trafficClass = tc;
+            if (m_wave != null) m_wave.setTrafficClass(tc);
+        }
     }
 
 }
@@ -35,7 +35,9 @@ import static org.junit.Assert.assertTrue;
 
 import java.net.InetAddress;
 import java.net.NoRouteToHostException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
 import org.junit.Before;
@@ -190,6 +192,33 @@ public class JnaPingIT {
         assertNotNull(cb.getAddress());
     }
 
+    @Test
+    @IfProfileValue(name="runPingTests", value="true")
+    public void testBatchPingCallbackTimeoutIPv4() throws Exception {
+        TestPingResponseCallback cb = new TestPingResponseCallback();
+
+        s_jnaPinger.submit(m_badHost, PingConstants.DEFAULT_TIMEOUT, PingConstants.DEFAULT_RETRIES, PingConstants.DEFAULT_PACKET_SIZE, cb);
+
+        cb.await();
+
+        assertTrue("Unexpected Error sending ping to " + m_badHost + ": " + cb.getThrowable(),
+                cb.getThrowable() == null || cb.getThrowable() instanceof NoRouteToHostException);
+        assertTrue(cb.isTimeout());
+        assertNotNull(cb.getPacket());
+        assertEquals(m_badHost, cb.getAddress());
+    }
+
+    @Test
+    @IfProfileValue(name="runPingTests", value="true")
+    public void testBatchPing() throws Exception {
+        final Map<InetAddress, Number> rtts = s_jnaPinger.ping(Arrays.asList(m_goodHost, m_badHost, m_ipv6goodHost), PingConstants.DEFAULT_TIMEOUT, PingConstants.DEFAULT_RETRIES, PingConstants.DEFAULT_PACKET_SIZE);
+        assertEquals(3, rtts.size());
+        assertNotNull("No RTT value returned for " + m_goodHost, rtts.get(m_goodHost));
+        assertTrue("Negative RTT value returned from ping", rtts.get(m_goodHost).doubleValue() > 0);
+        assertNull(rtts.get(m_badHost));
+        assertNotNull("No RTT value returned for " + m_ipv6goodHost, rtts.get(m_ipv6goodHost));
+    }
+
     @Test
     @IfProfileValue(name="runPingTests", value="true")
     public void testSinglePingFailureIPv4() throws Exception {
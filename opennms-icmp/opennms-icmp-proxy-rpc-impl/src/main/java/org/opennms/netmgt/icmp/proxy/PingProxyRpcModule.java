@@ -28,15 +28,23 @@
 
 package org.opennms.netmgt.icmp.proxy;
 
+import static org.opennms.core.utils.BinaryCodec.readInetAddress;
+import static org.opennms.core.utils.BinaryCodec.readString;
+import static org.opennms.core.utils.BinaryCodec.writeInetAddress;
+import static org.opennms.core.utils.BinaryCodec.writeString;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
 
-import org.opennms.core.rpc.xml.AbstractXmlRpcModule;
+import org.opennms.core.rpc.xml.AbstractBinaryRpcModule;
 import org.opennms.netmgt.icmp.PingerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
-public class PingProxyRpcModule extends AbstractXmlRpcModule<PingRequestDTO, PingResponseDTO>  {
+public class PingProxyRpcModule extends AbstractBinaryRpcModule<PingRequestDTO, PingResponseDTO>  {
 
     public static final String RPC_MODULE_ID = "PING";
 
@@ -77,4 +85,40 @@ public class PingProxyRpcModule extends AbstractXmlRpcModule<PingRequestDTO, Pin
     public PingResponseDTO createResponseWithException(Throwable ex) {
         return new PingResponseDTO(ex);
     }
+
+    @Override
+    protected void writeRequest(PingRequestDTO request, DataOutput out) throws IOException {
+        writeInetAddress(out, request.getInetAddress());
+        writeString(out, request.getLocation());
+        writeString(out, request.getSystemId());
+        out.writeInt(request.getRetries());
+        out.writeLong(request.getTimeout());
+        out.writeInt(request.getPacketSize());
+    }
+
+    @Override
+    protected PingRequestDTO readRequest(DataInput in) throws IOException {
+        final PingRequestDTO request = new PingRequestDTO();
+        request.setInetAddress(readInetAddress(in));
+        request.setLocation(readString(in));
+        request.setSystemId(readString(in));
+        request.setRetries(in.readInt());
+        request.setTimeout(in.readLong());
+        request.setPacketSize(in.readInt());
+        return request;
+    }
+
+    @Override
+    protected void writeResponse(PingResponseDTO response, DataOutput out) throws IOException {
+        writeString(out, response.getErrorMessage());
+        out.writeDouble(response.getRtt());
+    }
+
+    @Override
+    protected PingResponseDTO readResponse(DataInput in) throws IOException {
+        final PingResponseDTO response = new PingResponseDTO();
+        response.setErrorMessage(readString(in));
+        response.setRtt(in.readDouble());
+        return response;
+    }
 }
@@ -74,6 +74,10 @@ public class PingSweepResponseDTO implements RpcResponse {
         return error;
     }
 
+    public void setErrorMessage(String error) {
+        this.error = error;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(pingSweepResult, error);
@@ -28,6 +28,16 @@
 
 package org.opennms.netmgt.icmp.proxy;
 
+import static org.opennms.core.utils.BinaryCodec.readInetAddress;
+import static org.opennms.core.utils.BinaryCodec.readString;
+import static org.opennms.core.utils.BinaryCodec.readVarInt;
+import static org.opennms.core.utils.BinaryCodec.writeInetAddress;
+import static org.opennms.core.utils.BinaryCodec.writeString;
+import static org.opennms.core.utils.BinaryCodec.writeVarInt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -42,8 +52,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
-import org.opennms.core.rpc.xml.AbstractXmlRpcModule;
+import org.opennms.core.rpc.xml.AbstractBinaryRpcModule;
 import org.opennms.core.utils.IteratorUtils;
+import org.opennms.netmgt.icmp.BatchPinger;
 import org.opennms.netmgt.icmp.EchoPacket;
 import org.opennms.netmgt.icmp.PingResponseCallback;
 import org.opennms.netmgt.icmp.Pinger;
@@ -59,7 +70,7 @@ import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 @Component
-public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO, PingSweepResponseDTO> {
+public class PingSweepRpcModule extends AbstractBinaryRpcModule<PingSweepRequestDTO, PingSweepResponseDTO> {
 
     public static final String RPC_MODULE_ID = "PING-SWEEP";
 
@@ -100,7 +111,11 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
                 try {
                     tracker.expectCallbackFor(pollAddress.getAddress());
                     limiter.acquire();
-                    pinger.ping(pollAddress.getAddress(), pollAddress.getTimeout(), pollAddress.getRetries(), packetSize, 1, tracker);
+                    if (pinger instanceof BatchPinger) {
+                        ((BatchPinger) pinger).submit(pollAddress.getAddress(), pollAddress.getTimeout(), pollAddress.getRetries(), packetSize, tracker);
+                    } else {
+                        pinger.ping(pollAddress.getAddress(), pollAddress.getTimeout(), pollAddress.getRetries(), packetSize, 1, tracker);
+                    }
                 } catch (Exception e) {
                     tracker.handleError(pollAddress.getAddress(), null, e);
                     tracker.completeExceptionally(e);
@@ -185,6 +200,60 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
         this.pingerFactory = pingerFactory;
     }
     
+    @Override
+    protected void writeRequest(PingSweepRequestDTO request, DataOutput out) throws IOException {
+        writeString(out, request.getLocation());
+        writeString(out, request.getSystemId());
+        // the defaults of the packet size and rate are resolved, as the sweep does
+        out.writeInt(request.getPacketSize());
+        out.writeDouble(request.getPacketsPerSecond());
+        writeVarInt(out, request.getIpRanges().size());
+        for (IPRangeDTO range : request.getIpRanges()) {
+            writeInetAddress(out, range.getBegin());
+            writeInetAddress(out, range.getEnd());
+            out.writeInt(range.getRetries());
+            out.writeLong(range.getTimeout());
+        }
+    }
+
+    @Override
+    protected PingSweepRequestDTO readRequest(DataInput in) throws IOException {
+        final PingSweepRequestDTO request = new PingSweepRequestDTO();
+        request.setLocation(readString(in));
+        request.setSystemId(readString(in));
+        request.setPacketSize(in.readInt());
+        request.setPacketsPerSecond(in.readDouble());
+        final int count = readVarInt(in);
+        for (int i = 0; i < count; i++) {
+            request.addIpRange(new IPRangeDTO(readInetAddress(in), readInetAddress(in), in.readInt(), in.readLong()));
+        }
+        return request;
+    }
+
+    @Override
+    protected void writeResponse(PingSweepResponseDTO response, DataOutput out) throws IOException {
+        writeString(out, response.getErrorMessage());
+        writeVarInt(out, response.getPingSweepResult().size());
+        for (PingSweepResultDTO result : response.getPingSweepResult()) {
+            writeInetAddress(out, result.getAddress());
+            out.writeDouble(result.getRtt());
+        }
+    }
+
+    @Override
+    protected PingSweepResponseDTO readResponse(DataInput in) throws IOException {
+        final PingSweepResponseDTO response = new PingSweepResponseDTO();
+        response.setErrorMessage(readString(in));
+        final int count = readVarInt(in);
+        for (int i = 0; i < count; i++) {
+            final PingSweepResultDTO result = new PingSweepResultDTO();
+            result.setAddress(readInetAddress(in));
+            result.setRtt(in.readDouble());
+            response.addPingSweepResult(result);
+        }
+        return response;
+    }
+
     public Iterable<IPPollAddress> getAddresses(List<IPPollRange> ranges) {
         final List<Iterator<IPPollAddress>> iters = new ArrayList<>();
         for(final IPPollRange range : ranges) {
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+
+import org.junit.Test;
+import org.opennms.core.rpc.xml.AbstractBinaryRpcModule;
+import org.opennms.core.utils.BinaryCodec.Encoding;
+
+public class PingProxyRpcModuleTest {
+
+    @Test
+    public void testBinaryEncoding() throws Exception {
+        final PingProxyRpcModule module = new PingProxyRpcModule();
+        module.setEncoding(Encoding.BINARY);
+
+        final PingRequestDTO request = new PingRequestDTO();
+        request.setInetAddress(InetAddress.getByName("192.0.2.1"));
+        request.setLocation("Raleigh");
+        request.setSystemId("minion-1");
+        request.setRetries(2);
+        request.setTimeout(800);
+        request.setPacketSize(64);
+        final String requestString = module.marshalRequest(request);
+        assertTrue(AbstractBinaryRpcModule.isBinary(requestString));
+        assertEquals(request, module.unmarshalRequest(requestString));
+
+        final PingResponseDTO response = new PingResponseDTO();
+        response.setRtt(0.243);
+        final String responseString = module.marshalResponse(response);
+        assertTrue(AbstractBinaryRpcModule.isBinary(responseString));
+        assertEquals(response, module.unmarshalResponse(responseString));
+
+        final PingResponseDTO failed = new PingResponseDTO(new IllegalStateException("failed"));
+        assertEquals(failed, module.unmarshalResponse(module.marshalResponse(failed)));
+    }
+}
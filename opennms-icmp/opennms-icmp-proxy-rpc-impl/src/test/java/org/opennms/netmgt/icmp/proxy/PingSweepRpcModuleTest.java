@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+
+import org.junit.Test;
+import org.opennms.core.rpc.xml.AbstractBinaryRpcModule;
+import org.opennms.core.utils.BinaryCodec.Encoding;
+
+public class PingSweepRpcModuleTest {
+
+    @Test
+    public void testBinaryEncoding() throws Exception {
+        final PingSweepRpcModule module = new PingSweepRpcModule();
+        module.setEncoding(Encoding.BINARY);
+
+        final PingSweepRequestDTO request = new PingSweepRequestDTO();
+        request.setLocation("Raleigh");
+        request.setSystemId("minion-1");
+        request.setPacketSize(64);
+        request.setPacketsPerSecond(25.5);
+        request.addIpRange(new IPRangeDTO("192.0.2.1", "192.0.2.254", 1, 500));
+        request.addIpRange(new IPRangeDTO("2001:db8::1", "2001:db8::ff", 0, 1000));
+        final String requestString = module.marshalRequest(request);
+        assertTrue(AbstractBinaryRpcModule.isBinary(requestString));
+        assertEquals(request, module.unmarshalRequest(requestString));
+
+        final PingSweepResponseDTO response = new PingSweepResponseDTO();
+        final PingSweepResultDTO result = new PingSweepResultDTO();
+        result.setAddress(InetAddress.getByName("192.0.2.7"));
+        result.setRtt(0.243);
+        response.addPingSweepResult(result);
+        final String responseString = module.marshalResponse(response);
+        assertTrue(AbstractBinaryRpcModule.isBinary(responseString));
+        assertEquals(response, module.unmarshalResponse(responseString));
+
+        final PingSweepResponseDTO failed = new PingSweepResponseDTO(new IllegalStateException("failed"));
+        assertEquals(failed, module.unmarshalResponse(module.marshalResponse(failed)));
+    }
+}
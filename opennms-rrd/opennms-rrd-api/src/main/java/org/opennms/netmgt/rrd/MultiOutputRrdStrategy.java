@@ -259,4 +259,12 @@ public class MultiOutputRrdStrategy implements RrdStrategy<List<Object>,List<Obj
             m_strategies.get(i).updateFile(rrd.get(i), owner, data);
         }
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateFile(List<Object> rrd, String owner, List<RrdUpdate> updates) throws Exception {
+        for (int i = 0; i < rrd.size(); i++) {
+            m_strategies.get(i).updateFile(rrd.get(i), owner, updates);
+        }
+    }
 }
@@ -31,17 +31,26 @@ package org.opennms.netmgt.rrd;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.opennms.core.logging.Logging;
+import org.opennms.netmgt.rrd.journal.RrdJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -96,6 +105,25 @@ import org.slf4j.LoggerFactory;
  * org.opennms.rrd.queuing.category: (default "queued") the log routing prefix
  * to place the statistics output in
  *
+ * org.opennms.rrd.queuing.partitions: (default 16) the number of partitions,
+ * each with its own lock, across which the files with pending work are spread
+ *
+ * org.opennms.rrd.queuing.maxPendingFileOperations: (default 10) the number of
+ * pending operations after which a file is written ahead of the others. Zero
+ * disables this.
+ *
+ * org.opennms.rrd.queuing.journal.directory: (default none) the directory of the
+ * write-ahead journal. When set, every queued update is also appended to an
+ * {@link RrdJournal} and acknowledged once it has been written. Updates that were
+ * still queued when the JVM stopped are replayed when the strategy is started.
+ * Creates are not journaled, queued creates are lost as before.
+ *
+ * org.opennms.rrd.queuing.journal.segmentSize: (default 67108864) the size of
+ * each memory-mapped journal segment in bytes
+ *
+ * org.opennms.rrd.queuing.journal.replayThreads: (default 4) the number of
+ * threads replaying the journal at startup
+ *
  *
  *
  * TODO: Promote files when ZeroUpdate operations can't be merged. This may be a
@@ -157,6 +185,21 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
     private long m_writeThreadExitDelay;
 
+    private static final int DEFAULT_PARTITIONS = 16;
+
+    private long m_maxPendingFileOperations = 10;
+
+    private String m_journalDirectory;
+
+    private int m_journalSegmentSize = 64 * 1024 * 1024;
+
+    private int m_journalReplayThreads = 4;
+
+    private volatile RrdJournal m_journal;
+
+    /** set by {@link #stop()}, the write threads exit once their current file is written */
+    private volatile boolean m_stopped;
+
     /**
      * <p>getWriteThreads</p>
      *
@@ -357,41 +400,149 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         m_writeThreadExitDelay = writeThreadExitDelay;
     }
 
-    LinkedList<String> filesWithSignificantWork = new LinkedList<String>();
+    /**
+     * <p>getPartitions</p>
+     *
+     * @return a int.
+     */
+    public int getPartitions() {
+        return m_partitions.length;
+    }
+
+    /**
+     * <p>setPartitions</p>
+     *
+     * Must be set before any operations are enqueued.
+     *
+     * @param partitions a int.
+     */
+    public void setPartitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be strictly positive");
+        }
+        m_partitions = createPartitions(partitions);
+    }
+
+    /**
+     * <p>getMaxPendingFileOperations</p>
+     *
+     * @return a long.
+     */
+    public long getMaxPendingFileOperations() {
+        return m_maxPendingFileOperations;
+    }
+
+    /**
+     * <p>setMaxPendingFileOperations</p>
+     *
+     * @param maxPendingFileOperations a long.
+     */
+    public void setMaxPendingFileOperations(long maxPendingFileOperations) {
+        m_maxPendingFileOperations = maxPendingFileOperations;
+    }
+
+    /**
+     * <p>getJournalDirectory</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getJournalDirectory() {
+        return m_journalDirectory;
+    }
+
+    /**
+     * <p>setJournalDirectory</p>
+     *
+     * An empty directory disables the journal.
+     *
+     * @param journalDirectory a {@link java.lang.String} object.
+     */
+    public void setJournalDirectory(String journalDirectory) {
+        m_journalDirectory = journalDirectory;
+    }
+
+    /**
+     * <p>getJournalSegmentSize</p>
+     *
+     * @return a int.
+     */
+    public int getJournalSegmentSize() {
+        return m_journalSegmentSize;
+    }
+
+    /**
+     * <p>setJournalSegmentSize</p>
+     *
+     * @param journalSegmentSize a int.
+     */
+    public void setJournalSegmentSize(int journalSegmentSize) {
+        m_journalSegmentSize = journalSegmentSize;
+    }
 
-    LinkedList<String> filesWithInsignificantWork = new LinkedList<String>();
+    /**
+     * <p>getJournalReplayThreads</p>
+     *
+     * @return a int.
+     */
+    public int getJournalReplayThreads() {
+        return m_journalReplayThreads;
+    }
 
-    Map<String, LinkedList<Operation>> pendingFileOperations = new HashMap<String, LinkedList<Operation>>();
+    /**
+     * <p>setJournalReplayThreads</p>
+     *
+     * @param journalReplayThreads a int.
+     */
+    public void setJournalReplayThreads(int journalReplayThreads) {
+        m_journalReplayThreads = journalReplayThreads;
+    }
+
+    /**
+     * Pending operations are sharded by file across the partitions. Each partition
+     * is guarded by its own lock, so that the threads enqueuing operations and the
+     * write threads only contend with each other when they work on the same partition.
+     */
+    private volatile Partition[] m_partitions = createPartitions(DEFAULT_PARTITIONS);
+
+    private final AtomicInteger m_nextPartition = new AtomicInteger();
+
+    private final AtomicLong m_totalOperationsPending = new AtomicLong();
 
-    Map<Thread, String> fileAssignments = new HashMap<Thread, String>();
+    private final AtomicLong m_enqueuedOperations = new AtomicLong();
 
-    Set<String> reservedFiles = new HashSet<String>();
+    private final AtomicLong m_dequeuedOperations = new AtomicLong();
 
-    private long m_totalOperationsPending = 0;
+    private final AtomicLong m_significantOpsEnqueued = new AtomicLong();
 
-    private long m_enqueuedOperations = 0;
+    private final AtomicLong m_significantOpsDequeued = new AtomicLong();
 
-    private long m_dequeuedOperations = 0;
+    private final AtomicLong m_significantOpsCompleted = new AtomicLong();
 
-    private long m_significantOpsEnqueued = 0;
+    private final AtomicLong m_dequeuedItems = new AtomicLong();
 
-    private long m_significantOpsDequeued = 0;
+    private final AtomicLong m_createsCompleted = new AtomicLong();
 
-    private long m_significantOpsCompleted = 0;
+    private final AtomicLong m_updatesCompleted = new AtomicLong();
 
-    private long m_dequeuedItems = 0;
+    private final AtomicLong m_updateCalls = new AtomicLong();
 
-    private long m_createsCompleted = 0;
+    private final AtomicLong m_errors = new AtomicLong();
 
-    private long m_updatesCompleted = 0;
+    private final AtomicLong m_promotionCount = new AtomicLong();
 
-    private long m_errors = 0;
+    /**
+     * Sum of the times elapsed between the first enqueued operation of a file and its write, in milliseconds.
+     */
+    private final AtomicLong m_totalWriteLatency = new AtomicLong();
 
-    int threadsRunning = 0;
+    /**
+     * Sum of the times spent writing the pending operations of a file, in milliseconds.
+     */
+    private final AtomicLong m_totalWriteTime = new AtomicLong();
 
-    private long m_startTime = 0;
+    private final AtomicInteger m_threadsRunning = new AtomicInteger();
 
-    private long m_promotionCount = 0;
+    private volatile long m_startTime = 0;
 
     long lastLap = System.currentTimeMillis();
 
@@ -419,6 +570,12 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         final int type;
         final Object data;
         final boolean significant;
+        long journalPosition = -1;
+
+        /** the journal positions of the operations merged into this one */
+        long[] mergedJournalPositions;
+
+        int mergedJournalCount;
 
         Operation(final String fileName, final int type, final Object data, final boolean significant) {
             this.fileName = fileName;
@@ -451,6 +608,43 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
             pendingOperations.add(this);
         }
 
+        /**
+         * Appends the operation to the journal. Only updates are journaled.
+         */
+        void journal(RrdJournal journal) throws IOException {
+        }
+
+        void acknowledge(RrdJournal journal) {
+            if (journalPosition >= 0) {
+                journal.acknowledge(journalPosition);
+            }
+            for (int i = 0; i < mergedJournalCount; i++) {
+                journal.acknowledge(mergedJournalPositions[i]);
+            }
+        }
+
+        /**
+         * Takes over the journal entries of an operation merged into this one,
+         * so that they are acknowledged once this operation was processed.
+         */
+        void mergeJournalPositions(Operation op) {
+            if (op.journalPosition >= 0) {
+                addJournalPosition(op.journalPosition);
+            }
+            for (int i = 0; i < op.mergedJournalCount; i++) {
+                addJournalPosition(op.mergedJournalPositions[i]);
+            }
+        }
+
+        private void addJournalPosition(long position) {
+            if (mergedJournalPositions == null) {
+                mergedJournalPositions = new long[4];
+            } else if (mergedJournalCount == mergedJournalPositions.length) {
+                mergedJournalPositions = Arrays.copyOf(mergedJournalPositions, mergedJournalCount * 2);
+            }
+            mergedJournalPositions[mergedJournalCount++] = position;
+        }
+
         abstract Object process(Object rrd) throws Exception;
 
     }
@@ -477,7 +671,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
             m_delegate.createFile(getData());
 
             // keep stats
-            setCreatesCompleted(getCreatesCompleted() + 1);
+            m_createsCompleted.incrementAndGet();
 
             // return the file
             return rrd;
@@ -495,10 +689,15 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
             super(fileName, UPDATE, data, true);
         }
 
-        UpdateOperation(String fileName, String data, boolean significant) {
+        UpdateOperation(String fileName, Object data, boolean significant) {
             super(fileName, UPDATE, data, significant);
         }
 
+        @Override
+        void journal(RrdJournal journal) throws IOException {
+            journalPosition = journal.append(getFileName(), (String) getData());
+        }
+
         @Override
         Object process(Object rrd) throws Exception {
             // open the file if we need to
@@ -516,10 +715,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
             }
 
             // keep stats
-            setUpdatesCompleted(getUpdatesCompleted() + 1);
-            if (getUpdatesCompleted() % m_modulus == 0) {
-                logStats();
-            }
+            updatesCompleted(1);
             // return the open rrd for further processing
             return rrd;
 
@@ -527,6 +723,90 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
     }
 
+    /**
+     * Represents one or more typed samples written to a rrd file with a single
+     * call to the delegate. The samples of consecutive operations for the same
+     * file are merged, as long as their timestamps keep increasing.
+     */
+    public class SampleUpdateOperation extends UpdateOperation {
+
+        /** the samples, including those of the operations merged into this one */
+        private List<RrdUpdate> updates;
+
+        SampleUpdateOperation(String fileName, List<RrdUpdate> updates) {
+            super(fileName, updates, true);
+            this.updates = updates;
+        }
+
+        List<RrdUpdate> getUpdates() {
+            return updates;
+        }
+
+        /**
+         * The delegate rejects a whole call if the samples are not in order, so only
+         * samples following the ones of this operation, with the same number of data
+         * sources, are merged.
+         */
+        boolean canMerge(SampleUpdateOperation op) {
+            final RrdUpdate last = updates.get(updates.size() - 1);
+            final RrdUpdate next = op.getUpdates().get(0);
+            return next.getTimestamp() > last.getTimestamp()
+                    && next.getValues().length == last.getValues().length;
+        }
+
+        void mergeUpdates(SampleUpdateOperation op) {
+            if (updates == getData()) {
+                // never modify the list handed in by the caller
+                updates = new ArrayList<RrdUpdate>(updates);
+            }
+            updates.addAll(op.getUpdates());
+            mergeJournalPositions(op);
+        }
+
+        @Override
+        void addToPendingList(LinkedList<Operation> pendingOperations) {
+            if (pendingOperations.size() > 0 && pendingOperations.getLast() instanceof SampleUpdateOperation
+                    && ((SampleUpdateOperation) pendingOperations.getLast()).canMerge(this)) {
+                ((SampleUpdateOperation) pendingOperations.getLast()).mergeUpdates(this);
+            } else {
+                super.addToPendingList(pendingOperations);
+            }
+        }
+
+        @Override
+        int getCount() {
+            return getUpdates().size();
+        }
+
+        @Override
+        void journal(RrdJournal journal) throws IOException {
+            journalPosition = journal.append(getFileName(), getUpdates());
+        }
+
+        @Override
+        Object process(Object rrd) throws Exception {
+            // open the file if we need to
+            if (rrd == null) rrd = m_delegate.openFile(getFileName());
+
+            final List<RrdUpdate> updates = getUpdates();
+
+            try {
+                // process the updates
+                m_delegate.updateFile(rrd, "", updates);
+            } catch (final Throwable e) {
+                final String error = String.format("Error processing update for file %s: %s", getFileName(), updates);
+                m_log.debug(error, e);
+                throw new Exception(error, e);
+            }
+
+            // keep stats
+            updatesCompleted(updates.size());
+            // return the open rrd for further processing
+            return rrd;
+        }
+
+    }
+
     /**
      * Represents an update whose value is 0. These operations can be merged
      * together and take up less memory
@@ -545,29 +825,34 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
             count = 1;
         }
 
+        @Override
+        void journal(RrdJournal journal) throws IOException {
+            journalPosition = journal.append(getFileName(), Collections.singletonList(new RrdUpdate(timeStamp, 0d)));
+        }
+
         @Override
         Object process(Object rrd) throws Exception {
+            // open the file if we need to
+            if (rrd == null)
+                rrd = m_delegate.openFile(getFileName());
+
+            // all of the merged updates are written with a single call
+            final List<RrdUpdate> updates = new ArrayList<RrdUpdate>(count);
             long ts = getFirstTimeStamp();
             for (int i = 0; i < count; i++) {
-                // open the file if we need to
-                if (rrd == null)
-                    rrd = m_delegate.openFile(getFileName());
-
-                String update = ts + ":0";
-                try {
-                    // process the update
-                    m_delegate.updateFile(rrd, "", update);
-                } catch (Throwable e) {
-                    throw new Exception("Error processing update " + i + " for file " + getFileName() + ": " + update, e);
-                }
+                updates.add(new RrdUpdate(ts, 0d));
                 ts += getInterval();
+            }
 
-                // keep stats
-                setUpdatesCompleted(getUpdatesCompleted() + 1);
-                if (getUpdatesCompleted() % m_modulus == 0) {
-                    logStats();
-                }
+            try {
+                // process the updates
+                m_delegate.updateFile(rrd, "", updates);
+            } catch (Throwable e) {
+                throw new Exception("Error processing " + count + " zero updates for file " + getFileName() + ": " + updates, e);
             }
+
+            // keep stats
+            updatesCompleted(count);
             return rrd;
         }
 
@@ -616,6 +901,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
             setCount(newCount);
             setInterval(newInterval);
+            mergeJournalPositions(op);
 
         }
 
@@ -670,11 +956,56 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         return new UpdateOperation(fileName, update);
     }
 
+    /**
+     * <p>makeUpdateOperation</p>
+     *
+     * @param fileName a {@link java.lang.String} object.
+     * @param owner a {@link java.lang.String} object.
+     * @param updates a {@link java.util.List} object.
+     * @return a {@link org.opennms.netmgt.rrd.QueuingRrdStrategy.Operation} object.
+     */
+    Operation makeUpdateOperation(String fileName, String owner, List<RrdUpdate> updates) {
+        if (updates.size() == 1) {
+            final RrdUpdate update = updates.get(0);
+            final double[] values = update.getValues();
+            if (values.length == 1 && values[0] == 0.0) {
+                if (update.getTimestamp() == 0)
+                    m_log.debug("ZERO ERROR: created a zero update with ts=0 for file: {}, data: {}", fileName, update);
+
+                return new ZeroUpdateOperation(fileName, update.getTimestamp());
+            }
+        }
+        return new SampleUpdateOperation(fileName, updates);
+    }
+
+    /**
+     * Count completed updates and log the statistics every time another
+     * modulus worth of updates has been completed.
+     */
+    private void updatesCompleted(final int count) {
+        m_updateCalls.incrementAndGet();
+        final long completed = m_updatesCompleted.addAndGet(count);
+        if (completed / m_modulus != (completed - count) / m_modulus) {
+            logStats();
+        }
+    }
+
     //
     // Queue management functions.
     //
-    // TODO: Put this all in a class of its own. This is really ugly.
-    //
+
+    private Partition[] createPartitions(final int count) {
+        final Partition[] partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition();
+        }
+        return partitions;
+    }
+
+    private Partition getPartition(final String fileName) {
+        final Partition[] partitions = m_partitions;
+        return partitions[(fileName.hashCode() & Integer.MAX_VALUE) % partitions.length];
+    }
 
     /**
      * Add an operation to the queue.
@@ -682,31 +1013,38 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param op a {@link org.opennms.netmgt.rrd.QueuingRrdStrategy.Operation} object.
      */
     private void addOperation(final Operation op) {
-        synchronized (this) {
-            if (queueIsFull()) {
-                m_log.error("RRD Data Queue is Full!! Discarding operation for file {}", op.getFileName());
-                return;
-            }
+        if (queueIsFull()) {
+            m_log.error("RRD Data Queue is Full!! Discarding operation for file {}", op.getFileName());
+            return;
+        }
 
-            if (op.isSignificant() && sigQueueIsFull()) {
-                m_log.error("RRD Data Significant Queue is Full!! Discarding operation for file {}", op.getFileName());
-                return;
-            }
+        if (op.isSignificant() && sigQueueIsFull()) {
+            m_log.error("RRD Data Significant Queue is Full!! Discarding operation for file {}", op.getFileName());
+            return;
+        }
 
-            if (!op.isSignificant() && inSigQueueIsFull()) {
-                m_log.error("RRD Insignificant Data Queue is Full!! Discarding operation for file {}", op.getFileName());
-                return;
+        if (!op.isSignificant() && inSigQueueIsFull()) {
+            m_log.error("RRD Insignificant Data Queue is Full!! Discarding operation for file {}", op.getFileName());
+            return;
+        }
+
+        final RrdJournal journal = m_journal;
+        if (journal != null) {
+            try {
+                op.journal(journal);
+            } catch (final IOException e) {
+                m_log.warn("Failed to journal the operation for file {}, it will be lost on restart: {}", op.getFileName(), e.getMessage());
             }
+        }
 
-            storeAssignment(op);
+        // count the operation before it can be dequeued
+        m_totalOperationsPending.addAndGet(op.getCount());
+        m_enqueuedOperations.addAndGet(op.getCount());
+        if (op.isSignificant())
+            m_significantOpsEnqueued.addAndGet(op.getCount());
 
-            setTotalOperationsPending(getTotalOperationsPending() + 1);
-            setEnqueuedOperations(getEnqueuedOperations() + 1);
-            if (op.isSignificant())
-                setSignificantOpsEnqueued(getSignificantOpsEnqueued() + 1);
-            notifyAll();
-            ensureThreadsStarted();
-        }
+        getPartition(op.getFileName()).storeAssignment(op);
+        ensureThreadsStarted();
     }
 
 
@@ -734,134 +1072,79 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
     /**
      * Ensure that we have threads started to process the queue.
      */
-    private synchronized void ensureThreadsStarted() {
-        if (threadsRunning < m_writeThreads) {
-            threadsRunning++;
-            new Thread(this, this.getClass().getSimpleName() + "-" + threadsRunning).start();
+    private void ensureThreadsStarted() {
+        if (m_stopped) {
+            return;
+        }
+        final int running = m_threadsRunning.get();
+        if (running < m_writeThreads && m_threadsRunning.compareAndSet(running, running + 1)) {
+            new Thread(this, this.getClass().getSimpleName() + "-" + (running + 1)).start();
         }
     }
 
     /**
-     * Get the operations for the next file that should be worked on.
+     * Get the next file to be processed by the current thread. The partition holding
+     * the oldest work is tried first, followed by the others in a round robin fashion.
      *
-     * @return a linkedList of operations to be processed all for the same file.
+     * @return the file, reserved by the current thread until it is completed,
+     * or null if all of the files with work are reserved by other threads
      */
-    private LinkedList<Operation> getNext() {
-        LinkedList<Operation> ops = null;
-        synchronized (this) {
-
-            // turn in our previous assignment
-            completeAssignment();
+    private PendingFile getNext() {
+        final Partition[] partitions = m_partitions;
 
-            String newAssignment;
-            // wait until there is work to do
-            while ((newAssignment = selectNewAssignment()) == null) {
-                try {
-                    wait();
-                } catch (InterruptedException e) {
-                }
+        Partition oldest = partitions[0];
+        for (Partition partition : partitions) {
+            if (partition.getOldestWork() < oldest.getOldestWork()) {
+                oldest = partition;
             }
+        }
 
-            // initialize start time for stats
-            if (getStartTime() == 0)
-                setStartTime(System.currentTimeMillis());
-
-            // reserve the assignment and take work items
-            ops = takeAssignment(newAssignment);
-
-            // keep stats
-            if (ops != null) {
-                for(Operation op : ops) {
-                    setTotalOperationsPending(getTotalOperationsPending()-op.getCount());
-                    setDequeuedOperations(getDequeuedOperations() + op.getCount());
-                    if (op.isSignificant()) {
-                        setSignificantOpsDequeued(getSignificantOpsDequeued() + op.getCount());
-                    }
+        PendingFile pendingFile = oldest.hasWork() ? oldest.takeAssignment() : null;
+        if (pendingFile == null) {
+            final int first = m_nextPartition.getAndIncrement() & Integer.MAX_VALUE;
+            for (int i = 0; i < partitions.length && pendingFile == null; i++) {
+                final Partition partition = partitions[(first + i) % partitions.length];
+                if (partition != oldest && partition.hasWork()) {
+                    pendingFile = partition.takeAssignment();
                 }
-                setDequeuedItems(getDequeuedItems() + 1);
             }
         }
-
-        return ops;
-
-    }
-
-    /**
-     * We need to track which files are being processed by which threads so that
-     * we don't try to process updates for the same file on more than one
-     * thread.
-     */
-    private synchronized void storeAssignment(Operation op) {
-        // look and see if there a pending ops list for this file
-        LinkedList<Operation> pendingOperations = pendingFileOperations.get(op.getFileName());
-
-        // if not then we create an ops list for the file and add the file to
-        // the work items list
-        if (pendingOperations == null) {
-            pendingOperations = new LinkedList<Operation>();
-            pendingFileOperations.put(op.getFileName(), pendingOperations);
-
-            // add the file to the correct list based on what type of work we
-            // are adding.  (if we aren't prioritizing then every file is counted as
-            // signficant
-            if (!m_prioritizeSignificantUpdates || op.isSignificant())
-                filesWithSignificantWork.addLast(op.getFileName());
-            else
-                filesWithInsignificantWork.addLast(op.getFileName());
-        } else if (m_prioritizeSignificantUpdates && op.isSignificant() && hasOnlyInsignificant(pendingOperations)) {
-            // only do this when we are prioritizing as this bumps files from inSig
-            // up to insig
-            // promote the file to the significant list if this is the first
-            // significant
-            filesWithSignificantWork.addLast(op.getFileName());
+        if (pendingFile == null) {
+            return null;
         }
 
-        promoteAgedFiles();
-
-        op.addToPendingList(pendingOperations);
-    }
-
-    /**
-     * Ensure that files with insignificant changes are getting promoted if
-     * necessary
-     *
-     */
-    private synchronized void promoteAgedFiles() {
-
-        // no need to do this is we aren't prioritizing
-        if (!m_prioritizeSignificantUpdates) return;
-
-        // the num seconds to update files is 0 then use unfair prioritization
-        if (m_maxInsigUpdateSeconds == 0 || filesWithInsignificantWork.isEmpty())
-            return;
-
-        // calculate the elapsed time we first queued updates
-        long now = System.currentTimeMillis();
-        long elapsedMillis = Math.max(now - getStartTime(), 1);
-
-        // calculate the milliseconds between promotions necessary to age
-        // insignificant files into
-        // the significant queue
-        double millisPerPromotion = ((m_maxInsigUpdateSeconds * 1000.0) / filesWithInsignificantWork.size());
-
-        // calculate the number of millis since start until the next file needs
-        // to be promotoed
-        long nextPromotionMillis = (long) (millisPerPromotion * getPromotionCount());
+        // initialize start time for stats
+        if (getStartTime() == 0)
+            setStartTime(System.currentTimeMillis());
 
-        // if more time has elapsed than the next promotion time then promote a
-        // file
-        if (elapsedMillis > nextPromotionMillis) {
-            String file = filesWithInsignificantWork.removeFirst();
-            filesWithSignificantWork.addFirst(file);
-            setPromotionCount(getPromotionCount() + 1);
+        // keep stats
+        for (Operation op : pendingFile.operations) {
+            m_totalOperationsPending.addAndGet(-op.getCount());
+            m_dequeuedOperations.addAndGet(op.getCount());
+            if (op.isSignificant()) {
+                m_significantOpsDequeued.addAndGet(op.getCount());
+            }
         }
-
+        m_dequeuedItems.incrementAndGet();
+        return pendingFile;
     }
 
     /** {@inheritDoc} */
     @Override
-    public synchronized void promoteEnqueuedFiles(Collection<String> rrdFiles) {
-        filesWithSignificantWork.addAll(0, rrdFiles);
+    public void promoteEnqueuedFiles(Collection<String> rrdFiles) {
+        final Map<Partition, List<String>> filesByPartition = new LinkedHashMap<Partition, List<String>>();
+        for (String rrdFile : rrdFiles) {
+            final Partition partition = getPartition(rrdFile);
+            List<String> files = filesByPartition.get(partition);
+            if (files == null) {
+                files = new ArrayList<String>();
+                filesByPartition.put(partition, files);
+            }
+            files.add(rrdFile);
+        }
+        for (Map.Entry<Partition, List<String>> entry : filesByPartition.entrySet()) {
+            entry.getKey().promote(entry.getValue());
+        }
         m_delegate.promoteEnqueuedFiles(rrdFiles);
     }
 
@@ -879,51 +1162,219 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
     }
 
     /**
-     * register the file that the currentThread is be working on. This enables
-     * us to ensure that another thread doesn't try to work on operations for
-     * that file.  Note: this is not synchronized as it is called from getNext which
-     * is thread safe
+     * The operations enqueued for a single file.
      */
-    private LinkedList<Operation> takeAssignment(String newAssignment) {
-
-        // make the file as reserved by the current thread
-        fileAssignments.put(Thread.currentThread(), newAssignment);
-        reservedFiles.add(newAssignment);
+    private class PendingFile {
+        final String fileName;
+        final Partition partition;
+        final LinkedList<Operation> operations = new LinkedList<Operation>();
+        final long enqueuedAt = System.currentTimeMillis();
+        /** the number of updates, which may be merged into fewer operations */
+        long count = 0;
 
-        // get the assignments work list and return it
-        return pendingFileOperations.remove(newAssignment);
+        PendingFile(final String fileName, final Partition partition) {
+            this.fileName = fileName;
+            this.partition = partition;
+        }
     }
 
     /**
-     * Return the name of the next file with available work
+     * A subset of the files with pending operations, along with the lists of files
+     * which determine the order in which these get processed.
+     *
+     * A file may appear more than once in the lists when it was promoted. Entries
+     * for files without pending operations are dropped when they are reached.
      */
-    private String selectNewAssignment() {
-        for (Iterator<String> it = filesWithSignificantWork.iterator(); it.hasNext();) {
-            String fn = it.next();
-            if (!reservedFiles.contains(fn)) {
-                it.remove();
-                return fn;
+    private class Partition {
+        private final Lock m_lock = new ReentrantLock();
+
+        private final Map<String, PendingFile> m_pendingFiles = new HashMap<String, PendingFile>();
+
+        private final LinkedList<String> m_filesWithSignificantWork = new LinkedList<String>();
+
+        private final LinkedList<String> m_filesWithInsignificantWork = new LinkedList<String>();
+
+        private final Set<String> m_reservedFiles = new HashSet<String>();
+
+        private long m_promotions = 0;
+
+        /**
+         * Time at which the work at the head of the lists was enqueued, allowing
+         * the write threads to favor the oldest work without taking the lock.
+         */
+        private volatile long m_oldestWork = Long.MAX_VALUE;
+
+        long getOldestWork() {
+            return m_oldestWork;
+        }
+
+        boolean hasWork() {
+            return m_oldestWork != Long.MAX_VALUE;
+        }
+
+        void storeAssignment(final Operation op) {
+            m_lock.lock();
+            try {
+                // look and see if there a pending ops list for this file
+                PendingFile pendingFile = m_pendingFiles.get(op.getFileName());
+
+                // if not then we create an ops list for the file and add the file to
+                // the work items list
+                if (pendingFile == null) {
+                    pendingFile = new PendingFile(op.getFileName(), this);
+                    m_pendingFiles.put(op.getFileName(), pendingFile);
+
+                    // add the file to the correct list based on what type of work we
+                    // are adding.  (if we aren't prioritizing then every file is counted as
+                    // signficant
+                    if (!m_prioritizeSignificantUpdates || op.isSignificant())
+                        m_filesWithSignificantWork.addLast(op.getFileName());
+                    else
+                        m_filesWithInsignificantWork.addLast(op.getFileName());
+                } else if (m_prioritizeSignificantUpdates && op.isSignificant() && hasOnlyInsignificant(pendingFile.operations)) {
+                    // only do this when we are prioritizing as this bumps files from inSig
+                    // up to insig
+                    // promote the file to the significant list if this is the first
+                    // significant
+                    m_filesWithSignificantWork.addLast(op.getFileName());
+                } else if (m_maxPendingFileOperations > 0 && pendingFile.count < m_maxPendingFileOperations
+                        && pendingFile.count + op.getCount() >= m_maxPendingFileOperations) {
+                    // the file is falling behind, so write it ahead of the others
+                    m_filesWithSignificantWork.remove(op.getFileName());
+                    m_filesWithSignificantWork.addFirst(op.getFileName());
+                }
+
+                promoteAgedFiles();
+
+                pendingFile.count += op.getCount();
+                op.addToPendingList(pendingFile.operations);
+                updateOldestWork();
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Reserve the next file with available work, and take its operations.
+         */
+        PendingFile takeAssignment() {
+            m_lock.lock();
+            try {
+                PendingFile pendingFile = selectNewAssignment(m_filesWithSignificantWork);
+                if (pendingFile == null) {
+                    pendingFile = selectNewAssignment(m_filesWithInsignificantWork);
+                }
+                updateOldestWork();
+                return pendingFile;
+            } finally {
+                m_lock.unlock();
             }
         }
-        for (Iterator<String> it = filesWithInsignificantWork.iterator(); it.hasNext();) {
-            String fn = it.next();
-            if (!reservedFiles.contains(fn)) {
+
+        private PendingFile selectNewAssignment(final LinkedList<String> files) {
+            for (Iterator<String> it = files.iterator(); it.hasNext();) {
+                final String fn = it.next();
+                if (m_reservedFiles.contains(fn)) {
+                    continue;
+                }
                 it.remove();
-                return fn;
+                final PendingFile pendingFile = m_pendingFiles.remove(fn);
+                if (pendingFile != null) {
+                    m_reservedFiles.add(fn);
+                    return pendingFile;
+                }
             }
+            return null;
         }
-        return null;
-    }
 
-    /**
-     * Record that fact that the current thread has finished process operations
-     * for its current assignment
-     */
-    private synchronized void completeAssignment() {
-        // remove any existing reservation of the current thread
-        String previousAssignment = fileAssignments.remove(Thread.currentThread());
-        if (previousAssignment != null)
-            reservedFiles.remove(previousAssignment);
+        /**
+         * Record that fact that a thread has finished processing the operations of the given file.
+         */
+        void completeAssignment(final PendingFile pendingFile) {
+            m_lock.lock();
+            try {
+                m_reservedFiles.remove(pendingFile.fileName);
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        void promote(final Collection<String> rrdFiles) {
+            m_lock.lock();
+            try {
+                m_filesWithSignificantWork.addAll(0, rrdFiles);
+                updateOldestWork();
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Promotes an aged file from the insignificant list to the significant list.
+         */
+        private void promoteAgedFiles() {
+
+            // no need to do this is we aren't prioritizing
+            if (!m_prioritizeSignificantUpdates) return;
+
+            // the num seconds to update files is 0 then use unfair prioritization
+            if (m_maxInsigUpdateSeconds == 0 || m_filesWithInsignificantWork.isEmpty())
+                return;
+
+            // calculate the elapsed time we first queued updates
+            long now = System.currentTimeMillis();
+            long elapsedMillis = Math.max(now - getStartTime(), 1);
+
+            // calculate the milliseconds between promotions necessary to age
+            // insignificant files into
+            // the significant queue
+            double millisPerPromotion = ((m_maxInsigUpdateSeconds * 1000.0) / m_filesWithInsignificantWork.size());
+
+            // calculate the number of millis since start until the next file needs
+            // to be promotoed
+            long nextPromotionMillis = (long) (millisPerPromotion * m_promotions);
+
+            // if more time has elapsed than the next promotion time then promote a
+            // file
+            if (elapsedMillis > nextPromotionMillis) {
+                String file = m_filesWithInsignificantWork.removeFirst();
+                m_filesWithSignificantWork.addFirst(file);
+                m_promotions++;
+                m_promotionCount.incrementAndGet();
+            }
+        }
+
+        private void updateOldestWork() {
+            final String significant = m_filesWithSignificantWork.peekFirst();
+            if (significant != null) {
+                // files which were promoted may not have any pending operations yet
+                final PendingFile pendingFile = m_pendingFiles.get(significant);
+                m_oldestWork = pendingFile != null ? pendingFile.enqueuedAt : 0;
+            } else if (!m_filesWithInsignificantWork.isEmpty()) {
+                // only processed when there is no significant work left
+                m_oldestWork = Long.MAX_VALUE - 1;
+            } else {
+                m_oldestWork = Long.MAX_VALUE;
+            }
+        }
+
+        int getFilesWithSignificantWork() {
+            m_lock.lock();
+            try {
+                return m_filesWithSignificantWork.size();
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        int getFilesWithInsignificantWork() {
+            m_lock.lock();
+            try {
+                return m_filesWithInsignificantWork.size();
+            } finally {
+                m_lock.unlock();
+            }
+        }
     }
 
     /**
@@ -944,6 +1395,135 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         return m_delegate;
     }
 
+    /**
+     * Opens the journal, if one is configured, and writes the updates which
+     * were still queued when it was last closed straight to the delegate.
+     *
+     * @throws java.io.IOException if the journal could not be opened
+     * @throws java.lang.InterruptedException if interrupted during the replay
+     */
+    public void start() throws IOException, InterruptedException {
+        if (m_journalDirectory == null || m_journalDirectory.trim().isEmpty()) {
+            return;
+        }
+        m_stopped = false;
+        final RrdJournal journal = RrdJournal.open(new File(m_journalDirectory.trim()), m_journalSegmentSize);
+        journal.replay(new RrdJournal.Replayer() {
+            @Override
+            public Collection<RrdJournal.Entry> replay(String fileName, List<RrdJournal.Entry> entries) throws Exception {
+                return replayFile(fileName, entries);
+            }
+        }, m_journalReplayThreads);
+        m_journal = journal;
+    }
+
+    /**
+     * Writes the journaled entries of a file. A failing entry does not prevent
+     * the following ones from being written. Entries which were already written
+     * before the JVM stopped are rejected by the delegate with a stale
+     * timestamp and are skipped.
+     *
+     * @return the entries that were written or skipped
+     */
+    private List<RrdJournal.Entry> replayFile(final String fileName, final List<RrdJournal.Entry> entries) throws Exception {
+        final List<RrdJournal.Entry> written = new ArrayList<>(entries.size());
+        Object rrd = null;
+        try {
+            rrd = m_delegate.openFile(fileName);
+            for (final RrdJournal.Entry entry : entries) {
+                try {
+                    if (entry.getUpdates() != null) {
+                        replayUpdates(rrd, entry.getUpdates());
+                    } else {
+                        m_delegate.updateFile(rrd, "", entry.getData());
+                    }
+                    written.add(entry);
+                } catch (final Throwable e) {
+                    if (isStaleUpdate(e)) {
+                        m_log.debug("Skipping journal entry for file {} which was already written: {}", fileName, e.getMessage());
+                        written.add(entry);
+                    } else {
+                        m_errors.incrementAndGet();
+                        m_log.warn("Failed to replay journal entry for file {}: {}", fileName, e.getMessage(), e);
+                    }
+                }
+            }
+        } finally {
+            processClose(rrd);
+        }
+        return written;
+    }
+
+    /**
+     * Writes the samples of a journaled entry. When some of them were already
+     * written before the JVM stopped, the samples are written one at a time
+     * so that only the stale ones are skipped.
+     */
+    private void replayUpdates(final Object rrd, final List<RrdUpdate> updates) throws Exception {
+        try {
+            m_delegate.updateFile(rrd, "", updates);
+        } catch (final Exception e) {
+            if (updates.size() == 1 || !isStaleUpdate(e)) {
+                throw e;
+            }
+            for (final RrdUpdate update : updates) {
+                try {
+                    m_delegate.updateFile(rrd, "", Collections.singletonList(update));
+                } catch (final Exception e2) {
+                    if (!isStaleUpdate(e2)) {
+                        throw e2;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Both JRobin and rrdtool reject an update which is not newer than the last
+     * one with a message mentioning the last update time.
+     */
+    private static boolean isStaleUpdate(final Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            final String message = t.getMessage();
+            if (message != null && message.toLowerCase().contains("last update time")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the write threads and closes the journal. The threads finish the
+     * file they are writing so that its journal entries are acknowledged; the
+     * updates which are still queued are not written, they will be replayed
+     * from the journal the next time the strategy is started.
+     *
+     * @throws java.io.IOException if the journal could not be closed
+     */
+    public void stop() throws IOException {
+        m_stopped = true;
+        try {
+            long waitStart = System.currentTimeMillis();
+            while (m_threadsRunning.get() > 0) {
+                if (System.currentTimeMillis() - waitStart >= 60000) {
+                    m_log.info("Waiting for {} write threads to stop", m_threadsRunning.get());
+                    waitStart = System.currentTimeMillis();
+                }
+                Thread.sleep(Math.max(1, m_writeThreadSleepTime));
+            }
+        } catch (final InterruptedException e) {
+            m_log.warn("Interrupted while waiting for the write threads to stop");
+            Thread.currentThread().interrupt();
+        }
+
+        final RrdJournal journal = m_journal;
+        m_journal = null;
+        if (journal != null) {
+            m_log.info("Closing the RRD journal with {} pending operations", journal.getPendingEntries());
+            journal.close();
+        }
+    }
+
     //
     // RrdStrategy Implementation.. These methods just enqueue the calls as
     // operations
@@ -1016,6 +1596,20 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         addOperation(makeUpdateOperation((String) rrdFile, owner, data));
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see RrdStrategy#updateFile(java.lang.Object, java.lang.String, java.util.List)
+     */
+    /** {@inheritDoc} */
+    @Override
+    public void updateFile(String rrdFile, String owner, List<RrdUpdate> updates) throws Exception {
+        if (updates.isEmpty()) {
+            return;
+        }
+        addOperation(makeUpdateOperation(rrdFile, owner, updates));
+    }
+
     /** {@inheritDoc} */
     @Override
     public Double fetchLastValue(String rrdFile, String ds, int interval) throws NumberFormatException, RrdException {
@@ -1062,12 +1656,12 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
             long waitStart = -1L;
             long delayed = 0;
-            while (delayed < m_writeThreadExitDelay) {
-                if (getTotalOperationsPending() > 0) {
+            while (delayed < m_writeThreadExitDelay && !m_stopped) {
+                if (getTotalOperationsPending() > 0 && processPendingOperations()) {
                     delayed = 0;
                     waitStart = -1L;
-                    processPendingOperations();
                 } else {
+                    // there is no work, or all the files with work are being processed by other threads
                     if (waitStart < 0) {
                         waitStart = System.currentTimeMillis();
                     }
@@ -1081,33 +1675,35 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
             }
         } finally {
-            synchronized (this) {
-                threadsRunning--;
-                completeAssignment();
-            }
+            m_threadsRunning.decrementAndGet();
         }
     }
 
     /**
      * Actually process the operations be calling the underlying delegate
      * strategy
+     *
+     * @return false if there was no file available for processing
      */
-    private void processPendingOperations() {
+    private boolean processPendingOperations() {
+        final PendingFile pendingFile = getNext();
+        if (pendingFile == null) {
+            return false;
+        }
+
         Logging.withPrefix(m_category, new Runnable() {
             @Override public void run() {
                 Object rrd = null;
                 String fileName = null;
+                final long start = System.currentTimeMillis();
 
                 try {
-                    final LinkedList<Operation> ops = getNext();
-                    if (ops == null) {
-                        return;
-                    }
+                    final LinkedList<Operation> ops = pendingFile.operations;
                     // update stats correctly we update them even if an exception occurs
                     // while we are processing
                     for (final Operation op : ops) {
                         if (op.isSignificant()) {
-                            setSignificantOpsCompleted(getSignificantOpsCompleted() + 1);
+                            m_significantOpsCompleted.addAndGet(op.getCount());
                         }
 
                     }
@@ -1117,14 +1713,34 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
                         rrd = op.process(rrd);
                     }
                 } catch (final Throwable e) {
-                    setErrors(getErrors() + 1);
+                    m_errors.incrementAndGet();
                     logLapTime("Error updating file " + fileName + ": " + e.getMessage());
                     m_log.debug("Error updating file {}: {}", fileName, e.getMessage(), e);
                 } finally {
                     processClose(rrd);
+                    acknowledge(pendingFile.operations);
+                    pendingFile.partition.completeAssignment(pendingFile);
+
+                    final long end = System.currentTimeMillis();
+                    m_totalWriteTime.addAndGet(end - start);
+                    m_totalWriteLatency.addAndGet(end - pendingFile.enqueuedAt);
                 }
             }
         });
+        return true;
+    }
+
+    /**
+     * Acknowledge the journal entries of the processed operations. Operations
+     * which failed are acknowledged as well since replaying them would fail again.
+     */
+    private void acknowledge(final List<Operation> ops) {
+        final RrdJournal journal = m_journal;
+        if (journal != null) {
+            for (final Operation op : ops) {
+                op.acknowledge(journal);
+            }
+        }
     }
 
     /**
@@ -1135,7 +1751,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
             try {
                 m_delegate.closeFile(rrd);
             } catch (final Throwable e) {
-                setErrors(getErrors() + 1);
+                m_errors.incrementAndGet();
                 logLapTime("Error closing rrd " + rrd + ": " + e.getMessage());
                 m_log.debug("Error closing rrd {}: {}", rrd, e.getMessage(), e);
             }
@@ -1181,14 +1797,17 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
         String stats = "\nQS:\t" + "totalOperationsPending=" + getTotalOperationsPending() +
                 ", significantOpsPending=" + (getSignificantOpsEnqueued() - getSignificantOpsCompleted()) +
-                ", filesWithSignificantWork=" + filesWithSignificantWork.size() +
-                ", filesWithInsignificantWork=" + filesWithInsignificantWork.size()
+                ", filesWithSignificantWork=" + getFilesWithSignificantWork() +
+                ", filesWithInsignificantWork=" + getFilesWithInsignificantWork()
 
                 + "\nQS:\t" + ", createsCompleted=" + getCreatesCompleted() +
                 ", updatesCompleted=" + getUpdatesCompleted() +
                 ", errors=" + getErrors() +
                 ", promotionRate=" + ((double) (getPromotionCount() * 1000.0 / totalElapsedMillis)) +
-                ", promotionCount=" + getPromotionCount()
+                ", promotionCount=" + getPromotionCount() +
+                ", avgWriteLatency=" + (getTotalWriteLatency() / Math.max(getDequeuedItems(), 1)) +
+                ", avgWriteTime=" + (getTotalWriteTime() / Math.max(getDequeuedItems(), 1)) +
+                ", coalescingRatio=" + getCoalescingRatio()
 
                 + "\nQS:\t" + ", currentEnqueueRates=(" + currentSigEnqueueRate + "/" + currentInsigEnqueueRate + "/" + currentEnqueueRate + ")" +
                 ", currentDequeueRate=(" + currentSigDequeueRate + "/" + currentInsigDequeueRate + "/" + currentDequeueRate + ")" +
@@ -1203,6 +1822,15 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
                 ", overallPrcntSignificant=" + (getSignificantOpsEnqueued() * 100.0 / Math.max(getEnqueuedOperations(), 1.0)) + "%" +
                 ", totalElapsedTime=" + ((totalElapsedMillis + 500) / 1000);
 
+        final RrdJournal journal = m_journal;
+        if (journal != null) {
+            stats += "\nQS:\t" + ", journalPending=" + journal.getPendingEntries() +
+                    ", journalAppended=" + journal.getAppendedEntries() +
+                    ", journalAcknowledged=" + journal.getAcknowledgedEntries() +
+                    ", journalReplayed=" + journal.getReplayedEntries() +
+                    ", journalSegments=" + journal.getSegments();
+        }
+
         lastStatsTime = now;
         lastEnqueued = getEnqueuedOperations();
         lastDequeued = getDequeuedOperations();
@@ -1297,7 +1925,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getTotalOperationsPending() {
-        return m_totalOperationsPending;
+        return m_totalOperationsPending.get();
     }
 
     /**
@@ -1306,7 +1934,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param totalOperationsPending a long.
      */
     public void setTotalOperationsPending(long totalOperationsPending) {
-        m_totalOperationsPending = totalOperationsPending;
+        m_totalOperationsPending.set(totalOperationsPending);
     }
 
     /**
@@ -1315,7 +1943,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getCreatesCompleted() {
-        return m_createsCompleted;
+        return m_createsCompleted.get();
     }
 
     /**
@@ -1324,7 +1952,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param createsCompleted a long.
      */
     public void setCreatesCompleted(long createsCompleted) {
-        m_createsCompleted = createsCompleted;
+        m_createsCompleted.set(createsCompleted);
     }
 
     /**
@@ -1333,7 +1961,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getUpdatesCompleted() {
-        return m_updatesCompleted;
+        return m_updatesCompleted.get();
     }
 
     /**
@@ -1342,7 +1970,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param updatesCompleted a long.
      */
     public void setUpdatesCompleted(long updatesCompleted) {
-        m_updatesCompleted = updatesCompleted;
+        m_updatesCompleted.set(updatesCompleted);
     }
 
     /**
@@ -1351,7 +1979,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getErrors() {
-        return m_errors;
+        return m_errors.get();
     }
 
     /**
@@ -1360,7 +1988,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param errors a long.
      */
     public void setErrors(long errors) {
-        m_errors = errors;
+        m_errors.set(errors);
     }
 
     /**
@@ -1369,7 +1997,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getPromotionCount() {
-        return m_promotionCount;
+        return m_promotionCount.get();
     }
 
     /**
@@ -1378,7 +2006,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param promotionCount a long.
      */
     public void setPromotionCount(long promotionCount) {
-        m_promotionCount = promotionCount;
+        m_promotionCount.set(promotionCount);
     }
 
     /**
@@ -1387,7 +2015,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getSignificantOpsEnqueued() {
-        return m_significantOpsEnqueued;
+        return m_significantOpsEnqueued.get();
     }
 
     /**
@@ -1396,7 +2024,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param significantOpsEnqueued a long.
      */
     public void setSignificantOpsEnqueued(long significantOpsEnqueued) {
-        m_significantOpsEnqueued = significantOpsEnqueued;
+        m_significantOpsEnqueued.set(significantOpsEnqueued);
     }
 
     /**
@@ -1405,7 +2033,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getSignificantOpsDequeued() {
-        return m_significantOpsDequeued;
+        return m_significantOpsDequeued.get();
     }
 
     /**
@@ -1414,7 +2042,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param significantOpsDequeued a long.
      */
     public void setSignificantOpsDequeued(long significantOpsDequeued) {
-        m_significantOpsDequeued = significantOpsDequeued;
+        m_significantOpsDequeued.set(significantOpsDequeued);
     }
 
     /**
@@ -1423,7 +2051,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getEnqueuedOperations() {
-        return m_enqueuedOperations;
+        return m_enqueuedOperations.get();
     }
 
     /**
@@ -1432,7 +2060,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param enqueuedOperations a long.
      */
     public void setEnqueuedOperations(long enqueuedOperations) {
-        m_enqueuedOperations = enqueuedOperations;
+        m_enqueuedOperations.set(enqueuedOperations);
     }
 
     /**
@@ -1441,7 +2069,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getDequeuedOperations() {
-        return m_dequeuedOperations;
+        return m_dequeuedOperations.get();
     }
 
     /**
@@ -1450,7 +2078,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param dequeuedOperations a long.
      */
     public void setDequeuedOperations(long dequeuedOperations) {
-        m_dequeuedOperations = dequeuedOperations;
+        m_dequeuedOperations.set(dequeuedOperations);
     }
 
     /**
@@ -1459,7 +2087,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getDequeuedItems() {
-        return m_dequeuedItems;
+        return m_dequeuedItems.get();
     }
 
     /**
@@ -1468,7 +2096,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param dequeuedItems a long.
      */
     public void setDequeuedItems(long dequeuedItems) {
-        m_dequeuedItems = dequeuedItems;
+        m_dequeuedItems.set(dequeuedItems);
     }
 
     /**
@@ -1477,7 +2105,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @return a long.
      */
     public long getSignificantOpsCompleted() {
-        return m_significantOpsCompleted;
+        return m_significantOpsCompleted.get();
     }
 
     /**
@@ -1486,7 +2114,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
      * @param significantOpsCompleted a long.
      */
     public void setSignificantOpsCompleted(long significantOpsCompleted) {
-        m_significantOpsCompleted = significantOpsCompleted;
+        m_significantOpsCompleted.set(significantOpsCompleted);
     }
 
     /**
@@ -1507,5 +2135,67 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         m_startTime = updateStart;
     }
 
+    /**
+     * <p>getTotalWriteLatency</p>
+     *
+     * @return the sum of the times elapsed between the first operation enqueued for a file and its write, in milliseconds
+     */
+    public long getTotalWriteLatency() {
+        return m_totalWriteLatency.get();
+    }
+
+    /**
+     * <p>getTotalWriteTime</p>
+     *
+     * @return the sum of the times spent writing the pending operations of a file, in milliseconds
+     */
+    public long getTotalWriteTime() {
+        return m_totalWriteTime.get();
+    }
+
+    /**
+     * <p>getUpdateCalls</p>
+     *
+     * @return the number of calls made to the delegate in order to write the completed updates
+     */
+    public long getUpdateCalls() {
+        return m_updateCalls.get();
+    }
+
+    /**
+     * <p>getCoalescingRatio</p>
+     *
+     * @return the average number of updates written with a single call to the delegate
+     */
+    public double getCoalescingRatio() {
+        return getUpdatesCompleted() / (double) Math.max(getUpdateCalls(), 1);
+    }
+
+    /**
+     * <p>getFilesWithSignificantWork</p>
+     *
+     * @return a long.
+     */
+    public long getFilesWithSignificantWork() {
+        long count = 0;
+        for (Partition partition : m_partitions) {
+            count += partition.getFilesWithSignificantWork();
+        }
+        return count;
+    }
+
+    /**
+     * <p>getFilesWithInsignificantWork</p>
+     *
+     * @return a long.
+     */
+    public long getFilesWithInsignificantWork() {
+        long count = 0;
+        for (Partition partition : m_partitions) {
+            count += partition.getFilesWithInsignificantWork();
+        }
+        return count;
+    }
+
 
 }
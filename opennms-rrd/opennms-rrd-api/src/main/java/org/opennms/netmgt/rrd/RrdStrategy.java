@@ -124,6 +124,24 @@ public interface RrdStrategy<D extends Object,F extends Object> {
      */
     public void updateFile(F rrd, String owner, String data) throws Exception;
 
+    /**
+     * Updates the supplied round robin database with the given samples. This
+     * is the preferred way of writing data since it avoids formatting and
+     * parsing the samples as strings; the samples are written in the order
+     * given. Queuing implementations hold on to the list, so it must not be
+     * modified after this call.
+     *
+     * @param rrd
+     *            an rrd object created using openFile
+     * @param owner
+     *            the owner of the rrd
+     * @param updates
+     *            the samples to write, with one value per data source
+     * @throws java.lang.Exception
+     *             if an error occurs updating the file
+     */
+    public void updateFile(F rrd, String owner, List<RrdUpdate> updates) throws Exception;
+
     /**
      * This closes the supplied round robin database
      *
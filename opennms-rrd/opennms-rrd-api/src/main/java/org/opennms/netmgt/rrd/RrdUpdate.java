@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import java.util.Arrays;
+
+/**
+ * A single sample to be written to a round robin database: a timestamp in
+ * seconds and one value per data source, in data source order. Unknown values
+ * are represented by {@link Double#NaN}.
+ *
+ * @see RrdStrategy#updateFile(Object, String, java.util.List)
+ */
+public class RrdUpdate {
+
+    /**
+     * Whole numbers with a smaller magnitude are written without a fraction.
+     */
+    private static final double MAX_EXACT_LONG = 9007199254740992d; // 2^53
+
+    private final long m_timestamp;
+    private final double[] m_values;
+
+    /**
+     * <p>Constructor for RrdUpdate.</p>
+     *
+     * @param timestamp the timestamp of the sample in seconds since the epoch
+     * @param values the values of the sample, one per data source
+     */
+    public RrdUpdate(long timestamp, double... values) {
+        if (values == null) {
+            throw new IllegalArgumentException("values cannot be null");
+        }
+        m_timestamp = timestamp;
+        m_values = values;
+    }
+
+    /**
+     * <p>getTimestamp</p>
+     *
+     * @return the timestamp of the sample in seconds since the epoch
+     */
+    public long getTimestamp() {
+        return m_timestamp;
+    }
+
+    /**
+     * Returns the values of the sample. The array is not copied and must not
+     * be modified.
+     *
+     * @return the values of the sample, one per data source
+     */
+    public double[] getValues() {
+        return m_values;
+    }
+
+    /**
+     * Appends this sample to the given buffer in the rrdtool update format,
+     * i.e. <code>&lt;timestamp&gt;:&lt;value&gt;[:&lt;value&gt;...]</code>.
+     *
+     * @param buf the buffer to append to
+     * @return the given buffer
+     */
+    public StringBuilder appendTo(StringBuilder buf) {
+        buf.append(m_timestamp);
+        for (double value : m_values) {
+            buf.append(':');
+            appendValue(buf, value);
+        }
+        return buf;
+    }
+
+    /**
+     * Appends a single value in the rrdtool update format. Unknown and
+     * infinite values are written as <code>U</code> and whole numbers are
+     * written without a fraction, which rrdtool requires for COUNTER and
+     * DERIVE data sources.
+     *
+     * @param buf the buffer to append to
+     * @param value the value to append
+     */
+    public static void appendValue(StringBuilder buf, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            buf.append('U');
+        } else if (value == Math.rint(value) && Math.abs(value) < MAX_EXACT_LONG) {
+            buf.append((long) value);
+        } else {
+            buf.append(value);
+        }
+    }
+
+    /**
+     * Parses a sample in the rrdtool update format. A timestamp of
+     * <code>N</code> is replaced by the current time and values of
+     * <code>U</code> are returned as {@link Double#NaN}.
+     *
+     * @param data a string of the form &lt;timestamp&gt;:&lt;value&gt;[:&lt;value&gt;...]
+     * @return the parsed sample
+     * @throws java.lang.IllegalArgumentException if the string is not a valid sample
+     */
+    public static RrdUpdate parse(String data) {
+        final String[] fields = data.split(":");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("Invalid RRD update '" + data + "': no values found");
+        }
+        try {
+            final long timestamp = "N".equals(fields[0]) ? System.currentTimeMillis() / 1000L : Long.parseLong(fields[0]);
+            final double[] values = new double[fields.length - 1];
+            for (int i = 1; i < fields.length; i++) {
+                final String value = fields[i];
+                values[i - 1] = "U".equals(value) || "null".equals(value) ? Double.NaN : Double.parseDouble(value);
+            }
+            return new RrdUpdate(timestamp, values);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid RRD update '" + data + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * <p>toString</p>
+     *
+     * @return the sample in the rrdtool update format
+     */
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(m_timestamp) + Arrays.hashCode(m_values);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RrdUpdate)) {
+            return false;
+        }
+        final RrdUpdate other = (RrdUpdate) obj;
+        return m_timestamp == other.m_timestamp && Arrays.equals(m_values, other.m_values);
+    }
+}
@@ -0,0 +1,587 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.opennms.netmgt.rrd.RrdUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of pending RRD updates, kept in memory-mapped segment
+ * files so that updates which were accepted but not yet written survive a
+ * restart of the JVM.
+ * <p>
+ * Each update is appended with {@link #append(String, String)} or
+ * {@link #append(String, List)}, which return the position of the entry.
+ * Once the update has been written to the RRD file, the writer acknowledges
+ * the entry with {@link #acknowledge(long)}, which flags it in place. Segments
+ * are deleted as soon as the last of their entries has been acknowledged.
+ * </p>
+ * <p>
+ * When the journal is opened, the entries of the existing segments that were
+ * never acknowledged are loaded and can be replayed with
+ * {@link #replay(Replayer, int)}. The entries of a given file are replayed in
+ * order, different files are replayed in parallel. Entries that could not be
+ * replayed are kept for the next time the journal is opened.
+ * </p>
+ * <p>
+ * The segments are written through the page cache, so entries survive the
+ * process being killed, but not a crash of the operating system unless the
+ * segment has been sealed, which forces it to disk.
+ * </p>
+ * <p>
+ * Entry layout: <code>int length | byte state | byte type | short name length |
+ * name | payload</code>. The length is written last, so a zero length marks the
+ * end of the valid entries in a segment.
+ * </p>
+ */
+public class RrdJournal implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(RrdJournal.class);
+
+    private static final String SEGMENT_PREFIX = "rrd-journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile(Pattern.quote(SEGMENT_PREFIX) + "(\\d+)" + Pattern.quote(SEGMENT_SUFFIX));
+
+    private static final byte STATE_PENDING = 0;
+    private static final byte STATE_ACKNOWLEDGED = 1;
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_UPDATES = 2;
+
+    /** length, state, type and name length */
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 2;
+
+    /**
+     * Called for each file with unacknowledged entries when the journal is
+     * replayed.
+     */
+    public interface Replayer {
+        /**
+         * Writes the entries of a single file. Only the returned entries are
+         * acknowledged, the others are kept and replayed again the next time
+         * the journal is opened.
+         *
+         * @param fileName the name of the RRD file
+         * @param entries the entries of the file, in the order they were appended
+         * @return the entries that were written or can be skipped
+         * @throws java.lang.Exception if none of the entries could be written
+         */
+        Collection<Entry> replay(String fileName, List<Entry> entries) throws Exception;
+    }
+
+    /**
+     * An unacknowledged entry loaded from an existing segment.
+     */
+    public static class Entry {
+        private final long m_position;
+        private final String m_fileName;
+        private final String m_data;
+        private final List<RrdUpdate> m_updates;
+
+        private Entry(long position, String fileName, String data, List<RrdUpdate> updates) {
+            m_position = position;
+            m_fileName = fileName;
+            m_data = data;
+            m_updates = updates;
+        }
+
+        public long getPosition() {
+            return m_position;
+        }
+
+        public String getFileName() {
+            return m_fileName;
+        }
+
+        /**
+         * @return the update string, or null if the entry holds typed samples
+         */
+        public String getData() {
+            return m_data;
+        }
+
+        /**
+         * @return the typed samples, or null if the entry holds an update string
+         */
+        public List<RrdUpdate> getUpdates() {
+            return m_updates;
+        }
+    }
+
+    private static class Segment {
+        private final int m_id;
+        private final File m_file;
+        private final MappedByteBuffer m_buffer;
+        private final AtomicInteger m_pending = new AtomicInteger();
+        private volatile boolean m_sealed;
+
+        private Segment(int id, File file, int size) throws IOException {
+            m_id = id;
+            m_file = file;
+            // the mapping stays valid once the file is closed
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                m_buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+    }
+
+    private final File m_directory;
+    private final int m_segmentSize;
+    private final Map<Integer, Segment> m_segments = new ConcurrentHashMap<>();
+    private final ReentrantLock m_appendLock = new ReentrantLock();
+    private final List<Entry> m_unacknowledged = new ArrayList<>();
+
+    private Segment m_current;
+    private int m_offset;
+
+    private final AtomicLong m_appended = new AtomicLong();
+    private final AtomicLong m_acknowledged = new AtomicLong();
+    private final AtomicLong m_replayed = new AtomicLong();
+
+    private RrdJournal(File directory, int segmentSize) {
+        m_directory = directory;
+        m_segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens the journal in the given directory and loads the unacknowledged
+     * entries of the existing segments.
+     *
+     * @param directory the directory holding the segments, created if needed
+     * @param segmentSize the size of each segment in bytes
+     * @return the journal
+     * @throws java.io.IOException if the journal could not be opened
+     */
+    public static RrdJournal open(File directory, int segmentSize) throws IOException {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("segmentSize must be at least 1024 bytes");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create journal directory " + directory);
+        }
+        final RrdJournal journal = new RrdJournal(directory, segmentSize);
+        journal.load();
+        return journal;
+    }
+
+    private void load() throws IOException {
+        final File[] files = m_directory.listFiles();
+        final List<Integer> ids = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                final Matcher m = SEGMENT_PATTERN.matcher(file.getName());
+                if (m.matches()) {
+                    ids.add(Integer.valueOf(m.group(1)));
+                }
+            }
+        }
+        Collections.sort(ids);
+
+        int nextId = 0;
+        for (Integer id : ids) {
+            final File file = segmentFile(id);
+            final Segment segment = new Segment(id, file, (int) Math.max(file.length(), HEADER_SIZE));
+            segment.m_sealed = true;
+            m_segments.put(id, segment);
+            readEntries(segment);
+            if (segment.m_pending.get() == 0) {
+                delete(segment);
+            }
+            nextId = id + 1;
+        }
+
+        LOG.info("Loaded {} unacknowledged entries from {} journal segments in {}", m_unacknowledged.size(), ids.size(), m_directory);
+        roll(nextId);
+    }
+
+    private void readEntries(Segment segment) {
+        final MappedByteBuffer buffer = segment.m_buffer;
+        int offset = 0;
+        try {
+            while (offset + HEADER_SIZE <= buffer.limit()) {
+                final int length = buffer.getInt(offset);
+                if (length <= 0 || offset + 4 + length > buffer.limit()) {
+                    break;
+                }
+                if (buffer.get(offset + 4) == STATE_PENDING) {
+                    m_unacknowledged.add(readEntry(segment, offset));
+                    segment.m_pending.incrementAndGet();
+                }
+                offset += 4 + length;
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            LOG.warn("Journal segment {} is truncated at offset {}, ignoring the remainder", segment.m_file, offset, e);
+        }
+    }
+
+    private static Entry readEntry(Segment segment, int offset) {
+        final MappedByteBuffer buffer = segment.m_buffer;
+        final byte type = buffer.get(offset + 5);
+        final int nameLength = buffer.getShort(offset + 6) & 0xffff;
+        final String fileName = readString(buffer, offset + HEADER_SIZE, nameLength);
+        int pos = offset + HEADER_SIZE + nameLength;
+
+        final long position = position(segment.m_id, offset);
+        if (type == TYPE_STRING) {
+            final int length = buffer.getInt(pos);
+            return new Entry(position, fileName, readString(buffer, pos + 4, length), null);
+        } else if (type == TYPE_UPDATES) {
+            final int count = buffer.getInt(pos);
+            pos += 4;
+            final List<RrdUpdate> updates = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final long timestamp = buffer.getLong(pos);
+                final int size = buffer.getShort(pos + 8) & 0xffff;
+                pos += 10;
+                final double[] values = new double[size];
+                for (int j = 0; j < size; j++) {
+                    values[j] = buffer.getDouble(pos);
+                    pos += 8;
+                }
+                updates.add(new RrdUpdate(timestamp, values));
+            }
+            return new Entry(position, fileName, null, updates);
+        }
+        throw new IllegalArgumentException("Unknown journal entry type " + type);
+    }
+
+    private static String readString(MappedByteBuffer buffer, int offset, int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends an update in the string format.
+     *
+     * @param fileName the name of the RRD file
+     * @param data the update string
+     * @return the position of the entry, used to acknowledge it
+     * @throws java.io.IOException if the entry could not be appended
+     */
+    public long append(String fileName, String data) throws IOException {
+        final byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        final byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+
+        m_appendLock.lock();
+        try {
+            final int offset = reserve(name, TYPE_STRING, 4 + bytes.length);
+            final MappedByteBuffer buffer = m_current.m_buffer;
+            int pos = offset + HEADER_SIZE + name.length;
+            buffer.putInt(pos, bytes.length);
+            pos += 4;
+            for (byte b : bytes) {
+                buffer.put(pos++, b);
+            }
+            return commit(offset, pos);
+        } finally {
+            m_appendLock.unlock();
+        }
+    }
+
+    /**
+     * Appends typed samples.
+     *
+     * @param fileName the name of the RRD file
+     * @param updates the samples
+     * @return the position of the entry, used to acknowledge it
+     * @throws java.io.IOException if the entry could not be appended
+     */
+    public long append(String fileName, List<RrdUpdate> updates) throws IOException {
+        final byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        int size = 4;
+        for (RrdUpdate update : updates) {
+            size += 10 + 8 * update.getValues().length;
+        }
+
+        m_appendLock.lock();
+        try {
+            final int offset = reserve(name, TYPE_UPDATES, size);
+            final MappedByteBuffer buffer = m_current.m_buffer;
+            int pos = offset + HEADER_SIZE + name.length;
+            buffer.putInt(pos, updates.size());
+            pos += 4;
+            for (RrdUpdate update : updates) {
+                final double[] values = update.getValues();
+                buffer.putLong(pos, update.getTimestamp());
+                buffer.putShort(pos + 8, (short) values.length);
+                pos += 10;
+                for (double value : values) {
+                    buffer.putDouble(pos, value);
+                    pos += 8;
+                }
+            }
+            return commit(offset, pos);
+        } finally {
+            m_appendLock.unlock();
+        }
+    }
+
+    /**
+     * Reserves room for an entry in the current segment, rolling over to a new
+     * segment if needed, and writes everything but the length of the header.
+     */
+    private int reserve(byte[] name, byte type, int payloadSize) throws IOException {
+        if (name.length > 0xffff) {
+            throw new IOException("File name too long for the journal: " + name.length + " bytes");
+        }
+        final int size = HEADER_SIZE + name.length + payloadSize;
+        // leave room for the terminating zero length
+        if (size + 4 > m_segmentSize) {
+            throw new IOException("Entry of " + size + " bytes does not fit in a journal segment of " + m_segmentSize + " bytes");
+        }
+        if (m_offset + size + 4 > m_segmentSize) {
+            seal(m_current);
+            roll(m_current.m_id + 1);
+        }
+
+        final MappedByteBuffer buffer = m_current.m_buffer;
+        final int offset = m_offset;
+        buffer.put(offset + 4, STATE_PENDING);
+        buffer.put(offset + 5, type);
+        buffer.putShort(offset + 6, (short) name.length);
+        for (int i = 0; i < name.length; i++) {
+            buffer.put(offset + HEADER_SIZE + i, name[i]);
+        }
+        return offset;
+    }
+
+    private long commit(int offset, int end) {
+        final MappedByteBuffer buffer = m_current.m_buffer;
+        // make sure the next entry reads as the end of the segment
+        buffer.putInt(end, 0);
+        buffer.putInt(offset, end - offset - 4);
+        m_offset = end;
+        m_current.m_pending.incrementAndGet();
+        m_appended.incrementAndGet();
+        return position(m_current.m_id, offset);
+    }
+
+    private void roll(int id) throws IOException {
+        final Segment segment = new Segment(id, segmentFile(id), m_segmentSize);
+        // a reused file may contain stale entries
+        segment.m_buffer.putInt(0, 0);
+        m_segments.put(id, segment);
+        m_current = segment;
+        m_offset = 0;
+    }
+
+    private void seal(Segment segment) {
+        segment.m_buffer.force();
+        segment.m_sealed = true;
+        if (segment.m_pending.get() == 0) {
+            delete(segment);
+        }
+    }
+
+    /**
+     * Flags the entry at the given position as written.
+     *
+     * @param position the position returned when the entry was appended
+     */
+    public void acknowledge(long position) {
+        final Segment segment = m_segments.get(segmentId(position));
+        if (segment == null) {
+            // the journal was closed, the entry will be replayed
+            LOG.debug("Acknowledged journal entry {} in unknown segment {}", position, segmentId(position));
+            return;
+        }
+        final int offset = segmentOffset(position);
+        if (segment.m_buffer.get(offset + 4) == STATE_ACKNOWLEDGED) {
+            return;
+        }
+        segment.m_buffer.put(offset + 4, STATE_ACKNOWLEDGED);
+        m_acknowledged.incrementAndGet();
+        if (segment.m_pending.decrementAndGet() == 0 && segment.m_sealed) {
+            delete(segment);
+        }
+    }
+
+    private void delete(Segment segment) {
+        if (m_segments.remove(segment.m_id) == null) {
+            return;
+        }
+        if (!segment.m_file.delete()) {
+            LOG.warn("Failed to delete journal segment {}", segment.m_file);
+        }
+    }
+
+    /**
+     * Replays the entries which were not acknowledged before the journal was
+     * last closed. The entries are grouped by file and the files are handed
+     * to the replayer from the given number of threads. Returns once all of
+     * the files have been replayed. The entries the replayer did not write
+     * stay unacknowledged until the journal is opened again.
+     *
+     * @param replayer the replayer
+     * @param threads the number of threads replaying files in parallel
+     * @return the number of entries that were replayed and acknowledged
+     * @throws java.lang.InterruptedException if interrupted while waiting for the replay
+     */
+    public int replay(final Replayer replayer, int threads) throws InterruptedException {
+        final Map<String, List<Entry>> entriesByFile = new LinkedHashMap<>();
+        synchronized (m_unacknowledged) {
+            for (Entry entry : m_unacknowledged) {
+                List<Entry> entries = entriesByFile.get(entry.getFileName());
+                if (entries == null) {
+                    entries = new ArrayList<>();
+                    entriesByFile.put(entry.getFileName(), entries);
+                }
+                entries.add(entry);
+            }
+            m_unacknowledged.clear();
+        }
+        if (entriesByFile.isEmpty()) {
+            return 0;
+        }
+
+        final long start = System.currentTimeMillis();
+        final AtomicInteger replayed = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (final Map.Entry<String, List<Entry>> file : entriesByFile.entrySet()) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            final Collection<Entry> written = replayer.replay(file.getKey(), file.getValue());
+                            for (Entry entry : written) {
+                                acknowledge(entry.getPosition());
+                            }
+                            replayed.addAndGet(written.size());
+                            if (written.size() < file.getValue().size()) {
+                                LOG.warn("Kept {} of {} journal entries for {} which could not be replayed", file.getValue().size() - written.size(), file.getValue().size(), file.getKey());
+                            }
+                        } catch (Throwable e) {
+                            LOG.warn("Failed to replay {} journal entries for {}, keeping them: {}", file.getValue().size(), file.getKey(), e.getMessage(), e);
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.info("Waiting for the replay of the RRD journal to complete, {} entries replayed so far", replayed.get());
+            }
+        }
+        m_replayed.addAndGet(replayed.get());
+        LOG.info("Replayed {} journal entries for {} files in {} ms", replayed.get(), entriesByFile.size(), System.currentTimeMillis() - start);
+        return replayed.get();
+    }
+
+    /**
+     * @return the number of entries that were appended and not yet acknowledged
+     */
+    public long getPendingEntries() {
+        long pending = 0;
+        for (Segment segment : m_segments.values()) {
+            pending += segment.m_pending.get();
+        }
+        return pending;
+    }
+
+    public long getAppendedEntries() {
+        return m_appended.get();
+    }
+
+    public long getAcknowledgedEntries() {
+        return m_acknowledged.get();
+    }
+
+    public long getReplayedEntries() {
+        return m_replayed.get();
+    }
+
+    public int getSegments() {
+        return m_segments.size();
+    }
+
+    /**
+     * Forces the current segment to disk. Unacknowledged entries are kept and
+     * will be loaded the next time the journal is opened.
+     */
+    @Override
+    public void close() throws IOException {
+        m_appendLock.lock();
+        try {
+            for (Segment segment : m_segments.values()) {
+                segment.m_buffer.force();
+            }
+            if (m_current != null && m_current.m_pending.get() == 0) {
+                if (!m_current.m_file.delete()) {
+                    LOG.debug("Failed to delete empty journal segment {}", m_current.m_file);
+                }
+            }
+            m_segments.clear();
+        } finally {
+            m_appendLock.unlock();
+        }
+    }
+
+    private File segmentFile(int id) {
+        return new File(m_directory, String.format("%s%010d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static long position(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int segmentId(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int segmentOffset(long position) {
+        return (int) position;
+    }
+}
@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.rrd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.netmgt.rrd.journal.RrdJournal;
+
+public class QueuingRrdStrategyTest {
+
+    private static final String BLOCKER = "blocker.jrb";
+
+    @Rule
+    public TemporaryFolder m_folder = new TemporaryFolder();
+
+    private final CountDownLatch m_unblock = new CountDownLatch(1);
+
+    private final RecordingRrdStrategy m_delegate = new RecordingRrdStrategy();
+
+    private QueuingRrdStrategy m_strategy;
+
+    @Before
+    public void setUp() {
+        m_strategy = new QueuingRrdStrategy(m_delegate);
+        m_strategy.setWriteThreads(1);
+        m_strategy.setWriteThreadSleepTime(1);
+        m_strategy.setWriteThreadExitDelay(100);
+        m_strategy.setModulus(10000);
+        m_strategy.setPartitions(4);
+    }
+
+    @After
+    public void tearDown() {
+        m_unblock.countDown();
+    }
+
+    @Test
+    public void testCoalesceSamples() throws Exception {
+        blockWriteThread();
+
+        for (int i = 1; i <= 10; i++) {
+            m_strategy.updateFile("a.jrb", "test", Collections.singletonList(new RrdUpdate(i * 300, i, 2 * i)));
+        }
+        // out of order, so it can't be merged with the previous samples
+        m_strategy.updateFile("a.jrb", "test", Collections.singletonList(new RrdUpdate(300, 1, 1)));
+        m_unblock.countDown();
+        waitForUpdates(12);
+
+        final List<List<RrdUpdate>> calls = m_delegate.getCalls("a.jrb");
+        assertEquals(2, calls.size());
+        assertEquals(10, calls.get(0).size());
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(new RrdUpdate(i * 300, i, 2 * i), calls.get(0).get(i - 1));
+        }
+        assertEquals(Collections.singletonList(new RrdUpdate(300, 1, 1)), calls.get(1));
+
+        // 12 updates written with 3 calls, including the one for the blocker
+        assertEquals(3, m_strategy.getUpdateCalls());
+        assertEquals(4.0, m_strategy.getCoalescingRatio(), 0.0);
+    }
+
+    @Test
+    public void testPreserveOrderPerFile() throws Exception {
+        m_strategy.setWriteThreads(4);
+
+        final int files = 8;
+        final int samples = 500;
+        final List<Thread> producers = new ArrayList<>();
+        for (int f = 0; f < files; f++) {
+            final String fileName = "file" + f + ".jrb";
+            producers.add(new Thread(() -> {
+                for (int i = 1; i <= samples; i++) {
+                    try {
+                        if (i % 2 == 0) {
+                            m_strategy.updateFile(fileName, "test", Collections.singletonList(new RrdUpdate(i, i)));
+                        } else {
+                            m_strategy.updateFile(fileName, "test", i + ":" + i);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        waitForUpdates(files * samples);
+
+        for (int f = 0; f < files; f++) {
+            final List<Long> timestamps = m_delegate.getTimestamps("file" + f + ".jrb");
+            assertEquals(samples, timestamps.size());
+            for (int i = 0; i < samples; i++) {
+                assertEquals(Long.valueOf(i + 1), timestamps.get(i));
+            }
+        }
+        assertEquals(0, m_strategy.getErrors());
+    }
+
+    @Test
+    public void testProcessOldestWorkFirstAcrossPartitions() throws Exception {
+        blockWriteThread();
+
+        final List<String> expected = new ArrayList<>();
+        for (int f = 0; f < 12; f++) {
+            final String fileName = "file" + f + ".jrb";
+            m_strategy.updateFile(fileName, "test", "300:1");
+            expected.add(fileName);
+            // distinct enqueue times
+            Thread.sleep(5);
+        }
+        m_unblock.countDown();
+        waitForUpdates(13);
+
+        final List<String> written = new ArrayList<>(m_delegate.getFileOrder());
+        written.remove(BLOCKER);
+        assertEquals(expected, written);
+    }
+
+    @Test
+    public void testDrainQueueBeforeWriteThreadsExit() throws Exception {
+        blockWriteThread();
+
+        for (int i = 1; i <= 100; i++) {
+            m_strategy.updateFile("a.jrb", "test", i * 300 + ":0");
+            m_strategy.updateFile("b.jrb", "test", i * 300 + ":" + i);
+            m_strategy.updateFile("c.jrb", "test", Arrays.asList(new RrdUpdate(i * 300, i)));
+        }
+        assertEquals(300, m_strategy.getTotalOperationsPending());
+        m_unblock.countDown();
+        waitForUpdates(301);
+
+        assertEquals(0, m_strategy.getTotalOperationsPending());
+        assertEquals(100, m_delegate.getTimestamps("a.jrb").size());
+        assertEquals(100, m_delegate.getTimestamps("b.jrb").size());
+        assertEquals(100, m_delegate.getTimestamps("c.jrb").size());
+    }
+
+    @Test
+    public void testReplaySkipsEntriesWrittenBeforeCrash() throws Exception {
+        final File dir = m_folder.newFolder("journal");
+
+        // the JVM stopped after writing the first entry and part of the second, before acknowledging them
+        final RrdJournal journal = RrdJournal.open(dir, 64 * 1024);
+        journal.append("a.jrb", "300:1");
+        journal.append("a.jrb", Arrays.asList(new RrdUpdate(600, 2), new RrdUpdate(900, 3)));
+        journal.append("a.jrb", "1200:4");
+        journal.append("b.jrb", "300:5");
+        journal.close();
+        m_delegate.rejectStaleUpdates();
+        m_delegate.updateFile("a.jrb", "test", "300:1");
+        m_delegate.updateFile("a.jrb", "test", "600:2");
+
+        m_strategy.setJournalDirectory(dir.getAbsolutePath());
+        m_strategy.start();
+        m_strategy.stop();
+
+        assertEquals(Arrays.asList(300L, 600L, 900L, 1200L), m_delegate.getTimestamps("a.jrb"));
+        assertEquals(Arrays.asList(300L), m_delegate.getTimestamps("b.jrb"));
+        assertEquals(0, m_strategy.getErrors());
+        // everything was written or skipped, so nothing is left to replay
+        assertTrue(replay(dir).isEmpty());
+    }
+
+    @Test
+    public void testKeepEntriesWhichFailToReplay() throws Exception {
+        final File dir = m_folder.newFolder("journal");
+
+        final RrdJournal journal = RrdJournal.open(dir, 64 * 1024);
+        journal.append("a.jrb", "300:1");
+        journal.append("b.jrb", "300:2");
+        journal.append("a.jrb", "600:3");
+        journal.append("b.jrb", "600:4");
+        journal.close();
+        m_delegate.fail("b.jrb", "300");
+
+        m_strategy.setJournalDirectory(dir.getAbsolutePath());
+        m_strategy.start();
+        m_strategy.stop();
+
+        // the failing entry doesn't prevent the following ones from being written
+        assertEquals(Arrays.asList(300L, 600L), m_delegate.getTimestamps("a.jrb"));
+        assertEquals(Arrays.asList(600L), m_delegate.getTimestamps("b.jrb"));
+        assertEquals(1, m_strategy.getErrors());
+
+        final Map<String, List<RrdJournal.Entry>> replayed = replay(dir);
+        assertEquals(1, replayed.size());
+        assertEquals(1, replayed.get("b.jrb").size());
+        assertEquals("300:2", replayed.get("b.jrb").get(0).getData());
+    }
+
+    @Test
+    public void testStopWaitsForWriteThreads() throws Exception {
+        final File dir = m_folder.newFolder("journal");
+        m_strategy.setJournalDirectory(dir.getAbsolutePath());
+        m_strategy.start();
+
+        blockWriteThread();
+        m_strategy.updateFile("a.jrb", "test", "300:1");
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            m_unblock.countDown();
+        }).start();
+        m_strategy.stop();
+
+        // the file being written was acknowledged, the queued one is left for the replay
+        assertEquals(Arrays.asList(300L), m_delegate.getTimestamps(BLOCKER));
+        assertTrue(m_delegate.getTimestamps("a.jrb").isEmpty());
+        final Map<String, List<RrdJournal.Entry>> replayed = replay(dir);
+        assertEquals(Collections.singleton("a.jrb"), replayed.keySet());
+    }
+
+    /**
+     * Opens the journal left behind in the given directory and collects its entries without writing them.
+     */
+    private static Map<String, List<RrdJournal.Entry>> replay(File dir) throws Exception {
+        final Map<String, List<RrdJournal.Entry>> replayed = new ConcurrentHashMap<>();
+        final RrdJournal journal = RrdJournal.open(dir, 64 * 1024);
+        try {
+            journal.replay(new RrdJournal.Replayer() {
+                @Override
+                public Collection<RrdJournal.Entry> replay(String fileName, List<RrdJournal.Entry> entries) {
+                    replayed.put(fileName, entries);
+                    return Collections.emptyList();
+                }
+            }, 1);
+        } finally {
+            journal.close();
+        }
+        return replayed;
+    }
+
+    /**
+     * Keeps the write thread busy until {@link #m_unblock} is released, so that operations pile up.
+     */
+    private void blockWriteThread() throws Exception {
+        m_strategy.updateFile(BLOCKER, "test", "300:1");
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!m_delegate.isBlocked() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue("write thread did not start", m_delegate.isBlocked());
+    }
+
+    private void waitForUpdates(long count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (m_strategy.getUpdatesCompleted() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, m_strategy.getUpdatesCompleted());
+    }
+
+    /**
+     * Records the updates written to every file, blocking on the {@link #BLOCKER} file.
+     */
+    private class RecordingRrdStrategy extends NullRrdStrategy {
+        private final Map<String, List<List<RrdUpdate>>> m_calls = new ConcurrentHashMap<>();
+
+        private final List<String> m_fileOrder = Collections.synchronizedList(new ArrayList<>());
+
+        private final Map<String, Long> m_lastUpdates = new ConcurrentHashMap<>();
+
+        private final Set<String> m_failures = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean m_blocked = false;
+
+        private volatile boolean m_rejectStaleUpdates = false;
+
+        @Override
+        public Object openFile(String fileName) {
+            if (BLOCKER.equals(fileName)) {
+                m_blocked = true;
+                try {
+                    m_unblock.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return fileName;
+        }
+
+        @Override
+        public void updateFile(Object rrd, String owner, String data) {
+            final String[] fields = data.split(":");
+            final double[] values = new double[fields.length - 1];
+            for (int i = 1; i < fields.length; i++) {
+                values[i - 1] = Double.parseDouble(fields[i]);
+            }
+            updateFile(rrd, owner, Collections.singletonList(new RrdUpdate(Long.parseLong(fields[0]), values)));
+        }
+
+        @Override
+        public void updateFile(Object rrd, String owner, List<RrdUpdate> updates) {
+            final String fileName = (String) rrd;
+            final List<RrdUpdate> written = new ArrayList<>(updates.size());
+            try {
+                for (RrdUpdate update : updates) {
+                    if (m_failures.contains(fileName + ":" + update.getTimestamp())) {
+                        throw new IllegalStateException("Failed to write " + fileName);
+                    }
+                    final Long last = m_lastUpdates.get(fileName);
+                    if (m_rejectStaleUpdates && last != null && update.getTimestamp() <= last) {
+                        // same message as JRobin, the samples before the stale one are kept
+                        throw new IllegalStateException("Bad sample timestamp " + update.getTimestamp() + ". Last update time was " + last + ", at least one second step is required");
+                    }
+                    m_lastUpdates.put(fileName, update.getTimestamp());
+                    written.add(update);
+                }
+            } finally {
+                if (!written.isEmpty()) {
+                    final List<List<RrdUpdate>> calls = m_calls.computeIfAbsent(fileName, f -> Collections.synchronizedList(new ArrayList<>()));
+                    if (calls.isEmpty()) {
+                        m_fileOrder.add(fileName);
+                    }
+                    calls.add(written);
+                }
+            }
+        }
+
+        void rejectStaleUpdates() {
+            m_rejectStaleUpdates = true;
+        }
+
+        void fail(String fileName, String timestamp) {
+            m_failures.add(fileName + ":" + timestamp);
+        }
+
+        boolean isBlocked() {
+            return m_blocked;
+        }
+
+        List<List<RrdUpdate>> getCalls(String fileName) {
+            return m_calls.getOrDefault(fileName, Collections.emptyList());
+        }
+
+        List<Long> getTimestamps(String fileName) {
+            final List<Long> timestamps = new ArrayList<>();
+            for (List<RrdUpdate> call : getCalls(fileName)) {
+                for (RrdUpdate update : call) {
+                    timestamps.add(update.getTimestamp());
+                }
+            }
+            return timestamps;
+        }
+
+        List<String> getFileOrder() {
+            return m_fileOrder;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.journal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.netmgt.rrd.RrdUpdate;
+
+public class RrdJournalTest {
+
+    @Rule
+    public TemporaryFolder m_folder = new TemporaryFolder();
+
+    @Test
+    public void testReplayUnacknowledgedEntries() throws Exception {
+        final File dir = m_folder.newFolder("journal");
+
+        RrdJournal journal = RrdJournal.open(dir, 64 * 1024);
+        final long first = journal.append("a.jrb", "1000:1:2");
+        journal.append("a.jrb", Arrays.asList(new RrdUpdate(1300, 3, Double.NaN), new RrdUpdate(1600, 4, 5)));
+        journal.append("b.jrb", "1000:U");
+        final long last = journal.append("b.jrb", "1300:7");
+        journal.acknowledge(first);
+        journal.acknowledge(last);
+        assertEquals(4, journal.getAppendedEntries());
+        assertEquals(2, journal.getAcknowledgedEntries());
+        assertEquals(2, journal.getPendingEntries());
+        journal.close();
+
+        journal = RrdJournal.open(dir, 64 * 1024);
+        final Map<String, List<RrdJournal.Entry>> replayed = replay(journal);
+        assertEquals(2, replayed.size());
+
+        final List<RrdJournal.Entry> a = replayed.get("a.jrb");
+        assertEquals(1, a.size());
+        assertNull(a.get(0).getData());
+        assertEquals(2, a.get(0).getUpdates().size());
+        assertEquals(1300, a.get(0).getUpdates().get(0).getTimestamp());
+        assertArrayEquals(new double[] { 3, Double.NaN }, a.get(0).getUpdates().get(0).getValues(), 0);
+        assertEquals(new RrdUpdate(1600, 4, 5), a.get(0).getUpdates().get(1));
+
+        final List<RrdJournal.Entry> b = replayed.get("b.jrb");
+        assertEquals(1, b.size());
+        assertEquals("1000:U", b.get(0).getData());
+        assertNull(b.get(0).getUpdates());
+
+        assertEquals(2, journal.getReplayedEntries());
+        assertEquals(0, journal.getPendingEntries());
+        journal.close();
+
+        // everything was acknowledged by the replay
+        journal = RrdJournal.open(dir, 64 * 1024);
+        assertTrue(replay(journal).isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void testSegmentsAreDeletedOnceAcknowledged() throws Exception {
+        final File dir = m_folder.newFolder("journal");
+
+        final RrdJournal journal = RrdJournal.open(dir, 1024);
+        final List<Long> positions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            positions.add(journal.append("file" + (i % 3) + ".jrb", (1000 + i * 300) + ":" + i));
+        }
+        assertTrue(journal.getSegments() > 1);
+        assertEquals(100, journal.getPendingEntries());
+
+        for (long position : positions) {
+            journal.acknowledge(position);
+        }
+        assertEquals(0, journal.getPendingEntries());
+        // only the current segment is left
+        assertEquals(1, journal.getSegments());
+        assertEquals(1, dir.listFiles().length);
+
+        journal.close();
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testReplayPreservesOrderAcrossSegments() throws Exception {
+        final File dir = m_folder.newFolder("journal");
+
+        RrdJournal journal = RrdJournal.open(dir, 1024);
+        for (int i = 0; i < 100; i++) {
+            journal.append("file" + (i % 3) + ".jrb", (1000 + i * 300) + ":" + i);
+        }
+        journal.close();
+
+        journal = RrdJournal.open(dir, 1024);
+        final Map<String, List<RrdJournal.Entry>> replayed = replay(journal);
+        assertEquals(3, replayed.size());
+        int count = 0;
+        for (int file = 0; file < 3; file++) {
+            int i = file;
+            for (RrdJournal.Entry entry : replayed.get("file" + file + ".jrb")) {
+                assertEquals((1000 + i * 300) + ":" + i, entry.getData());
+                i += 3;
+                count++;
+            }
+        }
+        assertEquals(100, count);
+        journal.close();
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testKeepEntriesWhichWereNotReplayed() throws Exception {
+        final File dir = m_folder.newFolder("journal");
+
+        RrdJournal journal = RrdJournal.open(dir, 64 * 1024);
+        journal.append("a.jrb", "1000:1");
+        journal.append("a.jrb", "1300:2");
+        journal.append("b.jrb", "1000:3");
+        journal.close();
+
+        journal = RrdJournal.open(dir, 64 * 1024);
+        final int replayed = journal.replay(new RrdJournal.Replayer() {
+            @Override
+            public Collection<RrdJournal.Entry> replay(String fileName, List<RrdJournal.Entry> entries) throws Exception {
+                if ("b.jrb".equals(fileName)) {
+                    throw new Exception("b.jrb is not available");
+                }
+                // only the first entry was written
+                return Collections.singletonList(entries.get(0));
+            }
+        }, 2);
+        assertEquals(1, replayed);
+        assertEquals(1, journal.getReplayedEntries());
+        assertEquals(2, journal.getPendingEntries());
+        journal.close();
+
+        journal = RrdJournal.open(dir, 64 * 1024);
+        final Map<String, List<RrdJournal.Entry>> entries = replay(journal);
+        assertEquals(2, entries.size());
+        assertEquals("1300:2", entries.get("a.jrb").get(0).getData());
+        assertEquals("1000:3", entries.get("b.jrb").get(0).getData());
+        assertEquals(0, journal.getPendingEntries());
+        journal.close();
+    }
+
+    private static Map<String, List<RrdJournal.Entry>> replay(RrdJournal journal) throws InterruptedException {
+        final Map<String, List<RrdJournal.Entry>> replayed = new ConcurrentHashMap<>();
+        journal.replay(new RrdJournal.Replayer() {
+            @Override
+            public Collection<RrdJournal.Entry> replay(String fileName, List<RrdJournal.Entry> entries) {
+                replayed.put(fileName, entries);
+                return entries;
+            }
+        }, 2);
+        return replayed;
+    }
+}
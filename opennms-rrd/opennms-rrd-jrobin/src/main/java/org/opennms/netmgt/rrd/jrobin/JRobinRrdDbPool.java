@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.jrobin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps recently used RRD files open, so that consecutive updates and fetches
+ * don't have to open the file and parse its header every time.
+ *
+ * Files are acquired and released in pairs. An open file is shared by all of
+ * the threads which acquired it, and is only closed once it was released by all
+ * of them and either exceeds the capacity of the pool (least recently used first),
+ * or was not used for longer than the idle timeout.
+ *
+ * A pooled file is reopened if it was replaced or deleted since it was opened,
+ * once it is no longer used by other threads.
+ * Updates must not be made to pooled files using other {@link RrdDb} instances,
+ * since these would not be visible to the values cached by the pooled instance.
+ */
+public class JRobinRrdDbPool {
+    private static final Logger LOG = LoggerFactory.getLogger(JRobinRrdDbPool.class);
+
+    /**
+     * Minimum time between two scans for idle files, in milliseconds.
+     */
+    private static final long IDLE_SCAN_INTERVAL_MS = 1000;
+
+    private final int m_capacity;
+
+    private final long m_idleTimeoutMs;
+
+    /**
+     * Entries in least-recently-used order.
+     */
+    private final LinkedHashMap<String, Entry> m_entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long m_lastIdleScan = 0;
+
+    private final AtomicLong m_hits = new AtomicLong();
+    private final AtomicLong m_misses = new AtomicLong();
+    private final AtomicLong m_evictions = new AtomicLong();
+    private final AtomicLong m_reopens = new AtomicLong();
+
+    private static class Entry {
+        private RrdDb rrdDb;
+        private Object fileKey;
+        private int references = 0;
+        private long lastUsed;
+    }
+
+    /**
+     * @param capacity maximum number of files kept open while they are not in use
+     * @param idleTimeoutMs time after which files which are not in use are closed, disabled when <= 0
+     */
+    public JRobinRrdDbPool(int capacity, long idleTimeoutMs) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be strictly positive");
+        }
+        m_capacity = capacity;
+        m_idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Retrieves the open file with the given path, opening it if necessary.
+     * The file must be released using {@link #release(RrdDb)} once it is no longer used.
+     */
+    public RrdDb acquire(final String path) throws IOException, RrdException {
+        final Entry entry;
+        synchronized (m_entries) {
+            Entry existing = m_entries.get(path);
+            if (existing == null) {
+                existing = new Entry();
+                m_entries.put(path, existing);
+            }
+            existing.references++;
+            entry = existing;
+        }
+
+        try {
+            synchronized (entry) {
+                if (entry.rrdDb != null && !Objects.equals(entry.fileKey, getFileKey(path)) && !isShared(entry)) {
+                    // The file was replaced or deleted since we opened it, and no one else is using it
+                    LOG.debug("{} changed since it was opened. Reopening it.", path);
+                    m_reopens.incrementAndGet();
+                    closeQuietly(entry.rrdDb);
+                    entry.rrdDb = null;
+                }
+                if (entry.rrdDb == null) {
+                    m_misses.incrementAndGet();
+                    entry.rrdDb = new RrdDb(path);
+                    entry.fileKey = getFileKey(path);
+                } else {
+                    m_hits.incrementAndGet();
+                }
+                return entry.rrdDb;
+            }
+        } catch (IOException | RrdException | RuntimeException e) {
+            synchronized (m_entries) {
+                entry.references--;
+                if (entry.references == 0 && entry.rrdDb == null) {
+                    m_entries.remove(path);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Releases a file retrieved with {@link #acquire(String)}, closing
+     * the files which exceed the capacity of the pool, or are idle.
+     */
+    public void release(final RrdDb rrdDb) throws IOException {
+        final long now = System.currentTimeMillis();
+        final List<RrdDb> evicted = new LinkedList<>();
+        synchronized (m_entries) {
+            final Entry entry = m_entries.get(rrdDb.getPath());
+            if (entry != null && entry.rrdDb == rrdDb && entry.references > 0) {
+                entry.references--;
+                entry.lastUsed = now;
+            } else {
+                // Not acquired from this pool
+                evicted.add(rrdDb);
+            }
+            evict(now, evicted);
+        }
+        for (RrdDb db : evicted) {
+            db.close();
+        }
+    }
+
+    /**
+     * Closes the given file if it is open and not in use, i.e. before it gets recreated.
+     */
+    public void invalidate(final String path) {
+        RrdDb evicted = null;
+        synchronized (m_entries) {
+            final Entry entry = m_entries.get(path);
+            if (entry != null && entry.references == 0) {
+                m_entries.remove(path);
+                evicted = entry.rrdDb;
+            }
+        }
+        closeQuietly(evicted);
+    }
+
+    /**
+     * Closes all of the files which are not in use.
+     */
+    public void closeAll() {
+        final List<RrdDb> evicted = new LinkedList<>();
+        synchronized (m_entries) {
+            final Iterator<Entry> it = m_entries.values().iterator();
+            while (it.hasNext()) {
+                final Entry entry = it.next();
+                if (entry.references == 0) {
+                    it.remove();
+                    evicted.add(entry.rrdDb);
+                }
+            }
+        }
+        for (RrdDb db : evicted) {
+            closeQuietly(db);
+        }
+    }
+
+    private void evict(long now, List<RrdDb> evicted) {
+        final boolean scanForIdle = m_idleTimeoutMs > 0 && now - m_lastIdleScan >= IDLE_SCAN_INTERVAL_MS;
+        if (m_entries.size() <= m_capacity && !scanForIdle) {
+            return;
+        }
+        if (scanForIdle) {
+            m_lastIdleScan = now;
+        }
+
+        final Iterator<Entry> it = m_entries.values().iterator();
+        while (it.hasNext()) {
+            final Entry entry = it.next();
+            final boolean overCapacity = m_entries.size() > m_capacity;
+            final boolean idle = scanForIdle && now - entry.lastUsed >= m_idleTimeoutMs;
+            if (!overCapacity && !scanForIdle) {
+                break;
+            }
+            if (entry.references == 0 && (overCapacity || idle)) {
+                it.remove();
+                evicted.add(entry.rrdDb);
+                m_evictions.incrementAndGet();
+            } else if (!overCapacity && !idle) {
+                // Entries are ordered by their last use, so all of the following ones are more recent
+                break;
+            }
+        }
+    }
+
+    private boolean isShared(Entry entry) {
+        synchronized (m_entries) {
+            return entry.references > 1;
+        }
+    }
+
+    /**
+     * Identifies the file currently found at the given path. Since pooled files are kept
+     * open, their inodes can't be reused by other files, even once they are deleted.
+     */
+    private static Object getFileKey(String path) throws IOException {
+        try {
+            final BasicFileAttributes attrs = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+            // Not all file systems provide a key, fall back to the creation time
+            return attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(RrdDb rrdDb) {
+        if (rrdDb == null) {
+            return;
+        }
+        try {
+            rrdDb.close();
+        } catch (IOException e) {
+            LOG.error("Failed to close rrd file: {}", rrdDb.getPath(), e);
+        }
+    }
+
+    public int getSize() {
+        synchronized (m_entries) {
+            return m_entries.size();
+        }
+    }
+
+    public long getHits() {
+        return m_hits.get();
+    }
+
+    public long getMisses() {
+        return m_misses.get();
+    }
+
+    public long getEvictions() {
+        return m_evictions.get();
+    }
+
+    public long getReopens() {
+        return m_reopens.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JRobinRrdDbPool[size=%d, capacity=%d, idleTimeout=%ds, hits=%d, misses=%d, evictions=%d, reopens=%d]",
+                getSize(), m_capacity, TimeUnit.MILLISECONDS.toSeconds(m_idleTimeoutMs),
+                getHits(), getMisses(), getEvictions(), getReopens());
+    }
+}
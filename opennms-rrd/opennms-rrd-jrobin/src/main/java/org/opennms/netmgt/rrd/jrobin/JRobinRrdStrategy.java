@@ -55,6 +55,7 @@ import org.jrobin.graph.RrdGraphDef;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdGraphDetails;
 import org.opennms.netmgt.rrd.RrdStrategy;
+import org.opennms.netmgt.rrd.RrdUpdate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,6 +72,10 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     private static final Logger LOG = LoggerFactory.getLogger(JRobinRrdStrategy.class);
     private static final String BACKEND_FACTORY_PROPERTY = "org.jrobin.core.RrdBackendFactory";
     private static final String DEFAULT_BACKEND_FACTORY = "FILE";
+    private static final String POOL_SIZE_PROPERTY = "org.opennms.rrd.jrobin.pool.size";
+    private static final int DEFAULT_POOL_SIZE = 1000;
+    private static final String POOL_IDLE_TIMEOUT_PROPERTY = "org.opennms.rrd.jrobin.pool.idleTimeout";
+    private static final long DEFAULT_POOL_IDLE_TIMEOUT_MS = 10 * 60 * 1000;
 
     /*
      * Ensure that we only initialize certain things *once* per
@@ -80,6 +85,11 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
 
     private Properties m_configurationProperties;
 
+    /**
+     * Open files shared by updates and fetches, or <code>null</code> if disabled.
+     */
+    private JRobinRrdDbPool m_pool = new JRobinRrdDbPool(DEFAULT_POOL_SIZE, DEFAULT_POOL_IDLE_TIMEOUT_MS);
+
     /**
      * An extremely simple Plottable for holding static datasources that
      * can't be represented with an SDEF -- currently used only for PERCENT
@@ -136,17 +146,27 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
                 LOG.error("Could not set default JRobin RRD factory", e);
             }
         }
+
+        if (m_configurationProperties != null) {
+            final int poolSize = Integer.parseInt(m_configurationProperties.getProperty(POOL_SIZE_PROPERTY, Integer.toString(DEFAULT_POOL_SIZE)));
+            final long idleTimeout = Long.parseLong(m_configurationProperties.getProperty(POOL_IDLE_TIMEOUT_PROPERTY, Long.toString(DEFAULT_POOL_IDLE_TIMEOUT_MS)));
+            if (m_pool != null) {
+                m_pool.closeAll();
+            }
+            m_pool = poolSize > 0 ? new JRobinRrdDbPool(poolSize, idleTimeout) : null;
+            LOG.debug("Using {} for open RRD files.", m_pool != null ? m_pool : "no pool");
+        }
     }
 
     /**
-     * Closes the JRobin RrdDb.
+     * Closes the JRobin RrdDb, or returns it to the pool of open files.
      *
      * @param rrdFile a {@link org.jrobin.core.RrdDb} object.
      * @throws java.lang.Exception if any.
      */
     @Override
     public void closeFile(final RrdDb rrdFile) throws Exception {
-        rrdFile.close();
+        release(rrdFile);
     }
 
     /** {@inheritDoc} */
@@ -201,6 +221,10 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         }
         LOG.info("createRRD: creating RRD file {}", rrdDef.getPath());
 
+        if (m_pool != null) {
+            // Don't keep using a previous file with the same name
+            m_pool.invalidate(rrdDef.getPath());
+        }
         RrdDb rrd = new RrdDb(rrdDef);
         rrd.close();
     }
@@ -208,11 +232,27 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     /**
      * {@inheritDoc}
      *
-     * Opens the JRobin RrdDb by name and returns it.
+     * Opens the JRobin RrdDb by name and returns it. The file is retrieved
+     * from the pool of open files when pooling is enabled.
      */
     @Override
     public RrdDb openFile(final String fileName) throws Exception {
-        return new RrdDb(fileName);
+        return acquire(fileName, false);
+    }
+
+    private RrdDb acquire(final String fileName, final boolean readOnly) throws IOException, RrdException {
+        if (m_pool != null) {
+            return m_pool.acquire(fileName);
+        }
+        return new RrdDb(fileName, readOnly);
+    }
+
+    private void release(final RrdDb rrd) throws IOException {
+        if (m_pool != null) {
+            m_pool.release(rrd);
+        } else {
+            rrd.close();
+        }
     }
 
     /**
@@ -226,6 +266,21 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         sample.setAndUpdate(data);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Creates a sample from the JRobin RrdDb for each update and sets its
+     * values directly, without going through the string format.
+     */
+    @Override
+    public void updateFile(final RrdDb rrdFile, final String owner, final List<RrdUpdate> updates) throws Exception {
+        for (final RrdUpdate update : updates) {
+            final Sample sample = rrdFile.createSample(update.getTimestamp());
+            sample.setValues(update.getValues());
+            sample.update();
+        }
+    }
+
     /**
      * Initialized the RrdDb to use the FILE factory because the NIO factory
      * uses too much memory for our implementation.
@@ -255,7 +310,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         try {
             long now = System.currentTimeMillis();
             long collectTime = (now - (now % interval)) / 1000L;
-            rrd = new RrdDb(fileName, true);
+            rrd = acquire(fileName, true);
             FetchData data = rrd.createFetchRequest(consolidationFunction, collectTime, collectTime).fetchData();
             LOG.debug(data.toString());
             double[] vals = data.getValues(ds);
@@ -270,7 +325,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         } finally {
             if (rrd != null) {
                 try {
-                    rrd.close();
+                    release(rrd);
                 } catch (IOException e) {
                     LOG.error("Failed to close rrd file: {}", fileName, e);
                 }
@@ -283,7 +338,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     public Double fetchLastValueInRange(final String fileName, final String ds, final int interval, final int range) throws NumberFormatException, org.opennms.netmgt.rrd.RrdException {
         RrdDb rrd = null;
         try {
-        	rrd = new RrdDb(fileName, true);
+            rrd = acquire(fileName, true);
          	long now = System.currentTimeMillis();
             long latestUpdateTime = (now - (now % interval)) / 1000L;
             long earliestUpdateTime = ((now - (now % interval)) - range) / 1000L;
@@ -312,7 +367,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         } finally {
             if (rrd != null) {
                 try {
-                    rrd.close();
+                    release(rrd);
                 } catch (IOException e) {
                     LOG.error("Failed to close rrd file: {}", fileName, e);
                 }
@@ -860,13 +915,13 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     }
 
     /**
-     * This implementation does not track any stats.
+     * Returns the statistics of the pool of open files, if enabled.
      *
      * @return a {@link java.lang.String} object.
      */
     @Override
     public String getStats() {
-        return "";
+        return m_pool != null ? m_pool.toString() : "";
     }
 
     /*
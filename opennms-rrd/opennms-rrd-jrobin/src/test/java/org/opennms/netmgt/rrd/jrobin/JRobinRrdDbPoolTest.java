@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.jrobin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JRobinRrdDbPoolTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void canReuseOpenFiles() throws Exception {
+        final String path = createRrdFile("a.jrb");
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(10, 0);
+
+        final RrdDb first = pool.acquire(path);
+        final RrdDb second = pool.acquire(path);
+        assertSame(first, second);
+        pool.release(first);
+        pool.release(second);
+
+        // The file is kept open after being released
+        assertFalse(first.isClosed());
+        assertSame(first, pool.acquire(path));
+        pool.release(first);
+
+        assertEquals(1, pool.getMisses());
+        assertEquals(2, pool.getHits());
+    }
+
+    @Test
+    public void canEvictLeastRecentlyUsedFiles() throws Exception {
+        final String a = createRrdFile("a.jrb");
+        final String b = createRrdFile("b.jrb");
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(1, 0);
+
+        final RrdDb rrdA = pool.acquire(a);
+        pool.release(rrdA);
+        final RrdDb rrdB = pool.acquire(b);
+        pool.release(rrdB);
+
+        assertEquals(1, pool.getSize());
+        assertEquals(1, pool.getEvictions());
+        assertTrue(rrdA.isClosed());
+        assertFalse(rrdB.isClosed());
+    }
+
+    @Test
+    public void canKeepFilesWhichAreInUse() throws Exception {
+        final String a = createRrdFile("a.jrb");
+        final String b = createRrdFile("b.jrb");
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(1, 0);
+
+        final RrdDb rrdA = pool.acquire(a);
+        final RrdDb rrdB = pool.acquire(b);
+        pool.release(rrdB);
+
+        // The least recently used file is still in use, so the other one is evicted
+        assertEquals(1, pool.getSize());
+        assertFalse(rrdA.isClosed());
+        assertTrue(rrdB.isClosed());
+        pool.release(rrdA);
+        assertFalse(rrdA.isClosed());
+    }
+
+    @Test
+    public void canEvictIdleFiles() throws Exception {
+        final String path = createRrdFile("a.jrb");
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(10, 1);
+
+        final RrdDb rrd = pool.acquire(path);
+        pool.release(rrd);
+        Thread.sleep(1100);
+        // Idle files are evicted when the next file is released
+        pool.release(pool.acquire(createRrdFile("b.jrb")));
+        assertTrue(rrd.isClosed());
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void canReopenReplacedFiles() throws Exception {
+        final String path = createRrdFile("a.jrb");
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(10, 0);
+
+        final RrdDb rrd = pool.acquire(path);
+        pool.release(rrd);
+
+        Files.move(Paths.get(createRrdFile("b.jrb")), Paths.get(path), StandardCopyOption.REPLACE_EXISTING);
+
+        final RrdDb reopened = pool.acquire(path);
+        assertNotSame(rrd, reopened);
+        assertTrue(rrd.isClosed());
+        assertEquals(1, pool.getReopens());
+        pool.release(reopened);
+    }
+
+    @Test
+    public void canCloseFilesWhichAreNotPooled() throws Exception {
+        final String path = createRrdFile("a.jrb");
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(10, 0);
+
+        final RrdDb rrd = new RrdDb(path);
+        pool.release(rrd);
+        assertTrue(rrd.isClosed());
+        assertEquals(0, pool.getSize());
+    }
+
+    private String createRrdFile(String name) throws Exception {
+        final String path = new File(tempFolder.getRoot(), name).getAbsolutePath();
+        final RrdDef def = new RrdDef(path, 300);
+        def.setStartTime(1000);
+        def.addDatasource("a", "GAUGE", 600, Double.NaN, Double.NaN);
+        def.addArchive("AVERAGE", 0.5, 1, 100);
+        new RrdDb(def).close();
+        return path;
+    }
+}
@@ -55,6 +55,7 @@ import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdException;
 import org.opennms.netmgt.rrd.RrdGraphDetails;
 import org.opennms.netmgt.rrd.RrdStrategy;
+import org.opennms.netmgt.rrd.RrdUpdate;
 import org.opennms.test.FileAnticipator;
 import org.opennms.test.ThrowableAnticipator;
 import org.opennms.test.mock.MockUtil;
@@ -175,6 +176,26 @@ public class JRobinRrdStrategyTest {
         m_strategy.closeFile(openedFile);
     }
 
+    @Test
+    public void testUpdateWithSamples() throws Exception {
+        File rrdFile = createRrdFile();
+
+        long timestamp = System.currentTimeMillis() / 1000L;
+        timestamp -= timestamp % 300;
+
+        RrdDb openedFile = m_strategy.openFile(rrdFile.getAbsolutePath());
+        m_strategy.updateFile(openedFile, "huh?", Arrays.asList(
+                new RrdUpdate(timestamp + 300, 1.0),
+                new RrdUpdate(timestamp + 600, Double.NaN),
+                new RrdUpdate(timestamp + 900, 3.5)));
+        try {
+            assertEquals("last update time", timestamp + 900, openedFile.getLastUpdateTime());
+            assertEquals("last value", 3.5, openedFile.getDatasource("bar").getLastValue(), 0.0);
+        } finally {
+            m_strategy.closeFile(openedFile);
+        }
+    }
+
     @Test
     public void testSampleSetFloatingPointValueGood() throws Exception {
         File rrdFile = createRrdFile();
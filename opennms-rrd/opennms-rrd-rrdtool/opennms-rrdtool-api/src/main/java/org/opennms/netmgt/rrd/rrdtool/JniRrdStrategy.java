@@ -34,6 +34,7 @@ import java.util.Properties;
 
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdException;
+import org.opennms.netmgt.rrd.RrdUpdate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -198,6 +199,22 @@ public class JniRrdStrategy extends AbstractJniRrdStrategy<JniRrdStrategy.Create
         rrd.append(data);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Appends each of the samples to the command string constructed so far,
+     * formatting the values directly into the command.
+     */
+    @Override
+    public void updateFile(StringBuffer rrd, String owner, List<RrdUpdate> updates) throws Exception {
+        final StringBuilder data = new StringBuilder();
+        for (RrdUpdate update : updates) {
+            data.append(' ');
+            update.appendTo(data);
+        }
+        rrd.append(data);
+    }
+
     /**
      * Initialized the JNI Interface
      *
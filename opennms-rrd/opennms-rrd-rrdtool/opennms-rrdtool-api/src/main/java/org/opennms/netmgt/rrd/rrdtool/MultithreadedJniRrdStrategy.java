@@ -36,6 +36,7 @@ import java.util.Properties;
 
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdException;
+import org.opennms.netmgt.rrd.RrdUpdate;
 import org.opennms.netmgt.rrd.jrrd2.api.FetchResults;
 import org.opennms.netmgt.rrd.jrrd2.api.JRrd2;
 import org.opennms.netmgt.rrd.jrrd2.api.JRrd2Exception;
@@ -211,6 +212,20 @@ public class MultithreadedJniRrdStrategy extends AbstractJniRrdStrategy<Multithr
         update.append(data);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Adds each of the samples as an argument to the update command.
+     */
+    @Override
+    public void updateFile(UpdateCommand update, String owner, List<RrdUpdate> updates) throws Exception {
+        final StringBuilder data = new StringBuilder();
+        for (RrdUpdate sample : updates) {
+            data.setLength(0);
+            update.append(sample.appendTo(data).toString());
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
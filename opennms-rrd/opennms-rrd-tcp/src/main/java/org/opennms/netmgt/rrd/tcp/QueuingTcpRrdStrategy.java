@@ -44,6 +44,7 @@ import org.slf4j.LoggerFactory;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdGraphDetails;
 import org.opennms.netmgt.rrd.RrdStrategy;
+import org.opennms.netmgt.rrd.RrdUpdate;
 import org.opennms.netmgt.rrd.tcp.TcpRrdStrategy.RrdDefinition;
 
 /**
@@ -67,8 +68,8 @@ public class QueuingTcpRrdStrategy implements RrdStrategy<TcpRrdStrategy.RrdDefi
     private static class PerformanceDataReading {
         private String m_filename;
         private String m_owner;
-        private String m_data;
-        public PerformanceDataReading(String filename, String owner, String data) {
+        private RrdUpdate m_data;
+        public PerformanceDataReading(String filename, String owner, RrdUpdate data) {
             m_filename = filename;
             m_owner = owner;
             m_data = data;
@@ -79,7 +80,7 @@ public class QueuingTcpRrdStrategy implements RrdStrategy<TcpRrdStrategy.RrdDefi
         public String getOwner() {
             return m_owner;
         }
-        public String getData() {
+        public RrdUpdate getData() {
             return m_data;
         }
     }
@@ -170,7 +171,19 @@ public class QueuingTcpRrdStrategy implements RrdStrategy<TcpRrdStrategy.RrdDefi
     /** {@inheritDoc} */
     @Override
     public void updateFile(String fileName, String owner, String data) throws Exception {
-        if (m_queue.offer(new PerformanceDataReading(fileName, owner, data), 500, TimeUnit.MILLISECONDS)) {
+        enqueue(new PerformanceDataReading(fileName, owner, RrdUpdate.parse(data)));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateFile(String fileName, String owner, List<RrdUpdate> updates) throws Exception {
+        for (RrdUpdate update : updates) {
+            enqueue(new PerformanceDataReading(fileName, owner, update));
+        }
+    }
+
+    private void enqueue(PerformanceDataReading reading) throws InterruptedException {
+        if (m_queue.offer(reading, 500, TimeUnit.MILLISECONDS)) {
             if (m_skippedReadings > 0) {
                 LOG.warn("Skipped {} performance data message(s) because of queue overflow", m_skippedReadings);
                 m_skippedReadings = 0;
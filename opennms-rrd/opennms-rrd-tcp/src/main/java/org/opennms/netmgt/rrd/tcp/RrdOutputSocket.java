@@ -31,13 +31,13 @@ package org.opennms.netmgt.rrd.tcp;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.rrd.RrdUpdate;
 import org.opennms.netmgt.rrd.tcp.PerformanceDataProtos.PerformanceDataReading;
 
 /**
@@ -75,15 +75,26 @@ public class RrdOutputSocket {
      * @param data a {@link java.lang.String} object.
      */
     public void addData(String filename, String owner, String data) {
-        Long timestamp = parseRrdTimestamp(data);
-        List<Double> values = parseRrdValues(data);
-        m_messages.addMessage(PerformanceDataReading.newBuilder()
+        addData(filename, owner, RrdUpdate.parse(data));
+    }
+
+    /**
+     * <p>addData</p>
+     *
+     * @param filename a {@link java.lang.String} object.
+     * @param owner a {@link java.lang.String} object.
+     * @param update a {@link org.opennms.netmgt.rrd.RrdUpdate} object.
+     */
+    public void addData(String filename, String owner, RrdUpdate update) {
+        final PerformanceDataReading.Builder reading = PerformanceDataReading.newBuilder()
                 .setPath(filename)
                 .setOwner(owner)
-                .setTimestamp(timestamp)
-                .addAllDblValue(values)
-                .addAllStrValue(new ArrayList<String>())
-        );
+                // RRD timestamps are in seconds, the readings are in milliseconds
+                .setTimestamp(update.getTimestamp() * 1000);
+        for (double value : update.getValues()) {
+            reading.addDblValue(value);
+        }
+        m_messages.addMessage(reading);
         m_messageCount++;
     }
 
@@ -130,32 +141,4 @@ public class RrdOutputSocket {
             }
         }
     };
-
-    private Long parseRrdTimestamp(String data) {
-        if (data.startsWith("N:")) {
-            return System.currentTimeMillis();
-        } else {
-            String timestamp = data.split(":")[0];
-            // RRD timestamps are in seconds, we want to return milliseconds
-            return Long.valueOf(timestamp) * 1000;
-        }
-    }
-
-    private List<Double> parseRrdValues(String data) {
-        List<Double> retval = new ArrayList<>();
-        String[] values = data.split(":");
-        // Skip index zero, that's the timestamp
-        for (int i = 1; i < values.length; i++) {
-            if (values[i] == null || "null".equals(values[i])) {
-                // Handle null values
-                retval.add(Double.NaN);
-            } else if ("U".equals(values[i])) {
-                // Parse the RRD value for "unknown"
-                retval.add(Double.NaN);
-            } else {
-                retval.add(new Double(values[i]));
-            }
-        }
-        return retval;
-    }
 }
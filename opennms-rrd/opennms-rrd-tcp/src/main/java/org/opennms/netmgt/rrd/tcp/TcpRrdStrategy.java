@@ -38,6 +38,7 @@ import java.util.Properties;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdGraphDetails;
 import org.opennms.netmgt.rrd.RrdStrategy;
+import org.opennms.netmgt.rrd.RrdUpdate;
 
 /**
  * Provides a TCP socket-based implementation of RrdStrategy that pushes update
@@ -170,6 +171,14 @@ public class TcpRrdStrategy implements RrdStrategy<TcpRrdStrategy.RrdDefinition,
         rrd.getSocket().addData(rrd.getFilename(), owner, data);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void updateFile(RrdOutputSocketWithFilename rrd, String owner, List<RrdUpdate> updates) throws Exception {
+        for (RrdUpdate update : updates) {
+            rrd.getSocket().addData(rrd.getFilename(), owner, update);
+        }
+    }
+
     /**
      * <p>closeFile</p>
      *
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.netmgt.poller.pollables.PollableService;
+import org.opennms.netmgt.poller.pollables.PollableServiceConfig;
+import org.opennms.netmgt.scheduler.PostponeNecessary;
+import org.opennms.netmgt.scheduler.ReadyRunnable;
+import org.opennms.netmgt.scheduler.Schedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Runs the polls of the services outside of the scheduler's thread pool.
+ * <p>
+ * In the lightweight execution mode the scheduler only dispatches the polls:
+ * every poll runs as its own task on a thread pool which grows on demand and
+ * retires idle threads, so the number of polls blocked on sockets is no longer
+ * bounded by the <code>threads</code> of the poller configuration. Instead the
+ * concurrency is bounded per package and location. Polls exceeding the limit
+ * wait in a queue without holding a thread and are started as soon as another
+ * poll of the same package and location completes.
+ * </p>
+ * <p>
+ * A poll is skipped if the previous poll of the same service is still queued
+ * or running. A poll which has to be postponed because the node's tree lock
+ * is not available is tried again after 5 to 14 seconds through the service's
+ * {@link Schedule}, so the retry is dropped if the service is rescheduled or
+ * unscheduled in the meantime and skipped during a scheduled outage, as in the
+ * regular execution mode.
+ * </p>
+ * <p>
+ * The following metrics are reported, both in total and per package and
+ * location: the number of polls in flight and queued, the time polls waited
+ * for a permit, the latency of the polls and the number of skipped polls.
+ * </p>
+ */
+public class LightweightPollExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LightweightPollExecutor.class);
+
+    private static final String METRIC_PREFIX = "polls";
+
+    private static final String DEFAULT_LOCATION = "Default";
+
+    /**
+     * The polls of a package and location, limited to a number of concurrent
+     * polls.
+     */
+    private class Partition {
+        private final String m_name;
+        private final int m_limit;
+        private final Queue<Poll> m_waiting = new ArrayDeque<>();
+        private int m_running;
+
+        private final Timer m_queueWait;
+        private final Timer m_latency;
+
+        private Partition(String name, int limit) {
+            m_name = name;
+            m_limit = limit;
+            m_queueWait = m_metrics.timer(MetricRegistry.name(METRIC_PREFIX, name, "queueWait"));
+            m_latency = m_metrics.timer(MetricRegistry.name(METRIC_PREFIX, name, "latency"));
+            registerGauge(MetricRegistry.name(METRIC_PREFIX, name, "inFlight"), this::getRunning);
+            registerGauge(MetricRegistry.name(METRIC_PREFIX, name, "queued"), this::getQueued);
+        }
+
+        private void submit(Poll poll) {
+            synchronized (this) {
+                if (m_running >= m_limit) {
+                    m_waiting.add(poll);
+                    return;
+                }
+                m_running++;
+            }
+            start(poll);
+        }
+
+        private void complete() {
+            final Poll next;
+            synchronized (this) {
+                next = m_waiting.poll();
+                if (next == null) {
+                    m_running--;
+                }
+            }
+            if (next != null) {
+                start(next);
+            }
+        }
+
+        private synchronized int getRunning() {
+            return m_running;
+        }
+
+        private synchronized int getQueued() {
+            return m_waiting.size();
+        }
+    }
+
+    /**
+     * A single poll of a service.
+     */
+    private class Poll implements Runnable {
+        private final LightweightPollableService m_service;
+        private final Partition m_partition;
+        private final long m_submitted = System.nanoTime();
+
+        private Poll(LightweightPollableService service, Partition partition) {
+            m_service = service;
+            m_partition = partition;
+        }
+
+        @Override
+        public void run() {
+            final long waited = System.nanoTime() - m_submitted;
+            m_partition.m_queueWait.update(waited, TimeUnit.NANOSECONDS);
+            m_queueWait.update(waited, TimeUnit.NANOSECONDS);
+
+            m_inFlight.inc();
+            final long start = System.nanoTime();
+            try {
+                m_service.m_service.run();
+            } catch (PostponeNecessary e) {
+                final Schedule schedule = m_service.m_service.getSchedule();
+                if (schedule != null) {
+                    schedule.postpone();
+                }
+            } catch (Throwable t) {
+                LOG.error("Unexpected error while polling {}", m_service.m_service, t);
+            } finally {
+                final long elapsed = System.nanoTime() - start;
+                m_partition.m_latency.update(elapsed, TimeUnit.NANOSECONDS);
+                m_latency.update(elapsed, TimeUnit.NANOSECONDS);
+                m_service.m_polling.set(false);
+                m_inFlight.dec();
+                m_partition.complete();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return m_service.m_service.toString();
+        }
+    }
+
+    /**
+     * The runnable scheduled in place of a {@link PollableService}, which
+     * hands the poll to the executor.
+     */
+    private class LightweightPollableService implements ReadyRunnable {
+        private final PollableService m_service;
+        private final PollableServiceConfig m_config;
+        private final AtomicBoolean m_polling = new AtomicBoolean(false);
+
+        private LightweightPollableService(PollableService service, PollableServiceConfig config) {
+            m_service = service;
+            m_config = config;
+        }
+
+        @Override
+        public boolean isReady() {
+            return m_service.isReady();
+        }
+
+        @Override
+        public void run() {
+            if (!m_polling.compareAndSet(false, true)) {
+                LOG.debug("Skipping the poll of {}, the previous poll has not completed yet", m_service);
+                m_skipped.inc();
+                return;
+            }
+            // the package can change when the configuration is reloaded
+            final Partition partition = getPartition(m_config.getPackageName(), m_service.getNodeLocation());
+            partition.submit(new Poll(this, partition));
+        }
+
+        @Override
+        public String toString() {
+            return m_service.toString();
+        }
+    }
+
+    private final String m_name;
+    private final MetricRegistry m_metrics;
+    private final int m_maxConcurrentPolls;
+    private final Map<String, Integer> m_limits;
+    private final Map<String, Partition> m_partitions = new ConcurrentHashMap<>();
+    private final ExecutorService m_executor;
+
+    private final Counter m_inFlight;
+    private final Counter m_skipped;
+    private final Timer m_queueWait;
+    private final Timer m_latency;
+
+    /**
+     * <p>Constructor for LightweightPollExecutor.</p>
+     *
+     * @param name the name of the executor, used to name its threads
+     * @param metrics the registry the metrics are registered with
+     * @param maxConcurrentPolls the default maximum number of concurrent polls per package and location
+     * @param limits the maximum number of concurrent polls keyed by
+     *        <code>package</code> or <code>package/location</code>, overriding the default
+     */
+    public LightweightPollExecutor(String name, MetricRegistry metrics, int maxConcurrentPolls, Map<String, Integer> limits) {
+        if (maxConcurrentPolls < 1) {
+            throw new IllegalArgumentException("maxConcurrentPolls must be positive");
+        }
+        m_name = name;
+        m_metrics = metrics;
+        m_maxConcurrentPolls = maxConcurrentPolls;
+        m_limits = limits;
+        m_executor = Executors.newCachedThreadPool(new LogPreservingThreadFactory(getName(), Integer.MAX_VALUE));
+
+        m_inFlight = metrics.counter(MetricRegistry.name(METRIC_PREFIX, "inFlight"));
+        m_skipped = metrics.counter(MetricRegistry.name(METRIC_PREFIX, "skipped"));
+        m_queueWait = metrics.timer(MetricRegistry.name(METRIC_PREFIX, "queueWait"));
+        m_latency = metrics.timer(MetricRegistry.name(METRIC_PREFIX, "latency"));
+    }
+
+    /**
+     * Returns the runnable to schedule in place of the service.
+     *
+     * @param service the service
+     * @param config the poll configuration of the service
+     * @return a runnable which hands the polls of the service to this executor
+     */
+    public ReadyRunnable wrap(PollableService service, PollableServiceConfig config) {
+        return new LightweightPollableService(service, config);
+    }
+
+    /**
+     * @return the name of the executor
+     */
+    public String getName() {
+        return m_name;
+    }
+
+    private Partition getPartition(String packageName, String location) {
+        final String name = packageName + "/" + (location == null ? DEFAULT_LOCATION : location);
+        Partition partition = m_partitions.get(name);
+        if (partition == null) {
+            synchronized (m_partitions) {
+                partition = m_partitions.get(name);
+                if (partition == null) {
+                    partition = new Partition(name, getLimit(packageName, name));
+                    m_partitions.put(name, partition);
+                    LOG.debug("Limiting the polls of {} to {} concurrent polls", name, partition.m_limit);
+                }
+            }
+        }
+        return partition;
+    }
+
+    private void registerGauge(String name, Gauge<Integer> gauge) {
+        // replace the gauge of a previous executor when the poller is restarted
+        m_metrics.remove(name);
+        m_metrics.register(name, gauge);
+    }
+
+    private int getLimit(String packageName, String partitionName) {
+        Integer limit = m_limits.get(partitionName);
+        if (limit == null) {
+            limit = m_limits.get(packageName);
+        }
+        return limit == null || limit < 1 ? m_maxConcurrentPolls : limit;
+    }
+
+    private void start(Poll poll) {
+        m_executor.execute(poll);
+    }
+
+    /**
+     * @return the number of polls currently running
+     */
+    public long getInFlight() {
+        return m_inFlight.getCount();
+    }
+
+    /**
+     * @return the number of polls that were skipped since the previous poll
+     *         of the service had not completed yet
+     */
+    public long getSkipped() {
+        return m_skipped.getCount();
+    }
+
+    /**
+     * Stops accepting polls. Running polls are not interrupted.
+     */
+    public void shutdown() {
+        m_executor.shutdown();
+    }
+}
@@ -33,7 +33,9 @@ import java.net.InetAddress;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.opennms.core.criteria.Criteria;
@@ -60,9 +62,10 @@ import org.opennms.netmgt.poller.pollables.PollableService;
 import org.opennms.netmgt.poller.pollables.PollableServiceConfig;
 import org.opennms.netmgt.poller.pollables.PollableVisitor;
 import org.opennms.netmgt.poller.pollables.PollableVisitorAdaptor;
-import org.opennms.netmgt.scheduler.LegacyScheduler;
+import org.opennms.netmgt.scheduler.ReadyRunnable;
 import org.opennms.netmgt.scheduler.Schedule;
 import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.scheduler.Schedulers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -71,6 +74,8 @@ import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import com.codahale.metrics.MetricRegistry;
+
 /**
  * <p>Poller class.</p>
  *
@@ -83,9 +88,25 @@ public class Poller extends AbstractServiceDaemon {
 
     private static final String LOG4J_CATEGORY = "poller";
 
+    private static final String SCHEDULER_SYS_PROP_PREFIX = "org.opennms.netmgt.poller";
+
+    /**
+     * Either <code>scheduler</code>, to run the polls on the scheduler's thread
+     * pool, or <code>lightweight</code>, to run them with the {@link LightweightPollExecutor}.
+     */
+    private static final String EXECUTION_SYS_PROP = "org.opennms.netmgt.poller.execution";
+
+    private static final String MAX_CONCURRENT_POLLS_SYS_PROP = "org.opennms.netmgt.poller.lightweight.maxConcurrentPolls";
+
+    private static final int DEFAULT_MAX_CONCURRENT_POLLS = 100;
+
     private boolean m_initialized = false;
 
-    private LegacyScheduler m_scheduler = null;
+    private Scheduler m_scheduler = null;
+
+    private LightweightPollExecutor m_pollExecutor = null;
+
+    private MetricRegistry m_metricRegistry = new MetricRegistry();
 
     private PollerEventProcessor m_eventProcessor;
 
@@ -272,9 +293,9 @@ public class Poller extends AbstractServiceDaemon {
     /**
      * <p>setScheduler</p>
      *
-     * @param scheduler a {@link org.opennms.netmgt.scheduler.LegacyScheduler} object.
+     * @param scheduler a {@link org.opennms.netmgt.scheduler.Scheduler} object.
      */
-    public void setScheduler(LegacyScheduler scheduler) {
+    public void setScheduler(Scheduler scheduler) {
         m_scheduler = scheduler;
     }
 
@@ -282,6 +303,10 @@ public class Poller extends AbstractServiceDaemon {
         m_locationAwarePollerClient = locationAwarePollerClient;
     }
 
+    public void setMetricRegistry(MetricRegistry metricRegistry) {
+        m_metricRegistry = metricRegistry;
+    }
+
     /**
      * <p>onInit</p>
      */
@@ -337,11 +362,37 @@ public class Poller extends AbstractServiceDaemon {
         try {
             LOG.debug("init: Creating poller scheduler");
 
-            setScheduler(new LegacyScheduler("Poller", getPollerConfig().getThreads()));
+            setScheduler(Schedulers.create("Poller", getPollerConfig().getThreads(), SCHEDULER_SYS_PROP_PREFIX));
         } catch (RuntimeException e) {
             LOG.error("init: Failed to create poller scheduler", e);
             throw e;
         }
+
+        if ("lightweight".equalsIgnoreCase(System.getProperty(EXECUTION_SYS_PROP, "scheduler").trim())) {
+            final int maxConcurrentPolls = Integer.getInteger(MAX_CONCURRENT_POLLS_SYS_PROP, DEFAULT_MAX_CONCURRENT_POLLS);
+            final Map<String, Integer> limits = getMaxConcurrentPollsOverrides();
+            LOG.info("init: Using lightweight poll execution with at most {} concurrent polls per package and location, overridden for {}", maxConcurrentPolls, limits);
+            m_pollExecutor = new LightweightPollExecutor("Poller-Lightweight", m_metricRegistry, maxConcurrentPolls, limits);
+        }
+    }
+
+    /**
+     * The limits of the packages and locations given by the system properties
+     * <code>org.opennms.netmgt.poller.lightweight.maxConcurrentPolls.&lt;package&gt;[/&lt;location&gt;]</code>.
+     */
+    private static Map<String, Integer> getMaxConcurrentPollsOverrides() {
+        final Map<String, Integer> limits = new HashMap<>();
+        final String prefix = MAX_CONCURRENT_POLLS_SYS_PROP + ".";
+        for (final String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(prefix) && name.length() > prefix.length()) {
+                try {
+                    limits.put(name.substring(prefix.length()), Integer.valueOf(System.getProperty(name).trim()));
+                } catch (final NumberFormatException e) {
+                    LOG.warn("init: Ignoring invalid value '{}' of {}", System.getProperty(name), name);
+                }
+            }
+        }
+        return limits;
     }
 
     /**
@@ -374,6 +425,10 @@ public class Poller extends AbstractServiceDaemon {
         if(getEventProcessor()!=null) {
             getEventProcessor().close();
         }
+        if (m_pollExecutor != null) {
+            m_pollExecutor.shutdown();
+            m_pollExecutor = null;
+        }
 
         setScheduler(null);
     }
@@ -529,7 +584,8 @@ public class Poller extends AbstractServiceDaemon {
         svc.setPollConfig(pollConfig);
         synchronized(svc) {
             if (svc.getSchedule() == null) {
-                Schedule schedule = new Schedule(svc, pollConfig, getScheduler());
+                final ReadyRunnable schedulable = m_pollExecutor == null ? svc : m_pollExecutor.wrap(svc, pollConfig);
+                Schedule schedule = new Schedule(schedulable, pollConfig, getScheduler());
                 svc.setSchedule(schedule);
             }
         }
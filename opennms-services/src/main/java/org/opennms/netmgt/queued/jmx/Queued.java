@@ -247,5 +247,59 @@ public class Queued extends AbstractSpringContextJmxServiceDaemon<org.opennms.ne
         }
     }
 
+    @Override
+    public long getTotalWriteLatency() {
+        if (getStatsStatus()) {
+            return getRrdStrategy().getTotalWriteLatency();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public long getTotalWriteTime() {
+        if (getStatsStatus()) {
+            return getRrdStrategy().getTotalWriteTime();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public long getFilesWithSignificantWork() {
+        if (getStatsStatus()) {
+            return getRrdStrategy().getFilesWithSignificantWork();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public long getFilesWithInsignificantWork() {
+        if (getStatsStatus()) {
+            return getRrdStrategy().getFilesWithInsignificantWork();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public long getUpdateCalls() {
+        if (getStatsStatus()) {
+            return getRrdStrategy().getUpdateCalls();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public double getCoalescingRatio() {
+        if (getStatsStatus()) {
+            return getRrdStrategy().getCoalescingRatio();
+        } else {
+            return 0;
+        }
+    }
+
 
 }
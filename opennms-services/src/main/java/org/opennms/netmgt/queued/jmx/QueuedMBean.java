@@ -115,5 +115,41 @@ public interface QueuedMBean extends BaseOnmsMBean {
 	 * @return a long.
 	 */
 	public long getStartTime();
+	/**
+	 * <p>getTotalWriteLatency</p>
+	 *
+	 * @return a long.
+	 */
+	public long getTotalWriteLatency();
+	/**
+	 * <p>getTotalWriteTime</p>
+	 *
+	 * @return a long.
+	 */
+	public long getTotalWriteTime();
+	/**
+	 * <p>getFilesWithSignificantWork</p>
+	 *
+	 * @return a long.
+	 */
+	public long getFilesWithSignificantWork();
+	/**
+	 * <p>getFilesWithInsignificantWork</p>
+	 *
+	 * @return a long.
+	 */
+	public long getFilesWithInsignificantWork();
+	/**
+	 * <p>getUpdateCalls</p>
+	 *
+	 * @return a long.
+	 */
+	public long getUpdateCalls();
+	/**
+	 * <p>getCoalescingRatio</p>
+	 *
+	 * @return a double.
+	 */
+	public double getCoalescingRatio();
 
 }
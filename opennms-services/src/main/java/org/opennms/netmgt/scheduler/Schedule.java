@@ -57,9 +57,19 @@ public class Schedule {
     
     class ScheduleEntry implements ReadyRunnable {
         private final int m_expirationCode;
+        private final boolean m_reschedule;
 
         public ScheduleEntry(int expirationCode) {
+            this(expirationCode, true);
+        }
+
+        /**
+         * @param reschedule false for an entry which runs only once, the
+         *        regular entry of the schedule being still scheduled
+         */
+        ScheduleEntry(int expirationCode, boolean reschedule) {
             m_expirationCode = expirationCode;
+            m_reschedule = reschedule;
         }
         
         /**
@@ -85,12 +95,14 @@ public class Schedule {
                 try {
                     Schedule.this.run();
                 } catch (PostponeNecessary e) {
-                    // Chose a random number of seconds between 5 and 14 to wait before trying again
-                    m_timer.schedule(random.nextInt(10) * 1000L + 5000L, this);
+                    m_timer.schedule(getPostponeDelay(), this);
                     return;
                 }
             }
-                
+
+            if (!m_reschedule) {
+                return;
+            }
 
             // if it is expired by the current run then don't reschedule
             if (isExpired()) {
@@ -105,7 +117,7 @@ public class Schedule {
         }
         
         @Override
-        public String toString() { return "ScheduleEntry[expCode="+m_expirationCode+"] for "+m_schedulable; }
+        public String toString() { return "ScheduleEntry[expCode="+m_expirationCode+(m_reschedule ? "" : ", once")+"] for "+m_schedulable; }
     }
 
     /**
@@ -149,6 +161,23 @@ public class Schedule {
         schedule(m_interval.getInterval());
     }
 
+    /**
+     * Runs the schedulable once more after a short delay, for a run that had
+     * to be postponed outside of the schedule's own entry, e.g. on another
+     * thread. The run is dropped if the schedule is adjusted or unscheduled in
+     * the meantime and skipped if it is suspended by then.
+     */
+    public void postpone() {
+        if (m_scheduled) {
+            m_timer.schedule(getPostponeDelay(), new ScheduleEntry(m_currentExpirationCode, false));
+        }
+    }
+
+    private static long getPostponeDelay() {
+        // Chose a random number of seconds between 5 and 14 to wait before trying again
+        return random.nextInt(10) * 1000L + 5000L;
+    }
+
     /**
      * <p>unschedule</p>
      */
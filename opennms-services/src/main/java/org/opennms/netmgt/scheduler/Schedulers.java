@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the scheduler of a daemon according to system properties, so that
+ * daemons can switch between the {@link LegacyScheduler} and the
+ * {@link TimingWheelScheduler}. Given a prefix such as
+ * <code>org.opennms.netmgt.poller</code> the following properties are used:
+ * <ul>
+ * <li><code>&lt;prefix&gt;.scheduler</code>: <code>legacy</code> (default) or
+ * <code>timing-wheel</code></li>
+ * <li><code>&lt;prefix&gt;.scheduler.tickDuration</code>: the tick of the timing
+ * wheel in milliseconds, 100 by default</li>
+ * <li><code>&lt;prefix&gt;.scheduler.startJitter</code>: the maximum random delay
+ * in milliseconds of the initial run of each service, 0 by default</li>
+ * </ul>
+ */
+public abstract class Schedulers {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Schedulers.class);
+
+    public static final String LEGACY = "legacy";
+
+    public static final String TIMING_WHEEL = "timing-wheel";
+
+    /**
+     * Creates the scheduler configured for the given property prefix.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     * @param propertyPrefix
+     *            The prefix of the system properties
+     * @return a new scheduler, which has not been started yet
+     */
+    public static Scheduler create(final String parent, final int maxSize, final String propertyPrefix) {
+        final String type = System.getProperty(propertyPrefix + ".scheduler", LEGACY).trim();
+        if (TIMING_WHEEL.equalsIgnoreCase(type)) {
+            final long tickDuration = Long.getLong(propertyPrefix + ".scheduler.tickDuration", TimingWheelScheduler.DEFAULT_TICK_DURATION);
+            final long startJitter = Long.getLong(propertyPrefix + ".scheduler.startJitter", 0L);
+            LOG.info("Using a timing wheel scheduler for {} with a tick of {}ms and a start jitter of {}ms", parent, tickDuration, startJitter);
+            return new TimingWheelScheduler(parent, maxSize, tickDuration, startJitter);
+        }
+        if (!LEGACY.equalsIgnoreCase(type)) {
+            LOG.warn("Unknown scheduler type '{}' for {}, using the legacy scheduler", type, parent);
+        }
+        return new LegacyScheduler(parent, maxSize);
+    }
+
+    /**
+     * Returns the thread pool of the scheduler, if it exposes one.
+     *
+     * @param scheduler the scheduler
+     * @return the thread pool, or null
+     */
+    public static ExecutorService getRunner(final Scheduler scheduler) {
+        if (scheduler instanceof LegacyScheduler) {
+            return ((LegacyScheduler) scheduler).getRunner();
+        } else if (scheduler instanceof TimingWheelScheduler) {
+            return ((TimingWheelScheduler) scheduler).getRunner();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,718 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.fiber.PausableFiber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Scheduler} backed by a hierarchical timing wheel.
+ * <p>
+ * Scheduling hands the runnable to the worker thread through a lock-free
+ * queue and the worker files it into the slot of the wheel matching its
+ * deadline, so both scheduling and cancelling are constant time operations
+ * regardless of the number of scheduled runnables. On every tick the worker
+ * only looks at the runnables of the current slot, instead of checking the
+ * head of every interval queue as the {@link LegacyScheduler} does.
+ * </p>
+ * <p>
+ * The wheel has three levels of 512 slots each. With the default tick of
+ * 100ms the first level covers the next 51 seconds, the second level the next
+ * 7 hours and the third level the next 155 days. Runnables further out are
+ * parked in the last slot of the third level and filed again when it
+ * expires.
+ * </p>
+ * <p>
+ * Runnables which are due but not {@link ReadyRunnable#isReady() ready} are
+ * checked again after a second. Runnables scheduled with an interval of 0,
+ * which is how services are initially scheduled, can be delayed by a random
+ * start jitter so that a restart does not run all of them at once. The
+ * lateness of every run is recorded in a {@link LatenessHistogram} per
+ * interval, rounded to two significant digits since Collectd reschedules
+ * with the remainder of the interval.
+ * </p>
+ */
+public class TimingWheelScheduler implements Runnable, PausableFiber, Scheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimingWheelScheduler.class);
+
+    /** The default duration of a tick in milliseconds. */
+    public static final long DEFAULT_TICK_DURATION = 100;
+
+    private static final int WHEEL_BITS = 9;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEEL_LEVELS = 3;
+    private static final long WHEEL_SPAN = 1L << (WHEEL_BITS * WHEEL_LEVELS);
+
+    /**
+     * The delay after which a runnable that was not ready is checked again.
+     */
+    private static final long NOT_READY_DELAY = 1000;
+
+    /**
+     * How often the lateness histograms are logged.
+     */
+    private static final long STATS_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    /**
+     * A runnable scheduled on the wheel.
+     */
+    public final class Timeout {
+        private final ReadyRunnable m_runnable;
+        private final long m_interval;
+        private final long m_deadline;
+        private final AtomicInteger m_state = new AtomicInteger(PENDING);
+
+        // only accessed by the worker thread
+        private long m_deadlineTick;
+        private Slot m_slot;
+        private Timeout m_prev;
+        private Timeout m_next;
+
+        private Timeout(ReadyRunnable runnable, long interval, long deadline) {
+            m_runnable = runnable;
+            m_interval = roundInterval(interval);
+            m_deadline = deadline;
+            m_deadlineTick = (deadline + m_tickDuration - 1) / m_tickDuration;
+        }
+
+        /**
+         * Cancels the runnable if it has not been handed to the thread pool
+         * yet.
+         *
+         * @return true if the runnable was cancelled
+         */
+        public boolean cancel() {
+            if (!m_state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            m_scheduled.decrementAndGet();
+            m_cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return m_state.get() == CANCELLED;
+        }
+
+        @Override
+        public String toString() {
+            return m_runnable + " (ready in " + Math.max(0, m_deadline - elapsedTime()) + "ms)";
+        }
+    }
+
+    /**
+     * A doubly linked list of the timeouts expiring in the same slot.
+     */
+    private static final class Slot {
+        private Timeout m_head;
+        private Timeout m_tail;
+
+        private void add(Timeout timeout) {
+            timeout.m_slot = this;
+            timeout.m_prev = m_tail;
+            timeout.m_next = null;
+            if (m_tail == null) {
+                m_head = timeout;
+            } else {
+                m_tail.m_next = timeout;
+            }
+            m_tail = timeout;
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.m_prev == null) {
+                m_head = timeout.m_next;
+            } else {
+                timeout.m_prev.m_next = timeout.m_next;
+            }
+            if (timeout.m_next == null) {
+                m_tail = timeout.m_prev;
+            } else {
+                timeout.m_next.m_prev = timeout.m_prev;
+            }
+            timeout.m_slot = null;
+            timeout.m_prev = null;
+            timeout.m_next = null;
+        }
+
+        private Timeout poll() {
+            final Timeout timeout = m_head;
+            if (timeout != null) {
+                remove(timeout);
+            }
+            return timeout;
+        }
+    }
+
+    /**
+     * Counts how late the runs of a given interval started, in exponentially
+     * growing buckets.
+     */
+    public static final class LatenessHistogram {
+        private static final long[] BUCKET_BOUNDS = { 10, 50, 100, 250, 500, 1000, 5000, 10000, 30000, 60000 };
+
+        private final AtomicLongArray m_buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+        private final AtomicLong m_count = new AtomicLong();
+        private final AtomicLong m_total = new AtomicLong();
+        private final AtomicLong m_max = new AtomicLong();
+
+        void record(long lateness) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && lateness > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            m_buckets.incrementAndGet(bucket);
+            m_count.incrementAndGet();
+            m_total.addAndGet(lateness);
+            m_max.accumulateAndGet(lateness, Math::max);
+        }
+
+        /**
+         * @return the upper bounds in milliseconds of all but the last bucket,
+         *         which counts the runs that were later than that
+         */
+        public static long[] getBucketBounds() {
+            return BUCKET_BOUNDS.clone();
+        }
+
+        /**
+         * @return the number of runs per bucket
+         */
+        public long[] getBucketCounts() {
+            final long[] counts = new long[m_buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = m_buckets.get(i);
+            }
+            return counts;
+        }
+
+        public long getCount() {
+            return m_count.get();
+        }
+
+        public long getMaxLateness() {
+            return m_max.get();
+        }
+
+        public double getMeanLateness() {
+            final long count = m_count.get();
+            return count == 0 ? 0 : m_total.get() / (double) count;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buf = new StringBuilder();
+            buf.append("count=").append(getCount())
+                .append(", mean=").append(String.format("%.1f", getMeanLateness())).append("ms")
+                .append(", max=").append(getMaxLateness()).append("ms");
+            for (int i = 0; i < m_buckets.length(); i++) {
+                buf.append(i == BUCKET_BOUNDS.length ? ", >" : ", <=")
+                    .append(BUCKET_BOUNDS[Math.min(i, BUCKET_BOUNDS.length - 1)]).append("ms=")
+                    .append(m_buckets.get(i));
+            }
+            return buf.toString();
+        }
+    }
+
+    private final String m_name;
+    private final long m_tickDuration;
+    private final long m_startJitter;
+    private final long m_startNanos = System.nanoTime();
+
+    private final Queue<Timeout> m_pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> m_cancelled = new ConcurrentLinkedQueue<>();
+    private final Map<Long, LatenessHistogram> m_lateness = new ConcurrentHashMap<>();
+    private final AtomicInteger m_scheduled = new AtomicInteger();
+
+    /** the wheels, only accessed by the worker thread */
+    private final Slot[][] m_wheels = new Slot[WHEEL_LEVELS][WHEEL_SIZE];
+
+    /** the last tick that was processed, only accessed by the worker thread */
+    private long m_tick;
+
+    /**
+     * The pool of threads that are used to executed the runnable instances
+     * scheduled by the class' instance.
+     */
+    private final ExecutorService m_runner;
+
+    /**
+     * The status for this fiber.
+     */
+    private volatile int m_status;
+
+    /**
+     * The worker thread that executes this instance.
+     */
+    private volatile Thread m_worker;
+
+    /**
+     * Used to keep track of the number of tasks that have been executed.
+     */
+    private volatile long m_numTasksExecuted = 0;
+
+    /**
+     * Constructs a new instance of the scheduler with the default tick
+     * duration and no start jitter.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     */
+    public TimingWheelScheduler(final String parent, final int maxSize) {
+        this(parent, maxSize, DEFAULT_TICK_DURATION, 0);
+    }
+
+    /**
+     * Constructs a new instance of the scheduler.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     * @param tickDuration
+     *            The duration of a tick in milliseconds. Runnables run at
+     *            most one tick after they are due.
+     * @param startJitter
+     *            The maximum random delay in milliseconds added to
+     *            runnables scheduled with an interval of 0.
+     */
+    public TimingWheelScheduler(final String parent, final int maxSize, final long tickDuration, final long startJitter) {
+        Assert.isTrue(tickDuration > 0, "The tick duration must be positive");
+        Assert.isTrue(startJitter >= 0, "The start jitter cannot be negative");
+        m_name = parent + "Scheduler";
+        m_tickDuration = tickDuration;
+        m_startJitter = startJitter;
+        m_status = START_PENDING;
+        m_runner = Executors.newFixedThreadPool(maxSize, new LogPreservingThreadFactory(parent, maxSize));
+        for (int level = 0; level < WHEEL_LEVELS; level++) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                m_wheels[level][i] = new Slot();
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void schedule(long interval, final ReadyRunnable runnable) {
+        newTimeout(interval, runnable);
+    }
+
+    /**
+     * Schedules the runnable to run once the interval has elapsed and it is
+     * ready.
+     *
+     * @param interval
+     *            the delay in milliseconds
+     * @param runnable
+     *            the runnable
+     * @return the timeout, which can be used to cancel the runnable
+     */
+    public Timeout newTimeout(long interval, final ReadyRunnable runnable) {
+        long delay = Math.max(0, interval);
+        if (delay == 0 && m_startJitter > 0) {
+            delay = ThreadLocalRandom.current().nextLong(m_startJitter);
+        }
+        // round up so that the runnable never runs before the interval has elapsed
+        final long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - m_startNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+        final Timeout timeout = new Timeout(runnable, interval, now + delay);
+        m_scheduled.incrementAndGet();
+        m_pending.add(timeout);
+        LOG.debug("schedule: Adding ready runnable {} at interval {}", runnable, interval);
+        return timeout;
+    }
+
+    /**
+     * <p>getCurrentTime</p>
+     *
+     * @return a long.
+     */
+    @Override
+    public long getCurrentTime() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * The time elapsed since this scheduler was created, which is not
+     * affected by changes of the system clock.
+     */
+    private long elapsedTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - m_startNanos);
+    }
+
+    /**
+     * <p>start</p>
+     */
+    @Override
+    public synchronized void start() {
+        Assert.state(m_worker == null, "The fiber has already run or is running");
+
+        m_worker = new Thread(this, getName());
+        m_worker.start();
+        m_status = STARTING;
+
+        LOG.info("start: scheduler started");
+    }
+
+    /**
+     * <p>stop</p>
+     */
+    @Override
+    public synchronized void stop() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+
+        m_status = STOP_PENDING;
+        m_worker.interrupt();
+        m_runner.shutdown();
+
+        LOG.info("stop: scheduler stopped");
+    }
+
+    /**
+     * <p>pause</p>
+     */
+    @Override
+    public synchronized void pause() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == PAUSED) {
+            return;
+        }
+
+        m_status = PAUSE_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>resume</p>
+     */
+    @Override
+    public synchronized void resume() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == RUNNING) {
+            return;
+        }
+
+        m_status = RESUME_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>getStatus</p>
+     *
+     * @return a int.
+     */
+    @Override
+    public synchronized int getStatus() {
+        if (m_worker != null && m_worker.isAlive() == false) {
+            m_status = STOPPED;
+        }
+        return m_status;
+    }
+
+    /**
+     * Returns the name of this fiber.
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * Returns total number of runnables currently scheduled.
+     *
+     * @return the number of runnables waiting to be handed to the thread pool
+     */
+    public int getScheduled() {
+        return m_scheduled.get();
+    }
+
+    /**
+     * Returns the pool of threads that are used to executed the runnable
+     * instances scheduled by the class' instance.
+     *
+     * @return thread pool
+     */
+    public ExecutorService getRunner() {
+        return m_runner;
+    }
+
+    /**
+     * Returns the lateness of the runs so far, keyed by the interval the
+     * runnables were scheduled with, rounded to two significant digits.
+     *
+     * @return the lateness histograms, sorted by interval
+     */
+    public Map<Long, LatenessHistogram> getLatenessHistograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(m_lateness));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getNumTasksExecuted() {
+        return m_numTasksExecuted;
+    }
+
+    /**
+     * The main method of the scheduler. This method advances the wheel once
+     * per tick and enqueues the runnables which are due into the thread pool
+     * for execution.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            m_status = RUNNING;
+        }
+
+        LOG.debug("run: scheduler running");
+
+        long lastStats = elapsedTime();
+        for (;;) {
+            synchronized (this) {
+                if (m_status != RUNNING && m_status != PAUSED && m_status != PAUSE_PENDING && m_status != RESUME_PENDING) {
+                    LOG.debug("run: status = {}, time to exit", m_status);
+                    break;
+                }
+
+                // if paused or pause pending then block
+                while (m_status == PAUSE_PENDING || m_status == PAUSED) {
+                    if (m_status == PAUSE_PENDING) {
+                        LOG.debug("run: pausing.");
+                    }
+                    m_status = PAUSED;
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        // exit
+                        break;
+                    }
+                }
+
+                // if resume pending then change to running
+                if (m_status == RESUME_PENDING) {
+                    LOG.debug("run: resuming.");
+                    m_status = RUNNING;
+                }
+
+                final long now = elapsedTime();
+                final long nextTickTime = (m_tick + 1) * m_tickDuration;
+                if (now < nextTickTime) {
+                    try {
+                        wait(nextTickTime - now);
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
+                    continue;
+                }
+            }
+
+            // catch up with the ticks we missed, if any
+            final long target = elapsedTime() / m_tickDuration;
+            try {
+                while (m_tick < target) {
+                    advance();
+                }
+            } catch (RejectedExecutionException e) {
+                if (m_status == STOP_PENDING) {
+                    break;
+                }
+                throw new UndeclaredThrowableException(e);
+            }
+
+            final long now = elapsedTime();
+            if (now - lastStats >= STATS_INTERVAL) {
+                lastStats = now;
+                logLateness();
+            }
+        }
+
+        LOG.debug("run: scheduler exiting, state = STOPPED");
+        synchronized (this) {
+            m_status = STOPPED;
+        }
+    }
+
+    /**
+     * Processes the next tick: cascades the runnables of the upper levels
+     * when a lower level wraps around, files the newly scheduled runnables and
+     * runs those of the current slot.
+     */
+    private void advance() {
+        final long tick = ++m_tick;
+        if ((tick & WHEEL_MASK) == 0) {
+            if (((tick >>> WHEEL_BITS) & WHEEL_MASK) == 0) {
+                cascade(m_wheels[2][(int) ((tick >>> (2 * WHEEL_BITS)) & WHEEL_MASK)]);
+            }
+            cascade(m_wheels[1][(int) ((tick >>> WHEEL_BITS) & WHEEL_MASK)]);
+        }
+
+        Timeout timeout;
+        while ((timeout = m_pending.poll()) != null) {
+            if (timeout.m_state.get() == PENDING) {
+                insert(timeout);
+            }
+        }
+        while ((timeout = m_cancelled.poll()) != null) {
+            if (timeout.m_slot != null) {
+                timeout.m_slot.remove(timeout);
+            }
+        }
+
+        final Slot slot = m_wheels[0][(int) (tick & WHEEL_MASK)];
+        while ((timeout = slot.poll()) != null) {
+            if (timeout.m_deadlineTick > tick) {
+                // not due yet, file it again
+                insert(timeout);
+            } else {
+                expire(timeout);
+            }
+        }
+    }
+
+    private void cascade(final Slot slot) {
+        Timeout timeout;
+        while ((timeout = slot.poll()) != null) {
+            insert(timeout);
+        }
+    }
+
+    private void insert(final Timeout timeout) {
+        long deadline = Math.max(timeout.m_deadlineTick, m_tick);
+        final long delta = deadline - m_tick;
+        if (delta < WHEEL_SIZE) {
+            m_wheels[0][(int) (deadline & WHEEL_MASK)].add(timeout);
+        } else if (delta < (long) WHEEL_SIZE * WHEEL_SIZE) {
+            m_wheels[1][(int) ((deadline >>> WHEEL_BITS) & WHEEL_MASK)].add(timeout);
+        } else {
+            if (delta >= WHEEL_SPAN) {
+                deadline = m_tick + WHEEL_SPAN - 1;
+            }
+            m_wheels[2][(int) ((deadline >>> (2 * WHEEL_BITS)) & WHEEL_MASK)].add(timeout);
+        }
+    }
+
+    private void expire(final Timeout timeout) {
+        if (timeout.m_state.get() != PENDING) {
+            return;
+        }
+        if (!timeout.m_runnable.isReady()) {
+            LOG.debug("run: runnable {} is not ready, checking again in {}ms", timeout.m_runnable, NOT_READY_DELAY);
+            timeout.m_deadlineTick = m_tick + Math.max(1, NOT_READY_DELAY / m_tickDuration);
+            insert(timeout);
+            return;
+        }
+        if (!timeout.m_state.compareAndSet(PENDING, EXPIRED)) {
+            return;
+        }
+        m_scheduled.decrementAndGet();
+
+        LOG.debug("run: found ready runnable {}", timeout.m_runnable);
+        m_runner.execute(new Runnable() {
+            @Override
+            public void run() {
+                getLatenessHistogram(timeout.m_interval).record(Math.max(0, elapsedTime() - timeout.m_deadline));
+                timeout.m_runnable.run();
+            }
+
+            @Override
+            public String toString() {
+                return timeout.m_runnable.toString();
+            }
+        });
+        ++m_numTasksExecuted;
+    }
+
+    /**
+     * Rounds the interval to two significant digits.
+     */
+    static long roundInterval(long interval) {
+        if (interval < 100) {
+            return Math.max(0, interval);
+        }
+        long scale = 1;
+        while (interval / scale >= 100) {
+            scale *= 10;
+        }
+        return Math.round(interval / (double) scale) * scale;
+    }
+
+    private LatenessHistogram getLatenessHistogram(long interval) {
+        final Long key = Long.valueOf(interval);
+        LatenessHistogram histogram = m_lateness.get(key);
+        if (histogram == null) {
+            histogram = new LatenessHistogram();
+            final LatenessHistogram existing = m_lateness.putIfAbsent(key, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    private void logLateness() {
+        if (!LOG.isInfoEnabled()) {
+            return;
+        }
+        LOG.info("{}: {} runnables scheduled, {} tasks executed", getName(), getScheduled(), getNumTasksExecuted());
+        for (Map.Entry<Long, LatenessHistogram> entry : getLatenessHistograms().entrySet()) {
+            LOG.info("{}: lateness for interval {}ms: {}", getName(), entry.getKey(), entry.getValue());
+        }
+    }
+}
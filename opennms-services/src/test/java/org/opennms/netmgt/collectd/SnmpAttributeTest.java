@@ -29,19 +29,23 @@
 package org.opennms.netmgt.collectd;
 
 import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.matches;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.easymock.Capture;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -64,6 +68,7 @@ import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdRepository;
 import org.opennms.netmgt.rrd.RrdStrategy;
+import org.opennms.netmgt.rrd.RrdUpdate;
 import org.opennms.netmgt.snmp.SnmpInstId;
 import org.opennms.netmgt.snmp.SnmpResult;
 import org.opennms.netmgt.snmp.SnmpValue;
@@ -158,7 +163,13 @@ public class SnmpAttributeTest {
         m_rrdStrategy.createFile(isA(Object.class));
 
         expect(m_rrdStrategy.openFile(isA(String.class))).andReturn(new Object());
-        m_rrdStrategy.updateFile(isA(Object.class), isA(String.class), matches(".*:" + matchValue));
+        final Capture<List<RrdUpdate>> updates = new Capture<>();
+        if (isWrittenAsSample(matchValue)) {
+            m_rrdStrategy.updateFile(isA(Object.class), isA(String.class), capture(updates));
+        } else {
+            // values a double can't hold exactly are still written in their string form
+            m_rrdStrategy.updateFile(isA(Object.class), isA(String.class), matches(".*:" + matchValue));
+        }
         m_rrdStrategy.closeFile(isA(Object.class));
 
         m_mocks.replayAll();
@@ -198,6 +209,15 @@ public class SnmpAttributeTest {
         });
 
         assertEquals(1, count.get());
+        if (updates.hasCaptured()) {
+            assertEquals(1, updates.getValue().size());
+            final String update = updates.getValue().get(0).toString();
+            assertTrue("update was " + update, update.matches(".*:" + matchValue));
+        }
+    }
+
+    private static boolean isWrittenAsSample(String value) {
+        return !value.matches("\\d+") || new BigInteger(value).bitLength() <= 53;
     }
 
     /**
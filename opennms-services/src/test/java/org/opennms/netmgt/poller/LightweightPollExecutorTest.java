@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.netmgt.poller.mock.MockInterval;
+import org.opennms.netmgt.poller.mock.MockScheduler;
+import org.opennms.netmgt.poller.pollables.PollableService;
+import org.opennms.netmgt.poller.pollables.PollableServiceConfig;
+import org.opennms.netmgt.scheduler.PostponeNecessary;
+import org.opennms.netmgt.scheduler.ReadyRunnable;
+import org.opennms.netmgt.scheduler.Schedule;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+public class LightweightPollExecutorTest {
+
+    private final MetricRegistry m_metrics = new MetricRegistry();
+
+    private final CountDownLatch m_release = new CountDownLatch(1);
+
+    private final AtomicInteger m_completed = new AtomicInteger();
+
+    private LightweightPollExecutor m_executor;
+
+    @After
+    public void tearDown() {
+        m_release.countDown();
+        if (m_executor != null) {
+            m_executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrencyIsLimitedPerPackageAndLocation() throws Exception {
+        m_executor = new LightweightPollExecutor("Poller-Lightweight", m_metrics, 2, Collections.<String, Integer>emptyMap());
+
+        for (int i = 0; i < 5; i++) {
+            m_executor.wrap(blockingService("Default"), config("example1")).run();
+        }
+        m_executor.wrap(blockingService("Raleigh"), config("example1")).run();
+
+        waitForInFlight(3);
+        assertEquals(2, gauge("polls.example1/Default.inFlight"));
+        assertEquals(3, gauge("polls.example1/Default.queued"));
+        assertEquals(1, gauge("polls.example1/Raleigh.inFlight"));
+
+        m_release.countDown();
+        waitForCompleted(6);
+        waitForInFlight(0);
+        assertEquals(0, gauge("polls.example1/Default.queued"));
+        assertEquals(5, m_metrics.timer("polls.example1/Default.latency").getCount());
+        assertEquals(5, m_metrics.timer("polls.example1/Default.queueWait").getCount());
+        assertEquals(6, m_metrics.timer("polls.latency").getCount());
+    }
+
+    @Test
+    public void testLimitsCanBeOverridden() throws Exception {
+        final Map<String, Integer> limits = Collections.singletonMap("example1", 1);
+        m_executor = new LightweightPollExecutor("Poller-Lightweight", m_metrics, 10, limits);
+
+        for (int i = 0; i < 3; i++) {
+            m_executor.wrap(blockingService("Default"), config("example1")).run();
+            m_executor.wrap(blockingService("Default"), config("example2")).run();
+        }
+
+        waitForInFlight(4);
+        assertEquals(1, gauge("polls.example1/Default.inFlight"));
+        assertEquals(2, gauge("polls.example1/Default.queued"));
+        assertEquals(3, gauge("polls.example2/Default.inFlight"));
+    }
+
+    @Test
+    public void testPollIsSkippedWhileThePreviousOneIsRunning() throws Exception {
+        m_executor = new LightweightPollExecutor("Poller-Lightweight", m_metrics, 10, Collections.<String, Integer>emptyMap());
+
+        final ReadyRunnable service = m_executor.wrap(blockingService("Default"), config("example1"));
+        service.run();
+        service.run();
+        waitForInFlight(1);
+        assertEquals(1, m_executor.getSkipped());
+
+        m_release.countDown();
+        waitForCompleted(1);
+        waitForInFlight(0);
+
+        // the next poll runs again
+        service.run();
+        waitForCompleted(2);
+        assertEquals(1, m_executor.getSkipped());
+    }
+
+    @Test
+    public void testPostponedPollIsRetriedThroughTheSchedule() throws Exception {
+        m_executor = new LightweightPollExecutor("Poller-Lightweight", m_metrics, 10, Collections.<String, Integer>emptyMap());
+
+        final MockScheduler scheduler = new MockScheduler();
+        final MockInterval interval = new MockInterval(scheduler, 20000L);
+        final AtomicInteger polls = new AtomicInteger();
+        final PollableService service = createNiceMock(PollableService.class);
+        final PollableServiceConfig config = config("example1");
+        final Schedule schedule = new Schedule(m_executor.wrap(service, config), interval, scheduler);
+        expect(service.getNodeLocation()).andReturn("Default").anyTimes();
+        expect(service.isReady()).andReturn(true).anyTimes();
+        expect(service.getSchedule()).andReturn(schedule).anyTimes();
+        service.run();
+        expectLastCall().andAnswer(() -> {
+            if (polls.incrementAndGet() == 1) {
+                throw new PostponeNecessary("tree lock not available");
+            }
+            m_completed.incrementAndGet();
+            return null;
+        }).anyTimes();
+        replay(service);
+
+        schedule.schedule();
+        scheduler.next();
+        waitForInFlight(0);
+        waitForEntries(scheduler, 2);
+
+        // the retry comes before the next regular poll and runs only once
+        scheduler.next();
+        waitForCompleted(1);
+        assertEquals(2, polls.get());
+        assertEquals(1, scheduler.getEntryCount());
+        assertEquals(Long.valueOf(20000L), Long.valueOf(scheduler.getNextTime()));
+    }
+
+    @Test
+    public void testPostponedPollIsNotRetriedOnceUnscheduled() throws Exception {
+        m_executor = new LightweightPollExecutor("Poller-Lightweight", m_metrics, 10, Collections.<String, Integer>emptyMap());
+
+        final MockScheduler scheduler = new MockScheduler();
+        final AtomicInteger polls = new AtomicInteger();
+        final PollableService service = createNiceMock(PollableService.class);
+        final Schedule schedule = new Schedule(m_executor.wrap(service, config("example1")), new MockInterval(scheduler, 20000L), scheduler);
+        expect(service.getNodeLocation()).andReturn("Default").anyTimes();
+        expect(service.isReady()).andReturn(true).anyTimes();
+        expect(service.getSchedule()).andReturn(schedule).anyTimes();
+        service.run();
+        expectLastCall().andAnswer(() -> {
+            polls.incrementAndGet();
+            throw new PostponeNecessary("tree lock not available");
+        }).anyTimes();
+        replay(service);
+
+        schedule.schedule();
+        scheduler.next();
+        waitForInFlight(0);
+        waitForEntries(scheduler, 2);
+        schedule.unschedule();
+
+        // the expired retry does not poll
+        scheduler.next();
+        Thread.sleep(100);
+        assertEquals(1, polls.get());
+    }
+
+    private PollableService blockingService(String location) {
+        final PollableService service = createNiceMock(PollableService.class);
+        expect(service.getNodeLocation()).andReturn(location).anyTimes();
+        expect(service.isReady()).andReturn(true).anyTimes();
+        service.run();
+        expectLastCall().andAnswer(() -> {
+            m_release.await();
+            m_completed.incrementAndGet();
+            return null;
+        }).anyTimes();
+        replay(service);
+        return service;
+    }
+
+    private static PollableServiceConfig config(String packageName) {
+        final PollableServiceConfig config = createNiceMock(PollableServiceConfig.class);
+        expect(config.getPackageName()).andReturn(packageName).anyTimes();
+        replay(config);
+        return config;
+    }
+
+    private int gauge(String name) {
+        return (Integer) ((Gauge<?>) m_metrics.getGauges().get(name)).getValue();
+    }
+
+    private void waitForInFlight(long expected) throws InterruptedException {
+        final long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (m_executor.getInFlight() != expected && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, m_executor.getInFlight());
+    }
+
+    private static void waitForEntries(MockScheduler scheduler, int expected) throws InterruptedException {
+        final long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (scheduler.getEntryCount() != expected && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, scheduler.getEntryCount());
+    }
+
+    private void waitForCompleted(int expected) throws InterruptedException {
+        final long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (m_completed.get() < expected && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue(m_completed.get() >= expected);
+    }
+}
@@ -28,13 +28,18 @@
 
 package org.opennms.netmgt.poller.pollables;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
 import java.io.File;
 import java.net.InetAddress;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.junit.After;
 import org.junit.Before;
@@ -54,6 +59,7 @@ import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.poller.mock.MockMonitoredService;
 import org.opennms.netmgt.poller.support.AbstractServiceMonitor;
 import org.opennms.netmgt.rrd.RrdStrategy;
+import org.opennms.netmgt.rrd.RrdUpdate;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -153,7 +159,8 @@ public class LatencyStoringServiceMonitorAdaptorPersistenceTest {
         EasyMock.expectLastCall().andReturn(null).once();
 
         // This is the important bit, the order of the values should match the order there were inserted above
-        m_rrdStrategy.updateFile(EasyMock.isNull(), EasyMock.eq("192.168.1.5"), EasyMock.endsWith(":42.1:1:2:3"));
+        final Capture<List<RrdUpdate>> updates = new Capture<>();
+        m_rrdStrategy.updateFile(EasyMock.isNull(), EasyMock.eq("192.168.1.5"), EasyMock.capture(updates));
         EasyMock.expectLastCall().once();
 
         EasyMock.replay(m_rrdStrategy);
@@ -163,6 +170,8 @@ public class LatencyStoringServiceMonitorAdaptorPersistenceTest {
 
         // Verify
         EasyMock.verify(m_rrdStrategy);
+        assertEquals(1, updates.getValue().size());
+        assertArrayEquals(new double[] { 42.1, 1, 2, 3 }, updates.getValue().get(0).getValues(), 0.0);
 
         // Reset
         EasyMock.reset(m_rrdStrategy);
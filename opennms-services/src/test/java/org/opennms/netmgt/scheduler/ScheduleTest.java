@@ -226,6 +226,66 @@ public class ScheduleTest extends TestCase {
         assertRunAndScheduled(1000, 1000, 2, 1);
     }
     
+    public void testPostpone() {
+        m_interval.setInterval(20000);
+        m_sched.schedule();
+        m_scheduler.next();
+
+        assertRunAndScheduled(0, 20000, 1, 1);
+
+        m_sched.postpone();
+        assertEquals(2, m_scheduler.getEntryCount());
+        final long retry = m_scheduler.getNextTime();
+        assertTrue(retry >= 5000 && retry < 15000);
+
+        m_scheduler.next();
+
+        // the retry runs once, the regular entry is still scheduled
+        assertRunAndScheduled(retry, 20000 - retry, 2, 1);
+    }
+
+    public void testPostponeIsDroppedWhenAdjusted() {
+        m_interval.setInterval(20000);
+        m_sched.schedule();
+        m_scheduler.next();
+        m_sched.postpone();
+        m_sched.adjustSchedule();
+
+        // jump to the expired retry
+        m_scheduler.next();
+
+        assertEquals(1, m_schedulable.getRunCount());
+    }
+
+    public void testPostponeIsDroppedWhenUnscheduled() {
+        m_interval.setInterval(20000);
+        m_sched.schedule();
+        m_scheduler.next();
+        m_sched.postpone();
+        m_sched.unschedule();
+
+        // jump to the expired retry
+        m_scheduler.next();
+
+        assertRunAndScheduled(m_scheduler.getCurrentTime(), 20000 - m_scheduler.getCurrentTime(), 1, 1);
+
+        m_sched.postpone();
+        assertEquals(1, m_scheduler.getEntryCount());
+    }
+
+    public void testPostponeIsSkippedWhenSuspended() {
+        m_interval.setInterval(20000);
+        m_interval.addSuspension(4000, 15000);
+        m_sched.schedule();
+        m_scheduler.next();
+        m_sched.postpone();
+
+        // this is the suspended retry
+        m_scheduler.next();
+
+        assertRunAndScheduled(m_scheduler.getCurrentTime(), 20000 - m_scheduler.getCurrentTime(), 1, 1);
+    }
+
     private void assertRunAndScheduled(long currentTime, long interval, int count, int entryCount) {
         assertEquals(count, m_schedulable.getRunCount());
         assertEquals(currentTime, m_scheduler.getCurrentTime());
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018-2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TimingWheelSchedulerTest {
+
+    private TimingWheelScheduler m_scheduler;
+
+    private static class Task implements ReadyRunnable {
+        private final long m_start = System.nanoTime();
+        private final long m_delay;
+        private final List<Long> m_order;
+        private final CountDownLatch m_latch;
+        private volatile long m_elapsed = -1;
+
+        private Task(long delay, List<Long> order, CountDownLatch latch) {
+            m_delay = delay;
+            m_order = order;
+            m_latch = latch;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void run() {
+            m_elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - m_start);
+            m_order.add(m_delay);
+            m_latch.countDown();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (m_scheduler != null) {
+            m_scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testRunsInDeadlineOrder() throws Exception {
+        m_scheduler = new TimingWheelScheduler("Test", 1, 10, 0);
+        m_scheduler.start();
+
+        final List<Long> order = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch latch = new CountDownLatch(3);
+        final List<Task> tasks = new ArrayList<>();
+        for (long delay : new long[] { 300, 100, 200 }) {
+            final Task task = new Task(delay, order, latch);
+            tasks.add(task);
+            m_scheduler.schedule(delay, task);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(100L, 200L, 300L), order);
+        for (Task task : tasks) {
+            assertTrue("task with a delay of " + task.m_delay + "ms ran after " + task.m_elapsed + "ms", task.m_elapsed >= task.m_delay);
+        }
+        assertEquals(0, m_scheduler.getScheduled());
+        assertEquals(3, m_scheduler.getNumTasksExecuted());
+    }
+
+    @Test
+    public void testCascadesFromUpperLevels() throws Exception {
+        // with a tick of 1ms the first level only covers 512ms
+        m_scheduler = new TimingWheelScheduler("Test", 1, 1, 0);
+        m_scheduler.start();
+
+        final List<Long> order = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Task task = new Task(700, order, latch);
+        m_scheduler.schedule(700, task);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue("task ran after " + task.m_elapsed + "ms", task.m_elapsed >= 700);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        m_scheduler = new TimingWheelScheduler("Test", 1, 10, 0);
+        m_scheduler.start();
+
+        final List<Long> order = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch latch = new CountDownLatch(2);
+        final TimingWheelScheduler.Timeout cancelled = m_scheduler.newTimeout(50, new Task(50, order, latch));
+        m_scheduler.schedule(100, new Task(100, order, latch));
+        assertEquals(2, m_scheduler.getScheduled());
+
+        assertTrue(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, m_scheduler.getScheduled());
+
+        assertFalse(latch.await(500, TimeUnit.MILLISECONDS));
+        assertEquals(Arrays.asList(100L), order);
+        assertEquals(0, m_scheduler.getScheduled());
+    }
+
+    @Test
+    public void testNotReadyIsCheckedAgain() throws Exception {
+        m_scheduler = new TimingWheelScheduler("Test", 1, 10, 0);
+        m_scheduler.start();
+
+        final AtomicInteger checks = new AtomicInteger();
+        final AtomicBoolean ran = new AtomicBoolean();
+        final CountDownLatch latch = new CountDownLatch(1);
+        m_scheduler.schedule(0, new ReadyRunnable() {
+            @Override
+            public boolean isReady() {
+                return checks.incrementAndGet() > 1;
+            }
+
+            @Override
+            public void run() {
+                ran.set(true);
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(ran.get());
+        assertEquals(2, checks.get());
+    }
+
+    @Test
+    public void testStartJitterAndLateness() throws Exception {
+        m_scheduler = new TimingWheelScheduler("Test", 2, 10, 200);
+        m_scheduler.start();
+
+        final List<Long> order = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch latch = new CountDownLatch(20);
+        for (int i = 0; i < 10; i++) {
+            m_scheduler.schedule(0, new Task(0, order, latch));
+            m_scheduler.schedule(100, new Task(100, order, latch));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // the histogram is updated before the task runs
+        final Map<Long, TimingWheelScheduler.LatenessHistogram> histograms = m_scheduler.getLatenessHistograms();
+        assertEquals(2, histograms.size());
+        assertEquals(10, histograms.get(0L).getCount());
+        assertEquals(10, histograms.get(100L).getCount());
+        long total = 0;
+        for (long count : histograms.get(100L).getBucketCounts()) {
+            total += count;
+        }
+        assertEquals(10, total);
+    }
+
+    @Test
+    public void testRoundInterval() {
+        assertEquals(0, TimingWheelScheduler.roundInterval(-1));
+        assertEquals(0, TimingWheelScheduler.roundInterval(0));
+        assertEquals(42, TimingWheelScheduler.roundInterval(42));
+        assertEquals(5400, TimingWheelScheduler.roundInterval(5432));
+        assertEquals(300000, TimingWheelScheduler.roundInterval(299123));
+        assertEquals(300000, TimingWheelScheduler.roundInterval(300000));
+    }
+}